@@ -0,0 +1,87 @@
+package com.fitai.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 表结构更新前的数据修正
+ * 在 Hibernate ddl-auto 更新表结构之前执行，先把已有数据整理到新约束能够建立的状态；
+ * 每一步都先检查约束是否已经存在，已存在时不做任何事，因此只在第一次升级时真正执行
+ */
+@Slf4j
+public class SchemaPreparation {
+    
+    private final DataSource dataSource;
+    
+    public SchemaPreparation(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+    
+    @PostConstruct
+    public void prepare() {
+        apply(dataSource);
+    }
+    
+    public static void apply(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        dedupeActivePlans(jdbcTemplate);
+    }
+    
+    /**
+     * uk_workout_plans_active_owner 建立之前，每个用户只保留ID最大（最近创建）的活跃计划，其余停用
+     */
+    private static void dedupeActivePlans(JdbcTemplate jdbcTemplate) {
+        Boolean pending = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                tableExists(connection, "workout_plans")
+                        && !uniqueIndexExists(connection, "workout_plans", "active_owner_id"));
+        if (!Boolean.TRUE.equals(pending)) {
+            return;
+        }
+        List<Object[]> duplicates = jdbcTemplate.query(
+                "SELECT user_id, MAX(id) FROM workout_plans WHERE is_active = TRUE " +
+                "GROUP BY user_id HAVING COUNT(*) > 1",
+                (rs, rowNum) -> new Object[] {rs.getLong(1), rs.getLong(2)});
+        if (duplicates.isEmpty()) {
+            return;
+        }
+        int[] counts = jdbcTemplate.batchUpdate(
+                "UPDATE workout_plans SET is_active = FALSE WHERE user_id = ? AND is_active = TRUE AND id <> ?",
+                duplicates);
+        int deactivated = 0;
+        for (int count : counts) {
+            deactivated += Math.max(count, 0);
+        }
+        log.warn("建立活跃计划唯一索引前停用重复的活跃计划: {} 个用户, {} 个计划", duplicates.size(), deactivated);
+    }
+    
+    private static boolean tableExists(Connection connection, String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, table, new String[] {"TABLE"})) {
+            return tables.next();
+        }
+    }
+    
+    /**
+     * 按列判断而不是按索引名：部分数据库把唯一索引建成约束，底层索引另有名字
+     */
+    private static boolean uniqueIndexExists(Connection connection, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), null, table, true, true)) {
+            while (indexes.next()) {
+                if (column.equalsIgnoreCase(indexes.getString("COLUMN_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
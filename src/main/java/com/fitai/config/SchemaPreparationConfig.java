@@ -0,0 +1,25 @@
+package com.fitai.config;
+
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * 在实体管理器工厂（及其 ddl-auto）之前对主数据源执行 SchemaPreparation；
+ * 分片模式下其余分片由 ShardingConfig 在各自的表结构更新之前执行
+ */
+@Configuration
+public class SchemaPreparationConfig {
+    
+    @Bean
+    public static EntityManagerFactoryDependsOnPostProcessor schemaPreparationDependency() {
+        return new EntityManagerFactoryDependsOnPostProcessor("schemaPreparation");
+    }
+    
+    @Bean
+    public SchemaPreparation schemaPreparation(DataSource dataSource) {
+        return new SchemaPreparation(dataSource);
+    }
+}
@@ -0,0 +1,9 @@
+package com.fitai.config.datasource;
+
+/**
+ * 事务的数据源路由目标
+ */
+public enum DataSourceRoute {
+    PRIMARY,
+    REPLICA
+}
@@ -0,0 +1,120 @@
+package com.fitai.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 读写分离数据源配置（fitai.coach.datasource.routing.enabled=true 时启用）
+ * 主库来自 spring.datasource，从库来自 fitai.coach.datasource.routing.replicas；
+ * 路由数据源外包一层 LazyConnectionDataSourceProxy，直到真正执行语句才获取物理连接
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "fitai.coach.datasource.routing", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(DataSourceRoutingProperties.class)
+@Slf4j
+public class DataSourceRoutingConfig implements WebMvcConfigurer {
+    
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("fitai-primary");
+        return dataSource;
+    }
+    
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(DataSourceRoutingProperties properties,
+                                               DataSourceProperties dataSourceProperties) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<DataSourceRoutingProperties.Replica> configured = properties.getReplicas();
+        for (int i = 0; i < configured.size(); i++) {
+            replicas.put("replica-" + i, createReplica(i, configured.get(i), properties, dataSourceProperties));
+        }
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replicas, properties);
+        monitor.checkLag();
+        log.info("读写分离已启用: {} 个从库, 延迟阈值 {} 秒, 状态 {}",
+                replicas.size(), properties.getMaxLagSeconds(), monitor.getLagSnapshot());
+        return monitor;
+    }
+    
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(HikariDataSource primaryDataSource,
+                                                      ReplicaLagMonitor replicaLagMonitor) {
+        return new ReplicaRoutingDataSource(primaryDataSource, replicaLagMonitor.getReplicaDataSources(),
+                replicaLagMonitor);
+    }
+    
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+    
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(DataSourceRoutingProperties properties) {
+        return new ReadYourWritesTracker(properties.getStickyWindowMs());
+    }
+    
+    @Bean
+    public JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory,
+                                                    ReadYourWritesTracker readYourWritesTracker) {
+        return new RoutingJpaTransactionManager(entityManagerFactory, readYourWritesTracker);
+    }
+    
+    /**
+     * 每个事务结束后释放物理连接，下一个事务重新按路由获取；
+     * 否则在 open-in-view 下整个请求会一直持有第一次拿到的连接（可能是从库）
+     */
+    @Bean
+    public HibernatePropertiesCustomizer routingConnectionHandlingCustomizer() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+    
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReadYourWritesInterceptor());
+    }
+    
+    private HikariDataSource createReplica(int index, DataSourceRoutingProperties.Replica replica,
+                                           DataSourceRoutingProperties properties,
+                                           DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("fitai-replica-" + index);
+        dataSource.setJdbcUrl(replica.getUrl());
+        dataSource.setUsername(StringUtils.hasText(replica.getUsername())
+                ? replica.getUsername() : dataSourceProperties.determineUsername());
+        dataSource.setPassword(replica.getPassword() != null
+                ? replica.getPassword() : dataSourceProperties.determinePassword());
+        dataSource.setDriverClassName(StringUtils.hasText(replica.getDriverClassName())
+                ? replica.getDriverClassName() : dataSourceProperties.determineDriverClassName());
+        dataSource.setMaximumPoolSize(properties.getReplicaMaxPoolSize());
+        dataSource.setReadOnly(true);
+        // 从库暂时不可用时不阻止应用启动，由延迟守护将其排除
+        dataSource.setInitializationFailTimeout(-1);
+        return dataSource;
+    }
+}
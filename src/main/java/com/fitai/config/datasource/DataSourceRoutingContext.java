@@ -0,0 +1,50 @@
+package com.fitai.config.datasource;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 当前线程的数据源路由上下文
+ * 路由目标按事务嵌套入栈（REQUIRES_NEW 等会开启新的物理事务），客户端标识用于读己之写判断
+ */
+public final class DataSourceRoutingContext {
+    
+    private static final ThreadLocal<Deque<DataSourceRoute>> ROUTES = ThreadLocal.withInitial(ArrayDeque::new);
+    
+    private static final ThreadLocal<String> CLIENT_KEY = new ThreadLocal<>();
+    
+    private DataSourceRoutingContext() {
+    }
+    
+    static void push(DataSourceRoute route) {
+        ROUTES.get().push(route);
+    }
+    
+    static void pop() {
+        Deque<DataSourceRoute> routes = ROUTES.get();
+        routes.poll();
+        if (routes.isEmpty()) {
+            ROUTES.remove();
+        }
+    }
+    
+    /**
+     * 当前事务的路由目标，事务外访问数据库一律走主库
+     */
+    public static DataSourceRoute currentRoute() {
+        DataSourceRoute route = ROUTES.get().peek();
+        return route != null ? route : DataSourceRoute.PRIMARY;
+    }
+    
+    public static void bindClient(String clientKey) {
+        CLIENT_KEY.set(clientKey);
+    }
+    
+    public static String currentClient() {
+        return CLIENT_KEY.get();
+    }
+    
+    public static void clearClient() {
+        CLIENT_KEY.remove();
+    }
+}
@@ -0,0 +1,43 @@
+package com.fitai.config.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读写分离数据源配置
+ * 主库沿用 spring.datasource，只读事务按轮询分发到 replicas
+ */
+@ConfigurationProperties(prefix = "fitai.coach.datasource.routing")
+@Data
+public class DataSourceRoutingProperties {
+    
+    private boolean enabled;
+    
+    private List<Replica> replicas = new ArrayList<>();
+    
+    // 从库延迟超过该值（秒）时暂停向其分发读请求
+    private long maxLagSeconds = 5;
+    
+    // 查询从库延迟的语句及结果列，默认适用于 MySQL 8.0.22+；H2 本地测试可配置为 SELECT 0 AS lag
+    private String lagQuery = "SHOW REPLICA STATUS";
+    
+    private String lagColumn = "Seconds_Behind_Source";
+    
+    private long lagCheckIntervalMs = 2000;
+    
+    // 用户写事务提交后，该时间窗口内的只读事务仍走主库（读己之写）
+    private long stickyWindowMs = 5000;
+    
+    private int replicaMaxPoolSize = 10;
+    
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+    }
+}
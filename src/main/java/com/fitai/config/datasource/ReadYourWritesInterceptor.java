@@ -0,0 +1,30 @@
+package com.fitai.config.datasource;
+
+import com.fitai.model.User;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 将当前请求的客户端标识绑定到路由上下文：已登录用户按用户ID，否则按HTTP会话ID
+ */
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            Object currentUser = session.getAttribute("currentUser");
+            DataSourceRoutingContext.bindClient(currentUser instanceof User user && user.getId() != null
+                    ? "user:" + user.getId()
+                    : "session:" + session.getId());
+        }
+        return true;
+    }
+    
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        DataSourceRoutingContext.clearClient();
+    }
+}
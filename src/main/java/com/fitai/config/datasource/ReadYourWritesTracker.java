@@ -0,0 +1,46 @@
+package com.fitai.config.datasource;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 读己之写跟踪
+ * 记录每个客户端最近一次写事务提交的时间，粘滞窗口内该客户端的只读事务走主库，
+ * 避免刚提交的修改因从库延迟而读不到
+ * 状态保存在本节点内存中，依赖负载均衡按会话粘滞
+ */
+public class ReadYourWritesTracker {
+    
+    private final long stickyWindowMs;
+    
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+    
+    public ReadYourWritesTracker(long stickyWindowMs) {
+        this.stickyWindowMs = stickyWindowMs;
+    }
+    
+    public void markWrite(String clientKey) {
+        if (clientKey != null && stickyWindowMs > 0) {
+            stickyUntil.put(clientKey, System.currentTimeMillis() + stickyWindowMs);
+        }
+    }
+    
+    public boolean isSticky(String clientKey) {
+        if (clientKey == null) {
+            return false;
+        }
+        Long until = stickyUntil.get(clientKey);
+        return until != null && until > System.currentTimeMillis();
+    }
+    
+    /**
+     * 清理过期的粘滞记录
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        stickyUntil.values().removeIf(until -> until <= now);
+    }
+}
@@ -0,0 +1,119 @@
+package com.fitai.config.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 从库延迟守护
+ * 定期查询每个从库的复制延迟，延迟超过阈值、复制中断或无法连接的从库暂停分发读请求，恢复后自动重新加入
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+    
+    private final Map<String, DataSource> replicaDataSources;
+    private final List<ReplicaState> replicas;
+    private final long maxLagSeconds;
+    private final String lagQuery;
+    private final String lagColumn;
+    
+    private final AtomicInteger cursor = new AtomicInteger();
+    
+    public ReplicaLagMonitor(Map<String, DataSource> replicas, DataSourceRoutingProperties properties) {
+        this.replicaDataSources = Collections.unmodifiableMap(new LinkedHashMap<>(replicas));
+        List<ReplicaState> states = new ArrayList<>(replicas.size());
+        replicas.forEach((key, dataSource) -> states.add(new ReplicaState(key, dataSource)));
+        this.replicas = Collections.unmodifiableList(states);
+        this.maxLagSeconds = properties.getMaxLagSeconds();
+        this.lagQuery = properties.getLagQuery();
+        this.lagColumn = properties.getLagColumn();
+    }
+    
+    /**
+     * 轮询选择一个健康的从库，全部不可用时返回 null（由调用方回退到主库）
+     */
+    public String nextHealthyReplica() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        int start = Math.floorMod(cursor.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            ReplicaState replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica.key;
+            }
+        }
+        return null;
+    }
+    
+    @Scheduled(fixedDelayString = "${fitai.coach.datasource.routing.lag-check-interval-ms:2000}")
+    public void checkLag() {
+        for (ReplicaState replica : replicas) {
+            Long lag = queryLag(replica);
+            boolean healthy = lag != null && (maxLagSeconds < 0 || lag <= maxLagSeconds);
+            if (healthy != replica.healthy) {
+                if (healthy) {
+                    log.info("从库 {} 恢复读流量, 延迟 {} 秒", replica.key, lag);
+                } else {
+                    log.warn("从库 {} 暂停读流量, 延迟: {} 秒 (阈值 {} 秒)", replica.key, lag, maxLagSeconds);
+                }
+            }
+            replica.lagSeconds = lag;
+            replica.healthy = healthy;
+        }
+    }
+    
+    public Map<String, DataSource> getReplicaDataSources() {
+        return replicaDataSources;
+    }
+    
+    /**
+     * 各从库的当前状态，key 为从库名，value 为延迟秒数（null 表示复制中断或无法连接）
+     */
+    public Map<String, Long> getLagSnapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        for (ReplicaState replica : replicas) {
+            snapshot.put(replica.key, replica.healthy ? replica.lagSeconds : null);
+        }
+        return snapshot;
+    }
+    
+    private Long queryLag(ReplicaState replica) {
+        try (Connection connection = replica.dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(lagQuery)) {
+            if (!rs.next()) {
+                // 没有复制状态，说明该实例不是从库
+                return null;
+            }
+            long lag = rs.getLong(lagColumn);
+            return rs.wasNull() ? null : lag;
+        } catch (Exception e) {
+            log.debug("查询从库 {} 延迟失败: {}", replica.key, e.getMessage());
+            return null;
+        }
+    }
+    
+    private static final class ReplicaState {
+        private final String key;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+        private volatile Long lagSeconds;
+        
+        private ReplicaState(String key, DataSource dataSource) {
+            this.key = key;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.fitai.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 读写分离路由数据源
+ * 只读事务路由到健康的从库，其余（写事务、事务外访问、从库全部不可用）路由到主库
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+    
+    static final String PRIMARY_KEY = "primary";
+    
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final ReplicaLagMonitor lagMonitor;
+    
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, ReplicaLagMonitor lagMonitor) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.lagMonitor = lagMonitor;
+        
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY_KEY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (DataSourceRoutingContext.currentRoute() == DataSourceRoute.REPLICA) {
+            String replica = lagMonitor.nextHealthyReplica();
+            if (replica != null) {
+                return replica;
+            }
+        }
+        return PRIMARY_KEY;
+    }
+    
+    /**
+     * 从库连接池由本数据源创建和持有，主库连接池是独立的 Bean，由容器关闭
+     */
+    @Override
+    public void destroy() {
+        for (DataSource replica : replicas.values()) {
+            if (replica instanceof HikariDataSource hikari) {
+                hikari.close();
+            }
+        }
+    }
+}
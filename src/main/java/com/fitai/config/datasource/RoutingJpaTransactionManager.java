@@ -0,0 +1,78 @@
+package com.fitai.config.datasource;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 按事务只读属性选择数据源的 JPA 事务管理器
+ * 在物理事务开始、获取连接之前确定路由目标，因此 @Transactional(readOnly = true) 与
+ * TransactionTemplate#setReadOnly 都能生效；加入外层事务的内层方法沿用外层连接
+ * 写事务提交后标记当前客户端进入读己之写窗口；
+ * 从库事务只读二级缓存不回填，避免把延迟中的旧数据放进缓存
+ */
+public class RoutingJpaTransactionManager extends JpaTransactionManager {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final transient ReadYourWritesTracker readYourWritesTracker;
+    
+    public RoutingJpaTransactionManager(EntityManagerFactory emf, ReadYourWritesTracker readYourWritesTracker) {
+        super(emf);
+        this.readYourWritesTracker = readYourWritesTracker;
+    }
+    
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        boolean toReplica = definition.isReadOnly()
+                && !readYourWritesTracker.isSticky(DataSourceRoutingContext.currentClient());
+        DataSourceRoutingContext.push(toReplica ? DataSourceRoute.REPLICA : DataSourceRoute.PRIMARY);
+        try {
+            super.doBegin(transaction, definition);
+        } catch (RuntimeException | Error e) {
+            DataSourceRoutingContext.pop();
+            throw e;
+        }
+        if (toReplica) {
+            Session session = currentSession();
+            if (session != null) {
+                session.setCacheMode(CacheMode.GET);
+            }
+        }
+    }
+    
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        super.doCommit(status);
+        if (!status.isReadOnly()) {
+            readYourWritesTracker.markWrite(DataSourceRoutingContext.currentClient());
+        }
+    }
+    
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            // open-in-view 下会话在事务结束后继续使用，恢复默认缓存模式
+            if (DataSourceRoutingContext.currentRoute() == DataSourceRoute.REPLICA) {
+                Session session = currentSession();
+                if (session != null && session.isOpen()) {
+                    session.setCacheMode(CacheMode.NORMAL);
+                }
+            }
+            super.doCleanupAfterCompletion(transaction);
+        } finally {
+            DataSourceRoutingContext.pop();
+        }
+    }
+    
+    private Session currentSession() {
+        EntityManagerHolder holder = (EntityManagerHolder)
+                TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+        return holder != null ? holder.getEntityManager().unwrap(Session.class) : null;
+    }
+}
@@ -0,0 +1,17 @@
+package com.fitai.config.sharding;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记访问全局表（用户、运动库）的服务类或方法，始终在全局分片上执行；
+ * 在用户分片的事务中调用时另起一个全局分片上的事务
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface GlobalData {
+}
@@ -0,0 +1,25 @@
+package com.fitai.config.sharding;
+
+/**
+ * 跳跃一致性哈希（Lamping &amp; Veach）
+ * 不需要存储环结构；分片数从 N 增加到 N+1 时只有约 1/(N+1) 的键会迁移，且全部迁往新分片
+ */
+public final class JumpConsistentHash {
+    
+    private JumpConsistentHash() {
+    }
+    
+    public static int bucket(long key, int buckets) {
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("分片数必须大于0");
+        }
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+}
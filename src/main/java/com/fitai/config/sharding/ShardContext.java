@@ -0,0 +1,61 @@
+package com.fitai.config.sharding;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * 当前线程绑定的分片
+ * 显式绑定优先；Web 请求中最近一次按用户路由的分片会记在请求属性里，
+ * 供 open-in-view 下视图渲染时的延迟加载继续访问同一分片；都没有时访问全局分片
+ */
+public final class ShardContext {
+    
+    private static final String REQUEST_ATTRIBUTE = ShardContext.class.getName() + ".SHARD";
+    
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+    
+    private ShardContext() {
+    }
+    
+    /**
+     * 绑定分片，返回之前的绑定（用于恢复）
+     */
+    public static Integer bind(int shard) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+    
+    public static void restore(Integer previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+    
+    /**
+     * 记住当前请求访问的用户分片
+     */
+    static void pinRequest(int shard) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(REQUEST_ATTRIBUTE, shard, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+    
+    /**
+     * 当前生效的分片
+     */
+    public static int current() {
+        Integer shard = CURRENT.get();
+        if (shard != null) {
+            return shard;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null && attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof Integer pinned) {
+            return pinned;
+        }
+        return ShardRouter.GLOBAL_SHARD;
+    }
+}
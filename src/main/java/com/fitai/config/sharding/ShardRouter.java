@@ -0,0 +1,59 @@
+package com.fitai.config.sharding;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 用户分片路由
+ * 按 userId 做跳跃一致性哈希选择分片；未启用分片时只有一个分片，所有方法退化为直接执行。
+ * 扫描全表的后台任务通过 forEachShard 在每个分片上各执行一次
+ */
+@Component
+public class ShardRouter {
+    
+    public static final int GLOBAL_SHARD = 0;
+    
+    @Autowired
+    private ShardingProperties properties;
+    
+    public boolean isSharded() {
+        return properties.isEnabled() && !properties.getShards().isEmpty();
+    }
+    
+    public int getShardCount() {
+        return isSharded() ? properties.getShards().size() + 1 : 1;
+    }
+    
+    public int shardFor(Long userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("分片键 userId 不能为空");
+        }
+        return JumpConsistentHash.bucket(userId, getShardCount());
+    }
+    
+    public <T> T callOnShard(int shard, Supplier<T> action) {
+        Integer previous = ShardContext.bind(shard);
+        try {
+            return action.get();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+    
+    public void runOnShard(int shard, Runnable action) {
+        callOnShard(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+    
+    public void forEachShard(IntConsumer action) {
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            int current = shard;
+            runOnShard(current, () -> action.accept(current));
+        }
+    }
+}
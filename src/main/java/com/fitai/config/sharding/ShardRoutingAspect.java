@@ -0,0 +1,93 @@
+package com.fitai.config.sharding;
+
+import com.fitai.model.User;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * 分片路由切面
+ * 优先级高于事务切面，先绑定分片再开启事务，事务拿到的连接即来自目标分片
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ShardRoutingAspect {
+    
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate globalTransaction;
+    
+    public ShardRoutingAspect(ShardRouter shardRouter, PlatformTransactionManager transactionManager) {
+        this.shardRouter = shardRouter;
+        this.globalTransaction = new TransactionTemplate(transactionManager);
+        this.globalTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+    
+    @Around("execution(* com.fitai..*(.., @com.fitai.config.sharding.ShardKey (*), ..))")
+    public Object routeByUser(ProceedingJoinPoint joinPoint) throws Throwable {
+        int shard = shardRouter.shardFor(resolveUserId(joinPoint));
+        if (TransactionSynchronizationManager.isActualTransactionActive() && ShardContext.current() != shard) {
+            throw new IllegalStateException("不支持跨分片事务: " + joinPoint.getSignature().toShortString());
+        }
+        ShardContext.pinRequest(shard);
+        Integer previous = ShardContext.bind(shard);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+    
+    @Around("execution(* com.fitai..*(..)) && (@within(com.fitai.config.sharding.GlobalData) " +
+            "|| @annotation(com.fitai.config.sharding.GlobalData))")
+    public Object routeToGlobal(ProceedingJoinPoint joinPoint) throws Throwable {
+        boolean nested = TransactionSynchronizationManager.isActualTransactionActive()
+                && ShardContext.current() != ShardRouter.GLOBAL_SHARD;
+        Integer previous = ShardContext.bind(ShardRouter.GLOBAL_SHARD);
+        try {
+            if (!nested) {
+                return joinPoint.proceed();
+            }
+            // 当前事务的连接在用户分片上，全局表的读写放到独立事务中
+            return globalTransaction.execute(status -> {
+                try {
+                    return joinPoint.proceed();
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+    
+    private Long resolveUserId(ProceedingJoinPoint joinPoint) {
+        Annotation[][] annotations = ((MethodSignature) joinPoint.getSignature()).getMethod().getParameterAnnotations();
+        Object[] args = joinPoint.getArgs();
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof ShardKey) {
+                    Object key = args[i];
+                    if (key instanceof User user) {
+                        return user.getId();
+                    }
+                    if (key instanceof Number number) {
+                        return number.longValue();
+                    }
+                    throw new IllegalArgumentException("不支持的分片键类型: " + (key == null ? "null" : key.getClass().getName()));
+                }
+            }
+        }
+        throw new IllegalStateException("未找到分片键参数: " + joinPoint.getSignature().toShortString());
+    }
+}
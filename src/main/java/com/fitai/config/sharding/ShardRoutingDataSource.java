@@ -0,0 +1,57 @@
+package com.fitai.config.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分片路由数据源，按 ShardContext 当前分片选择连接池
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+    
+    private final List<DataSource> shards;
+    
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(ShardRouter.GLOBAL_SHARD));
+        setLenientFallback(false);
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+    
+    /**
+     * 直接获取某个分片的连接池（跨分片复制数据时使用）
+     */
+    public DataSource getShard(int shard) {
+        return shards.get(shard);
+    }
+    
+    public int getShardCount() {
+        return shards.size();
+    }
+    
+    /**
+     * 分片1..N-1的连接池由本数据源创建和持有，分片0是独立的 Bean，由容器关闭
+     */
+    @Override
+    public void destroy() {
+        for (int i = 1; i < shards.size(); i++) {
+            if (shards.get(i) instanceof HikariDataSource hikari) {
+                hikari.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.fitai.config.sharding;
+
+import jakarta.persistence.Entity;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+
+/**
+ * 分片表结构维护
+ * Hibernate 的 ddl-auto 只作用于分片0，其余分片在这里按同样的实体映射和命名策略执行一次 update
+ */
+public final class ShardSchemaSupport {
+    
+    private static final String MODEL_PACKAGE = "com.fitai.model";
+    
+    private ShardSchemaSupport() {
+    }
+    
+    public static void updateSchema(DataSource dataSource) {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.JAKARTA_NON_JTA_DATASOURCE, dataSource)
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "update")
+                .applySetting(AvailableSettings.PHYSICAL_NAMING_STRATEGY, CamelCaseToUnderscoresNamingStrategy.class.getName())
+                .applySetting(AvailableSettings.IMPLICIT_NAMING_STRATEGY, SpringImplicitNamingStrategy.class.getName())
+                .applySetting(AvailableSettings.USE_SECOND_LEVEL_CACHE, false)
+                .applySetting(AvailableSettings.USE_QUERY_CACHE, false)
+                .build();
+        try {
+            MetadataSources sources = new MetadataSources(registry);
+            ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+            scanner.addIncludeFilter(new AnnotationTypeFilter(Entity.class));
+            for (BeanDefinition definition : scanner.findCandidateComponents(MODEL_PACKAGE)) {
+                sources.addAnnotatedClass(ClassUtils.resolveClassName(definition.getBeanClassName(), null));
+            }
+            // 构建 SessionFactory 时执行 schema update，随即关闭
+            SessionFactory sessionFactory = sources.buildMetadata().buildSessionFactory();
+            sessionFactory.close();
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.fitai.config.sharding;
+
+import com.fitai.config.SchemaPreparation;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按用户分片的数据源配置（fitai.coach.sharding.enabled=true 时启用）
+ * 用户自有的表（训练计划、训练会话、训练记录、营养计划）按 userId 分布到各分片；
+ * 用户表和运动库以分片0为准，复制到各分片以满足外键和关联加载
+ * 各分片的自增主键通过 auto_increment_increment = 分片数、auto_increment_offset = 分片序号 + 1 交错，
+ * 同一张表的主键在所有分片间不重复；每个连接建立时设置，启动时逐个分片校验
+ * 暂不能与读写分离（fitai.coach.datasource.routing）同时启用
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "fitai.coach.sharding", name = "enabled", havingValue = "true")
+@Slf4j
+public class ShardingConfig {
+    
+    @Value("${fitai.coach.datasource.routing.enabled:false}")
+    private boolean readReplicaRoutingEnabled;
+    
+    @Value("${spring.jpa.hibernate.ddl-auto:none}")
+    private String ddlAuto;
+    
+    @Bean
+    public HikariDataSource globalShardDataSource(DataSourceProperties dataSourceProperties,
+                                                  ShardingProperties properties) {
+        if (readReplicaRoutingEnabled) {
+            throw new IllegalStateException("按用户分片与读写分离不能同时启用");
+        }
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("fitai-shard-0");
+        dataSource.setMaximumPoolSize(properties.getMaxPoolSize());
+        interleaveIds(dataSource, 0, properties.getShards().size() + 1);
+        return dataSource;
+    }
+    
+    @Bean
+    @Primary
+    public ShardRoutingDataSource dataSource(HikariDataSource globalShardDataSource,
+                                             ShardingProperties properties,
+                                             DataSourceProperties dataSourceProperties) {
+        List<DataSource> shards = new ArrayList<>();
+        int shardCount = properties.getShards().size() + 1;
+        verifyInterleavedIds(globalShardDataSource, 0, shardCount);
+        shards.add(globalShardDataSource);
+        List<ShardingProperties.Shard> configured = properties.getShards();
+        for (int i = 0; i < configured.size(); i++) {
+            HikariDataSource shard = createShard(i + 1, configured.get(i), properties, dataSourceProperties);
+            interleaveIds(shard, i + 1, shardCount);
+            verifyInterleavedIds(shard, i + 1, shardCount);
+            if ("update".equals(ddlAuto)) {
+                SchemaPreparation.apply(shard);
+                ShardSchemaSupport.updateSchema(shard);
+            }
+            shards.add(shard);
+        }
+        log.info("按用户分片已启用: {} 个分片", shards.size());
+        return new ShardRoutingDataSource(shards);
+    }
+    
+    @Bean
+    public ShardRoutingAspect shardRoutingAspect(ShardRouter shardRouter, PlatformTransactionManager transactionManager) {
+        return new ShardRoutingAspect(shardRouter, transactionManager);
+    }
+    
+    /**
+     * 每个事务结束后释放物理连接，下一个事务重新按分片获取；
+     * 否则在 open-in-view 下整个请求会一直持有第一次拿到的连接
+     */
+    @Bean
+    public HibernatePropertiesCustomizer shardConnectionHandlingCustomizer() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+    
+    private HikariDataSource createShard(int index, ShardingProperties.Shard shard, ShardingProperties properties,
+                                         DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("fitai-shard-" + index);
+        dataSource.setJdbcUrl(shard.getUrl());
+        dataSource.setUsername(StringUtils.hasText(shard.getUsername())
+                ? shard.getUsername() : dataSourceProperties.determineUsername());
+        dataSource.setPassword(shard.getPassword() != null
+                ? shard.getPassword() : dataSourceProperties.determinePassword());
+        dataSource.setDriverClassName(StringUtils.hasText(shard.getDriverClassName())
+                ? shard.getDriverClassName() : dataSourceProperties.determineDriverClassName());
+        dataSource.setMaximumPoolSize(properties.getMaxPoolSize());
+        return dataSource;
+    }
+    
+    /**
+     * 为分片连接池设置自增主键交错，必须在连接池启动前调用
+     * 步长等于分片数，分片数变化后需由 ShardRebalanceTool 把各表的 AUTO_INCREMENT 调到所有分片最大ID之上
+     */
+    private static void interleaveIds(HikariDataSource dataSource, int index, int shardCount) {
+        if (shardCount == 1) {
+            return;
+        }
+        String url = dataSource.getJdbcUrl();
+        if (url == null || !(url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:"))) {
+            throw new IllegalStateException("多分片需要 MySQL 以交错各分片的自增主键，分片 " + index + " 不支持: " + url);
+        }
+        dataSource.setConnectionInitSql("SET SESSION auto_increment_increment = " + shardCount
+                + ", auto_increment_offset = " + (index + 1));
+    }
+    
+    /**
+     * 校验分片连接上的自增步长和偏移，与配置不一致时拒绝启动
+     */
+    private static void verifyInterleavedIds(HikariDataSource dataSource, int index, int shardCount) {
+        if (shardCount == 1) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT @@auto_increment_increment, @@auto_increment_offset")) {
+            result.next();
+            long increment = result.getLong(1);
+            long offset = result.getLong(2);
+            if (increment != shardCount || offset != index + 1) {
+                throw new IllegalStateException(String.format(
+                        "分片 %d 的自增主键设置不正确: increment=%d, offset=%d，应为 %d, %d",
+                        index, increment, offset, shardCount, index + 1));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("校验分片 " + index + " 的自增主键设置失败", e);
+        }
+    }
+}
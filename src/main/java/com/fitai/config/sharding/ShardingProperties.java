@@ -0,0 +1,32 @@
+package com.fitai.config.sharding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按用户分片配置
+ * 分片0为 spring.datasource（同时保存全局表的权威数据），shards 依次为分片1..N-1
+ */
+@Configuration
+@ConfigurationProperties(prefix = "fitai.coach.sharding")
+@Data
+public class ShardingProperties {
+    
+    private boolean enabled;
+    
+    private List<Shard> shards = new ArrayList<>();
+    
+    private int maxPoolSize = 10;
+    
+    @Data
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+    }
+}
@@ -47,7 +47,7 @@ public class HomeController {
         
         // 用户统计信息
         model.addAttribute("user", defaultUser);
-        model.addAttribute("bmi", defaultUser.calculateBMI());
+        model.addAttribute("bmi", defaultUser.getCurrentBMI());
         
         return "dashboard";
     }
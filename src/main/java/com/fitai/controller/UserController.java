@@ -3,7 +3,17 @@ package com.fitai.controller;
 import com.fitai.model.User;
 import com.fitai.service.UserService;
 import com.fitai.service.WorkoutPlanService;
+import com.fitai.service.leaderboard.LeaderboardEntry;
+import com.fitai.service.leaderboard.LeaderboardMetric;
+import com.fitai.service.leaderboard.LeaderboardService;
+import com.fitai.service.leaderboard.LeaderboardWindow;
+import com.fitai.service.observer.ProgressEventDispatcher;
+import com.fitai.service.observer.ProgressOutboxRelay;
+import com.fitai.service.observer.achievement.AchievementStateService;
+import com.fitai.service.timeseries.ExerciseRecordAggregate;
+import com.fitai.service.timeseries.ExerciseRecordTimeSeriesService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -12,6 +22,12 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Controller
@@ -24,6 +40,21 @@ public class UserController {
     @Autowired
     private WorkoutPlanService workoutPlanService;
     
+    @Autowired
+    private ExerciseRecordTimeSeriesService exerciseRecordTimeSeriesService;
+    
+    @Autowired
+    private ProgressEventDispatcher progressEventDispatcher;
+    
+    @Autowired
+    private ProgressOutboxRelay progressOutboxRelay;
+    
+    @Autowired
+    private AchievementStateService achievementStateService;
+    
+    @Autowired
+    private LeaderboardService leaderboardService;
+    
     // 删除注册相关方法
     // 删除登录相关方法
     // 删除登出方法
@@ -89,4 +120,130 @@ public class UserController {
         userService.updateUserProgress(currentUser.getId(), currentWeight, workoutDays);
         return "success";
     }
-}
\ No newline at end of file
+    
+    /**
+     * 训练量趋势（进度图表数据）
+     */
+    @GetMapping("/progress/volume")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getVolumeTrend(@RequestParam(defaultValue = "90") int days,
+                                                             HttpSession session) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.minusDays(Math.max(1, Math.min(days, 3660)) - 1);
+        Map<LocalDate, ExerciseRecordAggregate> daily =
+                exerciseRecordTimeSeriesService.aggregateByDay(currentUser.getId(), from, to);
+        
+        Map<String, Double> volumeByDay = new LinkedHashMap<>();
+        double totalVolume = 0;
+        long totalCalories = 0;
+        for (Map.Entry<LocalDate, ExerciseRecordAggregate> entry : daily.entrySet()) {
+            volumeByDay.put(entry.getKey().toString(), entry.getValue().getVolume());
+            totalVolume += entry.getValue().getVolume();
+            totalCalories += entry.getValue().getTotalCaloriesBurned();
+        }
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("from", from.toString());
+        response.put("to", to.toString());
+        response.put("totalVolume", totalVolume);
+        response.put("totalCaloriesBurned", totalCalories);
+        response.put("dailyVolume", volumeByDay);
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 连续训练天数和最近 days 天内的训练天数
+     */
+    @GetMapping("/progress/streak")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getTrainingStreak(@RequestParam(defaultValue = "30") int days,
+                                                                HttpSession session) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        return ResponseEntity.ok(achievementStateService.getTrainingStreak(
+                currentUser.getId(), LocalDate.now(), Math.max(1, Math.min(days, 366))));
+    }
+    
+    /**
+     * 排行榜：前 limit 名和当前用户的名次
+     * scope=gym 时查询当前用户所属健身房的榜单
+     */
+    @GetMapping("/leaderboard")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getLeaderboard(@RequestParam(defaultValue = "CALORIES") LeaderboardMetric metric,
+                                                             @RequestParam(defaultValue = "WEEKLY") LeaderboardWindow window,
+                                                             @RequestParam(defaultValue = "global") String scope,
+                                                             @RequestParam(defaultValue = "10") int limit,
+                                                             HttpSession session) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        String gym = null;
+        if ("gym".equalsIgnoreCase(scope)) {
+            gym = leaderboardService.getGym(currentUser.getId());
+            if (gym == null) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        
+        List<LeaderboardEntry> top = leaderboardService.getTop(metric, window, gym, limit);
+        Map<Long, String> usernames = new HashMap<>();
+        userService.findAllById(top.stream().map(LeaderboardEntry::userId).toList())
+                .forEach(user -> usernames.put(user.getId(), user.getUsername()));
+        
+        List<Map<String, Object>> entries = new ArrayList<>(top.size());
+        for (LeaderboardEntry entry : top) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("rank", entry.rank());
+            item.put("userId", entry.userId());
+            item.put("username", usernames.get(entry.userId()));
+            item.put("score", entry.score());
+            entries.add(item);
+        }
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("metric", metric);
+        response.put("window", window);
+        response.put("gym", gym);
+        response.put("entries", entries);
+        response.put("me", leaderboardService.getRank(currentUser.getId(), metric, window, gym));
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 进度事件分发统计（队列深度、观察者耗时）
+     */
+    @GetMapping("/progress/observer-stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getObserverStatistics() {
+        return ResponseEntity.ok(progressEventDispatcher.getStatistics());
+    }
+    
+    /**
+     * 进度事件发件箱统计（待投递、已投递、被拒绝和超时的事件数）
+     */
+    @GetMapping("/progress/outbox-stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getOutboxStatistics() {
+        return ResponseEntity.ok(progressOutboxRelay.getStatistics());
+    }
+    
+    /**
+     * 成就状态统计：快照序号、事件日志序号和槽位文件映射大小
+     */
+    @GetMapping("/progress/achievement-stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getAchievementStatistics() {
+        return ResponseEntity.ok(achievementStateService.getStatistics());
+    }
+}
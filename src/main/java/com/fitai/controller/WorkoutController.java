@@ -2,23 +2,34 @@ package com.fitai.controller;
 
 import com.fitai.model.User;
 import com.fitai.model.WorkoutPlan;
+import com.fitai.model.WorkoutSession;
 import com.fitai.model.Exercise;
 import com.fitai.service.WorkoutPlanService;
 import com.fitai.service.ExerciseService;
 import com.fitai.service.UserService;
 import com.fitai.service.AIService;
+import com.fitai.service.ExerciseAutocompleteService;
+import com.fitai.service.WorkoutSessionService;
+import com.fitai.service.search.ExerciseNameTrie;
+import com.fitai.service.cache.ExerciseCacheService;
+import com.fitai.service.ingest.WorkoutRecordIngestionService;
+import com.fitai.service.session.ActiveSessionRegistry;
+import com.fitai.repository.projection.ExerciseSummary;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity; // Add this import
 
 import jakarta.servlet.http.HttpSession;
+import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.List;  // 添加这行导入
 import java.util.Map;     // Add this import
 import java.util.HashMap; // Add this import
+import java.util.function.Supplier;
 
 // 添加以下import
 import lombok.extern.slf4j.Slf4j;
@@ -37,6 +48,21 @@ public class WorkoutController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private ExerciseAutocompleteService exerciseAutocompleteService;
+    
+    @Autowired
+    private ExerciseCacheService exerciseCacheService;
+    
+    @Autowired
+    private WorkoutRecordIngestionService workoutRecordIngestionService;
+    
+    @Autowired
+    private WorkoutSessionService workoutSessionService;
+    
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+    
     // 删除这个重复的方法（第28-38行）
     // @GetMapping("/plans")
     // public String showWorkoutPlans(HttpSession session, Model model) {
@@ -136,7 +162,7 @@ public class WorkoutController {
         currentUser.setId(1L);
         currentUser.setFitnessLevel(User.FitnessLevel.BEGINNER);
         
-        model.addAttribute("workoutPlans", workoutPlanService.getUserWorkoutPlans(currentUser.getId()));
+        model.addAttribute("workoutPlans", workoutPlanService.getUserPlanSummaries(currentUser.getId()));
         
         // 修复：将Optional解包
         Optional<WorkoutPlan> activePlanOpt = workoutPlanService.getUserActivePlan(currentUser.getId());
@@ -179,8 +205,12 @@ public class WorkoutController {
         currentUser.setId(1L);
         currentUser.setFitnessLevel(User.FitnessLevel.BEGINNER);
         
-        workoutPlanService.activatePlan(id, currentUser.getId());
-        redirectAttributes.addFlashAttribute("successMessage", "训练计划已激活！");
+        try {
+            workoutPlanService.activatePlan(id, currentUser.getId());
+            redirectAttributes.addFlashAttribute("successMessage", "训练计划已激活！");
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        }
         return "redirect:/workout/plans";
     }
     
@@ -190,23 +220,27 @@ public class WorkoutController {
     @GetMapping("/exercises")
     public String showExercises(@RequestParam(required = false) String type,
                                @RequestParam(required = false) String muscle,
+                               @RequestParam(required = false) String keyword,
                                Model model) {
-        List<Exercise> exercises;
+        List<ExerciseSummary> exercises;
         
-        if (type != null && !type.isEmpty()) {
+        if (keyword != null && !keyword.isBlank()) {
+            // 按名称搜索
+            exercises = exerciseService.searchExerciseSummaries(keyword.trim());
+        } else if (type != null && !type.isEmpty()) {
             // 按运动类型筛选
             try {
                 Exercise.ExerciseCategory category = Exercise.ExerciseCategory.valueOf(type.toUpperCase());
-                exercises = exerciseService.findByCategory(category);
+                exercises = exerciseService.findSummariesByCategory(category);
             } catch (IllegalArgumentException e) {
-                exercises = exerciseService.getAllExercises();
+                exercises = exerciseService.getExerciseSummaries();
             }
         } else if (muscle != null && !muscle.isEmpty()) {
             // 按肌群筛选
-            exercises = exerciseService.findByMuscleGroupDisplayName(muscle);
+            exercises = exerciseService.findSummariesByMuscleGroupDisplayName(muscle);
         } else {
             // 显示所有运动
-            exercises = exerciseService.getAllExercises();
+            exercises = exerciseService.getExerciseSummaries();
         }
         
         model.addAttribute("exercises", exercises);
@@ -224,6 +258,48 @@ public class WorkoutController {
         return "workout/exercises";
     }
     
+    /**
+     * 获取运动详情（运动库详情弹窗按需加载）
+     */
+    @GetMapping("/exercises/{id}/detail")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getExerciseDetail(@PathVariable Long id) {
+        Optional<Exercise> exerciseOpt = exerciseService.findDetailById(id);
+        if (exerciseOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        Exercise exercise = exerciseOpt.get();
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", exercise.getId());
+        response.put("name", exercise.getName());
+        response.put("description", exercise.getDescription());
+        response.put("instructions", exercise.getInstructions());
+        response.put("secondaryMuscleGroups", exercise.getSecondaryMuscleGroups().stream()
+                .map(Exercise.MuscleGroup::getDisplayName)
+                .toList());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 运动库二级缓存命中统计
+     */
+    @GetMapping("/exercises/cache-stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getExerciseCacheStatistics() {
+        return ResponseEntity.ok(exerciseCacheService.getStatistics());
+    }
+    
+    /**
+     * 运动名称自动补全
+     */
+    @GetMapping("/exercises/suggest")
+    @ResponseBody
+    public ResponseEntity<List<ExerciseNameTrie.Suggestion>> suggestExercises(@RequestParam(defaultValue = "") String q,
+                                                                              @RequestParam(defaultValue = "8") int limit) {
+        return ResponseEntity.ok(exerciseAutocompleteService.suggest(q, limit));
+    }
+    
     /**
      * 开始训练会话
      */
@@ -235,9 +311,120 @@ public class WorkoutController {
             return "error";
         }
         
-        // 这里可以创建训练会话记录
-        // WorkoutSession session = workoutSessionService.startSession(currentUser, planId);
-        return "success";
+        try {
+            workoutSessionService.startSession(currentUser, planId);
+            return "success";
+        } catch (RuntimeException e) {
+            return "error";
+        }
+    }
+    
+    /**
+     * 记录一组训练（异步写入，本地日志落盘后返回 202）
+     */
+    @PostMapping("/sessions/{sessionId}/sets")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> logSet(@PathVariable Long sessionId,
+                                                      @RequestParam String exerciseName,
+                                                      @RequestParam(required = false) Integer sets,
+                                                      @RequestParam(required = false) Integer reps,
+                                                      @RequestParam(required = false) Double weight,
+                                                      @RequestParam(required = false) Integer durationMinutes,
+                                                      @RequestParam(required = false) Integer calories,
+                                                      @RequestParam(required = false) String notes,
+                                                      HttpSession session) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        try {
+            long sequence = workoutRecordIngestionService.submit(currentUser.getId(), sessionId, exerciseName,
+                    sets, reps, weight, durationMinutes, calories, notes, LocalDateTime.now());
+            response.put("success", true);
+            response.put("sequence", sequence);
+            return ResponseEntity.accepted().body(response);
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+    }
+    
+    /**
+     * 暂停训练会话
+     */
+    @PostMapping("/sessions/{sessionId}/pause")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> pauseSession(@PathVariable Long sessionId, HttpSession session) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return sessionResponse(() -> workoutSessionService.pauseSession(sessionId, currentUser));
+    }
+    
+    /**
+     * 继续训练会话
+     */
+    @PostMapping("/sessions/{sessionId}/resume")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> resumeSession(@PathVariable Long sessionId, HttpSession session) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return sessionResponse(() -> workoutSessionService.resumeSession(sessionId, currentUser));
+    }
+    
+    /**
+     * 完成训练会话
+     */
+    @PostMapping("/sessions/{sessionId}/complete")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> completeSession(@PathVariable Long sessionId, HttpSession session) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return sessionResponse(() -> workoutSessionService.completeSession(sessionId, currentUser));
+    }
+    
+    /**
+     * 取消训练会话
+     */
+    @PostMapping("/sessions/{sessionId}/cancel")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> cancelSession(@PathVariable Long sessionId, HttpSession session) {
+        User currentUser = (User) session.getAttribute("currentUser");
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return sessionResponse(() -> workoutSessionService.cancelSession(sessionId, currentUser));
+    }
+    
+    /**
+     * 进行中训练会话注册表统计
+     */
+    @GetMapping("/sessions/active-stats")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getActiveSessionStatistics() {
+        return ResponseEntity.ok(activeSessionRegistry.getStatistics());
+    }
+    
+    private ResponseEntity<Map<String, Object>> sessionResponse(Supplier<WorkoutSession> action) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            WorkoutSession result = action.get();
+            response.put("success", true);
+            response.put("status", result.getStatus().name());
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
     }
     
     // 在WorkoutController类中添加以下内容
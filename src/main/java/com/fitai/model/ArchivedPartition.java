@@ -0,0 +1,38 @@
+package com.fitai.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 已归档的月分区
+ * 每个表、每个月一行，归档作业完成一个月的搬迁后写入
+ */
+@Entity
+@Table(name = "archived_partitions",
+       uniqueConstraints = @UniqueConstraint(name = "uk_archived_partition", columnNames = {"table_name", "partition_month"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedPartition {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "table_name", nullable = false, length = 64)
+    private String tableName;
+    
+    // 分区月份，格式 yyyyMM
+    @Column(name = "partition_month", nullable = false)
+    private Integer partitionMonth;
+    
+    @Column(name = "row_count")
+    private Long rowCount;
+    
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+}
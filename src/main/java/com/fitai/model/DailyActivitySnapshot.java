@@ -0,0 +1,65 @@
+package com.fitai.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日用户活动位图快照
+ * 每个日期、每种指标一行，位图为压缩后的用户ID集合
+ */
+@Entity
+@Table(name = "daily_activity_snapshots",
+       uniqueConstraints = @UniqueConstraint(name = "uk_activity_date_metric", columnNames = {"activity_date", "metric"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyActivitySnapshot {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "activity_date", nullable = false)
+    private LocalDate activityDate;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "metric", nullable = false, length = 20)
+    private ActivityMetric metric;
+    
+    @Lob
+    @Column(name = "bitmap", length = 64 * 1024 * 1024)
+    private byte[] bitmap;
+    
+    @Column(name = "cardinality")
+    private Long cardinality;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // 活动指标枚举
+    public enum ActivityMetric {
+        ACTIVE("活跃"),
+        SIGNUP("注册");
+        
+        private final String displayName;
+        
+        ActivityMetric(String displayName) {
+            this.displayName = displayName;
+        }
+        
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+    
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -5,6 +5,8 @@ import jakarta.validation.constraints.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -12,11 +14,17 @@ import java.util.List;
 
 @Entity
 @Table(name = "exercises")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Exercise.CACHE_REGION)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Exercise {
     
+    public static final String CACHE_REGION = "exercise";
+    public static final String SECONDARY_MUSCLES_CACHE_REGION = "exercise.secondaryMuscleGroups";
+    public static final String QUERY_CACHE_REGION = "exercise-queries";
+    
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -45,6 +53,7 @@ public class Exercise {
     @CollectionTable(name = "exercise_secondary_muscles", 
                     joinColumns = @JoinColumn(name = "exercise_id"))
     @Column(name = "muscle_group")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Exercise.SECONDARY_MUSCLES_CACHE_REGION)
     private List<MuscleGroup> secondaryMuscleGroups = new ArrayList<>();
     
     @Enumerated(EnumType.STRING)
@@ -0,0 +1,31 @@
+package com.fitai.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 写入队列检查点
+ * 记录每个节点本地日志中已写入数据库的最大序号，与批量插入在同一事务中更新，
+ * 崩溃恢复时只重放序号更大的日志条目
+ */
+@Entity
+@Table(name = "ingestion_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionCheckpoint {
+    
+    @Id
+    @Column(name = "node_id", length = 100)
+    private String nodeId;
+    
+    @Column(name = "last_sequence", nullable = false)
+    private Long lastSequence = 0L;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
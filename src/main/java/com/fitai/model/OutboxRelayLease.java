@@ -0,0 +1,33 @@
+package com.fitai.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 发件箱中继租约
+ * 同一时刻只有持有未过期租约的实例投递发件箱事件，保证同一用户的事件按ID顺序送达；
+ * 持有者每取一批事件时续约，进程退出或停顿超过租期后由其他实例接管。
+ * achievement-state 行不过期，owner 记录成就状态归属的状态目录ID
+ */
+@Entity
+@Table(name = "outbox_relay_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxRelayLease {
+    
+    @Id
+    @Column(length = 50)
+    private String name;
+    
+    // 当前持有者的实例ID，为空表示无人持有
+    @Column(length = 100)
+    private String owner;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,55 @@
+package com.fitai.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 进度事件发件箱
+ * 与触发事件的业务数据在同一事务中写入，由 ProgressOutboxRelay 按ID顺序分批投递给进度观察者，
+ * 投递后记录发布时间；ID 同时作为观察者去重的幂等键
+ */
+@Entity
+@Table(name = "progress_outbox",
+       indexes = @Index(name = "idx_progress_outbox_published", columnList = "published_at, id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProgressOutboxEvent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 32)
+    private EventType eventType;
+    
+    // 事件参数（JSON）：进度类型和新旧值，目标类型和详情，或训练会话ID
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    // 为空表示尚未投递
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+    
+    // 被分发队列拒绝的次数
+    @Column(nullable = false)
+    private int attempts;
+    
+    public enum EventType {
+        GOAL_ACHIEVED,
+        PROGRESS_UPDATED,
+        WORKOUT_STARTED,
+        WORKOUT_COMPLETED
+    }
+}
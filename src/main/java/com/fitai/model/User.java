@@ -1,6 +1,7 @@
 package com.fitai.model;
 
 import com.fitai.model.NutritionPlan;
+import com.fitai.service.sharding.UserShardReplicationListener;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
@@ -15,7 +16,8 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_bmi", columnList = "bmi"))
+@EntityListeners(UserShardReplicationListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -59,6 +61,9 @@ public class User implements UserDetails {
     @Column(name = "weight_kg")
     private Double weight; // 体重(kg)
     
+    @Column(name = "bmi")
+    private Double bmi; // 由身高体重在保存时计算，供BMI范围查询走索引
+    
     @Enumerated(EnumType.STRING)
     @Column(name = "fitness_level")
     private FitnessLevel fitnessLevel;
@@ -82,6 +87,9 @@ public class User implements UserDetails {
     @Column(name = "workout_days")
     private Integer workoutDays = 0; // 训练天数
     
+    @Column(length = 64)
+    private String gym; // 所属健身房，用于分馆排行榜
+    
     @Enumerated(EnumType.STRING)
     private Role role = Role.USER;
     
@@ -184,11 +192,28 @@ public class User implements UserDetails {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        refreshBmi();
     }
     
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        refreshBmi();
+    }
+    
+    public void setHeight(Double height) {
+        this.height = height;
+        refreshBmi();
+    }
+    
+    public void setWeight(Double weight) {
+        this.weight = weight;
+        refreshBmi();
+    }
+    
+    // 根据身高体重刷新存储的BMI
+    private void refreshBmi() {
+        bmi = (height != null && weight != null && height > 0) ? calculateBMI() : null;
     }
     
     // 业务方法
@@ -200,8 +225,15 @@ public class User implements UserDetails {
         return 0.0;
     }
     
+    /**
+     * 获取BMI：优先使用已持久化的值，未保存的用户对象则即时计算
+     */
+    public double getCurrentBMI() {
+        return bmi != null ? bmi : calculateBMI();
+    }
+    
     public String getBMICategory() {
-        double bmi = calculateBMI();
+        double bmi = getCurrentBMI();
         if (bmi < 18.5) return "偏瘦";
         if (bmi < 24) return "正常";
         if (bmi < 28) return "超重";
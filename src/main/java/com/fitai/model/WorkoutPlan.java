@@ -11,7 +11,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "workout_plans")
+@Table(name = "workout_plans",
+       indexes = @Index(name = "uk_workout_plans_active_owner", columnList = "active_owner_id", unique = true))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -71,6 +72,21 @@ public class WorkoutPlan {
     @Column(name = "is_active")
     private Boolean isActive = true;
     
+    // 生成列：计划激活时等于user_id，否则为NULL；配合唯一索引保证每个用户最多一个活跃计划
+    @Column(name = "active_owner_id", insertable = false, updatable = false,
+            columnDefinition = "BIGINT GENERATED ALWAYS AS (CASE WHEN is_active = TRUE THEN user_id END)")
+    private Long activeOwnerId;
+    
+    // 会话计数器：只通过 WorkoutPlanRepository 的原子 UPDATE 维护，实体保存时不覆盖
+    @Column(name = "total_sessions", updatable = false, columnDefinition = "INT NOT NULL DEFAULT 0")
+    private Integer totalSessionCount = 0;
+    
+    @Column(name = "completed_sessions", updatable = false, columnDefinition = "INT NOT NULL DEFAULT 0")
+    private Integer completedSessionCount = 0;
+    
+    @Column(name = "last_completed_at", updatable = false)
+    private LocalDateTime lastCompletedAt;
+    
     // 关联关系
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
@@ -139,13 +155,11 @@ public class WorkoutPlan {
     }
     
     public int getCompletedSessions() {
-        return (int) sessions.stream()
-                .filter(session -> session.getStatus() == WorkoutSession.SessionStatus.COMPLETED)
-                .count();
+        return completedSessionCount != null ? completedSessionCount : 0;
     }
     
     public double getCompletionRate() {
-        if (sessions.isEmpty()) return 0.0;
-        return (double) getCompletedSessions() / sessions.size() * 100;
+        if (totalSessionCount == null || totalSessionCount == 0) return 0.0;
+        return (double) getCompletedSessions() / totalSessionCount * 100;
     }
 }
\ No newline at end of file
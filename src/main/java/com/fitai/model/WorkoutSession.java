@@ -13,7 +13,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "workout_sessions")
+@Table(name = "workout_sessions",
+       indexes = @Index(name = "idx_workout_sessions_user_start", columnList = "user_id, start_time"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -44,6 +45,19 @@ public class WorkoutSession {
     @Enumerated(EnumType.STRING)
     private SessionStatus status = SessionStatus.PLANNED;
     
+    // 最近一次暂停的时间，未暂停时为空
+    @Column(name = "paused_at")
+    private LocalDateTime pausedAt;
+    
+    // 已结束的暂停累计秒数，不计入训练时长
+    @Column(name = "paused_seconds", columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long pausedSeconds = 0L;
+    
+    // 乐观锁版本，每次状态变化加1
+    @Version
+    @Column(columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version = 0L;
+    
     @Column(name = "duration_minutes")
     private Integer durationMinutes;
     
@@ -93,10 +107,11 @@ public class WorkoutSession {
         updatedAt = LocalDateTime.now();
     }
     
-    // 计算训练时长（分钟）
+    // 计算训练时长（分钟），扣除暂停时间
     public Integer calculateDuration() {
         if (startTime != null && endTime != null) {
-            return (int) java.time.Duration.between(startTime, endTime).toMinutes();
+            long paused = pausedSeconds != null ? pausedSeconds : 0L;
+            return (int) Math.max(0, java.time.Duration.between(startTime, endTime).minusSeconds(paused).toMinutes());
         }
         return durationMinutes;
     }
@@ -1,6 +1,7 @@
 package com.fitai.model.exercise;
 
 import com.fitai.model.WorkoutSession;
+import com.fitai.service.timeseries.ExerciseRecordTimeSeriesListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.Data;
@@ -10,7 +11,9 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "workout_exercise_records")
+@Table(name = "workout_exercise_records",
+       indexes = @Index(name = "idx_records_session_completed", columnList = "workout_session_id, completed_at"))
+@EntityListeners(ExerciseRecordTimeSeriesListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,23 @@
+package com.fitai.repository;
+
+import com.fitai.model.ArchivedPartition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ArchivedPartitionRepository extends JpaRepository<ArchivedPartition, Long> {
+    
+    /**
+     * 最近一个已归档的月份（yyyyMM）
+     */
+    @Query("SELECT MAX(p.partitionMonth) FROM ArchivedPartition p")
+    Optional<Integer> findLatestArchivedMonth();
+    
+    /**
+     * 根据表名和月份查找归档分区
+     */
+    Optional<ArchivedPartition> findByTableNameAndPartitionMonth(String tableName, Integer partitionMonth);
+}
@@ -0,0 +1,47 @@
+package com.fitai.repository;
+
+import com.fitai.model.DailyActivitySnapshot;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DailyActivitySnapshotRepository extends JpaRepository<DailyActivitySnapshot, Long> {
+    
+    /**
+     * 根据日期和指标查找快照
+     */
+    Optional<DailyActivitySnapshot> findByActivityDateAndMetric(LocalDate activityDate, DailyActivitySnapshot.ActivityMetric metric);
+    
+    /**
+     * 快照行不存在时插入空行（唯一约束冲突时忽略），之后总能对该行加锁
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO daily_activity_snapshots (activity_date, metric, cardinality, updated_at) " +
+                   "VALUES (:activityDate, :metric, 0, :now)",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("activityDate") LocalDate activityDate, @Param("metric") String metric,
+                       @Param("now") LocalDateTime now);
+    
+    /**
+     * 查找并锁定快照行直到事务结束（SELECT ... FOR UPDATE），多个节点合并同一天的位图时依次进行
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM DailyActivitySnapshot s WHERE s.activityDate = :activityDate AND s.metric = :metric")
+    Optional<DailyActivitySnapshot> findForUpdate(@Param("activityDate") LocalDate activityDate,
+                                                  @Param("metric") DailyActivitySnapshot.ActivityMetric metric);
+    
+    /**
+     * 查找指定日期之后的所有快照
+     */
+    List<DailyActivitySnapshot> findByActivityDateGreaterThanEqual(LocalDate fromDate);
+}
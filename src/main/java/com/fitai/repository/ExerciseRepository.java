@@ -1,16 +1,38 @@
 package com.fitai.repository;
 
 import com.fitai.model.Exercise;
+import com.fitai.repository.projection.ExerciseSummary;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ExerciseRepository extends JpaRepository<Exercise, Long> {
     
+    String SUMMARY_SELECT = "SELECT e.id AS id, e.name AS name, SUBSTRING(e.description, 1, 120) AS description, " +
+                            "e.category AS category, e.difficultyLevel AS difficultyLevel, " +
+                            "e.primaryMuscleGroup AS primaryMuscleGroup, e.equipmentNeeded AS equipmentNeeded, " +
+                            "e.caloriesPerMinute AS caloriesPerMinute FROM Exercise e ";
+    
+    /**
+     * 查询全部运动（查询缓存）
+     */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Exercise.QUERY_CACHE_REGION)})
+    @Override
+    List<Exercise> findAll();
+    
     /**
      * 根据运动名称搜索（忽略大小写）
      */
@@ -19,29 +41,44 @@ public interface ExerciseRepository extends JpaRepository<Exercise, Long> {
     /**
      * 根据精确的运动名称查找
      */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Exercise.QUERY_CACHE_REGION)})
+    Optional<Exercise> findByName(String name);
+    
     /**
-     * 根据精确的运动名称查找
+     * 按名称加共享锁读取（SELECT ... FOR SHARE），读到最新提交的行而不是事务开始时的快照，
+     * 不经过查询缓存；共享锁之间不冲突，并发引用同一运动项目的事务不会互相阻塞
      */
-    Optional<Exercise> findByName(String name);
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT e FROM Exercise e WHERE e.name = :name")
+    Optional<Exercise> findByNameForShare(@Param("name") String name);
     
     /**
      * 根据运动类别查找
      */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Exercise.QUERY_CACHE_REGION)})
     List<Exercise> findByCategory(Exercise.ExerciseCategory category);
     
     /**
      * 根据主要肌肉群查找
      */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Exercise.QUERY_CACHE_REGION)})
     List<Exercise> findByPrimaryMuscleGroup(Exercise.MuscleGroup muscleGroup);
     
     /**
      * 根据器械要求查找
      */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Exercise.QUERY_CACHE_REGION)})
     List<Exercise> findByEquipmentNeeded(Exercise.Equipment equipment);
     
     /**
      * 根据难度查找
      */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Exercise.QUERY_CACHE_REGION)})
     List<Exercise> findByDifficultyLevel(Exercise.DifficultyLevel difficulty);
     
     /**
@@ -52,10 +89,86 @@ public interface ExerciseRepository extends JpaRepository<Exercise, Long> {
     /**
      * 根据运动类别查找，按卡路里消耗倒序
      */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Exercise.QUERY_CACHE_REGION)})
     List<Exercise> findByCategoryOrderByCaloriesPerMinuteDesc(Exercise.ExerciseCategory category);
     
     /**
      * 查找卡路里消耗最高的前10个运动
      */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Exercise.QUERY_CACHE_REGION)})
     List<Exercise> findTop10ByOrderByCaloriesPerMinuteDesc();
+    
+    /**
+     * 查询所有运动的列表投影
+     */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Exercise.QUERY_CACHE_REGION)})
+    @Query(SUMMARY_SELECT + "ORDER BY e.id")
+    List<ExerciseSummary> findAllSummaries();
+    
+    /**
+     * 根据运动类别查询列表投影
+     */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Exercise.QUERY_CACHE_REGION)})
+    @Query(SUMMARY_SELECT + "WHERE e.category = :category ORDER BY e.id")
+    List<ExerciseSummary> findSummariesByCategory(@Param("category") Exercise.ExerciseCategory category);
+    
+    /**
+     * 根据主要肌肉群查询列表投影
+     */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Exercise.QUERY_CACHE_REGION)})
+    @Query(SUMMARY_SELECT + "WHERE e.primaryMuscleGroup = :muscleGroup ORDER BY e.id")
+    List<ExerciseSummary> findSummariesByPrimaryMuscleGroup(@Param("muscleGroup") Exercise.MuscleGroup muscleGroup);
+    
+    /**
+     * 根据名称关键字查询列表投影（忽略大小写）
+     */
+    @Query(SUMMARY_SELECT + "WHERE LOWER(e.name) LIKE LOWER(CONCAT('%', :keyword, '%')) ORDER BY e.id")
+    List<ExerciseSummary> searchSummaries(@Param("keyword") String keyword);
+    
+    /**
+     * 查询运动名称目录（仅ID和名称，用于构建自动补全索引）
+     */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Exercise.QUERY_CACHE_REGION)})
+    @Query("SELECT e.id, e.name FROM Exercise e")
+    List<Object[]> findAllIdAndName();
+    
+    /**
+     * 统计每个运动在训练计划中的使用次数
+     */
+    @Query("SELECT we.exercise.id, COUNT(we) FROM WorkoutExercise we GROUP BY we.exercise.id")
+    List<Object[]> countUsageByExercise();
+    
+    /**
+     * 按名称幂等插入运动项目：只吸收唯一键冲突（ON DUPLICATE KEY UPDATE 不修改已有行），
+     * 超长、非空等其他错误照常抛出，不会像 INSERT IGNORE 那样被截断或替换为默认值后静默写入
+     * 声明只影响 exercises 表，避免原生语句使整个二级缓存失效
+     * 返回的行数受连接的 CLIENT_FOUND_ROWS 设置影响（名称已存在时可能为 1），调用方按写入的 created_at 判断是否为本次插入
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "exercises"))
+    @Query(value = "INSERT INTO exercises (name, description, instructions, category, muscle_group, " +
+                   "equipment_needed, difficulty_level, calories_per_minute, image_url, video_url, " +
+                   "created_at, updated_at, is_active) " +
+                   "VALUES (:name, :description, :instructions, :category, :muscleGroup, :equipment, " +
+                   ":difficulty, :caloriesPerMinute, :imageUrl, :videoUrl, :now, :now, :active) " +
+                   "ON DUPLICATE KEY UPDATE id = id",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("name") String name,
+                     @Param("description") String description,
+                     @Param("instructions") String instructions,
+                     @Param("category") String category,
+                     @Param("muscleGroup") String muscleGroup,
+                     @Param("equipment") String equipment,
+                     @Param("difficulty") String difficulty,
+                     @Param("caloriesPerMinute") Double caloriesPerMinute,
+                     @Param("imageUrl") String imageUrl,
+                     @Param("videoUrl") String videoUrl,
+                     @Param("now") LocalDateTime now,
+                     @Param("active") boolean active);
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.fitai.repository;
+
+import com.fitai.model.IngestionCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IngestionCheckpointRepository extends JpaRepository<IngestionCheckpoint, String> {
+}
@@ -0,0 +1,31 @@
+package com.fitai.repository;
+
+import com.fitai.model.OutboxRelayLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface OutboxRelayLeaseRepository extends JpaRepository<OutboxRelayLease, String> {
+    
+    /**
+     * 续约自己持有的租约，或接管已过期的租约
+     * @return 1 表示当前实例持有租约
+     */
+    @Modifying
+    @Query("UPDATE OutboxRelayLease l SET l.owner = :owner, l.expiresAt = :expiresAt " +
+           "WHERE l.name = :name AND (l.owner = :owner OR l.expiresAt < :now)")
+    int acquire(@Param("name") String name, @Param("owner") String owner,
+                @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+    
+    /**
+     * 释放自己持有的租约，其他实例可以立即接管
+     */
+    @Modifying
+    @Query("UPDATE OutboxRelayLease l SET l.owner = NULL, l.expiresAt = :now WHERE l.name = :name AND l.owner = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,37 @@
+package com.fitai.repository;
+
+import com.fitai.model.ProgressOutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ProgressOutboxRepository extends JpaRepository<ProgressOutboxEvent, Long> {
+    
+    /**
+     * 按ID顺序读取一批未投递的事件
+     * 只有持有中继租约的实例读取，不加行锁；跳过锁定的行会让同一用户较晚的事件先于较早的事件送达
+     */
+    @Query("SELECT e FROM ProgressOutboxEvent e WHERE e.publishedAt IS NULL ORDER BY e.id")
+    List<ProgressOutboxEvent> findUnpublished(Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE ProgressOutboxEvent e SET e.publishedAt = :publishedAt WHERE e.id IN :ids")
+    int markPublished(@Param("ids") List<Long> ids, @Param("publishedAt") LocalDateTime publishedAt);
+    
+    @Modifying
+    @Query("UPDATE ProgressOutboxEvent e SET e.attempts = e.attempts + 1 WHERE e.id IN :ids")
+    int incrementAttempts(@Param("ids") List<Long> ids);
+    
+    @Modifying
+    @Query("DELETE FROM ProgressOutboxEvent e WHERE e.publishedAt < :before")
+    int deletePublishedBefore(@Param("before") LocalDateTime before);
+    
+    long countByPublishedAtIsNull();
+}
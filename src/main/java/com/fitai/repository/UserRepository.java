@@ -1,11 +1,17 @@
 package com.fitai.repository;
 
 import com.fitai.model.User;
+import com.fitai.repository.projection.UserGym;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +23,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     Optional<User> findByUsername(String username);
     
+    /**
+     * 查找并锁定用户行直到事务结束（SELECT ... FOR UPDATE），串行化同一用户的并发写入
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id = :id")
+    Optional<User> findByIdForUpdate(@Param("id") Long id);
+    
     /**
      * 根据邮箱查找用户
      */
@@ -34,10 +47,18 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     /**
      * 查找活跃用户（最近30天有登录）
+     * @deprecated 会扫描并加载整张用户表，活跃度统计请使用 UserActivityService
      */
+    @Deprecated
     @Query("SELECT u FROM User u WHERE u.updatedAt >= CURRENT_DATE - 30 DAY")
     List<User> findActiveUsers();
     
+    /**
+     * 设置了所属健身房的用户（重建分馆排行榜使用，只查两列）
+     */
+    @Query("SELECT u.id AS id, u.gym AS gym FROM User u WHERE u.gym IS NOT NULL")
+    List<UserGym> findGymAssignments();
+    
     /**
      * 根据年龄范围查找用户
      */
@@ -46,9 +67,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
     /**
      * 根据BMI范围查找用户
      */
-    @Query("SELECT u FROM User u WHERE (u.weight / ((u.height/100) * (u.height/100))) BETWEEN :minBmi AND :maxBmi")
+    @Query("SELECT u FROM User u WHERE u.bmi BETWEEN :minBmi AND :maxBmi")
     List<User> findByBmiRange(@Param("minBmi") double minBmi, @Param("maxBmi") double maxBmi);
     
+    /**
+     * 尚未写入BMI的历史用户ID（按ID分页，配合 afterId 逐批向后推进）
+     */
+    @Query("SELECT u.id FROM User u WHERE u.bmi IS NULL AND u.weight IS NOT NULL AND u.height > 0 " +
+           "AND u.id > :afterId ORDER BY u.id")
+    List<Long> findIdsMissingBmi(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * 为一批历史用户回填BMI列
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.bmi = u.weight / ((u.height / 100.0) * (u.height / 100.0)) " +
+           "WHERE u.id IN :ids AND u.bmi IS NULL")
+    int backfillBmi(@Param("ids") Collection<Long> ids);
+    
     /**
      * 查找训练天数超过指定值的用户
      */
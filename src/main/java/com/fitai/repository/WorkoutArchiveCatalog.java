@@ -0,0 +1,69 @@
+package com.fitai.repository;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+/**
+ * 训练历史归档边界
+ * 早于 archivedBefore 的训练会话和训练记录可能位于归档表，之后的数据只在主表；
+ * 仓库查询据此决定是否需要访问归档表
+ */
+@Component
+public class WorkoutArchiveCatalog {
+    
+    public static final String SESSIONS_TABLE = "workout_sessions";
+    public static final String RECORDS_TABLE = "workout_exercise_records";
+    public static final String SESSIONS_ARCHIVE_TABLE = "workout_sessions_archive";
+    public static final String RECORDS_ARCHIVE_TABLE = "workout_exercise_records_archive";
+    
+    @Autowired
+    private ArchivedPartitionRepository archivedPartitionRepository;
+    
+    // 没有任何归档时为 MIN，所有查询只访问主表
+    private volatile LocalDateTime archivedBefore = LocalDateTime.MIN;
+    
+    /**
+     * 从归档分区表重新加载边界，定期刷新以感知其他节点的归档进度
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${fitai.coach.archive.catalog-refresh-ms:60000}")
+    public void refresh() {
+        archivedBefore = archivedPartitionRepository.findLatestArchivedMonth()
+                .map(month -> toYearMonth(month).plusMonths(1).atDay(1).atStartOfDay())
+                .orElse(LocalDateTime.MIN);
+    }
+    
+    /**
+     * 归档作业开始搬迁某个月之前调用，使查询先开始访问归档表，避免搬迁过程中漏读
+     */
+    public void extendTo(YearMonth month) {
+        LocalDateTime boundary = month.plusMonths(1).atDay(1).atStartOfDay();
+        if (boundary.isAfter(archivedBefore)) {
+            archivedBefore = boundary;
+        }
+    }
+    
+    /**
+     * 查询区间是否可能包含已归档数据
+     */
+    public boolean mayContainArchived(LocalDateTime from) {
+        return from == null || from.isBefore(archivedBefore);
+    }
+    
+    public LocalDateTime getArchivedBefore() {
+        return archivedBefore;
+    }
+    
+    public static int toPartitionMonth(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+    
+    public static YearMonth toYearMonth(int partitionMonth) {
+        return YearMonth.of(partitionMonth / 100, partitionMonth % 100);
+    }
+}
@@ -0,0 +1,67 @@
+package com.fitai.repository;
+
+import com.fitai.model.WorkoutExercise;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * 训练计划动作批量写入
+ * 实体使用IDENTITY主键时Hibernate无法批量插入，这里直接用JDBC批处理，
+ * 配合连接参数 rewriteBatchedStatements=true 合并为一条多行INSERT
+ */
+@Repository
+public class WorkoutExerciseBatchRepository {
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO workout_exercises (exercise_order, sets, reps, duration_seconds, rest_seconds, " +
+            "weight_kg, distance_meters, notes, workout_plan_id, exercise_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    /**
+     * 批量插入计划动作，并回填生成的主键
+     * 在当前事务的连接上执行，计划本身必须已经写入
+     */
+    public void batchInsert(Long workoutPlanId, List<WorkoutExercise> workoutExercises) {
+        if (workoutExercises.isEmpty()) {
+            return;
+        }
+        
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (WorkoutExercise workoutExercise : workoutExercises) {
+                    ps.setObject(1, workoutExercise.getOrder(), Types.INTEGER);
+                    ps.setObject(2, workoutExercise.getSets(), Types.INTEGER);
+                    ps.setObject(3, workoutExercise.getReps(), Types.INTEGER);
+                    ps.setObject(4, workoutExercise.getDurationSeconds(), Types.INTEGER);
+                    ps.setObject(5, workoutExercise.getRestSeconds(), Types.INTEGER);
+                    ps.setObject(6, workoutExercise.getWeight(), Types.DOUBLE);
+                    ps.setObject(7, workoutExercise.getDistance(), Types.DOUBLE);
+                    ps.setObject(8, workoutExercise.getNotes(), Types.VARCHAR);
+                    ps.setLong(9, workoutPlanId);
+                    ps.setLong(10, workoutExercise.getExercise().getId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int index = 0;
+                    while (keys.next() && index < workoutExercises.size()) {
+                        workoutExercises.get(index++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package com.fitai.repository;
+
+import com.fitai.service.ingest.IngestedRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * 训练记录批量写入（写入队列使用）
+ * 通过 INSERT ... SELECT 校验训练会话属于提交记录的用户，不属于时该行不插入
+ */
+@Repository
+public class WorkoutExerciseRecordBatchRepository {
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO workout_exercise_records (workout_session_id, exercise_name, sets_completed, " +
+            "reps_completed, weight_used, duration_minutes, calories_burned, notes, completed_at, " +
+            "created_at, updated_at) " +
+            "SELECT s.id, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? FROM workout_sessions s WHERE s.id = ? AND s.user_id = ?";
+    
+    private static final String UPDATE_CHECKPOINT_SQL =
+            "UPDATE ingestion_checkpoints SET last_sequence = ?, updated_at = ? WHERE node_id = ? AND last_sequence < ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    /**
+     * 批量插入训练记录，在当前事务的连接上执行
+     * @return 每条记录生成的主键（0 表示会话不存在或不属于该用户，未插入）
+     */
+    public long[] batchInsert(List<IngestedRecord> records) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        return jdbcTemplate.execute((ConnectionCallback<long[]>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (IngestedRecord record : records) {
+                    ps.setString(1, record.exerciseName());
+                    ps.setObject(2, record.setsCompleted(), Types.INTEGER);
+                    ps.setObject(3, record.repsCompleted(), Types.INTEGER);
+                    ps.setObject(4, record.weightUsed(), Types.DOUBLE);
+                    ps.setObject(5, record.durationMinutes(), Types.INTEGER);
+                    ps.setObject(6, record.caloriesBurned(), Types.INTEGER);
+                    ps.setString(7, record.notes());
+                    ps.setTimestamp(8, new Timestamp(record.completedAtMillis()));
+                    ps.setTimestamp(9, now);
+                    ps.setTimestamp(10, now);
+                    ps.setLong(11, record.sessionId());
+                    ps.setLong(12, record.userId());
+                    ps.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+
+                // 生成的主键只包含实际插入的行，按顺序对应到插入行数不为 0 的记录
+                long[] ids = new long[counts.length];
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] != 0 && keys.next()) {
+                            ids[i] = keys.getLong(1);
+                        }
+                    }
+                }
+                return ids;
+            }
+        });
+    }
+    
+    /**
+     * 推进节点检查点，与批量插入处于同一事务
+     */
+    public void advanceCheckpoint(String nodeId, long sequence) {
+        jdbcTemplate.update(UPDATE_CHECKPOINT_SQL, sequence, new Timestamp(System.currentTimeMillis()), nodeId, sequence);
+    }
+}
@@ -0,0 +1,22 @@
+package com.fitai.repository;
+
+import com.fitai.model.exercise.WorkoutExerciseRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface WorkoutExerciseRecordRepository extends JpaRepository<WorkoutExerciseRecord, Long>,
+                                                          WorkoutExerciseRecordRepositoryCustom {
+    
+    /**
+     * 按ID分批读取训练记录及其所属用户ID（用于导入时序存储）
+     */
+    @Query("SELECT r, s.user.id FROM WorkoutExerciseRecord r JOIN r.workoutSession s " +
+           "WHERE r.id > :afterId ORDER BY r.id")
+    List<Object[]> findBatchWithUserIdAfter(@Param("afterId") Long afterId, Pageable pageable);
+}
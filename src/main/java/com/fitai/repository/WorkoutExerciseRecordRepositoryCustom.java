@@ -0,0 +1,19 @@
+package com.fitai.repository;
+
+import com.fitai.model.exercise.WorkoutExerciseRecord;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 训练记录跨主表/归档表查询
+ */
+public interface WorkoutExerciseRecordRepositoryCustom {
+    
+    /**
+     * 查询用户在时间区间内完成的训练记录，按完成时间倒序
+     * 区间落在归档边界之后时只访问主表；否则合并归档表结果，归档数据以只读（游离）实体返回，
+     * 其 workoutSession 关联不可访问
+     */
+    List<WorkoutExerciseRecord> findUserRecordsBetween(Long userId, LocalDateTime from, LocalDateTime to);
+}
@@ -0,0 +1,61 @@
+package com.fitai.repository;
+
+import com.fitai.model.exercise.WorkoutExerciseRecord;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class WorkoutExerciseRecordRepositoryImpl implements WorkoutExerciseRecordRepositoryCustom {
+    
+    private static final String ARCHIVE_SQL =
+            "SELECT id, workout_session_id, exercise_name, sets_completed, reps_completed, weight_used, " +
+            "duration_minutes, calories_burned, notes, completed_at, created_at, updated_at FROM " +
+            WorkoutArchiveCatalog.RECORDS_ARCHIVE_TABLE +
+            " WHERE user_id = :userId AND completed_at >= :from AND completed_at < :to";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private WorkoutArchiveCatalog archiveCatalog;
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<WorkoutExerciseRecord> findUserRecordsBetween(Long userId, LocalDateTime from, LocalDateTime to) {
+        // 先查主表再查归档表，重复的按ID去重（见 WorkoutSessionRepositoryImpl）
+        List<WorkoutExerciseRecord> records = new ArrayList<>(entityManager.createQuery(
+                        "SELECT r FROM WorkoutExerciseRecord r JOIN r.workoutSession s WHERE s.user.id = :userId " +
+                        "AND r.completedAt >= :from AND r.completedAt < :to", WorkoutExerciseRecord.class)
+                .setParameter("userId", userId)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList());
+        
+        if (archiveCatalog.mayContainArchived(from)) {
+            Set<Long> seen = new HashSet<>();
+            records.forEach(record -> seen.add(record.getId()));
+            List<WorkoutExerciseRecord> archived = entityManager.createNativeQuery(ARCHIVE_SQL, WorkoutExerciseRecord.class)
+                    .setParameter("userId", userId)
+                    .setParameter("from", from)
+                    .setParameter("to", to)
+                    .getResultList();
+            for (WorkoutExerciseRecord record : archived) {
+                if (seen.add(record.getId())) {
+                    entityManager.detach(record);
+                    records.add(record);
+                }
+            }
+        }
+        
+        records.sort(Comparator.comparing(WorkoutExerciseRecord::getCompletedAt,
+                Comparator.nullsLast(Comparator.reverseOrder())));
+        return records;
+    }
+}
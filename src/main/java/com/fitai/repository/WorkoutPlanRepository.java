@@ -1,10 +1,14 @@
 package com.fitai.repository;
 
 import com.fitai.model.WorkoutPlan;
+import com.fitai.repository.projection.WorkoutPlanSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,6 +25,16 @@ public interface WorkoutPlanRepository extends JpaRepository<WorkoutPlan, Long>
      */
     List<WorkoutPlan> findByUserIdOrderByCreatedAtDesc(Long userId);
     
+    /**
+     * 查询用户训练计划的列表投影，按创建时间倒序
+     */
+    @Query("SELECT wp.id AS id, wp.name AS name, SUBSTRING(wp.description, 1, 120) AS description, " +
+           "wp.planType AS planType, wp.difficultyLevel AS difficultyLevel, wp.isActive AS isActive, " +
+           "wp.createdAt AS createdAt, wp.totalSessionCount AS totalSessionCount, " +
+           "wp.completedSessionCount AS completedSessionCount, wp.lastCompletedAt AS lastCompletedAt " +
+           "FROM WorkoutPlan wp WHERE wp.user.id = :userId ORDER BY wp.createdAt DESC")
+    List<WorkoutPlanSummary> findSummariesByUserId(@Param("userId") Long userId);
+    
     /**
      * 查找用户当前活跃的训练计划
      */
@@ -56,4 +70,37 @@ public interface WorkoutPlanRepository extends JpaRepository<WorkoutPlan, Long>
      * 查找活跃的训练计划
      */
     List<WorkoutPlan> findByIsActiveTrue();
-}
\ No newline at end of file
+    
+    /**
+     * 将用户除指定计划外的活跃计划置为非活跃
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE WorkoutPlan wp SET wp.isActive = false, wp.updatedAt = :now " +
+           "WHERE wp.user.id = :userId AND wp.isActive = true AND wp.id <> :planId")
+    int deactivateOtherPlans(@Param("userId") Long userId, @Param("planId") Long planId, @Param("now") LocalDateTime now);
+    
+    /**
+     * 激活属于该用户的指定计划
+     * @return 更新行数，0 表示计划不存在或不属于该用户
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE WorkoutPlan wp SET wp.isActive = true, wp.updatedAt = :now " +
+           "WHERE wp.id = :planId AND wp.user.id = :userId")
+    int activateUserPlan(@Param("planId") Long planId, @Param("userId") Long userId, @Param("now") LocalDateTime now);
+    
+    /**
+     * 计划新增一个训练会话
+     */
+    @Modifying
+    @Query("UPDATE WorkoutPlan wp SET wp.totalSessionCount = wp.totalSessionCount + 1 WHERE wp.id = :planId")
+    int incrementTotalSessions(@Param("planId") Long planId);
+    
+    /**
+     * 计划的一个训练会话完成，最近完成时间只前进不后退
+     */
+    @Modifying
+    @Query("UPDATE WorkoutPlan wp SET wp.completedSessionCount = wp.completedSessionCount + 1, " +
+           "wp.lastCompletedAt = CASE WHEN wp.lastCompletedAt IS NULL OR wp.lastCompletedAt < :completedAt " +
+           "THEN :completedAt ELSE wp.lastCompletedAt END WHERE wp.id = :planId")
+    int incrementCompletedSessions(@Param("planId") Long planId, @Param("completedAt") LocalDateTime completedAt);
+}
@@ -0,0 +1,58 @@
+package com.fitai.repository;
+
+import com.fitai.model.WorkoutSession;
+import com.fitai.repository.projection.UserWorkoutTotals;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WorkoutSessionRepository extends JpaRepository<WorkoutSession, Long>, WorkoutSessionRepositoryCustom {
+    
+    /**
+     * 查询用户最近的训练会话（热路径，只访问主表）
+     */
+    @Query("SELECT s FROM WorkoutSession s WHERE s.user.id = :userId AND s.startTime >= :since ORDER BY s.startTime DESC")
+    List<WorkoutSession> findRecentByUserId(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+    
+    /**
+     * 查询属于该用户的训练会话
+     */
+    Optional<WorkoutSession> findByIdAndUserId(Long id, Long userId);
+    
+    /**
+     * 查询用户指定状态的训练会话
+     */
+    List<WorkoutSession> findByUserIdAndStatus(Long userId, WorkoutSession.SessionStatus status);
+    
+    /**
+     * 按用户汇总 since 之后完成的训练次数和卡路里（只分组不排序，排名由内存排行榜负责）
+     */
+    @Query("SELECT s.user.id AS userId, COUNT(s) AS workouts, COALESCE(SUM(s.caloriesBurned), 0) AS caloriesBurned " +
+           "FROM WorkoutSession s WHERE s.status = :status AND s.endTime >= :since GROUP BY s.user.id")
+    List<UserWorkoutTotals> sumByUserSince(@Param("status") WorkoutSession.SessionStatus status,
+                                           @Param("since") LocalDateTime since);
+    
+    /**
+     * 结束会话：将处于 fromStatuses 的会话改为 toStatus，写入结束时间、暂停秒数和训练时长并把版本加1，返回受影响行数；
+     * 以当前状态为条件更新，同一会话并发结束时只有一个请求会成功，计划计数器不会重复累加
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE WorkoutSession s SET s.status = :toStatus, s.endTime = :endTime, s.updatedAt = :endTime, " +
+           "s.pausedAt = NULL, s.pausedSeconds = :pausedSeconds, s.durationMinutes = :durationMinutes, " +
+           "s.version = s.version + 1 " +
+           "WHERE s.id = :sessionId AND s.user.id = :userId AND s.status IN :fromStatuses")
+    int transitionStatus(@Param("sessionId") Long sessionId, @Param("userId") Long userId,
+                         @Param("fromStatuses") Collection<WorkoutSession.SessionStatus> fromStatuses,
+                         @Param("toStatus") WorkoutSession.SessionStatus toStatus,
+                         @Param("endTime") LocalDateTime endTime,
+                         @Param("pausedSeconds") long pausedSeconds,
+                         @Param("durationMinutes") Integer durationMinutes);
+}
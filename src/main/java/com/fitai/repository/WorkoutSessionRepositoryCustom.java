@@ -0,0 +1,18 @@
+package com.fitai.repository;
+
+import com.fitai.model.WorkoutSession;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 训练会话跨主表/归档表查询
+ */
+public interface WorkoutSessionRepositoryCustom {
+    
+    /**
+     * 查询用户在时间区间内开始的训练会话，按开始时间倒序
+     * 区间落在归档边界之后时只访问主表；否则合并归档表结果，归档数据以只读（游离）实体返回
+     */
+    List<WorkoutSession> findUserSessionsBetween(Long userId, LocalDateTime from, LocalDateTime to);
+}
@@ -0,0 +1,61 @@
+package com.fitai.repository;
+
+import com.fitai.model.WorkoutSession;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class WorkoutSessionRepositoryImpl implements WorkoutSessionRepositoryCustom {
+    
+    private static final String ARCHIVE_SQL =
+            "SELECT id, user_id, workout_plan_id, session_name, start_time, end_time, status, paused_at, paused_seconds, " +
+            "version, duration_minutes, calories_burned, notes, created_at, updated_at FROM " +
+            WorkoutArchiveCatalog.SESSIONS_ARCHIVE_TABLE +
+            " WHERE user_id = :userId AND start_time >= :from AND start_time < :to";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private WorkoutArchiveCatalog archiveCatalog;
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<WorkoutSession> findUserSessionsBetween(Long userId, LocalDateTime from, LocalDateTime to) {
+        // 先查主表再查归档表：归档作业只会把数据从主表搬到归档表，这个顺序不会漏读，重复的按ID去重
+        List<WorkoutSession> sessions = new ArrayList<>(entityManager.createQuery(
+                        "SELECT s FROM WorkoutSession s WHERE s.user.id = :userId " +
+                        "AND s.startTime >= :from AND s.startTime < :to", WorkoutSession.class)
+                .setParameter("userId", userId)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList());
+        
+        if (archiveCatalog.mayContainArchived(from)) {
+            Set<Long> seen = new HashSet<>();
+            sessions.forEach(session -> seen.add(session.getId()));
+            List<WorkoutSession> archived = entityManager.createNativeQuery(ARCHIVE_SQL, WorkoutSession.class)
+                    .setParameter("userId", userId)
+                    .setParameter("from", from)
+                    .setParameter("to", to)
+                    .getResultList();
+            for (WorkoutSession session : archived) {
+                if (seen.add(session.getId())) {
+                    entityManager.detach(session);
+                    sessions.add(session);
+                }
+            }
+        }
+        
+        sessions.sort(Comparator.comparing(WorkoutSession::getStartTime,
+                Comparator.nullsLast(Comparator.reverseOrder())));
+        return sessions;
+    }
+}
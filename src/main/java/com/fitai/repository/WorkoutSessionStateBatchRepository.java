@@ -0,0 +1,50 @@
+package com.fitai.repository;
+
+import com.fitai.service.session.SessionState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * 进行中训练会话状态批量写回（暂停/继续的写后合并使用）
+ * 以版本为条件更新并把版本加1，数据库中的会话已被其他请求修改（包括已经结束）时该行不更新
+ */
+@Repository
+public class WorkoutSessionStateBatchRepository {
+    
+    private static final String UPDATE_SQL =
+            "UPDATE workout_sessions SET status = ?, paused_at = ?, paused_seconds = ?, version = version + 1, " +
+            "updated_at = ? WHERE id = ? AND user_id = ? AND version = ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    /**
+     * 批量写回会话状态，在当前事务的连接上执行
+     * @return 每个会话实际更新的行数（0 表示版本不符）；驱动合并执行批处理时可能为 Statement.SUCCESS_NO_INFO
+     */
+    public int[] batchUpdate(List<SessionState> states) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        return jdbcTemplate.execute((ConnectionCallback<int[]>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(UPDATE_SQL)) {
+                for (SessionState state : states) {
+                    ps.setString(1, state.status().name());
+                    ps.setObject(2, state.pausedAt() != null ? Timestamp.valueOf(state.pausedAt()) : null, Types.TIMESTAMP);
+                    ps.setLong(3, state.pausedSeconds());
+                    ps.setTimestamp(4, now);
+                    ps.setLong(5, state.sessionId());
+                    ps.setLong(6, state.userId());
+                    ps.setLong(7, state.version());
+                    ps.addBatch();
+                }
+                return ps.executeBatch();
+            }
+        });
+    }
+}
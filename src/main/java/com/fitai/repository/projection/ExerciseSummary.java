@@ -0,0 +1,26 @@
+package com.fitai.repository.projection;
+
+import com.fitai.model.Exercise;
+
+/**
+ * 运动列表投影
+ * 只包含运动库卡片展示所需字段，描述为截断后的摘要，不加载完整的描述和动作要领
+ */
+public interface ExerciseSummary {
+    
+    Long getId();
+    
+    String getName();
+    
+    String getDescription();
+    
+    Exercise.ExerciseCategory getCategory();
+    
+    Exercise.DifficultyLevel getDifficultyLevel();
+    
+    Exercise.MuscleGroup getPrimaryMuscleGroup();
+    
+    Exercise.Equipment getEquipmentNeeded();
+    
+    Double getCaloriesPerMinute();
+}
@@ -0,0 +1,11 @@
+package com.fitai.repository.projection;
+
+/**
+ * 用户所属健身房
+ */
+public interface UserGym {
+    
+    Long getId();
+    
+    String getGym();
+}
@@ -0,0 +1,13 @@
+package com.fitai.repository.projection;
+
+/**
+ * 用户在某段时间内完成训练的汇总（重建排行榜窗口使用）
+ */
+public interface UserWorkoutTotals {
+    
+    Long getUserId();
+    
+    Long getWorkouts();
+    
+    Double getCaloriesBurned();
+}
@@ -0,0 +1,44 @@
+package com.fitai.repository.projection;
+
+import com.fitai.model.WorkoutPlan;
+
+import java.time.LocalDateTime;
+
+/**
+ * 训练计划列表投影
+ * 只包含计划卡片展示所需字段，描述为截断后的摘要
+ */
+public interface WorkoutPlanSummary {
+    
+    Long getId();
+    
+    String getName();
+    
+    String getDescription();
+    
+    WorkoutPlan.PlanType getPlanType();
+    
+    WorkoutPlan.DifficultyLevel getDifficultyLevel();
+    
+    Boolean getIsActive();
+    
+    LocalDateTime getCreatedAt();
+    
+    Integer getTotalSessionCount();
+    
+    Integer getCompletedSessionCount();
+    
+    LocalDateTime getLastCompletedAt();
+    
+    /**
+     * 完成率（百分比），由计数器列计算，不加载训练会话
+     */
+    default double getCompletionRate() {
+        Integer total = getTotalSessionCount();
+        if (total == null || total == 0) {
+            return 0.0;
+        }
+        Integer completed = getCompletedSessionCount();
+        return (double) (completed != null ? completed : 0) / total * 100;
+    }
+}
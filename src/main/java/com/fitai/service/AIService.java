@@ -152,7 +152,7 @@ public class AIService {
      * 构建营养建议提示词
      */
     private String buildNutritionPrompt(User user) {
-        double bmi = user.calculateBMI();
+        double bmi = user.getCurrentBMI();
         return String.format(
             "作为专业的营养师，请为以下用户提供个性化的营养建议：\n" +
             "用户信息：\n" +
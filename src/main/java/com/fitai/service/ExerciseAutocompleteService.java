@@ -0,0 +1,133 @@
+package com.fitai.service;
+
+import com.fitai.config.sharding.ShardRouter;
+import com.fitai.repository.ExerciseRepository;
+import com.fitai.service.search.ExerciseNameTrie;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 运动名称自动补全服务
+ * 查询走内存中的不可变前缀树，目录或使用次数变化时在后台重建并整体替换（写时复制）
+ */
+@Service
+@Slf4j
+public class ExerciseAutocompleteService {
+
+    private static final int MAX_SUGGESTIONS = 10;
+
+    @Autowired
+    private ExerciseRepository exerciseRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${fitai.coach.autocomplete.rebuild-delay-ms:1000}")
+    private long rebuildDelayMs;
+
+    private volatile ExerciseNameTrie trie = ExerciseNameTrie.empty();
+
+    private final AtomicBoolean rebuildPending = new AtomicBoolean(false);
+
+    private final ScheduledExecutorService rebuildExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "exercise-autocomplete-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 应用启动后构建初始索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        rebuild();
+    }
+
+    /**
+     * 根据前缀获取运动名称建议
+     */
+    public List<ExerciseNameTrie.Suggestion> suggest(String prefix, int limit) {
+        return trie.suggest(prefix, Math.min(limit, MAX_SUGGESTIONS));
+    }
+
+    /**
+     * 标记运动目录已变化
+     * 如果处于事务中，则在事务提交后再安排重建，避免读到未提交的数据
+     */
+    public void markCatalogChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    scheduleRebuild();
+                }
+            });
+        } else {
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * 安排一次延迟重建，短时间内的多次变更合并为一次
+     */
+    private void scheduleRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuildExecutor.schedule(() -> {
+                rebuildPending.set(false);
+                rebuild();
+            }, rebuildDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 从数据库读取运动目录和使用次数，重建前缀树
+     * 使用次数来自各用户分片的训练计划，分片模式下逐个分片累加
+     */
+    public void rebuild() {
+        try {
+            long start = System.nanoTime();
+
+            Map<Long, Long> usageCounts = new HashMap<>();
+            shardRouter.forEachShard(shard -> {
+                for (Object[] row : exerciseRepository.countUsageByExercise()) {
+                    usageCounts.merge((Long) row[0], ((Number) row[1]).longValue(), Long::sum);
+                }
+            });
+
+            List<ExerciseNameTrie.Entry> entries = new ArrayList<>();
+            for (Object[] row : exerciseRepository.findAllIdAndName()) {
+                Long id = (Long) row[0];
+                entries.add(new ExerciseNameTrie.Entry(id, (String) row[1], usageCounts.getOrDefault(id, 0L)));
+            }
+
+            ExerciseNameTrie rebuilt = ExerciseNameTrie.build(entries, MAX_SUGGESTIONS);
+            trie = rebuilt;
+
+            log.debug("运动自动补全索引重建完成: {} 个运动, {} 个节点, 耗时 {} ms",
+                    rebuilt.size(), rebuilt.getNodeCount(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.error("运动自动补全索引重建失败，继续使用旧索引", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+}
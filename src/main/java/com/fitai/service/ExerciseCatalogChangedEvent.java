@@ -0,0 +1,7 @@
+package com.fitai.service;
+
+/**
+ * 运动库变更事件（新增、修改或删除了一个运动项目）
+ */
+public record ExerciseCatalogChangedEvent(Long exerciseId, boolean removed) {
+}
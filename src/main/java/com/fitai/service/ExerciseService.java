@@ -1,35 +1,66 @@
 package com.fitai.service;
 
+import com.fitai.config.sharding.GlobalData;
 import com.fitai.model.Exercise;
 import com.fitai.repository.ExerciseRepository;
+import com.fitai.repository.projection.ExerciseSummary;
+import com.fitai.service.cache.ExerciseCacheService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @Transactional
 public class ExerciseService {
     
+    private static final int NAME_LOCK_STRIPES = 64;
+    
+    // 运动名称 -> 已解析的运动ID
+    private final Map<String, Long> exerciseIdsByName = new ConcurrentHashMap<>();
+    
+    // 按名称哈希分段的锁，不同名称的创建可以并行
+    private final Object[] nameLocks = createNameLocks();
+    
     @Autowired
     private ExerciseRepository exerciseRepository;
     
+    @Autowired
+    private ExerciseAutocompleteService exerciseAutocompleteService;
+    
+    @Autowired
+    private ExerciseCacheService exerciseCacheService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     /**
      * 创建新的运动项目
      */
+    @GlobalData
     public Exercise createExercise(Exercise exercise) {
         exercise.setCreatedAt(LocalDateTime.now());
         exercise.setUpdatedAt(LocalDateTime.now());
-        return exerciseRepository.save(exercise);
+        Exercise saved = exerciseRepository.save(exercise);
+        exerciseCacheService.evictAfterCommit(null);
+        eventPublisher.publishEvent(new ExerciseCatalogChangedEvent(saved.getId(), false));
+        exerciseAutocompleteService.markCatalogChanged();
+        return saved;
     }
     
     /**
      * 根据分类查找运动（替代原来的肌肉群查找）
      */
+    @Transactional(readOnly = true)
     public List<Exercise> findByCategory(Exercise.ExerciseCategory category) {
         return exerciseRepository.findByCategory(category);
     }
@@ -37,6 +68,7 @@ public class ExerciseService {
     /**
      * 根据器械要求查找运动
      */
+    @Transactional(readOnly = true)
     public List<Exercise> findByEquipment(String equipment) {
         // 需要将字符串转换为枚举类型
         Exercise.Equipment equipmentEnum = Exercise.Equipment.valueOf(equipment.toUpperCase());
@@ -46,6 +78,7 @@ public class ExerciseService {
     /**
      * 根据难度级别查找运动
      */
+    @Transactional(readOnly = true)
     public List<Exercise> findByDifficulty(Exercise.DifficultyLevel difficulty) {
         return exerciseRepository.findByDifficultyLevel(difficulty);
     }
@@ -53,6 +86,7 @@ public class ExerciseService {
     /**
      * 获取所有运动项目
      */
+    @Transactional(readOnly = true)
     public List<Exercise> getAllExercises() {
         return exerciseRepository.findAll();
     }
@@ -60,6 +94,7 @@ public class ExerciseService {
     /**
      * 根据ID查找运动
      */
+    @Transactional(readOnly = true)
     public Optional<Exercise> findById(Long id) {
         return exerciseRepository.findById(id);
     }
@@ -67,21 +102,34 @@ public class ExerciseService {
     /**
      * 更新运动项目
      */
+    @GlobalData
     public Exercise updateExercise(Exercise exercise) {
         exercise.setUpdatedAt(LocalDateTime.now());
-        return exerciseRepository.save(exercise);
+        Exercise saved = exerciseRepository.save(exercise);
+        // 名称可能被修改，移除旧的名称映射
+        exerciseIdsByName.values().remove(saved.getId());
+        exerciseCacheService.evictAfterCommit(saved.getId());
+        eventPublisher.publishEvent(new ExerciseCatalogChangedEvent(saved.getId(), false));
+        exerciseAutocompleteService.markCatalogChanged();
+        return saved;
     }
     
     /**
      * 删除运动项目
      */
+    @GlobalData
     public void deleteExercise(Long id) {
+        exerciseIdsByName.values().remove(id);
         exerciseRepository.deleteById(id);
+        exerciseCacheService.evictAfterCommit(id);
+        eventPublisher.publishEvent(new ExerciseCatalogChangedEvent(id, true));
+        exerciseAutocompleteService.markCatalogChanged();
     }
     
     /**
      * 搜索运动项目
      */
+    @Transactional(readOnly = true)
     public List<Exercise> searchExercises(String keyword) {
         return exerciseRepository.findByNameContainingIgnoreCase(keyword);
     }
@@ -89,6 +137,7 @@ public class ExerciseService {
     /**
      * 根据卡路里消耗范围查找运动
      */
+    @Transactional(readOnly = true)
     public List<Exercise> findByCalorieRange(double minCalories, double maxCalories) {
         return exerciseRepository.findByCaloriesPerMinuteBetween(minCalories, maxCalories);
     }
@@ -96,6 +145,7 @@ public class ExerciseService {
     /**
      * 获取推荐的运动组合
      */
+    @Transactional(readOnly = true)
     public List<Exercise> getRecommendedExercises(String goal, String fitnessLevel) {
         // 根据目标和健身水平推荐运动
         if ("weight_loss".equals(goal)) {
@@ -109,37 +159,89 @@ public class ExerciseService {
     
     /**
      * 创建或获取已存在的运动项目
+     * 已解析过的名称直接命中本地缓存；未命中时按名称分段加锁，
+     * 通过单条 INSERT … ON DUPLICATE KEY UPDATE 完成数据库层面的幂等插入，多节点并发也只会保留一行，
+     * 随后以加锁读取回该行（REPEATABLE READ 下普通读可能看不到其他事务刚提交的同名行）
+     * 分片模式下运动库写入全局分片，在用户分片的事务中调用时会另起事务
      */
+    @GlobalData
     public Exercise createOrGetExercise(Exercise exercise) {
-        // 使用synchronized确保线程安全
-        synchronized (this) {
-            // 先尝试根据名称查找是否已存在
-            Optional<Exercise> existingExercise = exerciseRepository.findByName(exercise.getName());
+        String name = exercise.getName();
+        Long cachedId = exerciseIdsByName.get(name);
+        if (cachedId != null) {
+            return exerciseRepository.getReferenceById(cachedId);
+        }
+        
+        synchronized (nameLocks[Math.floorMod(name.hashCode(), NAME_LOCK_STRIPES)]) {
+            cachedId = exerciseIdsByName.get(name);
+            if (cachedId != null) {
+                return exerciseRepository.getReferenceById(cachedId);
+            }
             
-            if (existingExercise.isPresent()) {
-                // 如果已存在，返回现有的运动项目
-                return existingExercise.get();
-            } else {
-                try {
-                    // 如果不存在，创建新的运动项目
-                    exercise.setCreatedAt(LocalDateTime.now());
-                    exercise.setUpdatedAt(LocalDateTime.now());
-                    return exerciseRepository.save(exercise);
-                } catch (DataIntegrityViolationException e) {
-                    // 如果保存时发生唯一约束冲突，再次查询并返回已存在的记录
-                    Optional<Exercise> retryExercise = exerciseRepository.findByName(exercise.getName());
-                    if (retryExercise.isPresent()) {
-                        return retryExercise.get();
-                    }
-                    throw e; // 如果仍然找不到，重新抛出异常
+            // 截断到列精度（DATETIME(6)），读回后据此判断该行是否由本次插入
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            exerciseRepository.insertIfAbsent(
+                    name,
+                    exercise.getDescription(),
+                    exercise.getInstructions(),
+                    exercise.getCategory() != null ? exercise.getCategory().name() : null,
+                    exercise.getPrimaryMuscleGroup() != null ? exercise.getPrimaryMuscleGroup().name() : null,
+                    exercise.getEquipmentNeeded() != null ? exercise.getEquipmentNeeded().name() : null,
+                    exercise.getDifficultyLevel() != null ? exercise.getDifficultyLevel().name() : null,
+                    exercise.getCaloriesPerMinute(),
+                    exercise.getImageUrl(),
+                    exercise.getVideoUrl(),
+                    now,
+                    exercise.getIsActive() == null || exercise.getIsActive());
+            
+            // 名称已存在时该行可能由快照之后提交的事务写入，一致性读看不到，必须用加锁读
+            Exercise resolved = exerciseRepository.findByNameForShare(name)
+                    .orElseThrow(() -> new IllegalStateException("运动项目写入后未找到: " + name));
+            
+            if (now.equals(resolved.getCreatedAt())) {
+                // 新插入的运动项目补充次要肌群，并在事务提交后再缓存ID，避免回滚后缓存失效ID
+                if (exercise.getSecondaryMuscleGroups() != null && !exercise.getSecondaryMuscleGroups().isEmpty()) {
+                    resolved.getSecondaryMuscleGroups().addAll(exercise.getSecondaryMuscleGroups());
                 }
+                cacheExerciseIdAfterCommit(name, resolved.getId());
+                exerciseCacheService.evictAfterCommit(null);
+                eventPublisher.publishEvent(new ExerciseCatalogChangedEvent(resolved.getId(), false));
+                exerciseAutocompleteService.markCatalogChanged();
+            } else {
+                exerciseIdsByName.put(name, resolved.getId());
             }
+            return resolved;
+        }
+    }
+    
+    private static Object[] createNameLocks() {
+        Object[] locks = new Object[NAME_LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+    
+    /**
+     * 事务提交后再写入名称缓存
+     */
+    private void cacheExerciseIdAfterCommit(String name, Long id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    exerciseIdsByName.put(name, id);
+                }
+            });
+        } else {
+            exerciseIdsByName.put(name, id);
         }
     }
     
     /**
      * 根据名称查找运动项目
      */
+    @Transactional(readOnly = true)
     public Optional<Exercise> findByName(String name) {
         return exerciseRepository.findByName(name);
     }
@@ -147,13 +249,62 @@ public class ExerciseService {
     /**
      * 根据主要肌肉群查找运动
      */
+    @Transactional(readOnly = true)
     public List<Exercise> findByPrimaryMuscleGroup(Exercise.MuscleGroup muscleGroup) {
         return exerciseRepository.findByPrimaryMuscleGroup(muscleGroup);
     }
     
+    /**
+     * 获取运动库列表（投影，只读事务）
+     */
+    @Transactional(readOnly = true)
+    public List<ExerciseSummary> getExerciseSummaries() {
+        return exerciseRepository.findAllSummaries();
+    }
+    
+    /**
+     * 根据分类获取运动库列表
+     */
+    @Transactional(readOnly = true)
+    public List<ExerciseSummary> findSummariesByCategory(Exercise.ExerciseCategory category) {
+        return exerciseRepository.findSummariesByCategory(category);
+    }
+    
+    /**
+     * 根据名称关键字获取运动库列表
+     */
+    @Transactional(readOnly = true)
+    public List<ExerciseSummary> searchExerciseSummaries(String keyword) {
+        return exerciseRepository.searchSummaries(keyword);
+    }
+    
+    /**
+     * 根据肌群显示名称获取运动库列表
+     */
+    @Transactional(readOnly = true)
+    public List<ExerciseSummary> findSummariesByMuscleGroupDisplayName(String displayName) {
+        for (Exercise.MuscleGroup muscleGroup : Exercise.MuscleGroup.values()) {
+            if (muscleGroup.getDisplayName().equals(displayName)) {
+                return exerciseRepository.findSummariesByPrimaryMuscleGroup(muscleGroup);
+            }
+        }
+        return getExerciseSummaries(); // 如果找不到匹配的肌群，返回所有运动
+    }
+    
+    /**
+     * 获取运动详情（含次要肌群）
+     */
+    @Transactional(readOnly = true)
+    public Optional<Exercise> findDetailById(Long id) {
+        Optional<Exercise> exercise = exerciseRepository.findById(id);
+        exercise.ifPresent(e -> e.getSecondaryMuscleGroups().size());
+        return exercise;
+    }
+    
     /**
      * 根据肌群显示名称查找运动
      */
+    @Transactional(readOnly = true)
     public List<Exercise> findByMuscleGroupDisplayName(String displayName) {
         for (Exercise.MuscleGroup muscleGroup : Exercise.MuscleGroup.values()) {
             if (muscleGroup.getDisplayName().equals(displayName)) {
@@ -1,12 +1,21 @@
 package com.fitai.service;
 
+import com.fitai.config.sharding.GlobalData;
 import com.fitai.model.User;
 import com.fitai.repository.UserRepository;
-import com.fitai.service.observer.ProgressSubject;
+import com.fitai.service.activity.UserActivityService;
+import com.fitai.service.observer.ProgressOutbox;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -14,8 +23,12 @@ import java.util.Optional;
 
 @Service
 @Transactional
+@GlobalData
+@Slf4j
 public class UserService {
     
+    private static final int BMI_BACKFILL_BATCH_SIZE = 1000;
+    
     @Autowired
     private UserRepository userRepository;
     
@@ -23,7 +36,13 @@ public class UserService {
     private PasswordEncoder passwordEncoder;
     
     @Autowired
-    private ProgressSubject progressSubject;
+    private ProgressOutbox progressOutbox;
+    
+    @Autowired
+    private UserActivityService userActivityService;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
     
     /**
      * 用户注册
@@ -44,7 +63,9 @@ public class UserService {
         user.setCreatedAt(LocalDateTime.now());
         user.setUpdatedAt(LocalDateTime.now());
         
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        userActivityService.recordSignup(savedUser.getId());
+        return savedUser;
     }
     
     /**
@@ -53,6 +74,7 @@ public class UserService {
     public Optional<User> authenticateUser(String username, String password) {
         Optional<User> userOpt = userRepository.findByUsername(username);
         if (userOpt.isPresent() && passwordEncoder.matches(password, userOpt.get().getPassword())) {
+            userActivityService.recordActivity(userOpt.get().getId());
             return userOpt;
         }
         return Optional.empty();
@@ -74,6 +96,7 @@ public class UserService {
         if (userOpt.isPresent()) {
             User user = userOpt.get();
             double oldWeight = user.getWeight();
+            Integer oldWorkoutDays = user.getWorkoutDays();
             
             user.setWeight(currentWeight);
             user.setWorkoutDays(workoutDays);
@@ -81,22 +104,32 @@ public class UserService {
             
             userRepository.save(user);
             
-            // 通知观察者进度变化 - 分别通知体重和训练天数变化
-            progressSubject.notifyProgressUpdated(user, "weight", oldWeight, currentWeight);
-            progressSubject.notifyProgressUpdated(user, "workoutDays", user.getWorkoutDays(), workoutDays);
+            // 进度变化写入发件箱（与用户数据同一事务），提交后由中继通知观察者 - 分别通知体重和训练天数变化
+            progressOutbox.progressUpdated(user, "weight", oldWeight, currentWeight);
+            progressOutbox.progressUpdated(user, "workoutDays", oldWorkoutDays, workoutDays);
         }
     }
     
     /**
      * 根据ID查找用户
      */
+    @Transactional(readOnly = true)
     public Optional<User> findById(Long id) {
         return userRepository.findById(id);
     }
     
+    /**
+     * 按ID批量查找用户（不保证顺序）
+     */
+    @Transactional(readOnly = true)
+    public List<User> findAllById(List<Long> ids) {
+        return userRepository.findAllById(ids);
+    }
+    
     /**
      * 根据用户名查找用户
      */
+    @Transactional(readOnly = true)
     public Optional<User> findByUsername(String username) {
         return userRepository.findByUsername(username);
     }
@@ -104,6 +137,7 @@ public class UserService {
     /**
      * 获取所有用户
      */
+    @Transactional(readOnly = true)
     public List<User> getAllUsers() {
         return userRepository.findAll();
     }
@@ -115,6 +149,38 @@ public class UserService {
         userRepository.deleteById(id);
     }
     
+    /**
+     * 启动时回填历史用户的BMI列
+     * 按ID分批，每批一个短事务；回填完成后只剩一次走 bmi 索引的空查询
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void backfillBmi() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long afterId = 0;
+        int updated = 0;
+        while (true) {
+            List<Long> ids = userRepository.findIdsMissingBmi(afterId, PageRequest.of(0, BMI_BACKFILL_BATCH_SIZE));
+            if (ids.isEmpty()) {
+                break;
+            }
+            Integer count = transactionTemplate.execute(status -> userRepository.backfillBmi(ids));
+            updated += count != null ? count : 0;
+            afterId = ids.get(ids.size() - 1);
+        }
+        if (updated > 0) {
+            log.info("已为 {} 个用户回填BMI", updated);
+        }
+    }
+    
+    /**
+     * 根据BMI范围查找用户
+     */
+    @Transactional(readOnly = true)
+    public List<User> findByBmiRange(double minBmi, double maxBmi) {
+        return userRepository.findByBmiRange(minBmi, maxBmi);
+    }
+    
     /**
      * 计算用户BMI并更新健身建议
      */
@@ -122,7 +188,7 @@ public class UserService {
         Optional<User> userOpt = userRepository.findById(userId);
         if (userOpt.isPresent()) {
             User user = userOpt.get();
-            double bmi = user.calculateBMI();
+            double bmi = user.getCurrentBMI();
             
             String advice;
             if (bmi < 18.5) {
@@ -1,15 +1,22 @@
 package com.fitai.service;
 
+import com.fitai.config.sharding.ShardKey;
 import com.fitai.model.User;
 import com.fitai.model.WorkoutPlan;
 import com.fitai.model.Exercise;
+import com.fitai.model.WorkoutExercise;
+import com.fitai.repository.WorkoutExerciseBatchRepository;
 import com.fitai.repository.WorkoutPlanRepository;
+import com.fitai.repository.projection.WorkoutPlanSummary;
 import com.fitai.repository.ExerciseRepository;
 import com.fitai.service.factory.WorkoutPlanFactory;
 import com.fitai.service.strategy.WorkoutStrategy;
 import com.fitai.service.strategy.StrengthTrainingStrategy;
 import com.fitai.service.strategy.CardioTrainingStrategy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,12 +32,21 @@ public class WorkoutPlanService {
     @Autowired
     private WorkoutPlanRepository workoutPlanRepository;
     
+    @Autowired
+    private WorkoutExerciseBatchRepository workoutExerciseBatchRepository;
+    
     @Autowired
     private ExerciseRepository exerciseRepository;
     
+    @PersistenceContext
+    private EntityManager entityManager;
+    
     @Autowired
     private WorkoutPlanFactory workoutPlanFactory;
     
+    @Autowired
+    private ExerciseAutocompleteService exerciseAutocompleteService;
+    
     @Autowired
     private StrengthTrainingStrategy strengthStrategy;
     
@@ -40,7 +56,7 @@ public class WorkoutPlanService {
     /**
      * 为用户创建个性化训练计划
      */
-    public WorkoutPlan createPersonalizedPlan(User user, String planType) {
+    public WorkoutPlan createPersonalizedPlan(@ShardKey User user, String planType) {
         // 创建WorkoutPlanRequest
         WorkoutPlanFactory.WorkoutPlanRequest request = WorkoutPlanFactory.WorkoutPlanRequest.builder()
                 .planType(planType)
@@ -65,7 +81,25 @@ public class WorkoutPlanService {
         basePlan.setCreatedAt(LocalDateTime.now());
         basePlan.setUpdatedAt(LocalDateTime.now());
         
-        return workoutPlanRepository.save(basePlan);
+        // 计划本身单独插入以获得ID，动作列表走JDBC批量写入，不再逐行往返
+        List<WorkoutExercise> workoutExercises = basePlan.getExercises();
+        basePlan.setExercises(new ArrayList<>());
+        basePlan.setIsActive(false);
+        WorkoutPlan savedPlan = workoutPlanRepository.save(basePlan);
+        workoutExerciseBatchRepository.batchInsert(savedPlan.getId(), workoutExercises);
+        
+        // 脱离持久化上下文后再挂回动作列表，避免提交时级联重复插入
+        entityManager.flush();
+        entityManager.detach(savedPlan);
+        savedPlan.setExercises(workoutExercises);
+        
+        // 新计划作为用户当前的活跃计划
+        activatePlan(savedPlan.getId(), user.getId());
+        savedPlan.setIsActive(true);
+        
+        // 运动使用次数变化，刷新自动补全排序
+        exerciseAutocompleteService.markCatalogChanged();
+        return savedPlan;
     }
     
     /**
@@ -87,39 +121,42 @@ public class WorkoutPlanService {
     /**
      * 获取用户的所有训练计划
      */
-    public List<WorkoutPlan> getUserWorkoutPlans(Long userId) {
+    @Transactional(readOnly = true)
+    public List<WorkoutPlan> getUserWorkoutPlans(@ShardKey Long userId) {
         return workoutPlanRepository.findByUserIdOrderByCreatedAtDesc(userId);
     }
     
     /**
-     * 获取用户当前活跃的训练计划
+     * 获取用户训练计划列表（投影，只读事务）
      */
-    public Optional<WorkoutPlan> getUserActivePlan(Long userId) {
-        return workoutPlanRepository.findByUserIdAndIsActiveTrue(userId);
+    @Transactional(readOnly = true)
+    public List<WorkoutPlanSummary> getUserPlanSummaries(@ShardKey Long userId) {
+        return workoutPlanRepository.findSummariesByUserId(userId);
     }
     
     /**
-     * 激活训练计划
+     * 获取用户当前活跃的训练计划
      */
+    @Transactional(readOnly = true)
+    public Optional<WorkoutPlan> getUserActivePlan(@ShardKey Long userId) {
+        return workoutPlanRepository.findByUserIdAndIsActiveTrue(userId);
+    }
+    
     /**
      * 激活训练计划
+     * 两条批量UPDATE在同一事务内完成：先停用其他活跃计划，再激活目标计划，
+     * 与计划数量无关；并发激活由 active_owner_id 唯一索引兜底
      */
-    public void activatePlan(Long planId, Long userId) {
-        // 先将用户所有计划设为非活跃
-        List<WorkoutPlan> userPlans = workoutPlanRepository.findByUserId(userId);
-        userPlans.forEach(plan -> {
-            plan.setIsActive(false);  // 修改：setActive -> setIsActive
-            plan.setUpdatedAt(LocalDateTime.now());
-        });
-        workoutPlanRepository.saveAll(userPlans);
-        
-        // 激活指定计划
-        Optional<WorkoutPlan> planOpt = workoutPlanRepository.findById(planId);
-        if (planOpt.isPresent()) {
-            WorkoutPlan plan = planOpt.get();
-            plan.setIsActive(true);  // 修改：setActive -> setIsActive
-            plan.setUpdatedAt(LocalDateTime.now());
-            workoutPlanRepository.save(plan);
+    public void activatePlan(Long planId, @ShardKey Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            workoutPlanRepository.deactivateOtherPlans(userId, planId, now);
+            if (workoutPlanRepository.activateUserPlan(planId, userId, now) == 0) {
+                throw new IllegalArgumentException("训练计划不存在或不属于当前用户");
+            }
+        } catch (DataIntegrityViolationException e) {
+            // 同一用户的另一次激活先提交，唯一索引拒绝了第二个活跃计划
+            throw new IllegalArgumentException("训练计划正在被同时激活，请稍后重试", e);
         }
     }
     
@@ -141,6 +178,7 @@ public class WorkoutPlanService {
     /**
      * 根据难度和类型推荐训练计划
      */
+    @Transactional(readOnly = true)
     public List<WorkoutPlan> getRecommendedPlans(String difficulty, String planType) {
         // 将字符串参数转换为枚举类型
         WorkoutPlan.DifficultyLevel difficultyEnum = WorkoutPlan.DifficultyLevel.valueOf(difficulty.toUpperCase());
@@ -151,6 +189,7 @@ public class WorkoutPlanService {
     /**
      * 获取热门训练计划
      */
+    @Transactional(readOnly = true)
     public List<WorkoutPlan> getPopularPlans(int limit) {
         return workoutPlanRepository.findTop10ByOrderByCreatedAtDesc();
     }
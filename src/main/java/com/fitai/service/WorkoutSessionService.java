@@ -0,0 +1,130 @@
+package com.fitai.service;
+
+import com.fitai.config.sharding.ShardKey;
+import com.fitai.model.User;
+import com.fitai.model.WorkoutPlan;
+import com.fitai.model.WorkoutSession;
+import com.fitai.repository.WorkoutPlanRepository;
+import com.fitai.repository.WorkoutSessionRepository;
+import com.fitai.service.counter.WorkoutPlanCounterService;
+import com.fitai.service.observer.ProgressOutbox;
+import com.fitai.service.observer.WorkoutProgressSubject;
+import com.fitai.service.session.ActiveSessionRegistry;
+import com.fitai.service.session.WorkoutSessionTransition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * 训练会话服务
+ * 会话的创建和结束（完成、取消）与训练计划上的会话计数器在同一事务中更新；
+ * 暂停和继续只修改 ActiveSessionRegistry 中的内存状态，不开启事务，由注册表批量写回。
+ * 各生命周期事件在事务提交后经 WorkoutProgressSubject 异步通知观察者；
+ * 训练开始和完成另写入 ProgressOutbox，经中继可靠投递给成就、排行榜等进度观察者
+ */
+@Service
+@Transactional
+public class WorkoutSessionService {
+    
+    @Autowired
+    private WorkoutSessionRepository workoutSessionRepository;
+    
+    @Autowired
+    private WorkoutPlanRepository workoutPlanRepository;
+    
+    @Autowired
+    private WorkoutPlanCounterService workoutPlanCounterService;
+    
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+    
+    @Autowired
+    private WorkoutProgressSubject workoutProgressSubject;
+    
+    @Autowired
+    private ProgressOutbox progressOutbox;
+    
+    /**
+     * 按训练计划开始一次训练会话
+     */
+    public WorkoutSession startSession(@ShardKey User user, Long planId) {
+        WorkoutPlan plan = workoutPlanRepository.findById(planId)
+                .orElseThrow(() -> new RuntimeException("训练计划不存在"));
+        if (!plan.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("无权访问此训练计划");
+        }
+        
+        WorkoutSession session = new WorkoutSession();
+        session.setUser(user);
+        session.setWorkoutPlan(plan);
+        session.setSessionName(plan.getName());
+        session.setStartTime(LocalDateTime.now());
+        session.setStatus(WorkoutSession.SessionStatus.IN_PROGRESS);
+        WorkoutSession saved = workoutSessionRepository.save(session);
+        
+        workoutPlanCounterService.onSessionCreated(planId);
+        progressOutbox.workoutStarted(user, saved);
+        workoutProgressSubject.notifyWorkoutStarted(activeSessionRegistry.register(saved, user));
+        return saved;
+    }
+    
+    /**
+     * 暂停训练会话
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public WorkoutSession pauseSession(Long sessionId, @ShardKey User user) {
+        WorkoutSession paused = activeSessionRegistry.apply(sessionId, user, WorkoutSessionTransition.PAUSE);
+        workoutProgressSubject.notifyWorkoutPaused(paused);
+        return paused;
+    }
+    
+    /**
+     * 继续已暂停的训练会话，暂停的时间不计入训练时长
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public WorkoutSession resumeSession(Long sessionId, @ShardKey User user) {
+        WorkoutSession resumed = activeSessionRegistry.apply(sessionId, user, WorkoutSessionTransition.RESUME);
+        workoutProgressSubject.notifyWorkoutResumed(resumed);
+        return resumed;
+    }
+    
+    /**
+     * 完成训练会话，已完成或已取消的会话不重复计数
+     */
+    public WorkoutSession completeSession(Long sessionId, @ShardKey User user) {
+        WorkoutSession completed = close(sessionId, user, WorkoutSessionTransition.COMPLETE);
+        if (completed.getWorkoutPlan() != null) {
+            workoutPlanCounterService.onSessionCompleted(completed.getWorkoutPlan().getId(), completed.getEndTime());
+        }
+        progressOutbox.workoutCompleted(user, completed);
+        workoutProgressSubject.notifyWorkoutCompleted(completed);
+        return completed;
+    }
+    
+    /**
+     * 取消训练会话
+     */
+    public WorkoutSession cancelSession(Long sessionId, @ShardKey User user) {
+        WorkoutSession cancelled = close(sessionId, user, WorkoutSessionTransition.CANCEL);
+        workoutProgressSubject.notifyWorkoutCancelled(cancelled);
+        return cancelled;
+    }
+    
+    /**
+     * 结束会话：以当前状态为条件更新数据库，并发结束同一会话时只有一个请求会成功
+     */
+    private WorkoutSession close(Long sessionId, User user, WorkoutSessionTransition transition) {
+        LocalDateTime endTime = LocalDateTime.now();
+        WorkoutSession closed = activeSessionRegistry.close(sessionId, user, transition, endTime);
+        if (workoutSessionRepository.transitionStatus(sessionId, user.getId(), transition.getFromStatuses(),
+                transition.getTarget(), endTime, closed.getPausedSeconds(), closed.getDurationMinutes()) == 0) {
+            // 会话已在其他节点上结束
+            activeSessionRegistry.evict(sessionId);
+            throw new IllegalStateException("训练会话不存在或已结束");
+        }
+        return closed;
+    }
+}
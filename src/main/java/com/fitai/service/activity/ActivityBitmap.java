@@ -0,0 +1,455 @@
+package com.fitai.service.activity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * 压缩位图（Roaring 结构）
+ * 按用户ID高16位分块，每块根据基数选择有序数组容器或定长位图容器，
+ * 稀疏日期占用极少内存，稠密日期退化为每块8KB的位图
+ * 非线程安全，由调用方负责同步
+ */
+public final class ActivityBitmap {
+
+    // 数组容器上限，超过后转换为位图容器
+    private static final int ARRAY_CONTAINER_MAX = 4096;
+
+    private static final byte ARRAY_CONTAINER = 1;
+    private static final byte BITMAP_CONTAINER = 2;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public ActivityBitmap() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+    }
+
+    private ActivityBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /**
+     * 添加用户ID
+     * @return 是否为新增
+     */
+    public boolean add(int value) {
+        char high = (char) (value >>> 16);
+        char low = (char) value;
+        int index = Arrays.binarySearch(keys, 0, size, high);
+        if (index >= 0) {
+            Container container = containers[index];
+            int before = container.cardinality();
+            containers[index] = container.add(low);
+            return containers[index].cardinality() != before;
+        }
+        insertContainer(-index - 1, high, new ArrayContainer().add(low));
+        return true;
+    }
+
+    public boolean contains(int value) {
+        int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    public long cardinality() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public ActivityBitmap copy() {
+        Container[] copied = new Container[containers.length];
+        for (int i = 0; i < size; i++) {
+            copied[i] = containers[i].copy();
+        }
+        return new ActivityBitmap(Arrays.copyOf(keys, keys.length), copied, size);
+    }
+
+    /**
+     * 原地求并集
+     */
+    public void orInPlace(ActivityBitmap other) {
+        for (int j = 0; j < other.size; j++) {
+            char key = other.keys[j];
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index >= 0) {
+                containers[index] = containers[index].or(other.containers[j]);
+            } else {
+                insertContainer(-index - 1, key, other.containers[j].copy());
+            }
+        }
+    }
+
+    /**
+     * 求交集，返回新位图
+     */
+    public static ActivityBitmap and(ActivityBitmap a, ActivityBitmap b) {
+        ActivityBitmap result = new ActivityBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] == b.keys[j]) {
+                Container intersection = a.containers[i].and(b.containers[j]);
+                if (intersection.cardinality() > 0) {
+                    result.insertContainer(result.size, a.keys[i], intersection);
+                }
+                i++;
+                j++;
+            } else if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 展开为升序的用户ID数组
+     */
+    public int[] toArray() {
+        int[] result = new int[(int) cardinality()];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            offset = containers[i].fill(result, offset, keys[i] << 16);
+        }
+        return result;
+    }
+
+    public byte[] serialize() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeChar(keys[i]);
+                containers[i].write(out);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static ActivityBitmap deserialize(byte[] data) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            int size = in.readInt();
+            char[] keys = new char[Math.max(4, size)];
+            Container[] containers = new Container[keys.length];
+            for (int i = 0; i < size; i++) {
+                keys[i] = in.readChar();
+                byte type = in.readByte();
+                containers[i] = type == BITMAP_CONTAINER ? BitmapContainer.read(in) : ArrayContainer.read(in);
+            }
+            return new ActivityBitmap(keys, containers, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    /**
+     * 容器：存放同一高16位下的低16位
+     */
+    private abstract static class Container {
+
+        abstract Container add(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container or(Container other);
+
+        abstract Container and(Container other);
+
+        abstract Container copy();
+
+        abstract int fill(int[] target, int offset, int high);
+
+        abstract void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * 有序数组容器，适合稀疏块
+     */
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality >= ARRAY_CONTAINER_MAX) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_CONTAINER_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer that = (ArrayContainer) other;
+            char[] merged = new char[cardinality + that.cardinality];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < cardinality && j < that.cardinality) {
+                char a = values[i];
+                char b = that.values[j];
+                if (a == b) {
+                    merged[k++] = a;
+                    i++;
+                    j++;
+                } else if (a < b) {
+                    merged[k++] = a;
+                    i++;
+                } else {
+                    merged[k++] = b;
+                    j++;
+                }
+            }
+            while (i < cardinality) {
+                merged[k++] = values[i++];
+            }
+            while (j < that.cardinality) {
+                merged[k++] = that.values[j++];
+            }
+            ArrayContainer result = new ArrayContainer(merged, k);
+            return k > ARRAY_CONTAINER_MAX ? result.toBitmap() : result;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] common = new char[cardinality];
+            int k = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    common[k++] = values[i];
+                }
+            }
+            return new ArrayContainer(common, k);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(4, cardinality)), cardinality);
+        }
+
+        @Override
+        int fill(int[] target, int offset, int high) {
+            for (int i = 0; i < cardinality; i++) {
+                target[offset++] = high | values[i];
+            }
+            return offset;
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(ARRAY_CONTAINER);
+            out.writeChar(cardinality);
+            for (int i = 0; i < cardinality; i++) {
+                out.writeChar(values[i]);
+            }
+        }
+
+        static ArrayContainer read(DataInputStream in) throws IOException {
+            int cardinality = in.readChar();
+            char[] values = new char[Math.max(4, cardinality)];
+            for (int i = 0; i < cardinality; i++) {
+                values[i] = in.readChar();
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * 定长位图容器（65536位），适合稠密块
+     */
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            this(new long[1024], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] merged = Arrays.copyOf(words, words.length);
+            if (other instanceof BitmapContainer that) {
+                int count = 0;
+                for (int i = 0; i < merged.length; i++) {
+                    merged[i] |= that.words[i];
+                    count += Long.bitCount(merged[i]);
+                }
+                return new BitmapContainer(merged, count);
+            }
+            BitmapContainer result = new BitmapContainer(merged, cardinality);
+            ArrayContainer that = (ArrayContainer) other;
+            for (int i = 0; i < that.cardinality; i++) {
+                result.add(that.values[i]);
+            }
+            return result;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            BitmapContainer that = (BitmapContainer) other;
+            long[] common = new long[words.length];
+            int count = 0;
+            for (int i = 0; i < common.length; i++) {
+                common[i] = words[i] & that.words[i];
+                count += Long.bitCount(common[i]);
+            }
+            BitmapContainer result = new BitmapContainer(common, count);
+            return count <= ARRAY_CONTAINER_MAX ? result.toArrayContainer() : result;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(Arrays.copyOf(words, words.length), cardinality);
+        }
+
+        @Override
+        int fill(int[] target, int offset, int high) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    target[offset++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(BITMAP_CONTAINER);
+            out.writeInt(cardinality);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+
+        static BitmapContainer read(DataInputStream in) throws IOException {
+            int cardinality = in.readInt();
+            long[] words = new long[1024];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+
+        ArrayContainer toArrayContainer() {
+            char[] values = new char[Math.max(4, cardinality)];
+            int k = 0;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[k++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, k);
+        }
+    }
+}
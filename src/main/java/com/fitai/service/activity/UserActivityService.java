@@ -0,0 +1,259 @@
+package com.fitai.service.activity;
+
+import com.fitai.model.DailyActivitySnapshot;
+import com.fitai.model.DailyActivitySnapshot.ActivityMetric;
+import com.fitai.repository.DailyActivitySnapshotRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 用户活跃度统计服务
+ * 每天每种指标维护一个压缩位图（按用户ID置位），定期持久化为每日快照；
+ * 最近N天活跃、DAU/WAU/MAU、留存等统计全部通过位图并集/交集计算，不访问 users 表
+ */
+@Service
+@Slf4j
+public class UserActivityService {
+
+    @Autowired
+    private DailyActivitySnapshotRepository snapshotRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${fitai.coach.activity.retention-days:400}")
+    private int retentionDays;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<ActivityMetric, Map<LocalDate, DailyBitmap>> bitmaps = new EnumMap<>(ActivityMetric.class);
+
+    public UserActivityService() {
+        for (ActivityMetric metric : ActivityMetric.values()) {
+            bitmaps.put(metric, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * 记录用户今日活跃（登录、完成训练、更新进度）
+     */
+    public void recordActivity(Long userId) {
+        record(ActivityMetric.ACTIVE, LocalDate.now(), userId);
+    }
+
+    /**
+     * 记录用户在指定日期活跃
+     */
+    public void recordActivity(Long userId, LocalDate date) {
+        record(ActivityMetric.ACTIVE, date, userId);
+    }
+
+    /**
+     * 记录用户注册，用于留存分析
+     */
+    public void recordSignup(Long userId) {
+        record(ActivityMetric.SIGNUP, LocalDate.now(), userId);
+    }
+
+    /**
+     * 最近N天（含今天）的活跃用户数
+     */
+    public long countActiveUsers(int days) {
+        return unionOf(ActivityMetric.ACTIVE, LocalDate.now(), days).cardinality();
+    }
+
+    /**
+     * 最近N天（含今天）的活跃用户ID，升序
+     */
+    public long[] getActiveUserIds(int days) {
+        return Arrays.stream(unionOf(ActivityMetric.ACTIVE, LocalDate.now(), days).toArray())
+                .asLongStream()
+                .toArray();
+    }
+
+    /**
+     * 判断用户最近N天是否活跃
+     */
+    public boolean isActive(Long userId, int days) {
+        int id = Math.toIntExact(userId);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < days; i++) {
+            DailyBitmap day = bitmaps.get(ActivityMetric.ACTIVE).get(today.minusDays(i));
+            if (day != null) {
+                synchronized (day) {
+                    if (day.bitmap.contains(id)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    public long getDailyActiveUsers() {
+        return countActiveUsers(1);
+    }
+
+    public long getWeeklyActiveUsers() {
+        return countActiveUsers(7);
+    }
+
+    public long getMonthlyActiveUsers() {
+        return countActiveUsers(30);
+    }
+
+    /**
+     * 留存率：cohortDate 当天注册的用户中，在第 dayOffset 天仍然活跃的比例
+     */
+    public double getRetentionRate(LocalDate cohortDate, int dayOffset) {
+        ActivityBitmap cohort = snapshotOf(ActivityMetric.SIGNUP, cohortDate);
+        if (cohort.isEmpty()) {
+            return 0.0;
+        }
+        ActivityBitmap returned = snapshotOf(ActivityMetric.ACTIVE, cohortDate.plusDays(dayOffset));
+        return (double) ActivityBitmap.and(cohort, returned).cardinality() / cohort.cardinality();
+    }
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 启动时加载保留期内的每日快照
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSnapshots() {
+        LocalDate fromDate = LocalDate.now().minusDays(retentionDays);
+        int loaded = 0;
+        for (DailyActivitySnapshot snapshot : snapshotRepository.findByActivityDateGreaterThanEqual(fromDate)) {
+            DailyBitmap day = dayBitmap(snapshot.getMetric(), snapshot.getActivityDate());
+            ActivityBitmap stored = ActivityBitmap.deserialize(snapshot.getBitmap());
+            synchronized (day) {
+                day.bitmap.orInPlace(stored);
+            }
+            loaded++;
+        }
+        log.info("已加载 {} 个每日活跃位图快照", loaded);
+    }
+
+    /**
+     * 定期将有变化的位图写入每日快照，并清理超过保留期的内存位图
+     * 写入前锁定并合并已存储的快照，多个节点各自记录的活跃用户最终会汇总到同一快照
+     */
+    @Scheduled(fixedDelayString = "${fitai.coach.activity.snapshot-interval-ms:60000}")
+    public synchronized void persistSnapshots() {
+        LocalDate expireBefore = LocalDate.now().minusDays(retentionDays);
+        for (Map.Entry<ActivityMetric, Map<LocalDate, DailyBitmap>> metricEntry : bitmaps.entrySet()) {
+            ActivityMetric metric = metricEntry.getKey();
+            Map<LocalDate, DailyBitmap> days = metricEntry.getValue();
+            days.keySet().removeIf(date -> date.isBefore(expireBefore));
+
+            for (Map.Entry<LocalDate, DailyBitmap> dayEntry : days.entrySet()) {
+                DailyBitmap day = dayEntry.getValue();
+                if (!day.dirty) {
+                    continue;
+                }
+                try {
+                    persistDay(metric, dayEntry.getKey(), day);
+                } catch (Exception e) {
+                    day.dirty = true;
+                    log.error("保存活跃位图快照失败: {} {}", metric, dayEntry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        persistSnapshots();
+    }
+
+    /**
+     * 在一个事务中锁定当天快照行、与内存位图合并后写回；行不存在时先插入空行，
+     * 多个节点同时写同一天时依次合并，不会互相覆盖或撞唯一约束
+     */
+    private void persistDay(ActivityMetric metric, LocalDate date, DailyBitmap day) {
+        transactionTemplate.executeWithoutResult(status -> {
+            snapshotRepository.insertIfAbsent(date, metric.name(), LocalDateTime.now());
+            DailyActivitySnapshot snapshot = snapshotRepository.findForUpdate(date, metric)
+                    .orElseThrow(() -> new IllegalStateException("活跃位图快照写入后未找到: " + metric + " " + date));
+
+            ActivityBitmap merged;
+            synchronized (day) {
+                day.dirty = false;
+                if (snapshot.getBitmap() != null) {
+                    day.bitmap.orInPlace(ActivityBitmap.deserialize(snapshot.getBitmap()));
+                }
+                merged = day.bitmap.copy();
+            }
+
+            snapshot.setBitmap(merged.serialize());
+            snapshot.setCardinality(merged.cardinality());
+            snapshotRepository.save(snapshot);
+        });
+    }
+
+    private void record(ActivityMetric metric, LocalDate date, Long userId) {
+        if (userId == null) {
+            return;
+        }
+        DailyBitmap day = dayBitmap(metric, date);
+        synchronized (day) {
+            if (day.bitmap.add(Math.toIntExact(userId))) {
+                day.dirty = true;
+            }
+        }
+    }
+
+    private DailyBitmap dayBitmap(ActivityMetric metric, LocalDate date) {
+        return bitmaps.get(metric).computeIfAbsent(date, d -> new DailyBitmap());
+    }
+
+    private ActivityBitmap snapshotOf(ActivityMetric metric, LocalDate date) {
+        DailyBitmap day = bitmaps.get(metric).get(date);
+        if (day == null) {
+            return new ActivityBitmap();
+        }
+        synchronized (day) {
+            return day.bitmap.copy();
+        }
+    }
+
+    private ActivityBitmap unionOf(ActivityMetric metric, LocalDate endDate, int days) {
+        ActivityBitmap union = new ActivityBitmap();
+        for (int i = 0; i < days; i++) {
+            DailyBitmap day = bitmaps.get(metric).get(endDate.minusDays(i));
+            if (day != null) {
+                synchronized (day) {
+                    union.orInPlace(day.bitmap);
+                }
+            }
+        }
+        return union;
+    }
+
+    /**
+     * 单日位图及其脏标记
+     */
+    private static final class DailyBitmap {
+        private final ActivityBitmap bitmap = new ActivityBitmap();
+        private volatile boolean dirty;
+    }
+}
@@ -0,0 +1,284 @@
+package com.fitai.service.archive;
+
+import com.fitai.config.sharding.ShardRouter;
+import com.fitai.model.ArchivedPartition;
+import com.fitai.repository.ArchivedPartitionRepository;
+import com.fitai.repository.WorkoutArchiveCatalog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 训练历史归档服务
+ * 训练会话和训练记录按月划分，超过 hot-months 的冷数据按月搬迁到压缩归档表（MySQL 使用 ROW_FORMAT=COMPRESSED），
+ * 主表只保留近期数据；归档后的数据仍可通过 WorkoutSessionRepository / WorkoutExerciseRecordRepository 的区间查询读取
+ * 进行中、已暂停的会话不归档
+ * 分片模式下每个分片各自归档本分片的数据，分区目录统一登记在全局分片
+ */
+@Service
+@Slf4j
+public class WorkoutArchiveService {
+
+    private static final String SESSION_WINDOW =
+            "((start_time >= :from AND start_time < :to) OR (start_time IS NULL AND created_at >= :from AND created_at < :to)) " +
+            "AND status NOT IN ('IN_PROGRESS', 'PAUSED')";
+
+    private static final String SELECT_SESSION_IDS =
+            "SELECT id FROM " + WorkoutArchiveCatalog.SESSIONS_TABLE + " WHERE " + SESSION_WINDOW + " ORDER BY id LIMIT :limit";
+
+    private static final String ARCHIVE_RECORDS =
+            "INSERT INTO " + WorkoutArchiveCatalog.RECORDS_ARCHIVE_TABLE + " (id, user_id, workout_session_id, " +
+            "exercise_name, sets_completed, reps_completed, weight_used, duration_minutes, calories_burned, notes, " +
+            "completed_at, created_at, updated_at, partition_month, archived_at) " +
+            "SELECT r.id, s.user_id, r.workout_session_id, r.exercise_name, r.sets_completed, r.reps_completed, " +
+            "r.weight_used, r.duration_minutes, r.calories_burned, r.notes, r.completed_at, r.created_at, r.updated_at, " +
+            ":month, :now FROM " + WorkoutArchiveCatalog.RECORDS_TABLE + " r JOIN " + WorkoutArchiveCatalog.SESSIONS_TABLE +
+            " s ON s.id = r.workout_session_id WHERE r.workout_session_id IN (:ids)";
+
+    private static final String DELETE_RECORDS =
+            "DELETE FROM " + WorkoutArchiveCatalog.RECORDS_TABLE + " WHERE workout_session_id IN (:ids)";
+
+    private static final String ARCHIVE_SESSIONS =
+            "INSERT INTO " + WorkoutArchiveCatalog.SESSIONS_ARCHIVE_TABLE + " (id, user_id, workout_plan_id, " +
+            "session_name, start_time, end_time, status, paused_at, paused_seconds, version, duration_minutes, " +
+            "calories_burned, notes, created_at, updated_at, partition_month, archived_at) " +
+            "SELECT id, user_id, workout_plan_id, session_name, start_time, end_time, status, paused_at, paused_seconds, " +
+            "version, duration_minutes, calories_burned, notes, created_at, updated_at, :month, :now FROM " +
+            WorkoutArchiveCatalog.SESSIONS_TABLE +
+            " WHERE id IN (:ids)";
+
+    private static final String DELETE_SESSIONS =
+            "DELETE FROM " + WorkoutArchiveCatalog.SESSIONS_TABLE + " WHERE id IN (:ids)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    private ArchivedPartitionRepository archivedPartitionRepository;
+
+    @Autowired
+    private WorkoutArchiveCatalog archiveCatalog;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${fitai.coach.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fitai.coach.archive.hot-months:6}")
+    private int hotMonths;
+
+    @Value("${fitai.coach.archive.max-months-per-run:3}")
+    private int maxMonthsPerRun;
+
+    @Value("${fitai.coach.archive.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * 启动时在每个分片上创建归档表
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createArchiveTables() {
+        shardRouter.forEachShard(shard -> createArchiveTables(jdbcTemplate));
+    }
+
+    /**
+     * 在指定数据源上创建归档表（离线的分片迁移工具也会调用）
+     */
+    public static void createArchiveTables(JdbcTemplate jdbcTemplate) {
+        boolean mysql = Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                connection.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql")));
+        String tableOptions = mysql ? " ENGINE=InnoDB ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8" : "";
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + WorkoutArchiveCatalog.SESSIONS_ARCHIVE_TABLE + " (" +
+                "id BIGINT NOT NULL PRIMARY KEY, " +
+                "user_id BIGINT NOT NULL, " +
+                "workout_plan_id BIGINT, " +
+                "session_name VARCHAR(200), " +
+                "start_time DATETIME(6), " +
+                "end_time DATETIME(6), " +
+                "status VARCHAR(20), " +
+                "paused_at DATETIME(6), " +
+                "paused_seconds BIGINT NOT NULL DEFAULT 0, " +
+                "version BIGINT NOT NULL DEFAULT 0, " +
+                "duration_minutes INT, " +
+                "calories_burned DOUBLE, " +
+                "notes TEXT, " +
+                "created_at DATETIME(6), " +
+                "updated_at DATETIME(6), " +
+                "partition_month INT NOT NULL, " +
+                "archived_at DATETIME(6), " +
+                "INDEX idx_sessions_archive_user_start (user_id, start_time)" +
+                ")" + tableOptions);
+        // 早期创建的会话归档表缺少暂停和版本列
+        addMissingColumns(jdbcTemplate, WorkoutArchiveCatalog.SESSIONS_ARCHIVE_TABLE, Map.of(
+                "paused_at", "DATETIME(6)",
+                "paused_seconds", "BIGINT NOT NULL DEFAULT 0",
+                "version", "BIGINT NOT NULL DEFAULT 0"));
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + WorkoutArchiveCatalog.RECORDS_ARCHIVE_TABLE + " (" +
+                "id BIGINT NOT NULL PRIMARY KEY, " +
+                "user_id BIGINT NOT NULL, " +
+                "workout_session_id BIGINT, " +
+                "exercise_name VARCHAR(255) NOT NULL, " +
+                "sets_completed INT, " +
+                "reps_completed INT, " +
+                "weight_used DOUBLE, " +
+                "duration_minutes INT, " +
+                "calories_burned INT, " +
+                "notes VARCHAR(255), " +
+                "completed_at DATETIME(6), " +
+                "created_at DATETIME(6), " +
+                "updated_at DATETIME(6), " +
+                "partition_month INT NOT NULL, " +
+                "archived_at DATETIME(6), " +
+                "INDEX idx_records_archive_user_completed (user_id, completed_at)" +
+                ")" + tableOptions);
+    }
+
+    /**
+     * 按结果集元数据补齐表中缺少的列（MySQL 不支持 ADD COLUMN IF NOT EXISTS）
+     */
+    private static void addMissingColumns(JdbcTemplate jdbcTemplate, String table, Map<String, String> columns) {
+        Set<String> existing = jdbcTemplate.query("SELECT * FROM " + table + " WHERE 1 = 0", resultSet -> {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            Set<String> names = new HashSet<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                names.add(metaData.getColumnLabel(i).toLowerCase());
+            }
+            return names;
+        });
+        columns.forEach((column, definition) -> {
+            if (!existing.contains(column)) {
+                log.info("归档表 {} 添加列 {}", table, column);
+                jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+            }
+        });
+    }
+
+    /**
+     * 定期归档冷分区，每次最多处理 max-months-per-run 个月
+     */
+    @Scheduled(cron = "${fitai.coach.archive.cron:0 30 3 * * *}")
+    public void archiveColdPartitions() {
+        if (!enabled) {
+            return;
+        }
+        shardRouter.forEachShard(shard -> archiveShard());
+    }
+
+    private void archiveShard() {
+        YearMonth cutoff = YearMonth.now().minusMonths(hotMonths);
+        Timestamp oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(COALESCE(start_time, created_at)) FROM " + WorkoutArchiveCatalog.SESSIONS_TABLE +
+                " WHERE status NOT IN ('IN_PROGRESS', 'PAUSED')", Timestamp.class);
+        if (oldest == null) {
+            return;
+        }
+
+        YearMonth month = YearMonth.from(oldest.toLocalDateTime());
+        for (int i = 0; i < maxMonthsPerRun && month.isBefore(cutoff); i++, month = month.plusMonths(1)) {
+            try {
+                archiveMonth(month);
+            } catch (RuntimeException e) {
+                log.error("归档 {} 的训练历史失败，下次继续", month, e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 搬迁一个月的训练会话及其训练记录，每批会话一个事务
+     */
+    public void archiveMonth(YearMonth month) {
+        // 先登记分区并扩展查询边界，搬迁期间读取方就会同时访问归档表（其他节点在下次刷新边界后生效）
+        int partitionMonth = WorkoutArchiveCatalog.toPartitionMonth(month);
+        ArchivedPartition sessionsPartition = shardRouter.callOnShard(ShardRouter.GLOBAL_SHARD,
+                () -> registerPartition(WorkoutArchiveCatalog.SESSIONS_TABLE, partitionMonth));
+        ArchivedPartition recordsPartition = shardRouter.callOnShard(ShardRouter.GLOBAL_SHARD,
+                () -> registerPartition(WorkoutArchiveCatalog.RECORDS_TABLE, partitionMonth));
+        archiveCatalog.extendTo(month);
+
+        MapSqlParameterSource window = new MapSqlParameterSource()
+                .addValue("from", month.atDay(1).atStartOfDay())
+                .addValue("to", month.plusMonths(1).atDay(1).atStartOfDay())
+                .addValue("limit", batchSize);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        long sessionCount = 0;
+        long recordCount = 0;
+        while (true) {
+            List<Long> ids = namedJdbcTemplate.queryForList(SELECT_SESSION_IDS, window, Long.class);
+            if (ids.isEmpty()) {
+                break;
+            }
+            MapSqlParameterSource batch = new MapSqlParameterSource()
+                    .addValue("ids", ids)
+                    .addValue("month", partitionMonth)
+                    .addValue("now", LocalDateTime.now());
+            int[] moved = transactionTemplate.execute(status -> {
+                int records = namedJdbcTemplate.update(ARCHIVE_RECORDS, batch);
+                namedJdbcTemplate.update(DELETE_RECORDS, batch);
+                int sessions = namedJdbcTemplate.update(ARCHIVE_SESSIONS, batch);
+                namedJdbcTemplate.update(DELETE_SESSIONS, batch);
+                return new int[]{sessions, records};
+            });
+            sessionCount += moved[0];
+            recordCount += moved[1];
+        }
+
+        long movedSessions = sessionCount;
+        long movedRecords = recordCount;
+        shardRouter.runOnShard(ShardRouter.GLOBAL_SHARD, () -> {
+            updateRowCount(sessionsPartition, movedSessions);
+            updateRowCount(recordsPartition, movedRecords);
+            archiveCatalog.refresh();
+        });
+        if (sessionCount > 0) {
+            log.info("已归档 {} 的训练历史: {} 个会话, {} 条训练记录", month, sessionCount, recordCount);
+        }
+    }
+
+    private ArchivedPartition registerPartition(String tableName, int partitionMonth) {
+        return archivedPartitionRepository.findByTableNameAndPartitionMonth(tableName, partitionMonth)
+                .orElseGet(() -> {
+                    ArchivedPartition partition = new ArchivedPartition();
+                    partition.setTableName(tableName);
+                    partition.setPartitionMonth(partitionMonth);
+                    partition.setRowCount(0L);
+                    partition.setArchivedAt(LocalDateTime.now());
+                    return archivedPartitionRepository.save(partition);
+                });
+    }
+
+    private void updateRowCount(ArchivedPartition partition, long moved) {
+        partition.setRowCount(partition.getRowCount() + moved);
+        partition.setArchivedAt(LocalDateTime.now());
+        archivedPartitionRepository.save(partition);
+    }
+}
@@ -0,0 +1,114 @@
+package com.fitai.service.cache;
+
+import com.fitai.model.Exercise;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 运动库二级缓存管理
+ * 负责运动目录变更后的显式失效，以及各缓存区域命中率统计的导出
+ */
+@Service
+@Slf4j
+public class ExerciseCacheService {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * 事务提交后失效指定运动的实体、次要肌群集合以及运动查询缓存
+     * @param exerciseId 运动ID，为 null 时只失效查询缓存（新增运动）
+     */
+    public void evictAfterCommit(Long exerciseId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(exerciseId);
+                }
+            });
+        } else {
+            evict(exerciseId);
+        }
+    }
+
+    private void evict(Long exerciseId) {
+        org.hibernate.Cache cache = sessionFactory().getCache();
+        if (exerciseId != null) {
+            cache.evictEntityData(Exercise.class, exerciseId);
+            cache.evictCollectionData(Exercise.class.getName() + ".secondaryMuscleGroups", exerciseId);
+        }
+        cache.evictQueryRegion(Exercise.QUERY_CACHE_REGION);
+    }
+
+    /**
+     * 获取运动库各缓存区域的命中统计
+     */
+    public Map<String, Object> getStatistics() {
+        Statistics statistics = sessionFactory().getStatistics();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        result.put(Exercise.CACHE_REGION, regionStatistics(statistics.getDomainDataRegionStatistics(Exercise.CACHE_REGION)));
+        result.put(Exercise.SECONDARY_MUSCLES_CACHE_REGION,
+                regionStatistics(statistics.getDomainDataRegionStatistics(Exercise.SECONDARY_MUSCLES_CACHE_REGION)));
+        result.put(Exercise.QUERY_CACHE_REGION, regionStatistics(statistics.getQueryRegionStatistics(Exercise.QUERY_CACHE_REGION)));
+        result.put("secondLevelHitRatio", hitRatio(statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount()));
+        result.put("queryCacheHitRatio", hitRatio(statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount()));
+        return result;
+    }
+
+    /**
+     * 定期输出命中率，便于在日志中观察缓存效果
+     */
+    @Scheduled(fixedDelayString = "${fitai.coach.cache.stats-log-interval-ms:300000}",
+               initialDelayString = "${fitai.coach.cache.stats-log-interval-ms:300000}")
+    public void logStatistics() {
+        Statistics statistics = sessionFactory().getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            return;
+        }
+        log.info("运动库二级缓存命中率: 实体/集合 {}（命中 {}，未命中 {}），查询 {}（命中 {}，未命中 {}）",
+                formatRatio(hitRatio(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount())),
+                statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(),
+                formatRatio(hitRatio(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount())),
+                statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount());
+    }
+
+    private Map<String, Object> regionStatistics(CacheRegionStatistics region) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (region == null) {
+            return result;
+        }
+        result.put("hitCount", region.getHitCount());
+        result.put("missCount", region.getMissCount());
+        result.put("putCount", region.getPutCount());
+        result.put("hitRatio", hitRatio(region.getHitCount(), region.getMissCount()));
+        return result;
+    }
+
+    private static double hitRatio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    private static String formatRatio(double ratio) {
+        return String.format("%.1f%%", ratio * 100);
+    }
+
+    private SessionFactory sessionFactory() {
+        return entityManagerFactory.unwrap(SessionFactory.class);
+    }
+}
@@ -0,0 +1,191 @@
+package com.fitai.service.counter;
+
+import com.fitai.config.sharding.ShardRouter;
+import com.fitai.repository.WorkoutArchiveCatalog;
+import com.fitai.repository.WorkoutPlanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 训练计划会话计数器服务
+ * 计划上的 total_sessions / completed_sessions / last_completed_at 在会话状态变化的同一事务中原子更新，
+ * 计划卡片和统计页面直接读取计数器，不再加载训练会话；
+ * 定期对账任务按会话表（含归档表）重新统计并修正漂移
+ */
+@Service
+@Slf4j
+public class WorkoutPlanCounterService {
+
+    private static final String SELECT_PLAN_COUNTERS =
+            "SELECT id, total_sessions, completed_sessions, last_completed_at FROM workout_plans " +
+            "WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String SESSION_AGGREGATE =
+            "SELECT workout_plan_id, COUNT(*) AS total, " +
+            "SUM(CASE WHEN status = 'COMPLETED' THEN 1 ELSE 0 END) AS completed, " +
+            "MAX(CASE WHEN status = 'COMPLETED' THEN COALESCE(end_time, start_time) END) AS last_completed " +
+            "FROM %s WHERE workout_plan_id IN (:ids) GROUP BY workout_plan_id";
+
+    // 带旧值条件的更新：对账期间如有新会话改动了计数器，本次修正跳过，留给下一轮
+    private static final String REPAIR_COUNTERS =
+            "UPDATE workout_plans SET total_sessions = ?, completed_sessions = ?, last_completed_at = ? " +
+            "WHERE id = ? AND total_sessions = ? AND completed_sessions = ?";
+
+    @Autowired
+    private WorkoutPlanRepository workoutPlanRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    private WorkoutArchiveCatalog archiveCatalog;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${fitai.coach.counters.reconcile-batch-size:500}")
+    private int reconcileBatchSize;
+
+    /**
+     * 计划新建了一个训练会话，必须在会话写入的同一事务中调用
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onSessionCreated(Long planId) {
+        if (planId != null) {
+            workoutPlanRepository.incrementTotalSessions(planId);
+        }
+    }
+
+    /**
+     * 计划的一个训练会话完成，必须在会话状态更新的同一事务中调用
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onSessionCompleted(Long planId, LocalDateTime completedAt) {
+        if (planId != null) {
+            workoutPlanRepository.incrementCompletedSessions(planId, completedAt);
+        }
+    }
+
+    /**
+     * 对账：按计划ID分批，用会话表的实际统计修正计数器
+     * 先读计数器再统计会话，修正时以读到的旧值为条件，避免覆盖对账期间的并发增量
+     * 计划与其会话位于同一用户分片，分片模式下逐个分片对账
+     */
+    @Scheduled(cron = "${fitai.coach.counters.reconcile-cron:0 15 4 * * *}")
+    public void reconcile() {
+        shardRouter.forEachShard(shard -> reconcileShard(shard));
+    }
+
+    private void reconcileShard(int shard) {
+        long start = System.currentTimeMillis();
+        long lastId = 0;
+        int checked = 0;
+        int repaired = 0;
+        int skipped = 0;
+
+        while (true) {
+            List<PlanCounters> batch = jdbcTemplate.query(SELECT_PLAN_COUNTERS, (rs, rowNum) -> new PlanCounters(
+                    rs.getLong("id"),
+                    rs.getInt("total_sessions"),
+                    rs.getInt("completed_sessions"),
+                    toLocalDateTime(rs.getTimestamp("last_completed_at"))), lastId, reconcileBatchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            lastId = batch.get(batch.size() - 1).planId();
+            checked += batch.size();
+
+            try {
+                Map<Long, PlanCounters> actual = aggregateSessions(batch.stream().map(PlanCounters::planId).toList());
+                for (PlanCounters stored : batch) {
+                    PlanCounters expected = actual.getOrDefault(stored.planId(),
+                            new PlanCounters(stored.planId(), 0, 0, null));
+                    if (stored.matches(expected)) {
+                        continue;
+                    }
+                    int updated = jdbcTemplate.update(REPAIR_COUNTERS,
+                            expected.total(), expected.completed(), toTimestamp(expected.lastCompletedAt()),
+                            stored.planId(), stored.total(), stored.completed());
+                    if (updated > 0) {
+                        repaired++;
+                        log.warn("训练计划 {} 会话计数器漂移已修正: total {} -> {}, completed {} -> {}",
+                                stored.planId(), stored.total(), expected.total(), stored.completed(), expected.completed());
+                    } else {
+                        skipped++;
+                    }
+                }
+            } catch (Exception e) {
+                log.error("训练计划会话计数器对账失败, 批次截止ID: {}", lastId, e);
+            }
+        }
+
+        log.info("训练计划会话计数器对账完成(分片 {}): 检查 {} 个, 修正 {} 个, 并发跳过 {} 个, 耗时 {} ms",
+                shard, checked, repaired, skipped, System.currentTimeMillis() - start);
+    }
+
+    private Map<Long, PlanCounters> aggregateSessions(List<Long> planIds) {
+        Map<Long, PlanCounters> result = new HashMap<>();
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", planIds);
+        accumulate(result, String.format(SESSION_AGGREGATE, WorkoutArchiveCatalog.SESSIONS_TABLE), params);
+        // 没有任何归档时归档表可能尚未创建
+        if (!LocalDateTime.MIN.equals(archiveCatalog.getArchivedBefore())) {
+            accumulate(result, String.format(SESSION_AGGREGATE, WorkoutArchiveCatalog.SESSIONS_ARCHIVE_TABLE), params);
+        }
+        return result;
+    }
+
+    private void accumulate(Map<Long, PlanCounters> result, String sql, MapSqlParameterSource params) {
+        namedJdbcTemplate.query(sql, params, rs -> {
+            PlanCounters counters = new PlanCounters(
+                    rs.getLong("workout_plan_id"),
+                    rs.getInt("total"),
+                    rs.getInt("completed"),
+                    toLocalDateTime(rs.getTimestamp("last_completed")));
+            result.merge(counters.planId(), counters, PlanCounters::plus);
+        });
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime time) {
+        return time != null ? Timestamp.valueOf(time) : null;
+    }
+
+    /**
+     * 单个计划的计数器取值
+     */
+    private record PlanCounters(long planId, int total, int completed, LocalDateTime lastCompletedAt) {
+
+        PlanCounters plus(PlanCounters other) {
+            LocalDateTime last = lastCompletedAt == null ? other.lastCompletedAt
+                    : other.lastCompletedAt == null || lastCompletedAt.isAfter(other.lastCompletedAt) ? lastCompletedAt
+                    : other.lastCompletedAt;
+            return new PlanCounters(planId, total + other.total, completed + other.completed, last);
+        }
+
+        boolean matches(PlanCounters other) {
+            return total == other.total && completed == other.completed
+                    && Objects.equals(lastCompletedAt, other.lastCompletedAt);
+        }
+    }
+}
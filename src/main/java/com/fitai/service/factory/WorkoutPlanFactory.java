@@ -10,10 +10,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.stream.Collectors;
 
 /**
  * 训练计划工厂 - 工厂模式实现
@@ -64,21 +64,21 @@ public class WorkoutPlanFactory {
         List<Exercise> exercises = strategy.generateExercises(user, plan);
         
         // 保存Exercise对象并转换为WorkoutExercise
-        List<WorkoutExercise> workoutExercises = exercises.stream()
-            .map(exercise -> {
-                // 先检查是否已存在，如果存在则使用现有的，否则创建新的
-                Exercise savedExercise = exerciseService.createOrGetExercise(exercise);
-                
-                WorkoutExercise workoutExercise = new WorkoutExercise();
-                workoutExercise.setExercise(savedExercise);  // 使用保存后的Exercise
-                workoutExercise.setWorkoutPlan(plan);
-                // 设置默认值，可以根据需要调整
-                workoutExercise.setSets(3);
-                workoutExercise.setReps(12);
-                workoutExercise.setDurationSeconds(60);
-                return workoutExercise;
-            })
-            .collect(Collectors.toList());
+        List<WorkoutExercise> workoutExercises = new ArrayList<>(exercises.size());
+        for (Exercise exercise : exercises) {
+            // 先检查是否已存在，如果存在则使用现有的，否则创建新的
+            Exercise savedExercise = exerciseService.createOrGetExercise(exercise);
+            
+            WorkoutExercise workoutExercise = new WorkoutExercise();
+            workoutExercise.setExercise(savedExercise);  // 使用保存后的Exercise
+            workoutExercise.setWorkoutPlan(plan);
+            workoutExercise.setOrder(workoutExercises.size() + 1);  // 按生成顺序编号，批量写入时保持顺序
+            // 设置默认值，可以根据需要调整
+            workoutExercise.setSets(3);
+            workoutExercise.setReps(12);
+            workoutExercise.setDurationSeconds(60);
+            workoutExercises.add(workoutExercise);
+        }
             
         plan.setExercises(workoutExercises);
         
@@ -238,7 +238,7 @@ public class WorkoutPlanFactory {
      */
     private void optimizePlanParameters(WorkoutPlan plan, User user) {
         // 根据用户BMI调整训练强度
-        double bmi = user.calculateBMI();
+        double bmi = user.getCurrentBMI();
         if (bmi > 30) { // 肥胖用户
             // 增加有氧运动比例，降低高强度训练
             adjustForObeseUser(plan);
@@ -0,0 +1,18 @@
+package com.fitai.service.ingest;
+
+/**
+ * 写入队列中的一组训练记录
+ * sequence 为本节点日志序号，单调递增
+ */
+public record IngestedRecord(long sequence,
+                             long userId,
+                             long sessionId,
+                             String exerciseName,
+                             Integer setsCompleted,
+                             Integer repsCompleted,
+                             Double weightUsed,
+                             Integer durationMinutes,
+                             Integer caloriesBurned,
+                             String notes,
+                             long completedAtMillis) {
+}
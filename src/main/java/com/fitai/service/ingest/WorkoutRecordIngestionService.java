@@ -0,0 +1,407 @@
+package com.fitai.service.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fitai.config.sharding.ShardRouter;
+import com.fitai.model.IngestionCheckpoint;
+import com.fitai.repository.IngestionCheckpointRepository;
+import com.fitai.repository.WorkoutExerciseRecordBatchRepository;
+import com.fitai.service.timeseries.ExerciseRecordPoint;
+import com.fitai.service.timeseries.ExerciseRecordTimeSeriesService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 训练记录异步写入服务（write-behind）
+ * 请求线程把记录追加到本地日志并等待日志落盘（并发提交合并为一次 fsync）后放入内存队列返回；
+ * 后台线程按条数或时间攒批，用 JDBC 批处理写入数据库，并在同一事务中推进检查点。
+ * 队列满时提交方最多等待 offer-timeout-ms，超时则拒绝（背压）；
+ * 进程崩溃或掉电后，启动时重放日志中检查点之后的条目，已确认的记录不会丢失也不会重复写入。
+ * 分片模式下每批按用户所在分片拆分，各分片在自己的事务中推进自己的检查点
+ *
+ * 写入失败时：记录本身导致的错误（约束冲突等）把批次二分，直到定位到单条记录并转入死信文件；
+ * 连接、资源等其他错误以封顶的退避无限重试，期间队列积压由提交许可对调用方背压。死信记录同样推进检查点，
+ * 死信文件为 JSON Lines：{journal-dir}/{node-id}/dead-letter.jsonl，修复后可人工重新提交。
+ * 日志分段只清理到已写入数据库或死信文件的序号；死信文件写入失败时写入线程停止，日志保持完整，重启后重放
+ */
+@Service
+@Slf4j
+public class WorkoutRecordIngestionService {
+
+    private static final String DEAD_LETTER_FILE = "dead-letter.jsonl";
+
+    @Autowired
+    private WorkoutExerciseRecordBatchRepository batchRepository;
+
+    @Autowired
+    private IngestionCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private ExerciseRecordTimeSeriesService timeSeriesService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${fitai.coach.ingest.journal-dir:data/ingest-journal}")
+    private String journalDir;
+
+    @Value("${fitai.coach.ingest.node-id:default}")
+    private String nodeId;
+
+    @Value("${fitai.coach.ingest.capacity:10000}")
+    private int capacity;
+
+    @Value("${fitai.coach.ingest.batch-size:500}")
+    private int batchSize;
+
+    @Value("${fitai.coach.ingest.max-delay-ms:200}")
+    private long maxDelayMs;
+
+    @Value("${fitai.coach.ingest.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    @Value("${fitai.coach.ingest.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final LinkedBlockingQueue<IngestedRecord> queue = new LinkedBlockingQueue<>();
+
+    // 日志刷盘锁与已落盘的最大序号，同一时刻只有一个提交方执行 fsync，其余等待后直接复用结果
+    private final Object forceLock = new Object();
+    private volatile long durableSequence;
+
+    private Semaphore permits;
+    private WorkoutRecordJournal journal;
+    private Path deadLetterFile;
+    private TransactionTemplate transactionTemplate;
+    private Thread writer;
+    private volatile boolean running;
+
+    /**
+     * 启动时恢复日志并启动写入线程
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        long[] checkpoints = new long[shardRouter.getShardCount()];
+        long minCheckpoint = Long.MAX_VALUE;
+        for (int shard = 0; shard < checkpoints.length; shard++) {
+            IngestionCheckpoint checkpoint = shardRouter.callOnShard(shard, this::loadCheckpoint);
+            checkpoints[shard] = checkpoint.getLastSequence();
+            minCheckpoint = Math.min(minCheckpoint, checkpoints[shard]);
+        }
+
+        journal = new WorkoutRecordJournal(Paths.get(journalDir, nodeId), segmentBytes);
+        deadLetterFile = Paths.get(journalDir, nodeId, DEAD_LETTER_FILE);
+        // 从最小的检查点开始恢复，再跳过已经写入各自分片的条目
+        List<IngestedRecord> recovered = new ArrayList<>();
+        for (IngestedRecord record : journal.recover(minCheckpoint)) {
+            if (record.sequence() > checkpoints[shardRouter.shardFor(record.userId())]) {
+                recovered.add(record);
+            }
+        }
+        // 恢复的条目可能超过容量，许可数为负时新提交会等待其写完
+        permits = new Semaphore(capacity - recovered.size());
+        queue.addAll(recovered);
+        if (!recovered.isEmpty()) {
+            log.info("从写入日志恢复 {} 条未写入数据库的训练记录", recovered.size());
+        }
+
+        running = true;
+        writer = new Thread(this::runWriter, "workout-record-ingest");
+        writer.start();
+    }
+
+    private IngestionCheckpoint loadCheckpoint() {
+        return checkpointRepository.findById(nodeId).orElseGet(() -> {
+            IngestionCheckpoint created = new IngestionCheckpoint();
+            created.setNodeId(nodeId);
+            created.setLastSequence(0L);
+            created.setUpdatedAt(LocalDateTime.now());
+            return checkpointRepository.save(created);
+        });
+    }
+
+    /**
+     * 提交一组训练记录，写入本地日志并落盘后返回
+     * @return 日志序号
+     * @throws IllegalStateException 队列已满（背压）或日志写入失败
+     */
+    public long submit(Long userId, Long sessionId, String exerciseName, Integer setsCompleted,
+                       Integer repsCompleted, Double weightUsed, Integer durationMinutes,
+                       Integer caloriesBurned, String notes, LocalDateTime completedAt) {
+        if (!running) {
+            throw new IllegalStateException("训练记录写入服务已停止");
+        }
+        try {
+            if (!permits.tryAcquire(offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("训练记录写入繁忙，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("训练记录提交被中断", e);
+        }
+
+        LocalDateTime time = completedAt != null ? completedAt : LocalDateTime.now();
+        IngestedRecord record = new IngestedRecord(0, userId, sessionId, exerciseName, setsCompleted,
+                repsCompleted, weightUsed, durationMinutes, caloriesBurned, notes,
+                time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        IngestedRecord sequenced;
+        try {
+            // 日志追加与入队在同一把锁内，保证队列顺序与序号一致，检查点不会越过未入队的条目
+            synchronized (journal) {
+                sequenced = journal.append(record);
+                queue.add(sequenced);
+            }
+        } catch (IOException e) {
+            permits.release();
+            throw new IllegalStateException("训练记录写入日志失败", e);
+        }
+        try {
+            awaitDurable(sequenced.sequence());
+        } catch (IOException e) {
+            // 条目已入队，仍可能写入数据库；只是无法保证掉电不丢，按失败返回给客户端
+            throw new IllegalStateException("训练记录写入日志刷盘失败", e);
+        }
+        return sequenced.sequence();
+    }
+
+    /**
+     * 组提交：等待日志落盘到指定序号
+     * 持有刷盘锁的提交方把当前已追加的全部条目一次 fsync，排队的提交方拿到锁时通常已被覆盖
+     */
+    private void awaitDurable(long sequence) throws IOException {
+        synchronized (forceLock) {
+            if (durableSequence >= sequence) {
+                return;
+            }
+            long lastSequence;
+            synchronized (journal) {
+                lastSequence = journal.lastSequence();
+                journal.force();
+            }
+            durableSequence = lastSequence;
+        }
+    }
+
+    /**
+     * 当前排队等待写入数据库的记录数
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        synchronized (journal) {
+            journal.close();
+        }
+    }
+
+    private void runWriter() {
+        List<IngestedRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                IngestedRecord first = queue.poll(maxDelayMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    IngestedRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                if (!writeWithRetry(batch)) {
+                    // 未处理的记录和队列中其余记录都留在日志中，不再推进检查点，重启后重放
+                    running = false;
+                    log.error("训练记录写入线程停止，未写入的记录保留在写入日志中，重启后重放");
+                    return;
+                }
+                permits.release(batch.size());
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 写入一批记录，失败时退避重试，不丢弃已确认的记录
+     * 按分片拆分后逐组写入，已提交的分组不会因其他分组失败而重复写入
+     * @return 全部记录都已写入数据库或死信文件；否则不清理日志分段
+     */
+    private boolean writeWithRetry(List<IngestedRecord> batch) throws InterruptedException {
+        Map<Integer, List<IngestedRecord>> groups = new LinkedHashMap<>();
+        for (IngestedRecord record : batch) {
+            groups.computeIfAbsent(shardRouter.shardFor(record.userId()), shard -> new ArrayList<>()).add(record);
+        }
+        for (Map.Entry<Integer, List<IngestedRecord>> group : groups.entrySet()) {
+            if (!writeShardWithRetry(group.getKey(), group.getValue())) {
+                return false;
+            }
+        }
+
+        try {
+            synchronized (journal) {
+                journal.purge(batch.get(batch.size() - 1).sequence());
+            }
+        } catch (IOException e) {
+            log.error("清理写入日志分段失败", e);
+        }
+        return true;
+    }
+
+    /**
+     * 写入一个分片的一组记录，成功、转入死信或二分后逐半写入后返回
+     * @return 全部记录都已写入数据库或死信文件；死信文件写入失败或服务停止时返回 false，
+     *         此时不再写入后续记录，避免检查点越过未处理的记录
+     */
+    private boolean writeShardWithRetry(int shard, List<IngestedRecord> records) throws InterruptedException {
+        long lastSequence = records.get(records.size() - 1).sequence();
+        long backoffMs = 100;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                long[] ids = shardRouter.callOnShard(shard, () -> transactionTemplate.execute(status -> {
+                    long[] inserted = batchRepository.batchInsert(records);
+                    batchRepository.advanceCheckpoint(nodeId, lastSequence);
+                    return inserted;
+                }));
+                afterCommit(records, ids);
+                return true;
+            } catch (RuntimeException e) {
+                if (isRecordError(e)) {
+                    if (records.size() == 1) {
+                        return deadLetter(shard, records, e);
+                    }
+                    // 定位出错的记录，其余记录照常写入
+                    int middle = records.size() / 2;
+                    log.warn("训练记录批量写入出现记录错误，拆分后重试（分片 {}，{} 条）: {}", shard, records.size(), e.getMessage());
+                    return writeShardWithRetry(shard, records.subList(0, middle))
+                            && writeShardWithRetry(shard, records.subList(middle, records.size()));
+                }
+                if (!running) {
+                    log.warn("训练记录写入服务停止中，放弃重试（分片 {}，{} 条），重启后从日志重放", shard, records.size());
+                    return false;
+                }
+                // 连接、资源类错误不是记录的问题，一直重试到数据库恢复
+                log.error("训练记录批量写入失败，{} ms 后第 {} 次重试（分片 {}，{} 条）", backoffMs, attempt + 1, shard, records.size(), e);
+                Thread.sleep(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, 10_000);
+            }
+        }
+    }
+
+    /**
+     * 记录本身导致、重试不会成功的错误；连接、资源类错误不算
+     */
+    private static boolean isRecordError(RuntimeException e) {
+        return e instanceof NonTransientDataAccessException && !(e instanceof DataAccessResourceFailureException);
+    }
+
+    /**
+     * 将记录写入死信文件（落盘）并推进检查点，避免重启后重放时再次失败
+     * 检查点推进失败时重启会重新转入死信，死信文件中可能出现重复条目
+     * @return 死信文件是否写入成功
+     */
+    private boolean deadLetter(int shard, List<IngestedRecord> records, RuntimeException cause) {
+        try (FileChannel channel = FileChannel.open(deadLetterFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            for (IngestedRecord record : records) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("record", record);
+                entry.put("shard", shard);
+                entry.put("error", String.valueOf(NestedExceptionUtils.getMostSpecificCause(cause).getMessage()));
+                entry.put("failedAt", LocalDateTime.now().toString());
+                writer.write(objectMapper.writeValueAsString(entry));
+                writer.write(System.lineSeparator());
+            }
+            writer.flush();
+            channel.force(false);
+        } catch (IOException e) {
+            // 死信写不进去时不推进检查点，由调用方保留日志
+            log.error("训练记录写入死信文件失败（分片 {}，{} 条）", shard, records.size(), e);
+            return false;
+        }
+        log.error("{} 条训练记录已转入死信文件 {}，序号 {} - {}", records.size(), deadLetterFile,
+                records.get(0).sequence(), records.get(records.size() - 1).sequence());
+
+        long lastSequence = records.get(records.size() - 1).sequence();
+        try {
+            shardRouter.runOnShard(shard, () -> transactionTemplate.executeWithoutResult(status ->
+                    batchRepository.advanceCheckpoint(nodeId, lastSequence)));
+        } catch (RuntimeException e) {
+            log.error("死信记录的检查点推进失败（分片 {}，序号 {}）", shard, lastSequence, e);
+        }
+        return true;
+    }
+
+    /**
+     * 分组提交后同步到时序存储，这里的失败不影响已提交的数据
+     */
+    private void afterCommit(List<IngestedRecord> batch, long[] ids) {
+        int rejected = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            IngestedRecord record = batch.get(i);
+            if (ids[i] == 0) {
+                rejected++;
+                continue;
+            }
+            try {
+                timeSeriesService.append(record.userId(), new ExerciseRecordPoint(ids[i], record.completedAtMillis(),
+                        record.sessionId(), record.exerciseName(), record.setsCompleted(), record.repsCompleted(),
+                        record.weightUsed(), record.durationMinutes(), record.caloriesBurned()));
+            } catch (RuntimeException e) {
+                log.error("训练记录同步到时序存储失败: 序号 {}", record.sequence(), e);
+            }
+        }
+        if (rejected > 0) {
+            log.warn("{} 条训练记录的会话不存在或不属于提交用户，已忽略", rejected);
+        }
+    }
+}
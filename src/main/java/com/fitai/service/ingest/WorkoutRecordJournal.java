@@ -0,0 +1,227 @@
+package com.fitai.service.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 训练记录写入日志（本地、只追加、分段）
+ * 条目格式：payloadLength(4) | sequence(8) | payload | crc32(4)，CRC 覆盖序号和内容
+ * 分段文件名为该段第一个条目的序号，所有条目都已写入数据库的旧分段会被删除
+ * 非线程安全，由调用方负责同步
+ */
+@Slf4j
+final class WorkoutRecordJournal {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentBytes;
+
+    // 分段起始序号 -> 分段文件
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+
+    private FileChannel current;
+    private long nextSequence = 1;
+
+    WorkoutRecordJournal(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * 读取全部分段，返回序号大于检查点的条目，并截掉每个分段末尾不完整的条目
+     */
+    List<IngestedRecord> recover(long checkpoint) throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                 .forEach(path -> segments.put(parseFirstSequence(path), path));
+        }
+
+        List<IngestedRecord> pending = new ArrayList<>();
+        long lastSequence = checkpoint;
+        for (Path segment : segments.values()) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                long validLength = 0;
+                while (buffer.remaining() >= 16) {
+                    int start = buffer.position();
+                    int length = buffer.getInt();
+                    if (length < 0 || length > buffer.remaining() - 12) {
+                        break;
+                    }
+                    long sequence = buffer.getLong();
+                    byte[] payload = new byte[length];
+                    buffer.get(payload);
+                    int crc = buffer.getInt();
+                    if (crc != checksum(sequence, payload)) {
+                        buffer.position(start);
+                        break;
+                    }
+                    validLength = buffer.position();
+                    lastSequence = Math.max(lastSequence, sequence);
+                    if (sequence > checkpoint) {
+                        pending.add(decode(sequence, payload));
+                    }
+                }
+                if (validLength < channel.size()) {
+                    log.warn("写入日志分段尾部不完整，已截断: {} ({} -> {} 字节)", segment, channel.size(), validLength);
+                    channel.truncate(validLength);
+                }
+            }
+        }
+        nextSequence = lastSequence + 1;
+        return pending;
+    }
+
+    /**
+     * 追加一个条目并分配序号，写入操作系统页缓存即返回，落盘由 {@link #force()} 完成
+     */
+    IngestedRecord append(IngestedRecord record) throws IOException {
+        if (current == null || current.size() >= segmentBytes) {
+            roll();
+        }
+        IngestedRecord sequenced = new IngestedRecord(nextSequence, record.userId(), record.sessionId(),
+                record.exerciseName(), record.setsCompleted(), record.repsCompleted(), record.weightUsed(),
+                record.durationMinutes(), record.caloriesBurned(), record.notes(), record.completedAtMillis());
+        byte[] payload = encode(sequenced);
+
+        ByteBuffer entry = ByteBuffer.allocate(16 + payload.length);
+        entry.putInt(payload.length);
+        entry.putLong(sequenced.sequence());
+        entry.put(payload);
+        entry.putInt(checksum(sequenced.sequence(), payload));
+        entry.flip();
+        while (entry.hasRemaining()) {
+            current.write(entry);
+        }
+        nextSequence++;
+        return sequenced;
+    }
+
+    /**
+     * 最后分配的序号
+     */
+    long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * 将当前分段刷到磁盘（滚动时旧分段已经落盘）
+     */
+    void force() throws IOException {
+        if (current != null) {
+            current.force(false);
+        }
+    }
+
+    /**
+     * 删除所有条目都不大于 committedSequence 的旧分段（当前分段除外）
+     */
+    void purge(long committedSequence) throws IOException {
+        while (segments.size() > 1) {
+            Long first = segments.firstKey();
+            Long second = segments.higherKey(first);
+            if (second - 1 > committedSequence) {
+                return;
+            }
+            Files.deleteIfExists(segments.remove(first));
+        }
+    }
+
+    void close() throws IOException {
+        if (current != null) {
+            current.force(false);
+            current.close();
+            current = null;
+        }
+    }
+
+    private void roll() throws IOException {
+        if (current != null) {
+            current.force(false);
+            current.close();
+        }
+        Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        current = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segments.put(nextSequence, segment);
+    }
+
+    private static long parseFirstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putLong(0, sequence));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(IngestedRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(record.userId());
+        out.writeLong(record.sessionId());
+        out.writeUTF(record.exerciseName());
+        writeNullableInt(out, record.setsCompleted());
+        writeNullableInt(out, record.repsCompleted());
+        out.writeBoolean(record.weightUsed() != null);
+        if (record.weightUsed() != null) {
+            out.writeDouble(record.weightUsed());
+        }
+        writeNullableInt(out, record.durationMinutes());
+        writeNullableInt(out, record.caloriesBurned());
+        out.writeBoolean(record.notes() != null);
+        if (record.notes() != null) {
+            out.writeUTF(record.notes());
+        }
+        out.writeLong(record.completedAtMillis());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static IngestedRecord decode(long sequence, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long userId = in.readLong();
+        long sessionId = in.readLong();
+        String exerciseName = in.readUTF();
+        Integer sets = readNullableInt(in);
+        Integer reps = readNullableInt(in);
+        Double weight = in.readBoolean() ? in.readDouble() : null;
+        Integer duration = readNullableInt(in);
+        Integer calories = readNullableInt(in);
+        String notes = in.readBoolean() ? in.readUTF() : null;
+        long completedAt = in.readLong();
+        return new IngestedRecord(sequence, userId, sessionId, exerciseName, sets, reps, weight,
+                duration, calories, notes, completedAt);
+    }
+
+    private static void writeNullableInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readNullableInt(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+}
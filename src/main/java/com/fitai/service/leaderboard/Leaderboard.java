@@ -0,0 +1,79 @@
+package com.fitai.service.leaderboard;
+
+import java.time.LocalDate;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 单个排行榜（某个指标、时间窗口和范围）
+ * 当前窗口的数据保存在一棵 RankTree 中，更新持有写锁，查询持有读锁，多个查询可以并行。
+ * 窗口切换时直接换上一棵空树，旧窗口整体丢弃，不需要逐个清零；
+ * 查询发生在切换之后、新窗口第一次更新之前时，按空榜返回
+ */
+final class Leaderboard {
+
+    private static final RankTree EMPTY = new RankTree();
+
+    private final LeaderboardWindow window;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private LocalDate periodStart = LocalDate.EPOCH;
+    private RankTree tree = new RankTree();
+
+    Leaderboard(LeaderboardWindow window) {
+        this.window = window;
+    }
+
+    /**
+     * 更新 day 所在窗口；day 早于当前窗口（迟到的事件）时忽略
+     */
+    void update(LocalDate day, Consumer<RankTree> action) {
+        LocalDate start = window.periodStart(day);
+        lock.writeLock().lock();
+        try {
+            if (start.isAfter(periodStart)) {
+                periodStart = start;
+                tree = new RankTree();
+            } else if (start.isBefore(periodStart)) {
+                return;
+            }
+            action.accept(tree);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询 today 所在窗口
+     */
+    <T> T query(LocalDate today, Function<RankTree, T> action) {
+        lock.readLock().lock();
+        try {
+            return action.apply(window.periodStart(today).equals(periodStart) ? tree : EMPTY);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void remove(long userId) {
+        lock.writeLock().lock();
+        try {
+            tree.remove(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 用重建好的数据整体替换当前窗口
+     */
+    void replace(LocalDate day, RankTree rebuilt) {
+        lock.writeLock().lock();
+        try {
+            periodStart = window.periodStart(day);
+            tree = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
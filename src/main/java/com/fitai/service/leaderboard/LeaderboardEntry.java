@@ -0,0 +1,8 @@
+package com.fitai.service.leaderboard;
+
+/**
+ * 排行榜条目
+ * @param rank 名次，从1开始
+ */
+public record LeaderboardEntry(int rank, Long userId, double score) {
+}
@@ -0,0 +1,13 @@
+package com.fitai.service.leaderboard;
+
+/**
+ * 排行榜指标
+ */
+public enum LeaderboardMetric {
+    // 消耗卡路里：总榜为累计值，日榜/周榜为窗口内的累计值
+    CALORIES,
+    // 完成训练次数
+    WORKOUTS,
+    // 连续训练天数：总榜为历史最长连续天数，日榜/周榜为窗口内达到的当前连续天数
+    STREAK
+}
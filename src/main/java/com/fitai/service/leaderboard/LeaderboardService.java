@@ -0,0 +1,180 @@
+package com.fitai.service.leaderboard;
+
+import com.fitai.model.User;
+import com.fitai.model.WorkoutSession;
+import com.fitai.repository.UserRepository;
+import com.fitai.repository.WorkoutSessionRepository;
+import com.fitai.repository.projection.UserGym;
+import com.fitai.repository.projection.UserWorkoutTotals;
+import com.fitai.service.observer.achievement.AchievementStateService;
+import com.fitai.service.observer.achievement.UserStats;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 排行榜服务
+ * 卡路里、完成训练次数和连续训练天数各有总榜、日榜和周榜，每种榜单又分全站和各健身房，
+ * 每个榜单是一棵内存中的顺序统计树，每次完成训练时增量更新，前 K 名和“我的名次”都是 O(log n)，不对 users 表排序。
+ * 总榜直接取成就统计中的累计值（与事件日志一致），日榜/周榜累加窗口内的训练，窗口切换时整体换成空榜。
+ * 启动时总榜从成就统计重建，日榜/周榜从本周已完成的训练会话按用户汇总重建
+ */
+@Service
+@Slf4j
+public class LeaderboardService {
+
+    @Autowired
+    private AchievementStateService achievementStateService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private WorkoutSessionRepository workoutSessionRepository;
+
+    @Value("${fitai.coach.leaderboard.max-limit:100}")
+    private int maxLimit;
+
+    private final Map<BoardKey, Leaderboard> boards = new ConcurrentHashMap<>();
+    // 用户当前所属健身房，换馆时从原健身房的榜单中移除
+    private final Map<Long, String> userGyms = new ConcurrentHashMap<>();
+
+    /**
+     * 启动时重建（在 Web 服务开始接收请求之前完成）
+     */
+    @PostConstruct
+    public void rebuild() {
+        long start = System.nanoTime();
+        for (UserGym assignment : userRepository.findGymAssignments()) {
+            userGyms.put(assignment.getId(), assignment.getGym());
+        }
+
+        Map<BoardKey, RankTree> rebuilt = new HashMap<>();
+        int[] users = new int[1];
+        achievementStateService.forEachStats((userId, stats) -> {
+            String gym = userGyms.get(userId);
+            for (String scope : scopes(gym)) {
+                tree(rebuilt, LeaderboardMetric.CALORIES, LeaderboardWindow.ALL_TIME, scope)
+                        .put(userId, stats.getTotalCaloriesBurned());
+                tree(rebuilt, LeaderboardMetric.WORKOUTS, LeaderboardWindow.ALL_TIME, scope)
+                        .put(userId, stats.getCompletedWorkouts());
+                tree(rebuilt, LeaderboardMetric.STREAK, LeaderboardWindow.ALL_TIME, scope)
+                        .put(userId, stats.getLongestStreak());
+            }
+            users[0]++;
+        });
+
+        LocalDate today = LocalDate.now();
+        for (LeaderboardWindow window : new LeaderboardWindow[] {LeaderboardWindow.DAILY, LeaderboardWindow.WEEKLY}) {
+            List<UserWorkoutTotals> totals = workoutSessionRepository.sumByUserSince(
+                    WorkoutSession.SessionStatus.COMPLETED, window.periodStart(today).atStartOfDay());
+            for (UserWorkoutTotals total : totals) {
+                UserStats stats = achievementStateService.getStats(total.getUserId());
+                for (String scope : scopes(userGyms.get(total.getUserId()))) {
+                    tree(rebuilt, LeaderboardMetric.CALORIES, window, scope).put(total.getUserId(), total.getCaloriesBurned());
+                    tree(rebuilt, LeaderboardMetric.WORKOUTS, window, scope).put(total.getUserId(), total.getWorkouts());
+                    tree(rebuilt, LeaderboardMetric.STREAK, window, scope).put(total.getUserId(), stats.getCurrentStreak(today));
+                }
+            }
+        }
+
+        rebuilt.forEach((key, tree) -> board(key).replace(today, tree));
+        log.info("排行榜重建完成: {} 个用户, {} 个榜单, 耗时 {} ms", users[0], rebuilt.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * 记录一次完成的训练，调用前该训练已计入成就统计
+     * @param day 训练日期
+     * @param calories 本次消耗的卡路里
+     */
+    public void recordWorkout(User user, LocalDate day, double calories) {
+        long userId = user.getId();
+        String gym = user.getGym();
+        String previousGym = gym != null ? userGyms.put(userId, gym) : userGyms.remove(userId);
+        if (previousGym != null && !previousGym.equals(gym)) {
+            for (LeaderboardMetric metric : LeaderboardMetric.values()) {
+                for (LeaderboardWindow window : LeaderboardWindow.values()) {
+                    board(new BoardKey(metric, window, previousGym)).remove(userId);
+                }
+            }
+        }
+
+        UserStats stats = achievementStateService.getStats(userId);
+        double totalCalories = stats.getTotalCaloriesBurned();
+        int completedWorkouts = stats.getCompletedWorkouts();
+        int longestStreak = stats.getLongestStreak();
+        int currentStreak = stats.getCurrentStreak(day);
+        for (String scope : scopes(gym)) {
+            board(new BoardKey(LeaderboardMetric.CALORIES, LeaderboardWindow.ALL_TIME, scope))
+                    .update(day, tree -> tree.put(userId, totalCalories));
+            board(new BoardKey(LeaderboardMetric.WORKOUTS, LeaderboardWindow.ALL_TIME, scope))
+                    .update(day, tree -> tree.put(userId, completedWorkouts));
+            board(new BoardKey(LeaderboardMetric.STREAK, LeaderboardWindow.ALL_TIME, scope))
+                    .update(day, tree -> tree.put(userId, longestStreak));
+            for (LeaderboardWindow window : new LeaderboardWindow[] {LeaderboardWindow.DAILY, LeaderboardWindow.WEEKLY}) {
+                board(new BoardKey(LeaderboardMetric.CALORIES, window, scope)).update(day, tree -> tree.add(userId, calories));
+                board(new BoardKey(LeaderboardMetric.WORKOUTS, window, scope)).update(day, tree -> tree.add(userId, 1));
+                board(new BoardKey(LeaderboardMetric.STREAK, window, scope)).update(day, tree -> tree.raise(userId, currentStreak));
+            }
+        }
+    }
+
+    /**
+     * 前 limit 名
+     * @param gym 健身房，为 null 时查询全站榜单
+     */
+    public List<LeaderboardEntry> getTop(LeaderboardMetric metric, LeaderboardWindow window, String gym, int limit) {
+        int size = Math.max(1, Math.min(limit, maxLimit));
+        return board(new BoardKey(metric, window, gym)).query(LocalDate.now(), tree -> tree.range(0, size));
+    }
+
+    /**
+     * 用户的名次和分数，不在榜上时名次为0
+     */
+    public Map<String, Object> getRank(Long userId, LeaderboardMetric metric, LeaderboardWindow window, String gym) {
+        return board(new BoardKey(metric, window, gym)).query(LocalDate.now(), tree -> {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("rank", tree.rank(userId));
+            result.put("score", tree.score(userId));
+            result.put("size", tree.size());
+            return result;
+        });
+    }
+
+    public String getGym(Long userId) {
+        return userGyms.get(userId);
+    }
+
+    private Leaderboard board(BoardKey key) {
+        return boards.computeIfAbsent(key, k -> new Leaderboard(k.window()));
+    }
+
+    private static RankTree tree(Map<BoardKey, RankTree> trees, LeaderboardMetric metric, LeaderboardWindow window,
+                                 String gym) {
+        return trees.computeIfAbsent(new BoardKey(metric, window, gym), k -> new RankTree());
+    }
+
+    /**
+     * 训练计入的榜单范围：全站（null）以及所属健身房
+     */
+    private static String[] scopes(String gym) {
+        return gym != null ? new String[] {null, gym} : new String[] {null};
+    }
+
+    /**
+     * @param gym 健身房，null 表示全站
+     */
+    private record BoardKey(LeaderboardMetric metric, LeaderboardWindow window, String gym) {
+    }
+}
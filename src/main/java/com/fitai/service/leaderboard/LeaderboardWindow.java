@@ -0,0 +1,25 @@
+package com.fitai.service.leaderboard;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * 排行榜时间窗口
+ */
+public enum LeaderboardWindow {
+    ALL_TIME,
+    DAILY,
+    WEEKLY;
+
+    /**
+     * 日期所在窗口的起始日（总榜恒为 LocalDate.EPOCH）
+     */
+    public LocalDate periodStart(LocalDate day) {
+        return switch (this) {
+            case ALL_TIME -> LocalDate.EPOCH;
+            case DAILY -> day;
+            case WEEKLY -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        };
+    }
+}
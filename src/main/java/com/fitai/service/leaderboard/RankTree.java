@@ -0,0 +1,230 @@
+package com.fitai.service.leaderboard;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 顺序统计树（treap）
+ * 按分数降序、用户ID升序排列，每个节点记录子树大小，
+ * 更新、查排名均为期望 O(log n)，取前 K 名为 O(log n + K)。
+ * 非线程安全，由 Leaderboard 的读写锁保护
+ */
+final class RankTree {
+
+    private final Map<Long, Node> nodes = new HashMap<>();
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+
+    /**
+     * 设置用户分数，已有分数时先移除旧节点
+     */
+    void put(long userId, double score) {
+        Node existing = nodes.get(userId);
+        if (existing != null) {
+            if (existing.score == score) {
+                return;
+            }
+            root = remove(root, existing.score, userId);
+        }
+        Node node = new Node(userId, score, random.nextInt());
+        nodes.put(userId, node);
+        root = insert(root, node);
+    }
+
+    /**
+     * 在原分数上累加
+     */
+    void add(long userId, double delta) {
+        Node existing = nodes.get(userId);
+        put(userId, existing != null ? existing.score + delta : delta);
+    }
+
+    /**
+     * 分数只升不降
+     */
+    void raise(long userId, double score) {
+        Node existing = nodes.get(userId);
+        if (existing == null || existing.score < score) {
+            put(userId, score);
+        }
+    }
+
+    void remove(long userId) {
+        Node existing = nodes.remove(userId);
+        if (existing != null) {
+            root = remove(root, existing.score, userId);
+        }
+    }
+
+    /**
+     * @return 用户分数，不在榜上时为 null
+     */
+    Double score(long userId) {
+        Node node = nodes.get(userId);
+        return node != null ? node.score : null;
+    }
+
+    /**
+     * @return 用户名次（从1开始），不在榜上时为0
+     */
+    int rank(long userId) {
+        Node target = nodes.get(userId);
+        if (target == null) {
+            return 0;
+        }
+        int before = 0;
+        Node node = root;
+        while (node != null) {
+            if (node == target) {
+                return before + size(node.left) + 1;
+            }
+            if (precedes(target.score, userId, node)) {
+                node = node.left;
+            } else {
+                before += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        throw new IllegalStateException("排行榜索引与树不一致: " + userId);
+    }
+
+    /**
+     * 从第 offset 名之后开始的 limit 个条目（中序遍历，先跳过 offset 个节点所在的子树）
+     */
+    List<LeaderboardEntry> range(int offset, int limit) {
+        List<LeaderboardEntry> entries = new ArrayList<>(Math.min(limit, nodes.size()));
+        Deque<Node> path = new ArrayDeque<>();
+        int skip = offset;
+        Node node = root;
+        // 下降到第 offset+1 名，沿途记下之后还要访问的祖先
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (skip < leftSize) {
+                path.push(node);
+                node = node.left;
+            } else if (skip == leftSize) {
+                path.push(node);
+                break;
+            } else {
+                skip -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        int rank = offset;
+        while (!path.isEmpty() && entries.size() < limit) {
+            Node next = path.pop();
+            entries.add(new LeaderboardEntry(++rank, next.userId, next.score));
+            for (Node child = next.right; child != null; child = child.left) {
+                path.push(child);
+            }
+        }
+        return entries;
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    /**
+     * (score, userId) 是否排在 node 之前
+     */
+    private static boolean precedes(double score, long userId, Node node) {
+        return score > node.score || (score == node.score && userId < node.userId);
+    }
+
+    private static Node insert(Node root, Node node) {
+        if (root == null) {
+            return node;
+        }
+        if (node.priority > root.priority) {
+            Node[] parts = split(root, node.score, node.userId);
+            node.left = parts[0];
+            node.right = parts[1];
+            return update(node);
+        }
+        if (precedes(node.score, node.userId, root)) {
+            root.left = insert(root.left, node);
+        } else {
+            root.right = insert(root.right, node);
+        }
+        return update(root);
+    }
+
+    private static Node remove(Node root, double score, long userId) {
+        if (root == null) {
+            return null;
+        }
+        if (root.userId == userId) {
+            return merge(root.left, root.right);
+        }
+        if (precedes(score, userId, root)) {
+            root.left = remove(root.left, score, userId);
+        } else {
+            root.right = remove(root.right, score, userId);
+        }
+        return update(root);
+    }
+
+    /**
+     * 拆成排在 (score, userId) 之前和之后的两棵树
+     */
+    private static Node[] split(Node root, double score, long userId) {
+        if (root == null) {
+            return new Node[] {null, null};
+        }
+        if (precedes(score, userId, root)) {
+            Node[] parts = split(root.left, score, userId);
+            root.left = parts[1];
+            parts[1] = update(root);
+            return parts;
+        }
+        Node[] parts = split(root.right, score, userId);
+        root.right = parts[0];
+        parts[0] = update(root);
+        return parts;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private static Node update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+        return node;
+    }
+
+    private static int size(Node node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static final class Node {
+        private final long userId;
+        private final double score;
+        private final int priority;
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(long userId, double score, int priority) {
+            this.userId = userId;
+            this.score = score;
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.fitai.service.observer;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 进度事件分发器
+ * sync 模式在调用线程中逐个通知观察者；async 模式按 userId 把事件分到固定数量的分区，
+ * 每个分区是一个有界环形队列（ArrayBlockingQueue）加一个消费线程，同一用户的事件按提交顺序处理。
+ * 事务中提交的事件在事务提交后才入队，回滚时丢弃，观察者不会看到未提交的进度。
+ * 训练会话生命周期事件（WorkoutProgressObserver）也经这里分发
+ */
+@Component
+@Slf4j
+public class ProgressEventDispatcher {
+
+    /**
+     * 队列满时的处理策略
+     */
+    public enum OverflowPolicy {
+        // 等待 offer-timeout-ms，仍然满则丢弃
+        BLOCK,
+        // 立即丢弃
+        DROP,
+        // 由提交线程同步处理（该事件可能先于同一用户排队中的事件被处理）
+        CALLER_RUNS
+    }
+
+    /**
+     * 对单个观察者的一次调用
+     */
+    @FunctionalInterface
+    interface ObserverCall {
+        void invoke(ProgressObserver observer);
+    }
+
+    /**
+     * 对一个观察者的调用，observerName 用于统计
+     */
+    private record Delivery(String observerName, Runnable call) {
+    }
+
+    /**
+     * @param completion 所有观察者调用完成后完成，发件箱中继据此确认投递；直接分发的事件为 null
+     */
+    private record ProgressEvent(String type, List<Delivery> deliveries, long enqueuedAt,
+                                 CompletableFuture<Void> completion) {
+    }
+
+    @Value("${fitai.coach.observer.dispatch-mode:async}")
+    private String dispatchMode;
+
+    @Value("${fitai.coach.observer.workers:4}")
+    private int workers;
+
+    @Value("${fitai.coach.observer.queue-capacity:1024}")
+    private int queueCapacity;
+
+    @Value("${fitai.coach.observer.overflow-policy:BLOCK}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${fitai.coach.observer.offer-timeout-ms:100}")
+    private long offerTimeoutMs;
+
+    @Value("${fitai.coach.observer.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private final Map<String, ObserverMetrics> observerMetrics = new ConcurrentHashMap<>();
+
+    private Partition[] partitions = new Partition[0];
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!isAsync()) {
+            log.info("进度事件同步分发");
+            return;
+        }
+        if (workers < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("fitai.coach.observer.workers 和 queue-capacity 必须为正数");
+        }
+        running = true;
+        partitions = new Partition[workers];
+        for (int i = 0; i < workers; i++) {
+            partitions[i] = new Partition(i);
+            partitions[i].thread.start();
+        }
+        log.info("进度事件异步分发: {} 个分区, 每个分区容量 {}, 队列满时 {}", workers, queueCapacity, overflowPolicy);
+    }
+
+    /**
+     * 停止接收新事件，等待各分区处理完已排队的事件
+     * 在容器开始销毁 Bean 之前执行，排队事件仍能使用观察者依赖的组件（如用户统计缓存）
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() throws InterruptedException {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+        for (Partition partition : partitions) {
+            partition.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            if (partition.thread.isAlive()) {
+                log.warn("进度事件分区 {} 未能在停止前处理完, 剩余 {} 个事件", partition.index, partition.queue.size());
+                partition.thread.interrupt();
+            }
+        }
+    }
+
+    public boolean isAsync() {
+        return "async".equalsIgnoreCase(dispatchMode);
+    }
+
+    /**
+     * 分发一个事件给所有观察者
+     */
+    void dispatch(Long userId, String type, List<ProgressObserver> observers, ObserverCall call) {
+        dispatch(userId, new ProgressEvent(type, deliveries(observers, call), 0L, null));
+    }
+
+    /**
+     * 分发一个训练会话生命周期事件给所有 WorkoutProgressObserver，与进度事件共用分区，同一用户的事件有序
+     */
+    void dispatchWorkout(Long userId, String type, List<WorkoutProgressObserver> observers,
+                         Consumer<WorkoutProgressObserver> call) {
+        List<Delivery> deliveries = observers.stream()
+                .map(observer -> new Delivery(observer.getClass().getSimpleName(), () -> call.accept(observer)))
+                .toList();
+        dispatch(userId, new ProgressEvent(type, deliveries, 0L, null));
+    }
+
+    private void dispatch(Long userId, ProgressEvent event) {
+        if (!isAsync() || !running) {
+            deliver(event);
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(userId, event);
+                }
+            });
+        } else {
+            enqueue(userId, event);
+        }
+    }
+
+    /**
+     * 立即分发一个事件（不等待当前事务提交），返回的 future 在所有观察者调用完成后完成，
+     * 队列已满被丢弃或分发器正在停止时以异常完成；观察者自身抛出的异常只记录日志，不影响完成状态
+     */
+    CompletableFuture<Void> submit(Long userId, String type, List<ProgressObserver> observers, ObserverCall call) {
+        ProgressEvent event = new ProgressEvent(type, deliveries(observers, call), 0L, new CompletableFuture<>());
+        if (!isAsync()) {
+            deliver(event);
+        } else if (!running) {
+            event.completion().completeExceptionally(new RejectedExecutionException("进度事件分发器已停止"));
+        } else {
+            enqueue(userId, event);
+        }
+        return event.completion();
+    }
+
+    private void enqueue(Long userId, ProgressEvent event) {
+        Partition partition = partitions[userId == null ? 0 : (int) Math.floorMod(userId, (long) partitions.length)];
+        ProgressEvent queued = new ProgressEvent(event.type(), event.deliveries(), System.nanoTime(), event.completion());
+        boolean accepted;
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                accepted = partition.queue.offer(queued, offerTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            accepted = partition.queue.offer(queued);
+        }
+
+        if (accepted) {
+            partition.enqueued.increment();
+            partition.peakDepth.accumulateAndGet(partition.queue.size(), Math::max);
+        } else if (overflowPolicy == OverflowPolicy.CALLER_RUNS) {
+            partition.callerRuns.increment();
+            deliver(event);
+        } else {
+            partition.dropped.increment();
+            log.warn("进度事件队列已满，丢弃事件: 分区={}, 类型={}, 用户={}", partition.index, event.type(), userId);
+            if (event.completion() != null) {
+                event.completion().completeExceptionally(new RejectedExecutionException("进度事件队列已满"));
+            }
+        }
+    }
+
+    private static List<Delivery> deliveries(List<ProgressObserver> observers, ObserverCall call) {
+        return observers.stream()
+                .map(observer -> new Delivery(observer.getObserverName(), () -> call.invoke(observer)))
+                .toList();
+    }
+
+    private void deliver(ProgressEvent event) {
+        for (Delivery delivery : event.deliveries()) {
+            long start = System.nanoTime();
+            boolean failed = false;
+            try {
+                delivery.call().run();
+            } catch (Exception e) {
+                failed = true;
+                log.error("观察者 {} 处理 {} 事件时发生错误", delivery.observerName(), event.type(), e);
+            }
+            observerMetrics.computeIfAbsent(delivery.observerName(), name -> new ObserverMetrics())
+                    .record(System.nanoTime() - start, failed);
+        }
+        if (event.completion() != null) {
+            event.completion().complete(null);
+        }
+    }
+
+    /**
+     * 分发统计：各分区队列深度、丢弃数，各观察者调用次数和耗时
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mode", isAsync() ? "async" : "sync");
+        result.put("overflowPolicy", overflowPolicy);
+        result.put("queueCapacity", queueCapacity);
+
+        List<Map<String, Object>> partitionStats = new ArrayList<>();
+        for (Partition partition : partitions) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("partition", partition.index);
+            stats.put("depth", partition.queue.size());
+            stats.put("peakDepth", partition.peakDepth.get());
+            stats.put("enqueued", partition.enqueued.sum());
+            stats.put("dropped", partition.dropped.sum());
+            stats.put("callerRuns", partition.callerRuns.sum());
+            stats.put("avgQueueWaitMs", partition.waits.sum() == 0 ? 0.0
+                    : partition.waitNanos.sum() / 1_000_000.0 / partition.waits.sum());
+            partitionStats.add(stats);
+        }
+        result.put("partitions", partitionStats);
+
+        Map<String, Object> observerStats = new LinkedHashMap<>();
+        observerMetrics.forEach((name, metrics) -> observerStats.put(name, metrics.snapshot()));
+        result.put("observers", observerStats);
+        return result;
+    }
+
+    /**
+     * 定期输出分发统计，便于在日志中观察慢观察者和积压
+     */
+    @Scheduled(fixedDelayString = "${fitai.coach.observer.stats-log-interval-ms:300000}",
+               initialDelayString = "${fitai.coach.observer.stats-log-interval-ms:300000}")
+    public void logStatistics() {
+        int depth = 0;
+        long dropped = 0;
+        for (Partition partition : partitions) {
+            depth += partition.queue.size();
+            dropped += partition.dropped.sum();
+        }
+        log.info("进度事件分发: 排队 {}, 累计丢弃 {}, 观察者 {}", depth, dropped, observerMetrics.entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue().snapshot())
+                .toList());
+    }
+
+    /**
+     * 一个分区：有界环形队列 + 单消费线程
+     */
+    private final class Partition {
+        private final int index;
+        private final ArrayBlockingQueue<ProgressEvent> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final Thread thread;
+        private final LongAdder enqueued = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder callerRuns = new LongAdder();
+        private final LongAdder waits = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicInteger peakDepth = new AtomicInteger();
+
+        private Partition(int index) {
+            this.index = index;
+            this.thread = new Thread(this::run, "progress-event-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            while (running || !queue.isEmpty()) {
+                try {
+                    ProgressEvent event = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (event == null) {
+                        continue;
+                    }
+                    waits.increment();
+                    waitNanos.add(System.nanoTime() - event.enqueuedAt());
+                    deliver(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 单个观察者的调用统计
+     */
+    private static final class ObserverMetrics {
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private void record(long nanos, boolean failed) {
+            invocations.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            if (failed) {
+                failures.increment();
+            }
+        }
+
+        private Map<String, Object> snapshot() {
+            long count = invocations.sum();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("invocations", count);
+            result.put("failures", failures.sum());
+            result.put("avgMs", count == 0 ? 0.0 : totalNanos.sum() / 1_000_000.0 / count);
+            result.put("maxMs", maxNanos.get() / 1_000_000.0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.fitai.service.observer;
+
+/**
+ * 当前正在投递的发件箱事件ID（幂等键）
+ * ProgressOutboxRelay 投递发件箱中的事件时，在每次观察者调用期间设置；
+ * 同一用户的事件按ID递增投递，观察者记录已处理的最大ID即可丢弃重复投递。直接分发的事件为0
+ */
+public final class ProgressEventKey {
+
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    private ProgressEventKey() {
+    }
+
+    /**
+     * 当前事件ID，不是发件箱事件时为0
+     */
+    public static long current() {
+        Long eventId = CURRENT.get();
+        return eventId != null ? eventId : 0L;
+    }
+
+    static void run(long eventId, Runnable action) {
+        CURRENT.set(eventId);
+        try {
+            action.run();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.fitai.service.observer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fitai.config.sharding.GlobalData;
+import com.fitai.config.sharding.ShardContext;
+import com.fitai.config.sharding.ShardRouter;
+import com.fitai.model.ProgressOutboxEvent;
+import com.fitai.model.User;
+import com.fitai.model.WorkoutSession;
+import com.fitai.repository.ProgressOutboxRepository;
+import com.fitai.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进度事件发件箱
+ * 业务事务中只插入一行 progress_outbox，与业务数据一起提交或回滚；提交后唤醒 ProgressOutboxRelay 投递给观察者，
+ * 请求线程不等待观察者。发件箱与用户表同在全局分片，写入前锁定用户行，
+ * 同一用户的事件ID按提交顺序递增，观察者可以据此去重。
+ * 训练会话在用户分片上，训练开始和完成事件在另一个全局分片事务中先于会话事务提交，
+ * 由中继投递前回到用户分片确认会话已提交
+ */
+@Component
+public class ProgressOutbox {
+
+    @Autowired
+    private ProgressOutboxRepository outboxRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProgressOutboxRelay relay;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 目标达成，必须在业务数据写入的同一事务中调用
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void goalAchieved(User user, String achievementType, String details) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("achievementType", achievementType);
+        payload.put("details", details);
+        append(user, ProgressOutboxEvent.EventType.GOAL_ACHIEVED, payload);
+    }
+
+    /**
+     * 进度更新，必须在业务数据写入的同一事务中调用
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void progressUpdated(User user, String progressType, Object oldValue, Object newValue) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("progressType", progressType);
+        payload.put("oldValue", oldValue);
+        payload.put("newValue", newValue);
+        append(user, ProgressOutboxEvent.EventType.PROGRESS_UPDATED, payload);
+    }
+
+    /**
+     * 训练开始，在会话事务中调用；会话不在全局分片时另起全局分片事务写入
+     */
+    @GlobalData
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void workoutStarted(User user, WorkoutSession session) {
+        append(user, ProgressOutboxEvent.EventType.WORKOUT_STARTED, Map.of("sessionId", session.getId()));
+    }
+
+    /**
+     * 训练完成，在会话事务中调用；会话不在全局分片时另起全局分片事务写入
+     */
+    @GlobalData
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void workoutCompleted(User user, WorkoutSession session) {
+        append(user, ProgressOutboxEvent.EventType.WORKOUT_COMPLETED, Map.of("sessionId", session.getId()));
+    }
+
+    private void append(User user, ProgressOutboxEvent.EventType type, Map<String, Object> payload) {
+        if (ShardContext.current() != ShardRouter.GLOBAL_SHARD) {
+            throw new IllegalStateException("进度事件发件箱位于全局分片，必须在全局分片的事务中写入");
+        }
+        // 同一用户的并发事务在此排队，后提交的事件ID一定更大
+        userRepository.findByIdForUpdate(user.getId())
+                .orElseThrow(() -> new IllegalArgumentException("用户不存在: " + user.getId()));
+
+        ProgressOutboxEvent event = new ProgressOutboxEvent();
+        event.setUserId(user.getId());
+        event.setEventType(type);
+        try {
+            event.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("进度事件参数无法序列化: " + type, e);
+        }
+        event.setCreatedAt(LocalDateTime.now());
+        outboxRepository.save(event);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                relay.wakeUp();
+            }
+        });
+    }
+}
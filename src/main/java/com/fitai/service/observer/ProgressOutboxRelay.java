@@ -0,0 +1,368 @@
+package com.fitai.service.observer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fitai.config.sharding.ShardRouter;
+import com.fitai.model.OutboxRelayLease;
+import com.fitai.model.ProgressOutboxEvent;
+import com.fitai.model.User;
+import com.fitai.model.WorkoutSession;
+import com.fitai.repository.OutboxRelayLeaseRepository;
+import com.fitai.repository.ProgressOutboxRepository;
+import com.fitai.repository.UserRepository;
+import com.fitai.repository.WorkoutSessionRepository;
+import com.fitai.service.observer.achievement.AchievementStateService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 进度事件发件箱中继
+ * 多个实例中只有持有中继租约（outbox_relay_leases）的一个实例投递，观察者按用户记录已处理的最大事件ID去重，
+ * 要求同一用户的事件按ID顺序送达，多个实例并行投递会打乱顺序。
+ * 成就观察者的状态保存在本机磁盘，部署上只允许一个实例（见 AchievementStateService），
+ * 租约防止的是重启交替时新旧进程短暂重叠；成就状态归属被其他状态目录接管后本实例释放租约、不再投递。
+ * 持有者在单独的线程中按ID顺序分批读取未投递的事件（读取事务同时续约并立即提交），交给 ProgressEventDispatcher 分发，
+ * 在事务之外等待观察者调用完成，再用一个短事务标记为已投递。发件箱事务提交后立即唤醒，另有定时轮询兜底。
+ * 投递是至少一次的：标记前进程退出、分发队列拒绝或等待超时的事件都会再次投递，
+ * 观察者通过 ProgressEventKey 拿到事件ID去重。某个用户的事件被拒绝后，本批中该用户后续的事件也不投递，
+ * 保证同一用户的事件按ID顺序送达。租期必须大于投递等待时间，持有者停顿超过租期后才会被其他实例接管。
+ * 训练开始和完成事件先于用户分片上的会话事务提交，投递前到用户分片读取会话：
+ * 会话尚不可见（或未完成）时该用户的事件留到下次投递，超过确认期限仍不可见说明会话事务已回滚，丢弃该事件
+ */
+@Component
+@Slf4j
+public class ProgressOutboxRelay {
+
+    private static final String LEASE_NAME = "progress-outbox";
+
+    @Autowired
+    private ProgressOutboxRepository outboxRepository;
+
+    @Autowired
+    private OutboxRelayLeaseRepository leaseRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private WorkoutSessionRepository workoutSessionRepository;
+
+    @Autowired
+    private ProgressSubject progressSubject;
+
+    @Autowired
+    private AchievementStateService achievementStateService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${fitai.coach.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${fitai.coach.outbox.delivery-timeout-ms:5000}")
+    private long deliveryTimeoutMs;
+
+    @Value("${fitai.coach.outbox.retention-hours:72}")
+    private int retentionHours;
+
+    @Value("${fitai.coach.outbox.lease-ms:30000}")
+    private long leaseMs;
+
+    @Value("${fitai.coach.outbox.session-confirm-ms:60000}")
+    private long sessionConfirmMs;
+
+    // 本实例的租约持有者ID
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("fitai.coach.outbox.batch-size 必须为正数");
+        }
+        if (leaseMs < 2 * deliveryTimeoutMs) {
+            throw new IllegalArgumentException("fitai.coach.outbox.lease-ms 必须至少为 delivery-timeout-ms 的两倍");
+        }
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        createLease();
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+    }
+
+    /**
+     * 停止中继，未投递的事件留在发件箱中，下次启动后投递
+     * 先于进度事件分发器停止，正在等待的批次不会被标记为已投递
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        running = false;
+        executor.shutdownNow();
+        releaseLease();
+    }
+
+    private void releaseLease() {
+        try {
+            shardRouter.runOnShard(ShardRouter.GLOBAL_SHARD, () -> transactionTemplate.executeWithoutResult(status ->
+                    leaseRepository.release(LEASE_NAME, instanceId, LocalDateTime.now())));
+        } catch (RuntimeException e) {
+            log.warn("释放发件箱中继租约失败，{} ms 后由其他实例接管", leaseMs, e);
+        }
+    }
+
+    /**
+     * 租约行不存在时创建，多个实例同时启动时只有一个能插入成功
+     */
+    private void createLease() {
+        try {
+            shardRouter.runOnShard(ShardRouter.GLOBAL_SHARD, () -> transactionTemplate.executeWithoutResult(status -> {
+                if (!leaseRepository.existsById(LEASE_NAME)) {
+                    leaseRepository.save(new OutboxRelayLease(LEASE_NAME, null, LocalDateTime.now()));
+                }
+            }));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("发件箱中继租约已由其他实例创建");
+        }
+    }
+
+    /**
+     * 唤醒中继线程；已有一次尚未开始的唤醒时合并
+     */
+    public void wakeUp() {
+        if (running && wakeupPending.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    wakeupPending.set(false);
+                    relay();
+                });
+            } catch (RejectedExecutionException e) {
+                wakeupPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * 定时轮询，补上进程重启前遗留和唤醒时被拒绝的事件
+     */
+    @Scheduled(fixedDelayString = "${fitai.coach.outbox.poll-interval-ms:1000}",
+               initialDelayString = "${fitai.coach.outbox.poll-interval-ms:1000}")
+    public void poll() {
+        wakeUp();
+    }
+
+    /**
+     * 清理已投递超过保留时长的事件
+     */
+    @Scheduled(cron = "${fitai.coach.outbox.cleanup-cron:0 45 4 * * *}")
+    public void cleanup() {
+        LocalDateTime before = LocalDateTime.now().minusHours(retentionHours);
+        Integer deleted = shardRouter.callOnShard(ShardRouter.GLOBAL_SHARD,
+                () -> transactionTemplate.execute(status -> outboxRepository.deletePublishedBefore(before)));
+        log.info("进度事件发件箱清理: 删除 {} 个 {} 之前投递的事件", deleted, before);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("pending", shardRouter.callOnShard(ShardRouter.GLOBAL_SHARD, outboxRepository::countByPublishedAtIsNull));
+        result.put("published", published.sum());
+        result.put("rejected", rejected.sum());
+        result.put("timedOut", timedOut.sum());
+        result.put("instanceId", instanceId);
+        return result;
+    }
+
+    /**
+     * 连续投递直到发件箱中没有整批待投递的事件
+     */
+    private void relay() {
+        if (!achievementStateService.isStateOwner()) {
+            releaseLease();
+            return;
+        }
+        try {
+            shardRouter.runOnShard(ShardRouter.GLOBAL_SHARD, () -> {
+                while (running && relayBatch()) {
+                    // 继续下一批
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("进度事件发件箱投递失败", e);
+        }
+    }
+
+    /**
+     * 投递一批事件：读取（同时续约）、分发等待、标记分别进行，等待期间不持有事务和行锁
+     * @return 是否取满了一批且全部投递成功（可能还有更多待投递的事件）
+     */
+    private boolean relayBatch() {
+        Claim claim = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            if (leaseRepository.acquire(LEASE_NAME, instanceId, now, now.plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs))) == 0) {
+                // 其他实例持有租约
+                return null;
+            }
+            List<ProgressOutboxEvent> events = outboxRepository.findUnpublished(PageRequest.of(0, batchSize));
+            Set<Long> userIds = events.stream().map(ProgressOutboxEvent::getUserId).collect(Collectors.toSet());
+            Map<Long, User> users = userIds.isEmpty() ? Map.of() : userRepository.findAllById(userIds).stream()
+                    .collect(Collectors.toMap(User::getId, Function.identity()));
+            return new Claim(events, users);
+        });
+        if (claim == null || claim.events().isEmpty()) {
+            return false;
+        }
+        List<ProgressOutboxEvent> events = claim.events();
+
+        List<CompletableFuture<Void>> deliveries = new ArrayList<>(events.size());
+        Set<Long> rejectedUsers = new HashSet<>();
+        Set<Long> deferredUsers = new HashSet<>();
+        for (ProgressOutboxEvent event : events) {
+            CompletableFuture<Void> delivery;
+            if (deferredUsers.contains(event.getUserId())) {
+                delivery = null;
+            } else if (rejectedUsers.contains(event.getUserId())) {
+                delivery = CompletableFuture.failedFuture(new RejectedExecutionException("同一用户之前的事件未能投递"));
+            } else {
+                delivery = deliver(event, claim.users().get(event.getUserId()));
+            }
+            if (delivery == null) {
+                // 会话事务尚未提交，该用户的事件下次再投递
+                deferredUsers.add(event.getUserId());
+            } else if (delivery.isCompletedExceptionally()) {
+                rejectedUsers.add(event.getUserId());
+            }
+            deliveries.add(delivery);
+        }
+
+        List<Long> delivered = new ArrayList<>(events.size());
+        List<Long> failed = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deliveryTimeoutMs);
+        for (int i = 0; i < events.size(); i++) {
+            Long id = events.get(i).getId();
+            if (deliveries.get(i) == null) {
+                continue;
+            }
+            try {
+                deliveries.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                delivered.add(id);
+            } catch (ExecutionException e) {
+                failed.add(id);
+            } catch (TimeoutException e) {
+                // 仍在分发队列中，下次投递时观察者会按事件ID去重
+                timedOut.increment();
+            } catch (InterruptedException e) {
+                // 停止中：已完成的照常标记，其余留给下次启动
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!delivered.isEmpty()) {
+                outboxRepository.markPublished(delivered, LocalDateTime.now());
+            }
+            if (!failed.isEmpty()) {
+                outboxRepository.incrementAttempts(failed);
+            }
+        });
+        published.add(delivered.size());
+        if (!failed.isEmpty()) {
+            rejected.add(failed.size());
+            log.warn("进度事件发件箱: {} 个事件未能进入分发队列，等待下次投递", failed.size());
+        }
+        return events.size() == batchSize && delivered.size() == events.size();
+    }
+
+    /**
+     * @return 训练会话事件的会话尚未提交时返回 null
+     */
+    private CompletableFuture<Void> deliver(ProgressOutboxEvent event, User user) {
+        if (user == null) {
+            log.warn("进度事件 {} 的用户 {} 已不存在，跳过", event.getId(), event.getUserId());
+            return CompletableFuture.completedFuture(null);
+        }
+        Map<String, Object> payload;
+        try {
+            payload = objectMapper.readValue(event.getPayload(), new TypeReference<Map<String, Object>>() { });
+        } catch (JsonProcessingException e) {
+            log.error("进度事件 {} 参数无法解析，跳过: {}", event.getId(), event.getPayload(), e);
+            return CompletableFuture.completedFuture(null);
+        }
+        return switch (event.getEventType()) {
+            case GOAL_ACHIEVED -> progressSubject.publishGoalAchieved(event.getId(), user,
+                    (String) payload.get("achievementType"), (String) payload.get("details"));
+            case PROGRESS_UPDATED -> progressSubject.publishProgressUpdated(event.getId(), user,
+                    (String) payload.get("progressType"), payload.get("oldValue"), payload.get("newValue"));
+            case WORKOUT_STARTED, WORKOUT_COMPLETED -> deliverWorkout(event, user, ((Number) payload.get("sessionId")).longValue());
+        };
+    }
+
+    private CompletableFuture<Void> deliverWorkout(ProgressOutboxEvent event, User user, long sessionId) {
+        boolean completed = event.getEventType() == ProgressOutboxEvent.EventType.WORKOUT_COMPLETED;
+        WorkoutSession session = shardRouter.callOnShard(shardRouter.shardFor(user.getId()),
+                () -> workoutSessionRepository.findById(sessionId).orElse(null));
+        if (session == null || (completed && session.getStatus() != WorkoutSession.SessionStatus.COMPLETED)) {
+            if (event.getCreatedAt().isAfter(LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(sessionConfirmMs)))) {
+                return null;
+            }
+            log.warn("进度事件 {} 的训练会话 {} 超过 {} ms 仍未提交，跳过", event.getId(), sessionId, sessionConfirmMs);
+            return CompletableFuture.completedFuture(null);
+        }
+        return completed
+                ? progressSubject.publishWorkoutCompleted(event.getId(), user, session)
+                : progressSubject.publishWorkoutStarted(event.getId(), user, session);
+    }
+
+    /**
+     * 一次读取到的待投递事件及其用户
+     */
+    private record Claim(List<ProgressOutboxEvent> events, Map<Long, User> users) {
+    }
+}
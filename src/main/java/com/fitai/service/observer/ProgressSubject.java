@@ -2,16 +2,20 @@ package com.fitai.service.observer;
 
 import com.fitai.model.User;
 import com.fitai.model.WorkoutSession;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * 进度主题 - 观察者模式的主题
- * 管理观察者并通知进度变化
+ * 管理观察者并通知进度变化，通知经 ProgressEventDispatcher 同步或按用户分区异步送达。
+ * 需要可靠送达的进度（训练开始和完成、目标达成、进度更新）先写入 ProgressOutbox，由 ProgressOutboxRelay 调用 publish* 投递
  */
 @Component
 @Slf4j
@@ -19,6 +23,18 @@ public class ProgressSubject {
     
     private final List<ProgressObserver> observers = new CopyOnWriteArrayList<>();
     
+    // 容器中声明的观察者，启动时自动注册
+    @Autowired(required = false)
+    private List<ProgressObserver> declaredObservers = new ArrayList<>();
+    
+    @Autowired
+    private ProgressEventDispatcher dispatcher;
+    
+    @PostConstruct
+    public void registerDeclaredObservers() {
+        declaredObservers.forEach(this::addObserver);
+    }
+    
     /**
      * 添加观察者
      */
@@ -43,13 +59,8 @@ public class ProgressSubject {
      */
     public void notifyWorkoutStarted(User user, WorkoutSession session) {
         log.info("通知训练开始: 用户={}, 会话ID={}", user.getUsername(), session.getId());
-        observers.forEach(observer -> {
-            try {
-                observer.onWorkoutStarted(user, session);
-            } catch (Exception e) {
-                log.error("观察者 {} 处理训练开始事件时发生错误", observer.getObserverName(), e);
-            }
-        });
+        dispatcher.dispatch(user.getId(), "WORKOUT_STARTED", observers,
+                observer -> observer.onWorkoutStarted(user, session));
     }
     
     /**
@@ -57,13 +68,8 @@ public class ProgressSubject {
      */
     public void notifyWorkoutCompleted(User user, WorkoutSession session) {
         log.info("通知训练完成: 用户={}, 会话ID={}", user.getUsername(), session.getId());
-        observers.forEach(observer -> {
-            try {
-                observer.onWorkoutCompleted(user, session);
-            } catch (Exception e) {
-                log.error("观察者 {} 处理训练完成事件时发生错误", observer.getObserverName(), e);
-            }
-        });
+        dispatcher.dispatch(user.getId(), "WORKOUT_COMPLETED", observers,
+                observer -> observer.onWorkoutCompleted(user, session));
     }
     
     /**
@@ -71,13 +77,8 @@ public class ProgressSubject {
      */
     public void notifyGoalAchieved(User user, String achievementType, String details) {
         log.info("通知目标达成: 用户={}, 成就={}", user.getUsername(), achievementType);
-        observers.forEach(observer -> {
-            try {
-                observer.onGoalAchieved(user, achievementType, details);
-            } catch (Exception e) {
-                log.error("观察者 {} 处理目标达成事件时发生错误", observer.getObserverName(), e);
-            }
-        });
+        dispatcher.dispatch(user.getId(), "GOAL_ACHIEVED", observers,
+                observer -> observer.onGoalAchieved(user, achievementType, details));
     }
     
     /**
@@ -86,13 +87,51 @@ public class ProgressSubject {
     public void notifyProgressUpdated(User user, String progressType, Object oldValue, Object newValue) {
         log.debug("通知进度更新: 用户={}, 类型={}, {}→{}", 
                  user.getUsername(), progressType, oldValue, newValue);
-        observers.forEach(observer -> {
-            try {
-                observer.onProgressUpdated(user, progressType, oldValue, newValue);
-            } catch (Exception e) {
-                log.error("观察者 {} 处理进度更新事件时发生错误", observer.getObserverName(), e);
-            }
-        });
+        dispatcher.dispatch(user.getId(), "PROGRESS_UPDATED", observers,
+                observer -> observer.onProgressUpdated(user, progressType, oldValue, newValue));
+    }
+    
+    /**
+     * 投递发件箱中的训练开始事件
+     * @return 所有观察者调用完成后完成，分发队列拒绝时以异常完成
+     */
+    CompletableFuture<Void> publishWorkoutStarted(long eventId, User user, WorkoutSession session) {
+        return publish(eventId, user, "WORKOUT_STARTED", observer -> observer.onWorkoutStarted(user, session));
+    }
+    
+    /**
+     * 投递发件箱中的训练完成事件
+     * @return 所有观察者调用完成后完成，分发队列拒绝时以异常完成
+     */
+    CompletableFuture<Void> publishWorkoutCompleted(long eventId, User user, WorkoutSession session) {
+        return publish(eventId, user, "WORKOUT_COMPLETED", observer -> observer.onWorkoutCompleted(user, session));
+    }
+    
+    /**
+     * 投递发件箱中的目标达成事件
+     * @return 所有观察者调用完成后完成，分发队列拒绝时以异常完成
+     */
+    CompletableFuture<Void> publishGoalAchieved(long eventId, User user, String achievementType, String details) {
+        return publish(eventId, user, "GOAL_ACHIEVED",
+                observer -> observer.onGoalAchieved(user, achievementType, details));
+    }
+    
+    /**
+     * 投递发件箱中的进度更新事件
+     * @return 所有观察者调用完成后完成，分发队列拒绝时以异常完成
+     */
+    CompletableFuture<Void> publishProgressUpdated(long eventId, User user, String progressType, Object oldValue,
+                                                   Object newValue) {
+        return publish(eventId, user, "PROGRESS_UPDATED",
+                observer -> observer.onProgressUpdated(user, progressType, oldValue, newValue));
+    }
+    
+    /**
+     * 立即分发（发件箱事件已提交），观察者调用期间 ProgressEventKey 为发件箱事件ID
+     */
+    private CompletableFuture<Void> publish(long eventId, User user, String type, ProgressEventDispatcher.ObserverCall call) {
+        return dispatcher.submit(user.getId(), type, observers,
+                observer -> ProgressEventKey.run(eventId, () -> call.invoke(observer)));
     }
     
     /**
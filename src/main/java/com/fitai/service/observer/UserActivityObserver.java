@@ -0,0 +1,43 @@
+package com.fitai.service.observer;
+
+import com.fitai.model.User;
+import com.fitai.model.WorkoutSession;
+import com.fitai.service.activity.UserActivityService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 用户活跃度观察者
+ * 训练和进度事件发生时在当天的活跃位图中记录用户
+ */
+@Component
+public class UserActivityObserver implements ProgressObserver {
+    
+    @Autowired
+    private UserActivityService userActivityService;
+    
+    @Override
+    public void onWorkoutStarted(User user, WorkoutSession session) {
+        userActivityService.recordActivity(user.getId());
+    }
+    
+    @Override
+    public void onWorkoutCompleted(User user, WorkoutSession session) {
+        userActivityService.recordActivity(user.getId());
+    }
+    
+    @Override
+    public void onGoalAchieved(User user, String achievementType, String details) {
+        // 目标达成总是伴随训练或进度事件，无需重复记录
+    }
+    
+    @Override
+    public void onProgressUpdated(User user, String progressType, Object oldValue, Object newValue) {
+        userActivityService.recordActivity(user.getId());
+    }
+    
+    @Override
+    public String getObserverName() {
+        return "UserActivityObserver";
+    }
+}
@@ -25,6 +25,13 @@ public interface WorkoutProgressObserver {
      */
     void onWorkoutPaused(WorkoutSession session);
     
+    /**
+     * 暂停的训练继续时触发
+     * @param session 训练会话
+     */
+    default void onWorkoutResumed(WorkoutSession session) {
+    }
+    
     /**
      * 训练取消时触发
      * @param session 训练会话
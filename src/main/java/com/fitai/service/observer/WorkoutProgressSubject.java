@@ -0,0 +1,74 @@
+package com.fitai.service.observer;
+
+import com.fitai.model.WorkoutSession;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 训练进度主题 - 管理 WorkoutProgressObserver 并通知训练会话生命周期事件
+ * 通知经 ProgressEventDispatcher 按用户分区异步送达（事务中的通知在提交后入队），
+ * 传给观察者的会话是不受持久化上下文管理的快照，只有会话字段、用户和训练计划ID可用
+ */
+@Component
+@Slf4j
+public class WorkoutProgressSubject {
+    
+    private final List<WorkoutProgressObserver> observers = new CopyOnWriteArrayList<>();
+    
+    // 容器中声明的观察者，启动时自动注册
+    @Autowired(required = false)
+    private List<WorkoutProgressObserver> declaredObservers = new ArrayList<>();
+    
+    @Autowired
+    private ProgressEventDispatcher dispatcher;
+    
+    @PostConstruct
+    public void registerDeclaredObservers() {
+        declaredObservers.forEach(this::addObserver);
+    }
+    
+    public void addObserver(WorkoutProgressObserver observer) {
+        if (!observers.contains(observer)) {
+            observers.add(observer);
+            log.info("添加训练进度观察者: {}", observer.getObserverType().getDescription());
+        }
+    }
+    
+    public void removeObserver(WorkoutProgressObserver observer) {
+        if (observers.remove(observer)) {
+            log.info("移除训练进度观察者: {}", observer.getObserverType().getDescription());
+        }
+    }
+    
+    public void notifyWorkoutStarted(WorkoutSession session) {
+        notify(session, "WORKOUT_STARTED", observer -> observer.onWorkoutStarted(session));
+    }
+    
+    public void notifyWorkoutPaused(WorkoutSession session) {
+        notify(session, "WORKOUT_PAUSED", observer -> observer.onWorkoutPaused(session));
+    }
+    
+    public void notifyWorkoutResumed(WorkoutSession session) {
+        notify(session, "WORKOUT_RESUMED", observer -> observer.onWorkoutResumed(session));
+    }
+    
+    public void notifyWorkoutCompleted(WorkoutSession session) {
+        notify(session, "WORKOUT_COMPLETED", observer -> observer.onWorkoutCompleted(session));
+    }
+    
+    public void notifyWorkoutCancelled(WorkoutSession session) {
+        notify(session, "WORKOUT_CANCELLED", observer -> observer.onWorkoutCancelled(session));
+    }
+    
+    private void notify(WorkoutSession session, String type, Consumer<WorkoutProgressObserver> call) {
+        log.debug("通知训练会话事件: 类型={}, 会话ID={}", type, session.getId());
+        dispatcher.dispatchWorkout(session.getUser().getId(), type, observers, call);
+    }
+}
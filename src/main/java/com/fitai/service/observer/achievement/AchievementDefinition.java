@@ -0,0 +1,29 @@
+package com.fitai.service.observer.achievement;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * 成就定义（从 achievements.json 加载）
+ * 指标值从低于 threshold 变为大于等于 threshold 时解锁
+ * index 是该成就在 UserStats 已解锁位图中的位，随用户统计持久化：分配后不能修改，
+ * 删除的成就其序号也不能再分配给其他成就，新增成就使用新的序号
+ */
+@Data
+public class AchievementDefinition {
+
+    // 已解锁位图中的位，唯一且只增不改；只从定义文件读取，不对外输出
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private Integer index;
+
+    // 唯一编码
+    private String code;
+
+    private AchievementMetric metric;
+
+    private double threshold;
+
+    private String title;
+
+    private String message;
+}
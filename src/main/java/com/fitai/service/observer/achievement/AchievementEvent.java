@@ -0,0 +1,46 @@
+package com.fitai.service.observer.achievement;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * 成就进度事件，写入事件日志后再应用到用户统计
+ * time 对开始训练为 UTC 秒，对完成训练为训练日（epochDay）；
+ * count 为训练分钟数或训练天数；amount / previous 为卡路里或新旧体重；
+ * source 为来源事件ID（进度事件发件箱中的ID），用于丢弃重复投递的事件，0 表示没有来源
+ */
+public record AchievementEvent(long sequence, long userId, Type type, long time, int count, double amount, double previous,
+                               long source) {
+
+    public enum Type {
+        WORKOUT_STARTED,
+        WORKOUT_COMPLETED,
+        WEIGHT_CHANGED,
+        WORKOUT_DAYS_CHANGED
+    }
+
+    public static AchievementEvent workoutStarted(long userId, LocalDateTime startedAt) {
+        return new AchievementEvent(0, userId, Type.WORKOUT_STARTED, startedAt.toEpochSecond(ZoneOffset.UTC), 0, 0, 0, 0);
+    }
+
+    public static AchievementEvent workoutCompleted(long userId, LocalDate day, int minutes, double calories) {
+        return new AchievementEvent(0, userId, Type.WORKOUT_COMPLETED, day.toEpochDay(), minutes, calories, 0, 0);
+    }
+
+    public static AchievementEvent weightChanged(long userId, double oldWeight, double newWeight) {
+        return new AchievementEvent(0, userId, Type.WEIGHT_CHANGED, 0, 0, newWeight, oldWeight, 0);
+    }
+
+    public static AchievementEvent workoutDaysChanged(long userId, int workoutDays) {
+        return new AchievementEvent(0, userId, Type.WORKOUT_DAYS_CHANGED, 0, workoutDays, 0, 0, 0);
+    }
+
+    public AchievementEvent withSource(long source) {
+        return new AchievementEvent(sequence, userId, type, time, count, amount, previous, source);
+    }
+
+    AchievementEvent withSequence(long sequence) {
+        return new AchievementEvent(sequence, userId, type, time, count, amount, previous, source);
+    }
+}
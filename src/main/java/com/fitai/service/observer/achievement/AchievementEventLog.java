@@ -0,0 +1,170 @@
+package com.fitai.service.observer.achievement;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 成就事件日志（本地、只追加、分段）
+ * 条目定长：sequence(8) | type(1) | userId(8) | time(8) | count(4) | amount(8) | previous(8) | source(8) | crc32(4)，
+ * CRC 覆盖条目中除自身以外的全部字节。分段文件名为该段第一个条目的序号，快照覆盖的旧分段会被删除，
+ * 每次启动后的第一次追加都会新建分段
+ * 非线程安全，由调用方负责同步
+ */
+@Slf4j
+final class AchievementEventLog {
+
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".events";
+    private static final int BODY_BYTES = 8 + 1 + 8 + 8 + 4 + 8 + 8 + 8;
+    private static final int ENTRY_BYTES = BODY_BYTES + 4;
+    private static final AchievementEvent.Type[] TYPES = AchievementEvent.Type.values();
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+
+    // 分段起始序号 -> 分段文件
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+
+    private FileChannel current;
+    private long nextSequence = 1;
+
+    AchievementEventLog(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * 读取全部分段，返回序号大于 checkpoint 的事件，并截掉每个分段末尾不完整的条目
+     */
+    List<AchievementEvent> recover(long checkpoint) throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                 .forEach(path -> segments.put(parseFirstSequence(path), path));
+        }
+
+        List<AchievementEvent> pending = new ArrayList<>();
+        long lastSequence = checkpoint;
+        for (Path segment : segments.values()) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                long validLength = 0;
+                while (buffer.remaining() >= ENTRY_BYTES) {
+                    int start = buffer.position();
+                    CRC32 crc = new CRC32();
+                    crc.update(buffer.slice(start, BODY_BYTES));
+                    long sequence = buffer.getLong();
+                    int type = buffer.get();
+                    AchievementEvent event = new AchievementEvent(sequence, buffer.getLong(),
+                            type >= 0 && type < TYPES.length ? TYPES[type] : null,
+                            buffer.getLong(), buffer.getInt(), buffer.getDouble(), buffer.getDouble(), buffer.getLong());
+                    if (buffer.getInt() != (int) crc.getValue() || event.type() == null) {
+                        break;
+                    }
+                    validLength = buffer.position();
+                    lastSequence = Math.max(lastSequence, sequence);
+                    if (sequence > checkpoint) {
+                        pending.add(event);
+                    }
+                }
+                if (validLength < channel.size()) {
+                    log.warn("成就事件日志分段尾部不完整，已截断: {} ({} -> {} 字节)", segment, channel.size(), validLength);
+                    channel.truncate(validLength);
+                }
+            }
+        }
+        nextSequence = lastSequence + 1;
+        return pending;
+    }
+
+    /**
+     * 追加一个事件并分配序号，写入操作系统页缓存即返回，落盘由 {@link #force()} 定期完成
+     */
+    AchievementEvent append(AchievementEvent event) throws IOException {
+        if (current == null || current.size() >= segmentBytes) {
+            roll();
+        }
+        AchievementEvent sequenced = event.withSequence(nextSequence);
+        entry.clear();
+        entry.putLong(sequenced.sequence());
+        entry.put((byte) sequenced.type().ordinal());
+        entry.putLong(sequenced.userId());
+        entry.putLong(sequenced.time());
+        entry.putInt(sequenced.count());
+        entry.putDouble(sequenced.amount());
+        entry.putDouble(sequenced.previous());
+        entry.putLong(sequenced.source());
+        CRC32 crc = new CRC32();
+        crc.update(entry.array(), 0, BODY_BYTES);
+        entry.putInt((int) crc.getValue());
+        entry.flip();
+        while (entry.hasRemaining()) {
+            current.write(entry);
+        }
+        nextSequence++;
+        return sequenced;
+    }
+
+    /**
+     * 最后分配的序号
+     */
+    long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    void force() throws IOException {
+        if (current != null) {
+            current.force(false);
+        }
+    }
+
+    /**
+     * 删除所有条目都不大于 snapshotSequence 的旧分段（当前分段除外）
+     */
+    void purge(long snapshotSequence) throws IOException {
+        while (segments.size() > 1) {
+            Long first = segments.firstKey();
+            Long second = segments.higherKey(first);
+            if (second - 1 > snapshotSequence) {
+                return;
+            }
+            Files.deleteIfExists(segments.remove(first));
+        }
+    }
+
+    void close() throws IOException {
+        if (current != null) {
+            current.force(false);
+            current.close();
+            current = null;
+        }
+    }
+
+    private void roll() throws IOException {
+        if (current != null) {
+            current.force(false);
+            current.close();
+        }
+        Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        current = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segments.put(nextSequence, segment);
+    }
+
+    private static long parseFirstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,25 @@
+package com.fitai.service.observer.achievement;
+
+/**
+ * 成就可引用的统计指标
+ */
+public enum AchievementMetric {
+
+    // 累计完成训练次数
+    COMPLETED_WORKOUTS,
+
+    // 连续训练天数
+    CONSECUTIVE_DAYS,
+
+    // 累计消耗卡路里
+    CALORIES_BURNED,
+
+    // 累计训练分钟数
+    WORKOUT_MINUTES,
+
+    // 累计减重（公斤）
+    WEIGHT_LOSS,
+
+    // 用户资料中的训练天数
+    WORKOUT_DAYS
+}
@@ -0,0 +1,164 @@
+package com.fitai.service.observer.achievement;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 成就规则引擎
+ * 启动时加载成就定义，按指标编译成按阈值升序排列的数组；
+ * 指标从 oldValue 变为 newValue 时，用两次二分查找定位 (oldValue, newValue] 区间内的全部阈值，
+ * 一次事件跨过多个档位时每一档都会解锁。新增成就只需修改定义文件，并使用一个新的 index
+ */
+@Component
+@Slf4j
+public class AchievementRuleEngine {
+
+    // 序号上限，已解锁位图最多 16 个 long
+    static final int MAX_INDEX = 1023;
+
+    private static final double[] NO_THRESHOLDS = new double[0];
+    private static final AchievementDefinition[] NO_DEFINITIONS = new AchievementDefinition[0];
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${fitai.coach.achievement.definitions:classpath:achievements.json}")
+    private Resource definitionsResource;
+
+    private List<AchievementDefinition> definitions = List.of();
+    // 按 index 索引，已删除的成就为 null
+    private AchievementDefinition[] byIndex = NO_DEFINITIONS;
+    private final Map<AchievementMetric, double[]> thresholds = new EnumMap<>(AchievementMetric.class);
+    private final Map<AchievementMetric, AchievementDefinition[]> tiers = new EnumMap<>(AchievementMetric.class);
+
+    @PostConstruct
+    public void load() {
+        List<AchievementDefinition> loaded;
+        try (InputStream in = definitionsResource.getInputStream()) {
+            loaded = objectMapper.readValue(in, new TypeReference<List<AchievementDefinition>>() {});
+        } catch (IOException e) {
+            throw new UncheckedIOException("加载成就定义失败: " + definitionsResource, e);
+        }
+        compile(loaded);
+        log.info("已加载 {} 个成就定义: {}", definitions.size(), definitionsResource);
+    }
+
+    /**
+     * 校验并编译成就定义
+     */
+    void compile(List<AchievementDefinition> loaded) {
+        Set<String> codes = new HashSet<>();
+        int maxIndex = -1;
+        for (int i = 0; i < loaded.size(); i++) {
+            AchievementDefinition definition = loaded.get(i);
+            if (definition.getCode() == null || definition.getMetric() == null || definition.getTitle() == null
+                    || definition.getIndex() == null) {
+                throw new IllegalArgumentException("成就定义缺少 index、code、metric 或 title: 第 " + (i + 1) + " 项");
+            }
+            if (!codes.add(definition.getCode())) {
+                throw new IllegalArgumentException("成就编码重复: " + definition.getCode());
+            }
+            if (definition.getIndex() < 0 || definition.getIndex() > MAX_INDEX) {
+                throw new IllegalArgumentException("成就序号超出范围 [0, " + MAX_INDEX + "]: " + definition.getCode());
+            }
+            if (!(definition.getThreshold() > 0)) {
+                throw new IllegalArgumentException("成就阈值必须为正数: " + definition.getCode());
+            }
+            maxIndex = Math.max(maxIndex, definition.getIndex());
+        }
+        AchievementDefinition[] indexed = new AchievementDefinition[maxIndex + 1];
+        for (AchievementDefinition definition : loaded) {
+            if (indexed[definition.getIndex()] != null) {
+                throw new IllegalArgumentException("成就序号重复: " + definition.getIndex() + " ("
+                        + indexed[definition.getIndex()].getCode() + ", " + definition.getCode() + ")");
+            }
+            indexed[definition.getIndex()] = definition;
+        }
+
+        for (AchievementMetric metric : AchievementMetric.values()) {
+            AchievementDefinition[] sorted = loaded.stream()
+                    .filter(definition -> definition.getMetric() == metric)
+                    .sorted(Comparator.comparingDouble(AchievementDefinition::getThreshold))
+                    .toArray(AchievementDefinition[]::new);
+            tiers.put(metric, sorted);
+            thresholds.put(metric, Arrays.stream(sorted).mapToDouble(AchievementDefinition::getThreshold).toArray());
+        }
+        definitions = List.copyOf(loaded);
+        byIndex = indexed;
+    }
+
+    /**
+     * 指标从 oldValue 变为 newValue 时跨过的成就（阈值满足 oldValue < threshold <= newValue），按阈值升序
+     */
+    public List<AchievementDefinition> crossed(AchievementMetric metric, double oldValue, double newValue) {
+        if (!(newValue > oldValue)) {
+            return List.of();
+        }
+        double[] values = thresholds.getOrDefault(metric, NO_THRESHOLDS);
+        int from = upperBound(values, oldValue);
+        int to = upperBound(values, newValue);
+        if (from >= to) {
+            return List.of();
+        }
+        return Arrays.asList(tiers.getOrDefault(metric, NO_DEFINITIONS)).subList(from, to);
+    }
+
+    /**
+     * 全部成就定义，按定义文件中的顺序
+     */
+    public List<AchievementDefinition> getDefinitions() {
+        return definitions;
+    }
+
+    /**
+     * 已解锁位图中第 index 位对应的成就，成就已删除时返回 null
+     */
+    public AchievementDefinition getDefinition(int index) {
+        return index >= 0 && index < byIndex.length ? byIndex[index] : null;
+    }
+
+    /**
+     * 已解锁位图需要的位数（最大序号 + 1）
+     */
+    public int getIndexCapacity() {
+        return byIndex.length;
+    }
+
+    public int size() {
+        return definitions.size();
+    }
+
+    /**
+     * 第一个大于 value 的元素下标
+     */
+    private static int upperBound(double[] values, double value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
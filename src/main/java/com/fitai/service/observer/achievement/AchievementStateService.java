@@ -0,0 +1,495 @@
+package com.fitai.service.observer.achievement;
+
+import com.fitai.config.sharding.ShardRouter;
+import com.fitai.model.OutboxRelayLease;
+import com.fitai.repository.OutboxRelayLeaseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * 成就状态（事件溯源）
+ * 每个进度事件先追加到事件日志，再应用到内存映射槽位文件中的用户统计；
+ * 同一用户的追加和应用在同一把分段锁内完成，用户的事件序号与应用顺序一致，应用完成后才推进已应用序号；
+ * 快照时把映射页刷到磁盘并记录快照序号，随后删除快照之前的日志分段。
+ * 映射页的修改在进程崩溃后仍保留在页缓存中，只有机器掉电才会丢失未刷盘的页，
+ * 因此启动时从快照序号之后重放日志尾部，按用户分区并行应用，
+ * 槽位中记录了每个用户已应用的最大序号，快照之后已经落盘的修改不会被重复应用。
+ * 日志按 fsync-interval-ms 定期落盘，机器掉电最多丢失这段时间内的事件
+ *
+ * 状态只保存在本机磁盘，部署上只能有一个实例：排行榜和训练日统计都从这里读取，
+ * 换一个空目录启动会把所有用户的成就重新解锁一遍。因此每个状态目录有一个ID（store-file 旁的 state-id 文件），
+ * 全局库的租约表中记录状态归属的目录ID（achievement-state），启动时与本机目录不一致则拒绝启动，
+ * 迁移到新节点时应把整个状态目录一并搬过去；确需以当前目录为准（会从头重新计算成就）时设置 adopt-state。
+ * 同一目录由文件锁保证只被一个进程打开；运行中发现归属被其他目录接管时停止记录事件
+ */
+@Service
+@Slf4j
+public class AchievementStateService {
+
+    private static final int USER_LOCK_STRIPES = 256;
+    private static final String STATE_LEASE_NAME = "achievement-state";
+    private static final String STATE_ID_FILE = "state-id";
+
+    @Autowired
+    private AchievementRuleEngine ruleEngine;
+
+    @Autowired
+    private OutboxRelayLeaseRepository leaseRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${fitai.coach.achievement.store-file:data/achievement/user-stats.dat}")
+    private String storeFile;
+
+    @Value("${fitai.coach.achievement.event-log.dir:data/achievement/events}")
+    private String logDir;
+
+    @Value("${fitai.coach.achievement.event-log.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    // 重放线程数，0 表示使用 CPU 核数
+    @Value("${fitai.coach.achievement.event-log.replay-threads:0}")
+    private int replayThreads;
+
+    // 以本机状态目录接管全局记录的归属（原目录的成就不再可见，会重新解锁）
+    @Value("${fitai.coach.achievement.adopt-state:false}")
+    private boolean adoptState;
+
+    private String stateId;
+    private FileChannel stateIdChannel;
+    private FileLock stateIdLock;
+    // 状态归属已被其他目录接管，本实例不再记录事件
+    private volatile boolean stateLost;
+
+    private UserStatsStore store;
+    private AchievementEventLog eventLog;
+
+    // 事件追加并应用时持有读锁，快照持有写锁，保证快照时没有已追加但未应用的事件
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    // 按用户ID分段的锁，同一用户的事件串行追加和应用，不同用户之间并行
+    private final Object[] userLocks = createUserLocks();
+
+    @PostConstruct
+    public void start() throws IOException, InterruptedException {
+        lockStateDirectory();
+        try {
+            bindState();
+        } catch (RuntimeException e) {
+            stateIdLock.release();
+            stateIdChannel.close();
+            throw e;
+        }
+        store = UserStatsStore.open(Path.of(storeFile), ruleEngine.getIndexCapacity());
+        store.registerAchievements(ruleEngine.getDefinitions());
+        long snapshotSequence = store.readSnapshotSequence();
+        eventLog = new AchievementEventLog(Path.of(logDir), segmentBytes);
+        List<AchievementEvent> tail = eventLog.recover(snapshotSequence);
+        replay(snapshotSequence, tail);
+        if (!tail.isEmpty()) {
+            snapshot();
+        }
+    }
+
+    /**
+     * 记录一个进度事件，来源事件已经处理过的（重复投递）直接忽略
+     * @return 本次事件新解锁的成就
+     */
+    public List<AchievementDefinition> record(AchievementEvent event) {
+        if (stateLost) {
+            throw new IllegalStateException("成就状态已由其他实例的状态目录接管，本实例不再记录事件");
+        }
+        snapshotLock.readLock().lock();
+        try {
+            synchronized (userLocks[(int) Math.floorMod(event.userId(), (long) USER_LOCK_STRIPES)]) {
+                UserStats stats = store.stats(event.userId());
+                if (event.source() > 0 && event.source() <= stats.getLastSource()) {
+                    log.debug("忽略重复投递的成就事件: 用户={}, 来源={}", event.userId(), event.source());
+                    return List.of();
+                }
+                AchievementEvent sequenced = append(event);
+                List<AchievementDefinition> unlocked = apply(stats, sequenced);
+                // 应用完成后再推进：在此之前崩溃，重放时该事件仍会被应用
+                stats.markSource(sequenced.source());
+                stats.markApplied(sequenced.sequence());
+                return unlocked;
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 来源事件是否已经记录过（同一用户的来源事件按ID顺序投递）
+     */
+    public boolean isProcessed(Long userId, long source) {
+        return source > 0 && source <= store.stats(userId).getLastSource();
+    }
+
+    /**
+     * 本实例是否仍持有成就状态的归属（被其他状态目录接管后不再记录事件）
+     */
+    public boolean isStateOwner() {
+        return !stateLost;
+    }
+
+    /**
+     * 用户已解锁的成就
+     */
+    public List<AchievementDefinition> getUnlockedAchievements(Long userId) {
+        // 已删除的成就仍占着位，不再返回
+        return store.stats(userId).getAchievements().stream()
+                .mapToObj(ruleEngine::getDefinition)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * 定期把事件日志刷到磁盘
+     */
+    @Scheduled(fixedDelayString = "${fitai.coach.achievement.event-log.fsync-interval-ms:200}")
+    public void forceLog() {
+        synchronized (eventLog) {
+            try {
+                eventLog.force();
+            } catch (IOException e) {
+                log.error("成就事件日志刷盘失败", e);
+            }
+        }
+    }
+
+    /**
+     * 快照：把映射页刷到磁盘并记录快照序号，删除已被快照覆盖的日志分段
+     */
+    @Scheduled(fixedDelayString = "${fitai.coach.achievement.snapshot-interval-ms:300000}",
+               initialDelayString = "${fitai.coach.achievement.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        long start = System.nanoTime();
+        long sequence;
+        // 只在取序号时持有写锁：此时不大于该序号的事件都已应用到映射内存，刷盘可以与新事件并行
+        snapshotLock.writeLock().lock();
+        try {
+            synchronized (eventLog) {
+                sequence = eventLog.lastSequence();
+            }
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+
+        try {
+            // 刷盘期间新应用的事件带有各自的已应用序号，重放时会被跳过
+            store.force();
+            store.writeSnapshotSequence(sequence);
+            synchronized (eventLog) {
+                eventLog.purge(sequence);
+            }
+            log.info("成就快照完成: 序号 {}, 耗时 {} ms", sequence,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            log.error("成就快照提交失败: 序号 {}", sequence, e);
+        }
+    }
+
+    /**
+     * 定期确认全局记录的状态归属仍是本机目录
+     */
+    @Scheduled(fixedDelayString = "${fitai.coach.achievement.owner-check-ms:10000}")
+    public void checkStateOwner() {
+        if (stateLost) {
+            return;
+        }
+        try {
+            String owner = shardRouter.callOnShard(ShardRouter.GLOBAL_SHARD,
+                    () -> leaseRepository.findById(STATE_LEASE_NAME).map(OutboxRelayLease::getOwner).orElse(null));
+            if (owner != null && !owner.equals(stateId)) {
+                stateLost = true;
+                log.error("成就状态已由状态目录 {} 接管，本实例（{}）停止记录成就事件", owner, stateId);
+            }
+        } catch (RuntimeException e) {
+            log.warn("确认成就状态归属失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        snapshot();
+        synchronized (eventLog) {
+            eventLog.close();
+        }
+        store.close();
+        stateIdLock.release();
+        stateIdChannel.close();
+    }
+
+    /**
+     * 用户统计（直接读取槽位文件）；只用于读取，修改必须经过 record 写入事件日志
+     */
+    public UserStats getStats(Long userId) {
+        return store.stats(userId);
+    }
+
+    /**
+     * 依次访问所有有记录的用户统计（重建排行榜等离线场景使用）
+     */
+    public void forEachStats(BiConsumer<Long, UserStats> action) {
+        try {
+            store.forEach(action);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取用户统计文件失败", e);
+        }
+    }
+
+    /**
+     * 用户的训练日统计：当前连续天数、最长连续天数和最近 days 天内的训练天数
+     */
+    public Map<String, Object> getTrainingStreak(Long userId, LocalDate today, int days) {
+        UserStats stats = store.stats(userId);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("currentStreak", stats.getCurrentStreak(today));
+        result.put("longestStreak", stats.getLongestStreak());
+        result.put("days", days);
+        result.put("workoutDays", stats.countWorkoutDays(today.minusDays(days - 1), today));
+        return result;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("snapshotSequence", store.readSnapshotSequence());
+        synchronized (eventLog) {
+            result.put("lastSequence", eventLog.lastSequence());
+        }
+        result.put("storeFile", store.getFile().toString());
+        result.put("stateId", stateId);
+        result.put("stateLost", stateLost);
+        result.put("mappedBytes", store.getMappedBytes());
+        return result;
+    }
+
+    /**
+     * 锁定本机状态目录并读取（首次启动时生成）目录ID，同一目录已被其他进程打开时拒绝启动
+     */
+    private void lockStateDirectory() throws IOException {
+        Path file = Path.of(storeFile).toAbsolutePath().resolveSibling(STATE_ID_FILE);
+        Files.createDirectories(file.getParent());
+        stateIdChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            stateIdLock = stateIdChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // 同一个 JVM 中已经打开
+            stateIdLock = null;
+        }
+        if (stateIdLock == null) {
+            stateIdChannel.close();
+            throw new IllegalStateException("成就状态目录已被另一个进程使用: " + file.getParent());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) stateIdChannel.size());
+        while (buffer.hasRemaining() && stateIdChannel.read(buffer) >= 0) {
+            // 读满整个文件
+        }
+        stateId = new String(buffer.array(), StandardCharsets.UTF_8).trim();
+        if (stateId.isEmpty()) {
+            stateId = UUID.randomUUID().toString();
+            stateIdChannel.truncate(0);
+            stateIdChannel.write(ByteBuffer.wrap(stateId.getBytes(StandardCharsets.UTF_8)), 0);
+            stateIdChannel.force(true);
+        }
+    }
+
+    /**
+     * 在全局库中登记状态归属：尚未登记时归本目录，已归其他目录时拒绝启动（除非 adopt-state）
+     */
+    private void bindState() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        String previous;
+        try {
+            previous = shardRouter.callOnShard(ShardRouter.GLOBAL_SHARD, () -> transactionTemplate.execute(status -> {
+                OutboxRelayLease lease = leaseRepository.findById(STATE_LEASE_NAME).orElse(null);
+                if (lease == null) {
+                    leaseRepository.save(new OutboxRelayLease(STATE_LEASE_NAME, stateId, LocalDateTime.now()));
+                    return stateId;
+                }
+                String owner = lease.getOwner();
+                if (!stateId.equals(owner) && adoptState) {
+                    lease.setOwner(stateId);
+                    lease.setExpiresAt(LocalDateTime.now());
+                }
+                return owner;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            // 首次部署时另一个实例同时登记成功
+            previous = shardRouter.callOnShard(ShardRouter.GLOBAL_SHARD,
+                    () -> leaseRepository.findById(STATE_LEASE_NAME).map(OutboxRelayLease::getOwner).orElse(null));
+        }
+        if (stateId.equals(previous)) {
+            return;
+        }
+        if (previous != null && adoptState) {
+            log.warn("成就状态归属由状态目录 {} 改为本机目录 {}，原目录中的成就不再可见", previous, stateId);
+            return;
+        }
+        throw new IllegalStateException("成就状态属于另一个状态目录（" + previous + "），本机目录为 " + stateId
+                + "：请把原状态目录迁移到本机，或确认可以重新计算成就后设置 fitai.coach.achievement.adopt-state=true");
+    }
+
+    private AchievementEvent append(AchievementEvent event) {
+        synchronized (eventLog) {
+            try {
+                return eventLog.append(event);
+            } catch (IOException e) {
+                throw new UncheckedIOException("写入成就事件日志失败", e);
+            }
+        }
+    }
+
+    /**
+     * 按用户分区并行重放快照之后的事件，同一用户的事件在同一线程中按序号顺序应用
+     */
+    private void replay(long snapshotSequence, List<AchievementEvent> events) throws InterruptedException {
+        if (events.isEmpty()) {
+            log.info("成就状态: 快照序号 {}, 无需重放", snapshotSequence);
+            return;
+        }
+        long start = System.nanoTime();
+        int threads = replayThreads > 0 ? replayThreads : Runtime.getRuntime().availableProcessors();
+        List<List<AchievementEvent>> partitions = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (AchievementEvent event : events) {
+            partitions.get((int) Math.floorMod(event.userId(), (long) threads)).add(event);
+        }
+
+        AtomicLong applied = new AtomicLong();
+        AtomicLong users = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<AchievementEvent> partition : partitions) {
+                futures.add(executor.submit(() -> replayPartition(partition, applied, users)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("重放成就事件日志失败", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        log.info("成就状态: 快照序号 {}, 重放 {} 个事件（应用 {} 个, {} 个用户）, {} 个线程, 耗时 {} ms",
+                snapshotSequence, events.size(), applied.get(), users.get(), threads,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void replayPartition(List<AchievementEvent> events, AtomicLong applied, AtomicLong users) {
+        Set<Long> seen = new HashSet<>();
+        for (AchievementEvent event : events) {
+            seen.add(event.userId());
+            UserStats stats = store.stats(event.userId());
+            if (event.sequence() > stats.getAppliedSequence()) {
+                apply(stats, event);
+                stats.markSource(event.source());
+                stats.markApplied(event.sequence());
+                applied.incrementAndGet();
+            }
+        }
+        users.addAndGet(seen.size());
+    }
+
+    /**
+     * 把事件应用到用户统计
+     * @return 新解锁的成就
+     */
+    private List<AchievementDefinition> apply(UserStats stats, AchievementEvent event) {
+        List<AchievementDefinition> unlocked = new ArrayList<>(0);
+        switch (event.type()) {
+            case WORKOUT_STARTED -> stats.recordWorkoutStarted(LocalDateTime.ofEpochSecond(event.time(), 0, ZoneOffset.UTC));
+            case WORKOUT_COMPLETED -> {
+                int completedWorkouts = stats.recordWorkoutCompleted();
+                check(stats, AchievementMetric.COMPLETED_WORKOUTS, completedWorkouts - 1, completedWorkouts, unlocked);
+
+                // 补录的日期可能把前后两段连成一段、一次跨过多个档位，因此检查包含该天的整段；已解锁的档位不会重复解锁
+                int streak = stats.recordWorkoutDay(LocalDate.ofEpochDay(event.time()));
+                check(stats, AchievementMetric.CONSECUTIVE_DAYS, 0, streak, unlocked);
+
+                long previousMinutes = stats.addWorkoutMinutes(event.count());
+                check(stats, AchievementMetric.WORKOUT_MINUTES, previousMinutes, previousMinutes + event.count(), unlocked);
+
+                double previousCalories = stats.addCaloriesBurned(event.amount());
+                check(stats, AchievementMetric.CALORIES_BURNED, previousCalories, previousCalories + event.amount(), unlocked);
+            }
+            case WEIGHT_CHANGED -> {
+                stats.setCurrentWeight(event.amount());
+                double weightChange = event.previous() - event.amount();
+                if (weightChange > 0) {
+                    double previousLoss = stats.addWeightLoss(weightChange);
+                    check(stats, AchievementMetric.WEIGHT_LOSS, previousLoss, previousLoss + weightChange, unlocked);
+                }
+            }
+            case WORKOUT_DAYS_CHANGED -> {
+                int previousDays = stats.setTotalWorkoutDays(event.count());
+                check(stats, AchievementMetric.WORKOUT_DAYS, previousDays, event.count(), unlocked);
+            }
+        }
+        return unlocked;
+    }
+
+    private static Object[] createUserLocks() {
+        Object[] locks = new Object[USER_LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    private void check(UserStats stats, AchievementMetric metric, double oldValue, double newValue,
+                       List<AchievementDefinition> unlocked) {
+        for (AchievementDefinition achievement : ruleEngine.crossed(metric, oldValue, newValue)) {
+            // 已经解锁过（或被并发处理抢先解锁）的不再返回
+            if (stats.unlock(achievement.getIndex())) {
+                unlocked.add(achievement);
+            }
+        }
+    }
+}
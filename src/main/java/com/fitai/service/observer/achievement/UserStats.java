@@ -0,0 +1,387 @@
+package com.fitai.service.observer.achievement;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.BitSet;
+
+/**
+ * 用户训练统计（线程安全、无锁）
+ * 统计不在堆上：对象只是 UserStatsStore 内存映射文件中某个定长槽位的视图，
+ * 字段通过 VarHandle 在映射内存上原子读写，修改直接进入页缓存，重启后仍然存在。
+ * 成就规则按“变化前的值 -> 变化后的值”判断跨过的档位，参与成就的指标都原子更新并返回变化前的值，
+ * 并发更新时每个调用方拿到互不重叠的区间，档位不会被漏判。
+ * 已解锁成就存为位图（下标为 AchievementDefinition.index），通过 CAS 更新。
+ * 训练日存为最近约两年的滚动位图：每个 long 的低48位对应一个48天的块，高16位记录块号，
+ * 块号 % TRAINING_DAY_WORDS 决定所在的字；写入更新的块时整字替换，块号不符的字即为过期数据，
+ * 每次更新只需一次单字 CAS。当前连续天数、最长连续天数和区间内训练天数都按字做位运算，
+ * 乱序补录的训练日同样计入
+ *
+ * 槽位布局（本机字节序，各字段按自身宽度对齐，全0即为没有任何记录）：
+ * completedWorkouts(4) | totalWorkoutDays(4) | startedWorkouts(8) | totalWorkoutMinutes(8) |
+ * totalCaloriesBurned(8) | totalWeightLoss(8) | currentWeight(8) | lastWorkoutAt(8) | longestStreak(8) |
+ * appliedSequence(8) | 训练日位图(8 * TRAINING_DAY_WORDS) | lastSource(8) | 成就位图(8 * bitmapWords)
+ */
+public final class UserStats {
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final int COMPLETED_WORKOUTS = 0;
+    private static final int TOTAL_WORKOUT_DAYS = 4;
+    private static final int STARTED_WORKOUTS = 8;
+    private static final int TOTAL_WORKOUT_MINUTES = 16;
+    // double 按 Double.doubleToRawLongBits 存放，0L 即 0.0
+    private static final int TOTAL_CALORIES_BURNED = 24;
+    private static final int TOTAL_WEIGHT_LOSS = 32;
+    private static final int CURRENT_WEIGHT = 40;
+    // UTC 秒，0 表示尚无记录
+    static final int LAST_WORKOUT_AT = 48;
+    // 历史最长连续训练天数，训练日位图滚出窗口后仍然保留
+    static final int LONGEST_STREAK = 56;
+    // 已应用的最大事件序号，重放事件日志时跳过不大于它的事件
+    static final int APPLIED_SEQUENCE = 64;
+    static final int TRAINING_DAYS = 72;
+    // 已处理的最大来源事件ID（进度事件发件箱的幂等键），重复投递的事件不再记录
+    static final int LAST_SOURCE = 200;
+    // 已解锁成就位图，第 n 位对应序号为 n 的成就定义
+    static final int UNLOCKED = 208;
+
+    private static final int DAYS_PER_WORD = 48;
+    private static final long DAY_MASK = (1L << DAYS_PER_WORD) - 1;
+    private static final int TRAINING_DAY_WORDS = 16;
+    // 位图可容纳的天数（768天）；最新的块可能只到块中间，实际可回看的天数略少
+    static final int TRAINING_DAY_WINDOW = DAYS_PER_WORD * TRAINING_DAY_WORDS;
+    private static final long MAX_EPOCH_DAY = (0xFFFFL + 1) * DAYS_PER_WORD - 1;
+
+    private final ByteBuffer buffer;
+    private final int base;
+    private final int bitmapWords;
+
+    UserStats(ByteBuffer buffer, int base, int bitmapWords) {
+        this.buffer = buffer;
+        this.base = base;
+        this.bitmapWords = bitmapWords;
+    }
+
+    /**
+     * 分配一个不落盘的独立统计（压测等场景使用）
+     * @param achievementCount 成就定义总数
+     */
+    public static UserStats allocate(int achievementCount) {
+        int words = bitmapWords(achievementCount);
+        return new UserStats(ByteBuffer.allocateDirect(slotBytes(words)), 0, words);
+    }
+
+    /**
+     * 槽位字节数：取不小于所需长度的2的幂，槽位按自身大小对齐，不会跨越内存页
+     */
+    static int slotBytes(int bitmapWords) {
+        return Integer.highestOneBit(UNLOCKED + bitmapWords * Long.BYTES - 1) << 1;
+    }
+
+    /**
+     * 成就位图需要的 long 个数
+     */
+    static int bitmapWords(int achievementCount) {
+        return Math.max(1, (achievementCount + 63) >>> 6);
+    }
+
+    public void recordWorkoutStarted(LocalDateTime startedAt) {
+        LONG.getAndAdd(buffer, base + STARTED_WORKOUTS, 1L);
+        LONG.setVolatile(buffer, base + LAST_WORKOUT_AT, startedAt.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    /**
+     * 记录一次完成的训练
+     * @return 本次之后的完成次数，并发调用时每个调用方拿到的值各不相同
+     */
+    public int recordWorkoutCompleted() {
+        return (int) INT.getAndAdd(buffer, base + COMPLETED_WORKOUTS, 1) + 1;
+    }
+
+    /**
+     * @return 累加前的训练分钟数
+     */
+    public long addWorkoutMinutes(int minutes) {
+        return (long) LONG.getAndAdd(buffer, base + TOTAL_WORKOUT_MINUTES, (long) minutes);
+    }
+
+    /**
+     * @return 累加前的卡路里
+     */
+    public double addCaloriesBurned(double calories) {
+        return getAndAddDouble(base + TOTAL_CALORIES_BURNED, calories);
+    }
+
+    /**
+     * 记录某天有训练（可以是补录的更早日期），同一天重复记录不产生变化
+     * 所在的块已被更新的块占用（约两年前）的日期无法再记录，直接忽略
+     * @return 包含该天的连续训练天数（补录的日期可能把前后两段连成一段），被忽略时返回0
+     */
+    public int recordWorkoutDay(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        if (epochDay < 0 || epochDay > MAX_EPOCH_DAY) {
+            throw new IllegalArgumentException("训练日期超出范围: " + day);
+        }
+        long block = epochDay / DAYS_PER_WORD;
+        long mask = 1L << (epochDay % DAYS_PER_WORD);
+        int offset = dayWordOffset(block);
+        while (true) {
+            long current = (long) LONG.getVolatile(buffer, offset);
+            long currentBlock = current >>> DAYS_PER_WORD;
+            long updated;
+            if (currentBlock == block) {
+                if ((current & mask) != 0) {
+                    break;
+                }
+                updated = current | mask;
+            } else if (currentBlock < block) {
+                // 该字保存的是一个已滚出窗口的块
+                updated = (block << DAYS_PER_WORD) | mask;
+            } else {
+                return 0;
+            }
+            if (LONG.compareAndSet(buffer, offset, current, updated)) {
+                break;
+            }
+        }
+        int streak = streakBefore(epochDay) + streakFrom(epochDay);
+        raiseLongestStreak(streak);
+        return streak;
+    }
+
+    /**
+     * 当前连续训练天数：截至 today，today 还没有训练时从昨天算起
+     */
+    public int getCurrentStreak(LocalDate today) {
+        long epochDay = today.toEpochDay();
+        int streak = streakBefore(epochDay + 1);
+        return streak > 0 ? streak : streakBefore(epochDay);
+    }
+
+    /**
+     * 历史最长连续训练天数（超过窗口长度的连续段按窗口内可见的天数计）
+     */
+    public int getLongestStreak() {
+        return (int) (long) LONG.getVolatile(buffer, base + LONGEST_STREAK);
+    }
+
+    /**
+     * [from, to] 之间有训练的天数，只统计仍在窗口内的日期
+     */
+    public int countWorkoutDays(LocalDate from, LocalDate to) {
+        long first = Math.max(0, from.toEpochDay());
+        long last = Math.min(MAX_EPOCH_DAY, to.toEpochDay());
+        int count = 0;
+        for (long block = first / DAYS_PER_WORD; block <= last / DAYS_PER_WORD && first <= last; block++) {
+            int low = block == first / DAYS_PER_WORD ? (int) (first % DAYS_PER_WORD) : 0;
+            int high = block == last / DAYS_PER_WORD ? (int) (last % DAYS_PER_WORD) : DAYS_PER_WORD - 1;
+            count += Long.bitCount(daysOf(block) & (-1L >>> (63 - high)) & (-1L << low));
+        }
+        return count;
+    }
+
+    /**
+     * @return 累加前的减重量
+     */
+    public double addWeightLoss(double weightLoss) {
+        return getAndAddDouble(base + TOTAL_WEIGHT_LOSS, weightLoss);
+    }
+
+    public void setCurrentWeight(double currentWeight) {
+        LONG.setVolatile(buffer, base + CURRENT_WEIGHT, Double.doubleToRawLongBits(currentWeight));
+    }
+
+    /**
+     * @return 更新前的训练天数
+     */
+    public int setTotalWorkoutDays(int workoutDays) {
+        return (int) INT.getAndSet(buffer, base + TOTAL_WORKOUT_DAYS, workoutDays);
+    }
+
+    /**
+     * 解锁成就
+     * @return 是否由本次调用解锁（已解锁或被并发调用抢先解锁时返回 false）
+     */
+    public boolean unlock(int achievementIndex) {
+        int offset = bitmapOffset(achievementIndex);
+        long mask = 1L << achievementIndex;
+        long current;
+        do {
+            current = (long) LONG.getVolatile(buffer, offset);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!LONG.compareAndSet(buffer, offset, current, current | mask));
+        return true;
+    }
+
+    public boolean hasAchievement(int achievementIndex) {
+        return ((long) LONG.getVolatile(buffer, bitmapOffset(achievementIndex)) & (1L << achievementIndex)) != 0;
+    }
+
+    /**
+     * 已解锁成就的序号
+     */
+    public BitSet getAchievements() {
+        long[] words = new long[bitmapWords];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = (long) LONG.getVolatile(buffer, base + UNLOCKED + i * Long.BYTES);
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * 记录已应用的事件序号，事件应用完成后调用（同一用户的事件按序号顺序应用）
+     */
+    public void markApplied(long sequence) {
+        long current;
+        do {
+            current = (long) LONG.getVolatile(buffer, base + APPLIED_SEQUENCE);
+            if (current >= sequence) {
+                return;
+            }
+        } while (!LONG.compareAndSet(buffer, base + APPLIED_SEQUENCE, current, sequence));
+    }
+
+    /**
+     * 记录已处理的来源事件ID
+     * @return 该来源事件是否第一次出现；同一用户的来源事件按ID顺序投递，不大于已记录值的即为重复投递
+     */
+    public boolean markSource(long source) {
+        long current;
+        do {
+            current = (long) LONG.getVolatile(buffer, base + LAST_SOURCE);
+            if (current >= source) {
+                return false;
+            }
+        } while (!LONG.compareAndSet(buffer, base + LAST_SOURCE, current, source));
+        return true;
+    }
+
+    public long getLastSource() {
+        return (long) LONG.getVolatile(buffer, base + LAST_SOURCE);
+    }
+
+    public long getAppliedSequence() {
+        return (long) LONG.getVolatile(buffer, base + APPLIED_SEQUENCE);
+    }
+
+    public long getStartedWorkouts() {
+        return (long) LONG.getVolatile(buffer, base + STARTED_WORKOUTS);
+    }
+
+    public int getCompletedWorkouts() {
+        return (int) INT.getVolatile(buffer, base + COMPLETED_WORKOUTS);
+    }
+
+    public long getTotalWorkoutMinutes() {
+        return (long) LONG.getVolatile(buffer, base + TOTAL_WORKOUT_MINUTES);
+    }
+
+    public double getTotalCaloriesBurned() {
+        return getDouble(base + TOTAL_CALORIES_BURNED);
+    }
+
+    public double getTotalWeightLoss() {
+        return getDouble(base + TOTAL_WEIGHT_LOSS);
+    }
+
+    public int getTotalWorkoutDays() {
+        return (int) INT.getVolatile(buffer, base + TOTAL_WORKOUT_DAYS);
+    }
+
+    public double getCurrentWeight() {
+        return getDouble(base + CURRENT_WEIGHT);
+    }
+
+    public LocalDateTime getLastWorkoutAt() {
+        long epochSecond = (long) LONG.getVolatile(buffer, base + LAST_WORKOUT_AT);
+        return epochSecond != 0 ? LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC) : null;
+    }
+
+    private void raiseLongestStreak(int streak) {
+        long current;
+        do {
+            current = (long) LONG.getVolatile(buffer, base + LONGEST_STREAK);
+            if (current >= streak) {
+                return;
+            }
+        } while (!LONG.compareAndSet(buffer, base + LONGEST_STREAK, current, (long) streak));
+    }
+
+    /**
+     * 严格早于 epochDay、紧挨着它的连续训练天数：逐字取前导1的个数
+     */
+    private int streakBefore(long epochDay) {
+        int streak = 0;
+        long day = epochDay - 1;
+        while (day >= 0) {
+            int position = (int) (day % DAYS_PER_WORD);
+            // 把 position 移到最高位，前导1即为截至该天的连续训练天数
+            int ones = Long.numberOfLeadingZeros(~(daysOf(day / DAYS_PER_WORD) << (63 - position)));
+            streak += ones;
+            if (ones <= position) {
+                break;
+            }
+            day -= ones;
+        }
+        return streak;
+    }
+
+    /**
+     * 从 epochDay（含）开始向后的连续训练天数：逐字取末尾1的个数
+     */
+    private int streakFrom(long epochDay) {
+        int streak = 0;
+        long day = epochDay;
+        while (day <= MAX_EPOCH_DAY) {
+            int position = (int) (day % DAYS_PER_WORD);
+            int ones = Long.numberOfTrailingZeros(~(daysOf(day / DAYS_PER_WORD) >>> position));
+            streak += ones;
+            if (ones < DAYS_PER_WORD - position) {
+                break;
+            }
+            day += ones;
+        }
+        return streak;
+    }
+
+    /**
+     * 某个块的训练日位，该字已被其他块占用时为0
+     */
+    private long daysOf(long block) {
+        long word = (long) LONG.getVolatile(buffer, dayWordOffset(block));
+        return word >>> DAYS_PER_WORD == block ? word & DAY_MASK : 0L;
+    }
+
+    private int dayWordOffset(long block) {
+        return base + TRAINING_DAYS + (int) (block % TRAINING_DAY_WORDS) * Long.BYTES;
+    }
+
+    private int bitmapOffset(int achievementIndex) {
+        if (achievementIndex < 0 || achievementIndex >>> 6 >= bitmapWords) {
+            throw new IndexOutOfBoundsException("成就序号越界: " + achievementIndex);
+        }
+        return base + UNLOCKED + (achievementIndex >>> 6) * Long.BYTES;
+    }
+
+    private double getDouble(int offset) {
+        return Double.longBitsToDouble((long) LONG.getVolatile(buffer, offset));
+    }
+
+    private double getAndAddDouble(int offset, double delta) {
+        while (true) {
+            long current = (long) LONG.getVolatile(buffer, offset);
+            double value = Double.longBitsToDouble(current);
+            if (LONG.compareAndSet(buffer, offset, current, Double.doubleToRawLongBits(value + delta))) {
+                return value;
+            }
+        }
+    }
+}
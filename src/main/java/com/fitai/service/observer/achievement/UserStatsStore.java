@@ -0,0 +1,303 @@
+package com.fitai.service.observer.achievement;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * 用户统计定长槽位文件（内存映射）
+ * 文件头占一页：magic(4) | version(4) | slotBytes(4) | bitmapWords(4) | snapshotSequence(8)，
+ * 偏移 64 起为成就序号登记表：count(4)，随后每项 index(2) | codeLength(2) | code(UTF-8)，
+ * 记录已解锁位图中每一位曾分配给的成就编码，用于拒绝改变或复用已分配的序号；
+ * 之后每个用户一个槽位，偏移量 = HEADER_BYTES + userId * slotBytes。
+ * 槽位按 CHUNK_SLOTS 个一组分块映射，首次访问某块时才映射（文件随之扩展，未写过的部分是文件空洞），
+ * UserStats 直接在映射内存上原子读写，统计不占用堆，也不需要单独的读入和写回，驻留交给操作系统页缓存。
+ * 成就定义增加导致位图超出槽位容量时，启动时整体复制到更大的槽位
+ */
+@Slf4j
+final class UserStatsStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x46555354;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4096;
+    private static final int SNAPSHOT_SEQUENCE_OFFSET = 16;
+    private static final int REGISTRY_OFFSET = 64;
+    // 每块映射的槽位数，256 字节槽位时每块 16MB
+    private static final int CHUNK_SLOTS = 1 << 16;
+
+    private final Path file;
+    private final int slotBytes;
+    private final int bitmapWords;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    // 按块号索引，未映射的为 null；扩容时整体替换
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+    private UserStatsStore(Path file, int slotBytes, int bitmapWords) throws IOException {
+        this.file = file;
+        this.slotBytes = slotBytes;
+        this.bitmapWords = bitmapWords;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, slotBytes).putInt(12, bitmapWords);
+    }
+
+    /**
+     * 打开（必要时创建或迁移）槽位文件
+     */
+    static UserStatsStore open(Path file, int achievementCount) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        int requiredWords = UserStats.bitmapWords(achievementCount);
+        int requiredSlotBytes = UserStats.slotBytes(requiredWords);
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return new UserStatsStore(file, requiredSlotBytes, requiredWords);
+        }
+
+        ByteBuffer fileHeader = ByteBuffer.allocate(16);
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            readFully(source, fileHeader, 0);
+        }
+        if (fileHeader.flip().getInt() != MAGIC) {
+            throw new IllegalStateException("不是用户统计文件: " + file);
+        }
+        int version = fileHeader.getInt();
+        if (version != VERSION) {
+            throw new IllegalStateException("用户统计文件版本不兼容: " + version + ", " + file);
+        }
+        int fileSlotBytes = fileHeader.getInt();
+        int fileWords = fileHeader.getInt();
+        if (fileSlotBytes < requiredSlotBytes) {
+            resize(file, fileSlotBytes, fileWords, requiredSlotBytes, requiredWords);
+        } else {
+            // 槽位容量足够，只需放宽位图宽度（新增的位本来就是0）；最高序号的成就被删除时保持原宽度
+            requiredSlotBytes = fileSlotBytes;
+            requiredWords = Math.max(requiredWords, fileWords);
+        }
+        return new UserStatsStore(file, requiredSlotBytes, requiredWords);
+    }
+
+    /**
+     * 用户统计在映射内存上的视图，没有记录的用户各字段为0
+     */
+    UserStats stats(long userId) {
+        if (userId < 0) {
+            throw new IllegalArgumentException("用户ID不能为负数: " + userId);
+        }
+        if (userId / CHUNK_SLOTS > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("用户ID超出槽位文件范围: " + userId);
+        }
+        return new UserStats(chunk(chunkOf(userId)), offsetOf(userId), bitmapWords);
+    }
+
+    /**
+     * 依次访问文件中有记录的用户（至少应用过一个事件）
+     */
+    void forEach(BiConsumer<Long, UserStats> action) throws IOException {
+        long slots = (channel.size() - HEADER_BYTES) / slotBytes;
+        for (long userId = 0; userId < slots; userId++) {
+            UserStats stats = stats(userId);
+            if (stats.getAppliedSequence() > 0) {
+                action.accept(userId, stats);
+            }
+        }
+    }
+
+    /**
+     * 把已修改的映射页写入磁盘
+     */
+    void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            if (chunk != null) {
+                chunk.force();
+            }
+        }
+    }
+
+    /**
+     * 最近一次快照覆盖到的事件序号
+     */
+    long readSnapshotSequence() {
+        return header.getLong(SNAPSHOT_SEQUENCE_OFFSET);
+    }
+
+    /**
+     * 记录快照序号并落盘，调用前槽位内容必须已经落盘
+     */
+    void writeSnapshotSequence(long sequence) {
+        header.putLong(SNAPSHOT_SEQUENCE_OFFSET, sequence);
+        header.force();
+    }
+
+    /**
+     * 核对并登记成就序号：已登记的序号不能换成其他编码，已登记的编码不能换成其他序号，
+     * 新出现的成就追加到登记表；已删除成就的序号仍保留在登记表中，不会被再次分配
+     * @throws IllegalStateException 定义文件修改了已分配的序号
+     */
+    void registerAchievements(List<AchievementDefinition> definitions) {
+        Map<Integer, String> codeByIndex = new HashMap<>();
+        Map<String, Integer> indexByCode = new HashMap<>();
+        int count = header.getInt(REGISTRY_OFFSET);
+        int position = REGISTRY_OFFSET + 4;
+        for (int i = 0; i < count; i++) {
+            int index = header.getShort(position) & 0xFFFF;
+            byte[] code = new byte[header.getShort(position + 2) & 0xFFFF];
+            header.get(position + 4, code);
+            position += 4 + code.length;
+            codeByIndex.put(index, new String(code, StandardCharsets.UTF_8));
+            indexByCode.put(new String(code, StandardCharsets.UTF_8), index);
+        }
+
+        int added = 0;
+        for (AchievementDefinition definition : definitions) {
+            String registeredCode = codeByIndex.get(definition.getIndex());
+            Integer registeredIndex = indexByCode.get(definition.getCode());
+            if (registeredCode != null && !registeredCode.equals(definition.getCode())) {
+                throw new IllegalStateException(String.format("成就序号 %d 已分配给 %s，不能再用于 %s",
+                        definition.getIndex(), registeredCode, definition.getCode()));
+            }
+            if (registeredIndex != null && registeredIndex.intValue() != definition.getIndex()) {
+                throw new IllegalStateException(String.format("成就 %s 的序号已是 %d，不能改为 %d",
+                        definition.getCode(), registeredIndex, definition.getIndex()));
+            }
+            if (registeredCode == null) {
+                byte[] code = definition.getCode().getBytes(StandardCharsets.UTF_8);
+                if (position + 4 + code.length > HEADER_BYTES) {
+                    throw new IllegalStateException("成就序号登记表已满: " + file);
+                }
+                header.putShort(position, (short) (int) definition.getIndex());
+                header.putShort(position + 2, (short) code.length);
+                header.put(position + 4, code);
+                position += 4 + code.length;
+                codeByIndex.put(definition.getIndex(), definition.getCode());
+                added++;
+            }
+        }
+        if (added > 0) {
+            header.putInt(REGISTRY_OFFSET, count + added);
+            header.force();
+            log.info("已登记 {} 个新成就序号: {}", added, file);
+        }
+    }
+
+    /**
+     * 已映射的字节数
+     */
+    long getMappedBytes() {
+        long mapped = 0;
+        for (MappedByteBuffer chunk : chunks) {
+            if (chunk != null) {
+                mapped += chunk.capacity();
+            }
+        }
+        return mapped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        header.force();
+        // 映射在缓冲区被回收前一直有效，关闭通道不影响已映射的内存
+        channel.close();
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    private MappedByteBuffer chunk(int index) {
+        MappedByteBuffer[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        synchronized (this) {
+            current = chunks;
+            if (index < current.length && current[index] != null) {
+                return current[index];
+            }
+            MappedByteBuffer[] grown = Arrays.copyOf(current, Math.max(current.length, index + 1));
+            long chunkBytes = (long) CHUNK_SLOTS * slotBytes;
+            try {
+                // 块起点按页对齐，槽位按自身大小对齐，VarHandle 原子访问要求的对齐因此成立
+                grown[index] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + index * chunkBytes, chunkBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("映射用户统计文件失败: " + file, e);
+            }
+            chunks = grown;
+            return grown[index];
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IllegalStateException("用户统计文件不完整");
+            }
+        }
+    }
+
+    /**
+     * 把槽位逐个复制到更大槽位的新文件，完成后原子替换；成就位图之前的字段和位图分别按原始字节复制
+     */
+    private static void resize(Path file, int fromSlotBytes, int fromWords, int toSlotBytes, int toWords) throws IOException {
+        if (fromWords > toWords) {
+            throw new IllegalStateException("用户统计文件的成就位图宽于当前定义: " + file);
+        }
+        Path target = file.resolveSibling(file.getFileName() + ".resizing");
+        Files.deleteIfExists(target);
+        long copied = 0;
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+             UserStatsStore store = new UserStatsStore(target, toSlotBytes, toWords)) {
+            ByteBuffer sequence = ByteBuffer.allocate(Long.BYTES);
+            readFully(source, sequence, SNAPSHOT_SEQUENCE_OFFSET);
+            store.writeSnapshotSequence(sequence.flip().getLong());
+            ByteBuffer registry = ByteBuffer.allocate(HEADER_BYTES - REGISTRY_OFFSET);
+            readFully(source, registry, REGISTRY_OFFSET);
+            store.header.put(REGISTRY_OFFSET, registry.array());
+            long slots = (source.size() - HEADER_BYTES) / fromSlotBytes;
+            ByteBuffer slot = ByteBuffer.allocate(fromSlotBytes);
+            for (long userId = 0; userId < slots; userId++) {
+                slot.clear();
+                readFully(source, slot, HEADER_BYTES + userId * fromSlotBytes);
+                if (!isEmpty(slot.array())) {
+                    MappedByteBuffer chunk = store.chunk(chunkOf(userId));
+                    int base = store.offsetOf(userId);
+                    chunk.put(base, slot.array(), 0, UserStats.UNLOCKED + fromWords * Long.BYTES);
+                    copied++;
+                }
+            }
+        }
+        Files.move(target, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("用户统计文件槽位 {} -> {} 字节，已复制 {} 个用户: {}", fromSlotBytes, toSlotBytes, copied, file);
+    }
+
+    private static int chunkOf(long userId) {
+        return (int) (userId / CHUNK_SLOTS);
+    }
+
+    private int offsetOf(long userId) {
+        return (int) (userId % CHUNK_SLOTS) * slotBytes;
+    }
+
+    private static boolean isEmpty(byte[] slot) {
+        for (byte b : slot) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -15,13 +15,13 @@ public class AchievementTracker implements WorkoutProgressObserver {
     
     @Override
     public void onWorkoutStarted(WorkoutSession session) {
-        log.info("用户 {} 开始训练: {}", session.getUser().getUsername(), session.getWorkoutPlan().getName());
+        log.info("用户 {} 开始训练: {}", session.getUser().getUsername(), session.getSessionName());
         // 可以在这里记录训练开始的成就相关逻辑
     }
     
     @Override
     public void onWorkoutCompleted(WorkoutSession session) {
-        log.info("用户 {} 完成训练: {}", session.getUser().getUsername(), session.getWorkoutPlan().getName());
+        log.info("用户 {} 完成训练: {}", session.getUser().getUsername(), session.getSessionName());
         
         // 成就检查逻辑已经在 AchievementObserver 中实现
         // 这里只需要记录日志即可
@@ -30,12 +30,17 @@ public class AchievementTracker implements WorkoutProgressObserver {
     
     @Override
     public void onWorkoutPaused(WorkoutSession session) {
-        log.info("用户 {} 暂停训练: {}", session.getUser().getUsername(), session.getWorkoutPlan().getName());
+        log.info("用户 {} 暂停训练: {}", session.getUser().getUsername(), session.getSessionName());
+    }
+    
+    @Override
+    public void onWorkoutResumed(WorkoutSession session) {
+        log.info("用户 {} 继续训练: {}", session.getUser().getUsername(), session.getSessionName());
     }
     
     @Override
     public void onWorkoutCancelled(WorkoutSession session) {
-        log.info("用户 {} 取消训练: {}", session.getUser().getUsername(), session.getWorkoutPlan().getName());
+        log.info("用户 {} 取消训练: {}", session.getUser().getUsername(), session.getSessionName());
     }
     
     @Override
@@ -0,0 +1,214 @@
+package com.fitai.service.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 运动名称前缀树（不可变、紧凑数组存储）
+ * 构建时为每个节点预先计算按使用次数排序的Top-K候选，
+ * 查询只需沿前缀逐字符二分查找子节点，然后直接返回预计算结果
+ */
+public final class ExerciseNameTrie {
+
+    private static final ExerciseNameTrie EMPTY = new ExerciseNameTrie(Collections.emptyList(), 1);
+
+    // 节点数组：节点0为根节点，同一父节点的子节点连续存放并按字符升序排列
+    private final char[] labels;
+    private final int[] firstChild;
+    private final int[] childCount;
+
+    // 每个节点的Top-K候选在 topEntries 中的起始位置和数量
+    private final int[] topStart;
+    private final int[] topCount;
+    private final int[] topEntries;
+
+    // 条目数组
+    private final long[] ids;
+    private final String[] names;
+    private final long[] usageCounts;
+
+    private final int maxSuggestions;
+
+    /**
+     * 自动补全候选项
+     */
+    public record Suggestion(Long id, String name, long usageCount) {
+    }
+
+    /**
+     * 构建输入条目
+     */
+    public record Entry(long id, String name, long usageCount) {
+    }
+
+    public static ExerciseNameTrie empty() {
+        return EMPTY;
+    }
+
+    public static ExerciseNameTrie build(List<Entry> entries, int maxSuggestions) {
+        return new ExerciseNameTrie(entries, maxSuggestions);
+    }
+
+    private ExerciseNameTrie(List<Entry> source, int maxSuggestions) {
+        this.maxSuggestions = Math.max(1, maxSuggestions);
+
+        int size = source.size();
+        this.ids = new long[size];
+        this.names = new String[size];
+        this.usageCounts = new long[size];
+        for (int i = 0; i < size; i++) {
+            Entry entry = source.get(i);
+            ids[i] = entry.id();
+            names[i] = entry.name();
+            usageCounts[i] = entry.usageCount();
+        }
+
+        // 先构建临时的指针前缀树
+        BuildNode root = new BuildNode('\0');
+        int nodeCount = 1;
+        for (int i = 0; i < size; i++) {
+            String key = normalize(names[i]);
+            if (key.isEmpty()) {
+                continue;
+            }
+            BuildNode node = root;
+            for (int c = 0; c < key.length(); c++) {
+                char ch = key.charAt(c);
+                BuildNode child = node.children.get(ch);
+                if (child == null) {
+                    child = new BuildNode(ch);
+                    node.children.put(ch, child);
+                    nodeCount++;
+                }
+                node = child;
+            }
+            node.terminals.add(i);
+        }
+
+        // 按层序遍历分配数组下标，保证兄弟节点连续
+        this.labels = new char[nodeCount];
+        this.firstChild = new int[nodeCount];
+        this.childCount = new int[nodeCount];
+        List<BuildNode> ordered = new ArrayList<>(nodeCount);
+        Deque<BuildNode> queue = new ArrayDeque<>();
+        root.index = 0;
+        ordered.add(root);
+        queue.add(root);
+        int next = 1;
+        while (!queue.isEmpty()) {
+            BuildNode node = queue.poll();
+            firstChild[node.index] = next;
+            childCount[node.index] = node.children.size();
+            for (BuildNode child : node.children.values()) {
+                child.index = next++;
+                labels[child.index] = child.label;
+                ordered.add(child);
+                queue.add(child);
+            }
+        }
+
+        // 自底向上合并子节点的Top-K（逆层序即可保证子节点先于父节点处理）
+        Comparator<Integer> ranking = Comparator
+                .comparingLong((Integer e) -> usageCounts[e]).reversed()
+                .thenComparing(e -> names[e]);
+        int[][] tops = new int[nodeCount][];
+        int totalTop = 0;
+        for (int n = ordered.size() - 1; n >= 0; n--) {
+            BuildNode node = ordered.get(n);
+            List<Integer> candidates = new ArrayList<>(node.terminals);
+            for (BuildNode child : node.children.values()) {
+                for (int e : tops[child.index]) {
+                    candidates.add(e);
+                }
+            }
+            candidates.sort(ranking);
+            int keep = Math.min(this.maxSuggestions, candidates.size());
+            int[] top = new int[keep];
+            for (int k = 0; k < keep; k++) {
+                top[k] = candidates.get(k);
+            }
+            tops[node.index] = top;
+            totalTop += keep;
+        }
+
+        this.topStart = new int[nodeCount];
+        this.topCount = new int[nodeCount];
+        this.topEntries = new int[totalTop];
+        int offset = 0;
+        for (int n = 0; n < nodeCount; n++) {
+            topStart[n] = offset;
+            topCount[n] = tops[n].length;
+            System.arraycopy(tops[n], 0, topEntries, offset, tops[n].length);
+            offset += tops[n].length;
+        }
+    }
+
+    /**
+     * 根据前缀查找候选项，结果按使用次数倒序
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        if (ids.length == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String key = normalize(prefix);
+        int node = 0;
+        for (int i = 0; i < key.length(); i++) {
+            node = findChild(node, key.charAt(i));
+            if (node < 0) {
+                return Collections.emptyList();
+            }
+        }
+
+        int count = Math.min(limit, topCount[node]);
+        List<Suggestion> result = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            int e = topEntries[topStart[node] + k];
+            result.add(new Suggestion(ids[e], names[e], usageCounts[e]));
+        }
+        return result;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int getNodeCount() {
+        return labels.length;
+    }
+
+    public int getMaxSuggestions() {
+        return maxSuggestions;
+    }
+
+    private int findChild(int node, char ch) {
+        int from = firstChild[node];
+        int index = Arrays.binarySearch(labels, from, from + childCount[node], ch);
+        return index >= 0 ? index : -1;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 构建阶段使用的临时节点
+     */
+    private static final class BuildNode {
+        private final char label;
+        private final Map<Character, BuildNode> children = new TreeMap<>();
+        private final List<Integer> terminals = new ArrayList<>(1);
+        private int index;
+
+        private BuildNode(char label) {
+            this.label = label;
+        }
+    }
+}
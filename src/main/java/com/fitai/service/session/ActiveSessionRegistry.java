@@ -0,0 +1,201 @@
+package com.fitai.service.session;
+
+import com.fitai.config.sharding.ShardRouter;
+import com.fitai.model.User;
+import com.fitai.model.WorkoutSession;
+import com.fitai.repository.WorkoutSessionRepository;
+import com.fitai.repository.WorkoutSessionStateBatchRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进行中训练会话注册表
+ * 未结束的会话状态驻留内存，暂停和继续不访问数据库：只修改内存状态，由定时任务合并后按分片批量写回，
+ * 写回以版本为条件，数据库中的会话已被修改（例如在其他节点上结束）时丢弃内存状态，下次访问重新加载。
+ * 注册表只在本节点有效，未命中时从数据库加载；完成和取消仍在事务中同步更新数据库
+ */
+@Component
+@Slf4j
+public class ActiveSessionRegistry {
+
+    @Autowired
+    private WorkoutSessionRepository workoutSessionRepository;
+
+    @Autowired
+    private WorkoutSessionStateBatchRepository batchRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${fitai.coach.sessions.idle-minutes:240}")
+    private long idleMinutes;
+
+    private final Map<Long, ActiveWorkoutSession> sessions = new ConcurrentHashMap<>();
+    private final LongAdder flushedCount = new LongAdder();
+    private final LongAdder conflictCount = new LongAdder();
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 登记新开始的会话，事务中调用时在提交后登记
+     * @return 会话快照
+     */
+    public WorkoutSession register(WorkoutSession session, User user) {
+        ActiveWorkoutSession active = new ActiveWorkoutSession(session);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    sessions.putIfAbsent(active.getSessionId(), active);
+                }
+            });
+        } else {
+            sessions.putIfAbsent(active.getSessionId(), active);
+        }
+        return active.snapshot(user);
+    }
+
+    /**
+     * 暂停或继续，只修改内存状态，由 flush 写回
+     * @return 操作后的会话快照
+     * @throws IllegalStateException 会话不存在、已结束或当前状态不允许该操作
+     */
+    public WorkoutSession apply(Long sessionId, User user, WorkoutSessionTransition transition) {
+        return get(sessionId, user.getId()).apply(transition, LocalDateTime.now(), user);
+    }
+
+    /**
+     * 开始结束会话（完成或取消），必须在事务中调用：
+     * 提交后从注册表移除，回滚则恢复为结束前的状态
+     * @return 结束后的会话快照（结束时间、暂停秒数和训练时长已填好）
+     */
+    public WorkoutSession close(Long sessionId, User user, WorkoutSessionTransition transition, LocalDateTime endTime) {
+        ActiveWorkoutSession active = get(sessionId, user.getId());
+        WorkoutSession closed = active.close(transition, endTime, user);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    sessions.remove(sessionId, active);
+                } else {
+                    active.reopen();
+                }
+            }
+        });
+        return closed;
+    }
+
+    /**
+     * 丢弃内存状态，下次访问时从数据库重新加载
+     */
+    public void evict(Long sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    /**
+     * 合并写回暂停和继续，并移除长时间未访问的会话
+     */
+    @Scheduled(fixedDelayString = "${fitai.coach.sessions.flush-interval-ms:5000}")
+    public void flush() {
+        Map<Integer, List<PendingState>> groups = new LinkedHashMap<>();
+        for (ActiveWorkoutSession active : sessions.values()) {
+            SessionState state = active.pendingState();
+            if (state != null) {
+                groups.computeIfAbsent(shardRouter.shardFor(state.userId()), shard -> new ArrayList<>())
+                        .add(new PendingState(active, state));
+            }
+        }
+        for (Map.Entry<Integer, List<PendingState>> group : groups.entrySet()) {
+            flushShard(group.getKey(), group.getValue());
+        }
+
+        long idleNanos = TimeUnit.MINUTES.toNanos(idleMinutes);
+        sessions.values().removeIf(active -> active.isIdle(idleNanos));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("active", sessions.size());
+        result.put("flushed", flushedCount.sum());
+        result.put("conflicts", conflictCount.sum());
+        return result;
+    }
+
+    /**
+     * 写回失败时保留待写回状态，下一轮重试
+     */
+    private void flushShard(int shard, List<PendingState> pending) {
+        List<SessionState> states = pending.stream().map(PendingState::state).toList();
+        int[] counts;
+        try {
+            counts = shardRouter.callOnShard(shard, () -> transactionTemplate.execute(status -> batchRepository.batchUpdate(states)));
+        } catch (RuntimeException e) {
+            log.error("训练会话状态写回失败（分片 {}，{} 个会话），下次重试", shard, states.size(), e);
+            return;
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            PendingState entry = pending.get(i);
+            if (counts[i] == 0) {
+                // 数据库中的版本已变化
+                conflictCount.increment();
+                log.warn("训练会话 {} 已被其他请求修改，丢弃内存状态", entry.state().sessionId());
+                sessions.remove(entry.state().sessionId(), entry.active());
+            } else {
+                flushedCount.increment();
+                entry.active().flushed(entry.state());
+            }
+        }
+    }
+
+    /**
+     * 取出会话的内存状态，未命中时从数据库加载
+     */
+    private ActiveWorkoutSession get(Long sessionId, Long userId) {
+        ActiveWorkoutSession active = sessions.get(sessionId);
+        if (active == null) {
+            WorkoutSession session = workoutSessionRepository.findByIdAndUserId(sessionId, userId)
+                    .filter(s -> WorkoutSessionTransition.OPEN_STATUSES.contains(s.getStatus()))
+                    .orElseThrow(() -> new IllegalStateException("训练会话不存在或已结束"));
+            active = sessions.computeIfAbsent(sessionId, id -> new ActiveWorkoutSession(session));
+        }
+        if (active.getUserId() != userId) {
+            throw new IllegalStateException("训练会话不存在或已结束");
+        }
+        active.touch();
+        return active;
+    }
+
+    private record PendingState(ActiveWorkoutSession active, SessionState state) {
+    }
+}
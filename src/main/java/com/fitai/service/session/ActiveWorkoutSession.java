@@ -0,0 +1,166 @@
+package com.fitai.service.session;
+
+import com.fitai.model.User;
+import com.fitai.model.WorkoutPlan;
+import com.fitai.model.WorkoutSession;
+import com.fitai.model.WorkoutSession.SessionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * 一个未结束训练会话在内存中的状态
+ * 暂停和继续只修改这里并标记为待写回；完成和取消先把会话标记为正在结束，拒绝之后的暂停和继续，
+ * 事务提交后从注册表移除，回滚则恢复。所有方法在该会话上同步，不同会话之间互不阻塞
+ */
+final class ActiveWorkoutSession {
+
+    private final long sessionId;
+    private final long userId;
+    private final Long planId;
+    private final String sessionName;
+    private final LocalDateTime startTime;
+
+    private SessionStatus status;
+    private LocalDateTime pausedAt;
+    private long pausedSeconds;
+    // 数据库中的版本
+    private long version;
+    private long changes;
+    private long flushedChanges;
+    private boolean closing;
+    // 结束前的状态，结束会话的事务回滚时恢复
+    private SessionStatus statusBeforeClose;
+    private LocalDateTime pausedAtBeforeClose;
+    private long pausedSecondsBeforeClose;
+    private long lastAccessNanos = System.nanoTime();
+
+    ActiveWorkoutSession(WorkoutSession session) {
+        this.sessionId = session.getId();
+        this.userId = session.getUser().getId();
+        this.planId = session.getWorkoutPlan() != null ? session.getWorkoutPlan().getId() : null;
+        this.sessionName = session.getSessionName();
+        this.startTime = session.getStartTime();
+        this.status = session.getStatus();
+        this.pausedAt = session.getPausedAt();
+        this.pausedSeconds = session.getPausedSeconds() != null ? session.getPausedSeconds() : 0L;
+        this.version = session.getVersion() != null ? session.getVersion() : 0L;
+    }
+
+    long getSessionId() {
+        return sessionId;
+    }
+
+    long getUserId() {
+        return userId;
+    }
+
+    synchronized WorkoutSession snapshot(User user) {
+        return snapshot(user, null);
+    }
+
+    /**
+     * 暂停或继续
+     * @return 操作后的会话快照
+     */
+    synchronized WorkoutSession apply(WorkoutSessionTransition transition, LocalDateTime now, User user) {
+        checkOpen();
+        status = transition.apply(status);
+        if (transition == WorkoutSessionTransition.PAUSE) {
+            pausedAt = now;
+        } else if (transition == WorkoutSessionTransition.RESUME) {
+            pausedSeconds += pausedSecondsUntil(now);
+            pausedAt = null;
+        }
+        changes++;
+        return snapshot(user, null);
+    }
+
+    /**
+     * 开始结束会话（完成或取消）：结算暂停时间并拒绝之后的状态变化
+     * @return 结束后的会话快照（结束时间、暂停秒数和训练时长已填好）
+     */
+    synchronized WorkoutSession close(WorkoutSessionTransition transition, LocalDateTime endTime, User user) {
+        checkOpen();
+        SessionStatus target = transition.apply(status);
+        statusBeforeClose = status;
+        pausedAtBeforeClose = pausedAt;
+        pausedSecondsBeforeClose = pausedSeconds;
+        status = target;
+        pausedSeconds += pausedSecondsUntil(endTime);
+        pausedAt = null;
+        closing = true;
+        return snapshot(user, endTime);
+    }
+
+    /**
+     * 结束会话的事务回滚，恢复为结束前的状态
+     */
+    synchronized void reopen() {
+        if (closing) {
+            status = statusBeforeClose;
+            pausedAt = pausedAtBeforeClose;
+            pausedSeconds = pausedSecondsBeforeClose;
+            closing = false;
+        }
+    }
+
+    /**
+     * 有未写回的修改时返回待写回的状态
+     */
+    synchronized SessionState pendingState() {
+        if (closing || changes == flushedChanges) {
+            return null;
+        }
+        return new SessionState(sessionId, userId, status, pausedAt, pausedSeconds, version, changes);
+    }
+
+    /**
+     * 写回成功：数据库版本加1，写回之后没有新修改的不再待写回
+     */
+    synchronized void flushed(SessionState state) {
+        version = state.version() + 1;
+        flushedChanges = state.changes();
+    }
+
+    synchronized boolean isIdle(long idleNanos) {
+        return !closing && changes == flushedChanges && System.nanoTime() - lastAccessNanos > idleNanos;
+    }
+
+    synchronized void touch() {
+        lastAccessNanos = System.nanoTime();
+    }
+
+    private void checkOpen() {
+        if (closing) {
+            throw new IllegalStateException("训练会话不存在或已结束");
+        }
+    }
+
+    private long pausedSecondsUntil(LocalDateTime now) {
+        return pausedAt != null ? Math.max(0, Duration.between(pausedAt, now).getSeconds()) : 0L;
+    }
+
+    /**
+     * 不受持久化上下文管理的会话快照，交给观察者异步使用；训练计划只带ID
+     */
+    private WorkoutSession snapshot(User user, LocalDateTime endTime) {
+        WorkoutSession session = new WorkoutSession();
+        session.setId(sessionId);
+        session.setUser(user);
+        if (planId != null) {
+            WorkoutPlan plan = new WorkoutPlan();
+            plan.setId(planId);
+            session.setWorkoutPlan(plan);
+        }
+        session.setSessionName(sessionName);
+        session.setStartTime(startTime);
+        session.setEndTime(endTime);
+        session.setStatus(status);
+        session.setPausedAt(pausedAt);
+        session.setPausedSeconds(pausedSeconds);
+        session.setVersion(version);
+        session.setDurationMinutes(session.calculateDuration());
+        return session;
+    }
+}
@@ -0,0 +1,14 @@
+package com.fitai.service.session;
+
+import com.fitai.model.WorkoutSession.SessionStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * 进行中会话待写回数据库的状态
+ * @param version 写回时要求数据库中仍为该版本
+ * @param changes 取快照时内存中的修改次数，写回成功后据此判断期间是否又有新的修改
+ */
+public record SessionState(long sessionId, long userId, SessionStatus status, LocalDateTime pausedAt,
+                           long pausedSeconds, long version, long changes) {
+}
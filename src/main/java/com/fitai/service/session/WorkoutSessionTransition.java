@@ -0,0 +1,51 @@
+package com.fitai.service.session;
+
+import com.fitai.model.WorkoutSession.SessionStatus;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 训练会话状态机：每种操作允许的起始状态和目标状态
+ * 会话创建时即为进行中；完成和取消之后不再变化
+ */
+public enum WorkoutSessionTransition {
+
+    PAUSE("暂停", EnumSet.of(SessionStatus.IN_PROGRESS), SessionStatus.PAUSED),
+    RESUME("继续", EnumSet.of(SessionStatus.PAUSED), SessionStatus.IN_PROGRESS),
+    COMPLETE("完成", EnumSet.of(SessionStatus.PLANNED, SessionStatus.IN_PROGRESS, SessionStatus.PAUSED), SessionStatus.COMPLETED),
+    CANCEL("取消", EnumSet.of(SessionStatus.PLANNED, SessionStatus.IN_PROGRESS, SessionStatus.PAUSED), SessionStatus.CANCELLED);
+
+    // 未结束的状态
+    public static final Set<SessionStatus> OPEN_STATUSES = EnumSet.of(
+            SessionStatus.PLANNED, SessionStatus.IN_PROGRESS, SessionStatus.PAUSED);
+
+    private final String displayName;
+    private final Set<SessionStatus> fromStatuses;
+    private final SessionStatus target;
+
+    WorkoutSessionTransition(String displayName, Set<SessionStatus> fromStatuses, SessionStatus target) {
+        this.displayName = displayName;
+        this.fromStatuses = fromStatuses;
+        this.target = target;
+    }
+
+    /**
+     * 从 from 状态执行该操作后的状态
+     * @throws IllegalStateException 当前状态不允许该操作
+     */
+    public SessionStatus apply(SessionStatus from) {
+        if (!fromStatuses.contains(from)) {
+            throw new IllegalStateException("训练会话" + from.getDisplayName() + "，不能" + displayName);
+        }
+        return target;
+    }
+
+    public Set<SessionStatus> getFromStatuses() {
+        return fromStatuses;
+    }
+
+    public SessionStatus getTarget() {
+        return target;
+    }
+}
@@ -0,0 +1,172 @@
+package com.fitai.service.sharding;
+
+import com.fitai.config.sharding.ShardRouter;
+import com.fitai.config.sharding.ShardRoutingDataSource;
+import com.fitai.service.ExerciseCatalogChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 全局表复制服务（仅分片模式）
+ * 用户表和运动库以分片0为准：运动库复制到所有分片，用户行复制到该用户所在分片，
+ * 分片上的训练计划、训练会话等才能满足外键并正常关联加载。
+ * 变更在分片0提交后同步复制；启动时做一次全量同步，补齐批量 UPDATE 等未经过实体事件的修改
+ */
+@Service
+@ConditionalOnProperty(prefix = "fitai.coach.sharding", name = "enabled", havingValue = "true")
+@Slf4j
+public class GlobalTableReplicator {
+    
+    private static final int USER_PAGE_SIZE = 500;
+    
+    @Autowired
+    private ShardRoutingDataSource shardDataSource;
+    
+    @Autowired
+    private ShardRouter shardRouter;
+    
+    /**
+     * 启动时全量同步运动库和用户
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void syncAll() {
+        for (int shard = 1; shard < shardDataSource.getShardCount(); shard++) {
+            int target = shard;
+            inShardTransaction(target, (global, connection) -> {
+                int exercises = ShardRowCopier.upsertRows(global, connection, UserShardTables.EXERCISES_TABLE, "1 = 1");
+                ShardRowCopier.deleteRows(connection, UserShardTables.EXERCISE_MUSCLES_TABLE, "1 = 1");
+                ShardRowCopier.copyRows(global, connection, UserShardTables.EXERCISE_MUSCLES_TABLE, "1 = 1");
+                log.info("运动库已同步到分片 {}: {} 个运动", target, exercises);
+            });
+        }
+        
+        long users = 0;
+        long lastId = 0;
+        while (true) {
+            List<Long> ids = loadUserIds(lastId);
+            if (ids.isEmpty()) {
+                break;
+            }
+            lastId = ids.get(ids.size() - 1);
+            for (int shard = 1; shard < shardDataSource.getShardCount(); shard++) {
+                int target = shard;
+                List<Long> owned = ids.stream().filter(id -> shardRouter.shardFor(id) == target).toList();
+                if (!owned.isEmpty()) {
+                    inShardTransaction(target, (global, connection) -> ShardRowCopier.upsertRows(global, connection,
+                            UserShardTables.USERS_TABLE, inClause(owned), owned.toArray()));
+                    users += owned.size();
+                }
+            }
+        }
+        log.info("用户已同步到所在分片: {} 个", users);
+    }
+    
+    /**
+     * 把用户行复制到其所在分片
+     */
+    public void replicateUser(Long userId) {
+        int shard = shardRouter.shardFor(userId);
+        if (shard != ShardRouter.GLOBAL_SHARD) {
+            inShardTransaction(shard, (global, connection) ->
+                    ShardRowCopier.upsertRows(global, connection, UserShardTables.USERS_TABLE, "id = ?", userId));
+        }
+    }
+    
+    /**
+     * 用户在分片0删除后，清理其所在分片上的数据和用户行
+     */
+    public void removeUser(Long userId) {
+        int shard = shardRouter.shardFor(userId);
+        if (shard != ShardRouter.GLOBAL_SHARD) {
+            inShardTransaction(shard, (global, connection) -> {
+                for (int i = UserShardTables.PER_USER_TABLES.size() - 1; i >= 0; i--) {
+                    UserShardTables.UserTable table = UserShardTables.PER_USER_TABLES.get(i);
+                    if (ShardRowCopier.tableExists(connection, table.table())) {
+                        ShardRowCopier.deleteRows(connection, table.table(), table.userFilter(), userId);
+                    }
+                }
+                ShardRowCopier.deleteRows(connection, UserShardTables.USERS_TABLE, "id = ?", userId);
+            });
+        }
+    }
+    
+    /**
+     * 运动库变更提交后复制到所有分片
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(ExerciseCatalogChangedEvent event) {
+        Long id = event.exerciseId();
+        for (int shard = 1; shard < shardDataSource.getShardCount(); shard++) {
+            inShardTransaction(shard, (global, connection) -> {
+                ShardRowCopier.deleteRows(connection, UserShardTables.EXERCISE_MUSCLES_TABLE, "exercise_id = ?", id);
+                if (event.removed()) {
+                    ShardRowCopier.deleteRows(connection, UserShardTables.EXERCISES_TABLE, "id = ?", id);
+                } else {
+                    ShardRowCopier.upsertRows(global, connection, UserShardTables.EXERCISES_TABLE, "id = ?", id);
+                    ShardRowCopier.copyRows(global, connection, UserShardTables.EXERCISE_MUSCLES_TABLE, "exercise_id = ?", id);
+                }
+            });
+        }
+    }
+    
+    private List<Long> loadUserIds(long afterId) {
+        try (Connection global = shardDataSource.getShard(ShardRouter.GLOBAL_SHARD).getConnection();
+             PreparedStatement statement = global.prepareStatement(
+                     "SELECT id FROM " + UserShardTables.USERS_TABLE + " WHERE id > ? ORDER BY id LIMIT " + USER_PAGE_SIZE)) {
+            statement.setLong(1, afterId);
+            List<Long> ids = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+            return ids;
+        } catch (SQLException e) {
+            throw new IllegalStateException("读取用户ID失败", e);
+        }
+    }
+    
+    private static String inClause(List<Long> ids) {
+        return "id IN (" + ids.stream().map(id -> "?").collect(Collectors.joining(", ")) + ")";
+    }
+    
+    /**
+     * 在目标分片的本地事务中执行复制，源连接来自分片0
+     */
+    private void inShardTransaction(int shard, ShardWork work) {
+        try (Connection global = shardDataSource.getShard(ShardRouter.GLOBAL_SHARD).getConnection();
+             Connection connection = shardDataSource.getShard(shard).getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                work.execute(global, connection);
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("复制全局表到分片 " + shard + " 失败", e);
+        }
+    }
+    
+    @FunctionalInterface
+    private interface ShardWork {
+        void execute(Connection global, Connection shard) throws SQLException;
+    }
+}
@@ -0,0 +1,160 @@
+package com.fitai.service.sharding;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 跨分片行复制（纯 JDBC，按列名原样复制，不依赖实体映射；生成列由目标库自行计算，不参与复制）
+ * 事务由调用方在目标连接上控制
+ */
+public final class ShardRowCopier {
+    
+    private static final int BATCH_SIZE = 500;
+    
+    private ShardRowCopier() {
+    }
+    
+    public static boolean tableExists(Connection connection, String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String name : new String[]{table, table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet rs = metaData.getTables(connection.getCatalog(), null, name, new String[]{"TABLE"})) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 将源库中满足条件的行插入目标库
+     * @return 复制的行数
+     */
+    public static int copyRows(Connection source, Connection target, String table, String where,
+                               Object... params) throws SQLException {
+        try (PreparedStatement select = prepare(source, "SELECT * FROM " + table + " WHERE " + where, params);
+             ResultSet rs = select.executeQuery()) {
+            List<String> columns = columns(rs.getMetaData(), generatedColumns(target, table));
+            String insertSql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                    + "?, ".repeat(columns.size() - 1) + "?)";
+            int copied = 0;
+            try (PreparedStatement insert = target.prepareStatement(insertSql)) {
+                while (rs.next()) {
+                    for (int i = 0; i < columns.size(); i++) {
+                        insert.setObject(i + 1, rs.getObject(columns.get(i)));
+                    }
+                    insert.addBatch();
+                    if (++copied % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                if (copied % BATCH_SIZE != 0) {
+                    insert.executeBatch();
+                }
+            }
+            return copied;
+        }
+    }
+    
+    /**
+     * 按主键 id 把源库中满足条件的行同步到目标库：已存在则更新，否则插入
+     * @return 同步的行数
+     */
+    public static int upsertRows(Connection source, Connection target, String table, String where,
+                                 Object... params) throws SQLException {
+        try (PreparedStatement select = prepare(source, "SELECT * FROM " + table + " WHERE " + where, params);
+             ResultSet rs = select.executeQuery()) {
+            List<String> columns = columns(rs.getMetaData(), generatedColumns(target, table));
+            if (!columns.contains("id")) {
+                throw new IllegalArgumentException("表 " + table + " 没有 id 列，不能按主键同步");
+            }
+            List<String> assignments = new ArrayList<>();
+            for (String column : columns) {
+                if (!"id".equals(column)) {
+                    assignments.add(column + " = ?");
+                }
+            }
+            String updateSql = "UPDATE " + table + " SET " + String.join(", ", assignments) + " WHERE id = ?";
+            String insertSql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                    + "?, ".repeat(columns.size() - 1) + "?)";
+            int synced = 0;
+            try (PreparedStatement update = target.prepareStatement(updateSql);
+                 PreparedStatement insert = target.prepareStatement(insertSql)) {
+                while (rs.next()) {
+                    int parameter = 1;
+                    for (String column : columns) {
+                        if (!"id".equals(column)) {
+                            update.setObject(parameter++, rs.getObject(column));
+                        }
+                    }
+                    update.setObject(parameter, rs.getObject("id"));
+                    if (update.executeUpdate() == 0) {
+                        for (int i = 0; i < columns.size(); i++) {
+                            insert.setObject(i + 1, rs.getObject(columns.get(i)));
+                        }
+                        insert.executeUpdate();
+                    }
+                    synced++;
+                }
+            }
+            return synced;
+        }
+    }
+    
+    public static int deleteRows(Connection connection, String table, String where, Object... params) throws SQLException {
+        try (PreparedStatement delete = prepare(connection, "DELETE FROM " + table + " WHERE " + where, params)) {
+            return delete.executeUpdate();
+        }
+    }
+    
+    public static long countRows(Connection connection, String table, String where, Object... params) throws SQLException {
+        try (PreparedStatement count = prepare(connection, "SELECT COUNT(*) FROM " + table + " WHERE " + where, params);
+             ResultSet rs = count.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+    
+    private static PreparedStatement prepare(Connection connection, String sql, Object... params) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        for (int i = 0; i < params.length; i++) {
+            statement.setObject(i + 1, params[i]);
+        }
+        return statement;
+    }
+    
+    private static List<String> columns(ResultSetMetaData metaData, Set<String> excluded) throws SQLException {
+        List<String> columns = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String column = metaData.getColumnName(i).toLowerCase(Locale.ROOT);
+            if (!excluded.contains(column)) {
+                columns.add(column);
+            }
+        }
+        return columns;
+    }
+    
+    private static Set<String> generatedColumns(Connection connection, String table) throws SQLException {
+        Set<String> generated = new HashSet<>();
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String name : new String[]{table, table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet rs = metaData.getColumns(connection.getCatalog(), null, name, null)) {
+                while (rs.next()) {
+                    if ("YES".equalsIgnoreCase(rs.getString("IS_GENERATEDCOLUMN"))) {
+                        generated.add(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+        }
+        return generated;
+    }
+}
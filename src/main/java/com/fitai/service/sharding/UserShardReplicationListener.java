@@ -0,0 +1,52 @@
+package com.fitai.service.sharding;
+
+import com.fitai.model.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.BiConsumer;
+
+/**
+ * 用户实体监听器
+ * 分片模式下，用户在分片0提交后同步到其所在分片；未启用分片时不做任何事
+ */
+@Component
+public class UserShardReplicationListener {
+    
+    @Autowired
+    private ObjectProvider<GlobalTableReplicator> replicator;
+    
+    @PostPersist
+    @PostUpdate
+    public void onSave(User user) {
+        afterCommit(user.getId(), GlobalTableReplicator::replicateUser);
+    }
+    
+    @PostRemove
+    public void onRemove(User user) {
+        afterCommit(user.getId(), GlobalTableReplicator::removeUser);
+    }
+    
+    private void afterCommit(Long userId, BiConsumer<GlobalTableReplicator, Long> action) {
+        GlobalTableReplicator target = replicator != null ? replicator.getIfAvailable() : null;
+        if (target == null || userId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.accept(target, userId);
+                }
+            });
+        } else {
+            action.accept(target, userId);
+        }
+    }
+}
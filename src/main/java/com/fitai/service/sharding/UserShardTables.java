@@ -0,0 +1,43 @@
+package com.fitai.service.sharding;
+
+import com.fitai.repository.WorkoutArchiveCatalog;
+
+import java.util.List;
+
+/**
+ * 按用户分片的表及其按用户筛选的条件，按父表在前的顺序排列（复制按此顺序，删除按逆序）
+ * 用户表和运动库是全局表，以分片0为准复制到各分片
+ */
+public final class UserShardTables {
+    
+    public static final String USERS_TABLE = "users";
+    public static final String EXERCISES_TABLE = "exercises";
+    public static final String EXERCISE_MUSCLES_TABLE = "exercise_secondary_muscles";
+    
+    public static final List<UserTable> PER_USER_TABLES = List.of(
+            new UserTable("workout_plans", "user_id = ?"),
+            new UserTable("workout_exercises", "workout_plan_id IN (SELECT id FROM workout_plans WHERE user_id = ?)"),
+            new UserTable(WorkoutArchiveCatalog.SESSIONS_TABLE, "user_id = ?"),
+            new UserTable(WorkoutArchiveCatalog.RECORDS_TABLE,
+                    "workout_session_id IN (SELECT id FROM workout_sessions WHERE user_id = ?)"),
+            new UserTable(WorkoutArchiveCatalog.SESSIONS_ARCHIVE_TABLE, "user_id = ?"),
+            new UserTable(WorkoutArchiveCatalog.RECORDS_ARCHIVE_TABLE, "user_id = ?"),
+            new UserTable("nutrition_plans", "user_id = ?"));
+    
+    private UserShardTables() {
+    }
+    
+    /**
+     * 保留原表ID的归档表，没有时返回 null
+     */
+    public static String archiveTableOf(String table) {
+        return switch (table) {
+            case WorkoutArchiveCatalog.SESSIONS_TABLE -> WorkoutArchiveCatalog.SESSIONS_ARCHIVE_TABLE;
+            case WorkoutArchiveCatalog.RECORDS_TABLE -> WorkoutArchiveCatalog.RECORDS_ARCHIVE_TABLE;
+            default -> null;
+        };
+    }
+    
+    public record UserTable(String table, String userFilter) {
+    }
+}
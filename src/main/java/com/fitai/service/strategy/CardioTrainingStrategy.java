@@ -109,7 +109,7 @@ public class CardioTrainingStrategy implements WorkoutStrategy {
         }
         
         // 根据BMI调整
-        double bmi = user.calculateBMI();
+        double bmi = user.getCurrentBMI();
         if (bmi > 30) {
             baseIntensity *= 0.8; // 肥胖用户从低强度开始
         }
@@ -148,7 +148,7 @@ public class CardioTrainingStrategy implements WorkoutStrategy {
         }
         
         // 肥胖用户优先选择低冲击动作
-        if (user.calculateBMI() > 30) {
+        if (user.getCurrentBMI() > 30) {
             return exercise.name.equals("快走") || exercise.name.equals("椭圆机") || 
                    exercise.name.equals("动感单车") || exercise.name.equals("踏步");
         }
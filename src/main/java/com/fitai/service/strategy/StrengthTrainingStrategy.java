@@ -112,7 +112,7 @@ public class StrengthTrainingStrategy implements WorkoutStrategy {
         }
         
         // 根据BMI调整
-        double bmi = user.calculateBMI();
+        double bmi = user.getCurrentBMI();
         if (bmi > 30) {
             baseIntensity *= 0.7; // 肥胖用户降低强度
         } else if (bmi < 18.5) {
@@ -53,7 +53,7 @@ public class WeightLossStrategy implements WorkoutPlanStrategy {
     @Override
     public boolean isApplicable(User user) {
         return user.getFitnessGoal() == User.FitnessGoal.WEIGHT_LOSS ||
-               (user.calculateBMI() > 24 && user.getFitnessGoal() == User.FitnessGoal.GENERAL_FITNESS);
+               (user.getCurrentBMI() > 24 && user.getFitnessGoal() == User.FitnessGoal.GENERAL_FITNESS);
     }
     
     private WorkoutPlan.DifficultyLevel mapUserLevelToPlanLevel(User.FitnessLevel userLevel) {
@@ -0,0 +1,38 @@
+package com.fitai.service.timeseries;
+
+import lombok.Getter;
+
+/**
+ * 训练记录区间聚合结果
+ */
+@Getter
+public class ExerciseRecordAggregate {
+
+    private long recordCount;
+    private double volume;
+    private long totalSets;
+    private long totalReps;
+    private long totalDurationMinutes;
+    private long totalCaloriesBurned;
+    private double maxWeight;
+
+    void add(ExerciseRecordPoint point) {
+        recordCount++;
+        volume += point.getVolume();
+        if (point.setsCompleted() != null) {
+            totalSets += point.setsCompleted();
+        }
+        if (point.repsCompleted() != null) {
+            totalReps += point.repsCompleted();
+        }
+        if (point.durationMinutes() != null) {
+            totalDurationMinutes += point.durationMinutes();
+        }
+        if (point.caloriesBurned() != null) {
+            totalCaloriesBurned += point.caloriesBurned();
+        }
+        if (point.weightUsed() != null) {
+            maxWeight = Math.max(maxWeight, point.weightUsed());
+        }
+    }
+}
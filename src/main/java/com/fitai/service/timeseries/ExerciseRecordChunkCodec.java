@@ -0,0 +1,294 @@
+package com.fitai.service.timeseries;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 训练记录列块编解码
+ * 每个块按列存储：运动名称字典 + 时间戳差分 + 会话ID差分 + 记录ID差分 + 各数值列，
+ * 整数统一使用 ZigZag + 变长编码，空值编码为 0，非空值编码为 zigzag(v) + 1
+ *
+ * 块格式：magic(4) | rowCount(4) | payloadLength(4) | minTs(8) | maxTs(8) | crc32(4) | payload
+ */
+final class ExerciseRecordChunkCodec {
+
+    static final int MAGIC = 0x57585231; // "WXR1"
+    static final int HEADER_SIZE = 32;
+
+    // 解码时的空值标记
+    private static final long NULL = Long.MIN_VALUE;
+
+    private ExerciseRecordChunkCodec() {
+    }
+
+    /**
+     * 编码一个块，rows 必须已按完成时间升序排列
+     */
+    static byte[] encode(List<ExerciseRecordPoint> rows) {
+        VarIntOutput payload = new VarIntOutput(rows.size() * 12 + 64);
+
+        // 运动名称字典
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        int[] nameIndexes = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            String name = rows.get(i).exerciseName() != null ? rows.get(i).exerciseName() : "";
+            Integer index = dictionary.get(name);
+            if (index == null) {
+                index = names.size();
+                dictionary.put(name, index);
+                names.add(name);
+            }
+            nameIndexes[i] = index;
+        }
+        payload.writeVarLong(names.size());
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            payload.writeVarLong(bytes.length);
+            payload.write(bytes, 0, bytes.length);
+        }
+
+        // 时间戳列：首值 + 差分
+        long previous = 0;
+        for (ExerciseRecordPoint row : rows) {
+            payload.writeZigZag(row.completedAtMillis() - previous);
+            previous = row.completedAtMillis();
+        }
+
+        // 会话ID列：差分，同一会话的连续记录只占1字节
+        previous = 0;
+        for (ExerciseRecordPoint row : rows) {
+            long value = row.sessionId() == null ? 0 : row.sessionId() + 1;
+            payload.writeZigZag(value - previous);
+            previous = value;
+        }
+
+        // 记录ID列：差分，同一批提交的记录ID基本连续
+        previous = 0;
+        for (ExerciseRecordPoint row : rows) {
+            payload.writeZigZag(row.recordId() - previous);
+            previous = row.recordId();
+        }
+
+        for (int index : nameIndexes) {
+            payload.writeVarLong(index);
+        }
+        for (ExerciseRecordPoint row : rows) {
+            payload.writeNullable(row.setsCompleted());
+        }
+        for (ExerciseRecordPoint row : rows) {
+            payload.writeNullable(row.repsCompleted());
+        }
+        for (ExerciseRecordPoint row : rows) {
+            payload.writeNullable(row.weightUsed() == null ? null : Math.round(row.weightUsed() * 1000));
+        }
+        for (ExerciseRecordPoint row : rows) {
+            payload.writeNullable(row.durationMinutes());
+        }
+        for (ExerciseRecordPoint row : rows) {
+            payload.writeNullable(row.caloriesBurned());
+        }
+
+        byte[] body = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        ByteBuffer block = ByteBuffer.allocate(HEADER_SIZE + body.length);
+        block.putInt(MAGIC);
+        block.putInt(rows.size());
+        block.putInt(body.length);
+        block.putLong(rows.get(0).completedAtMillis());
+        block.putLong(rows.get(rows.size() - 1).completedAtMillis());
+        block.putInt((int) crc.getValue());
+        block.put(body);
+        return block.array();
+    }
+
+    /**
+     * 从 buffer 当前位置开始依次读取块，跳过时间范围不相交的块，只对范围内的记录回调
+     * 遇到不完整的块（正在写入或进程崩溃留下的尾部）时停止
+     */
+    static void scan(ByteBuffer buffer, long fromMillis, long toMillis, Consumer<ExerciseRecordPoint> visitor) {
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            int rowCount = buffer.getInt(start + 4);
+            int payloadLength = buffer.getInt(start + 8);
+            if (buffer.getInt(start) != MAGIC || rowCount <= 0 || payloadLength < 0
+                    || payloadLength > buffer.remaining() - HEADER_SIZE) {
+                return;
+            }
+            long minTs = buffer.getLong(start + 12);
+            long maxTs = buffer.getLong(start + 20);
+            int payloadStart = start + HEADER_SIZE;
+            if (maxTs >= fromMillis && minTs <= toMillis) {
+                decode(buffer.slice(payloadStart, payloadLength), rowCount, fromMillis, toMillis, visitor);
+            }
+            buffer.position(payloadStart + payloadLength);
+        }
+    }
+
+    /**
+     * 校验文件中的块，返回最后一个完整且校验和正确的块的结束位置
+     * 追加写入前用于截掉崩溃留下的半截块
+     */
+    static long validLength(ByteBuffer buffer) {
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            int rowCount = buffer.getInt(start + 4);
+            int payloadLength = buffer.getInt(start + 8);
+            if (buffer.getInt(start) != MAGIC || rowCount <= 0 || payloadLength < 0
+                    || payloadLength > buffer.remaining() - HEADER_SIZE) {
+                return start;
+            }
+            int crc = buffer.getInt(start + 28);
+            if (!checksumMatches(buffer.slice(start + HEADER_SIZE, payloadLength), crc)) {
+                return start;
+            }
+            buffer.position(start + HEADER_SIZE + payloadLength);
+        }
+        return buffer.position();
+    }
+
+    private static boolean checksumMatches(ByteBuffer payload, int expected) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == expected;
+    }
+
+    private static void decode(ByteBuffer payload, int rowCount, long fromMillis, long toMillis,
+                               Consumer<ExerciseRecordPoint> visitor) {
+        VarIntInput in = new VarIntInput(payload);
+
+        String[] names = new String[(int) in.readVarLong()];
+        for (int i = 0; i < names.length; i++) {
+            byte[] bytes = new byte[(int) in.readVarLong()];
+            payload.get(bytes);
+            names[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long[] timestamps = new long[rowCount];
+        long previous = 0;
+        for (int i = 0; i < rowCount; i++) {
+            previous += in.readZigZag();
+            timestamps[i] = previous;
+        }
+        long[] sessionIds = new long[rowCount];
+        previous = 0;
+        for (int i = 0; i < rowCount; i++) {
+            previous += in.readZigZag();
+            sessionIds[i] = previous;
+        }
+        long[] recordIds = new long[rowCount];
+        previous = 0;
+        for (int i = 0; i < rowCount; i++) {
+            previous += in.readZigZag();
+            recordIds[i] = previous;
+        }
+        int[] nameIndexes = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            nameIndexes[i] = (int) in.readVarLong();
+        }
+        long[] sets = in.readNullableColumn(rowCount);
+        long[] reps = in.readNullableColumn(rowCount);
+        long[] weights = in.readNullableColumn(rowCount);
+        long[] durations = in.readNullableColumn(rowCount);
+        long[] calories = in.readNullableColumn(rowCount);
+
+        for (int i = 0; i < rowCount; i++) {
+            if (timestamps[i] < fromMillis || timestamps[i] > toMillis) {
+                continue;
+            }
+            visitor.accept(new ExerciseRecordPoint(
+                    recordIds[i],
+                    timestamps[i],
+                    sessionIds[i] == 0 ? null : sessionIds[i] - 1,
+                    names[nameIndexes[i]],
+                    toInteger(sets[i]),
+                    toInteger(reps[i]),
+                    weights[i] == NULL ? null : weights[i] / 1000.0,
+                    toInteger(durations[i]),
+                    toInteger(calories[i])));
+        }
+    }
+
+    private static Integer toInteger(long value) {
+        return value == NULL ? null : (int) value;
+    }
+
+    /**
+     * 变长整数输出
+     */
+    private static final class VarIntOutput extends ByteArrayOutputStream {
+
+        VarIntOutput(int size) {
+            super(size);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeNullable(Number value) {
+            writeVarLong(value == null ? 0 : ((value.longValue() << 1) ^ (value.longValue() >> 63)) + 1);
+        }
+    }
+
+    /**
+     * 变长整数输入
+     */
+    private static final class VarIntInput {
+
+        private final ByteBuffer buffer;
+
+        VarIntInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        long readVarLong() {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                byte b = buffer.get();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+            }
+        }
+
+        long readZigZag() {
+            long raw = readVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        long[] readNullableColumn(int rowCount) {
+            long[] values = new long[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                long raw = readVarLong();
+                if (raw == 0) {
+                    values[i] = NULL;
+                } else {
+                    raw -= 1;
+                    values[i] = (raw >>> 1) ^ -(raw & 1);
+                }
+            }
+            return values;
+        }
+    }
+}
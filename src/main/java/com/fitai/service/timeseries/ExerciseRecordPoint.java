@@ -0,0 +1,54 @@
+package com.fitai.service.timeseries;
+
+import com.fitai.model.exercise.WorkoutExerciseRecord;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 时序存储中的一条训练记录（只保留数值列，备注等自由文本仍在行存储中）
+ * 重量按克存储，精度为 1g；recordId 为行存储主键，用于启动追赶时去重
+ */
+public record ExerciseRecordPoint(long recordId,
+                                  long completedAtMillis,
+                                  Long sessionId,
+                                  String exerciseName,
+                                  Integer setsCompleted,
+                                  Integer repsCompleted,
+                                  Double weightUsed,
+                                  Integer durationMinutes,
+                                  Integer caloriesBurned) {
+
+    public static ExerciseRecordPoint from(WorkoutExerciseRecord record) {
+        LocalDateTime completedAt = record.getCompletedAt() != null ? record.getCompletedAt() : LocalDateTime.now();
+        return new ExerciseRecordPoint(
+                record.getId() != null ? record.getId() : 0,
+                completedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                record.getWorkoutSession() != null ? record.getWorkoutSession().getId() : null,
+                record.getExerciseName(),
+                record.getSetsCompleted(),
+                record.getRepsCompleted(),
+                record.getWeightUsed(),
+                record.getDurationMinutes(),
+                record.getCaloriesBurned());
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(completedAtMillis), ZoneId.systemDefault());
+    }
+
+    public boolean isStrengthExercise() {
+        return setsCompleted != null && repsCompleted != null;
+    }
+
+    /**
+     * 训练量，与 WorkoutExerciseRecord#getVolume 口径一致
+     */
+    public double getVolume() {
+        if (isStrengthExercise() && weightUsed != null) {
+            return setsCompleted * repsCompleted * weightUsed;
+        }
+        return 0.0;
+    }
+}
@@ -0,0 +1,39 @@
+package com.fitai.service.timeseries;
+
+import com.fitai.model.exercise.WorkoutExerciseRecord;
+import jakarta.persistence.PostPersist;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 训练记录实体监听器
+ * 记录写入行存储并提交后，同步追加到时序存储
+ */
+@Component
+public class ExerciseRecordTimeSeriesListener {
+
+    @Autowired
+    private ExerciseRecordTimeSeriesService timeSeriesService;
+
+    @PostPersist
+    public void onPersist(WorkoutExerciseRecord record) {
+        if (record.getWorkoutSession() == null || record.getWorkoutSession().getUser() == null) {
+            return;
+        }
+        Long userId = record.getWorkoutSession().getUser().getId();
+        ExerciseRecordPoint point = ExerciseRecordPoint.from(record);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    timeSeriesService.append(userId, point);
+                }
+            });
+        } else {
+            timeSeriesService.append(userId, point);
+        }
+    }
+}
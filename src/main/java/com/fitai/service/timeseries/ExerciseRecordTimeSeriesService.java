@@ -0,0 +1,492 @@
+package com.fitai.service.timeseries;
+
+import com.fitai.config.sharding.ShardRouter;
+import com.fitai.model.exercise.WorkoutExerciseRecord;
+import com.fitai.repository.WorkoutExerciseRecordRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * 训练记录时序存储
+ * 按用户、按月分区，每个分区一个只追加文件，文件由若干列式编码块组成；
+ * 写入先进入内存缓冲，攒够一个块或定时刷盘，读取时内存映射分区文件并按块的时间范围跳过无关数据
+ *
+ * 存储维护每个分片的高水位（已落盘的行存储记录ID），每次启动从高水位追赶行存储，
+ * 补回崩溃时缓冲中丢失的记录；追赶完成前的实时追加先暂存，完成后按记录ID去重再写入
+ *
+ * 目录结构：{dir}/{userId % 1000}/{userId}/{yyyy-MM}.wxr，高水位文件：{dir}/high-water
+ */
+@Service
+@Slf4j
+public class ExerciseRecordTimeSeriesService {
+
+    private static final String FILE_SUFFIX = ".wxr";
+    private static final String HIGH_WATER_FILE = "high-water";
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    // 追赶时累积这么多条未落盘记录就刷一次盘
+    private static final int IMPORT_FLUSH_ROWS = 100_000;
+
+    @Autowired
+    private WorkoutExerciseRecordRepository recordRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${fitai.coach.timeseries.dir:data/timeseries}")
+    private String baseDir;
+
+    @Value("${fitai.coach.timeseries.chunk-rows:256}")
+    private int chunkRows;
+
+    @Value("${fitai.coach.timeseries.import-on-startup:true}")
+    private boolean importOnStartup;
+
+    // 待刷盘的记录，每个分区一个缓冲，同时作为该分区文件的写锁
+    private final Map<Partition, PendingChunk> pending = new ConcurrentHashMap<>();
+
+    // 启动追赶完成前到达的实时追加，完成后去重写入；同时作为 caughtUp 的锁
+    private final List<HeldPoint> held = new ArrayList<>();
+    private volatile boolean caughtUp;
+
+    // 每个分片已落盘的最大记录ID
+    private AtomicLongArray flushedMax;
+    // 已持久化的高水位，以及上一轮刷盘时计算、下一轮才持久化的候选高水位
+    private long[] highWater;
+    private long[] candidateHighWater;
+    // 追赶失败时本进程不再推进高水位，下次启动从旧高水位重新追赶
+    private volatile boolean highWaterFrozen;
+
+    @PostConstruct
+    public void init() {
+        int shards = shardRouter.getShardCount();
+        highWater = loadHighWater(shards);
+        candidateHighWater = highWater.clone();
+        flushedMax = new AtomicLongArray(highWater);
+        if (!importOnStartup) {
+            caughtUp = true;
+        }
+    }
+
+    /**
+     * 追加一条训练记录（记录已在行存储提交）
+     * 启动追赶完成前先暂存，避免与追赶重复写入
+     */
+    public void append(Long userId, ExerciseRecordPoint point) {
+        if (!caughtUp) {
+            synchronized (held) {
+                if (!caughtUp) {
+                    held.add(new HeldPoint(userId, point));
+                    return;
+                }
+            }
+        }
+        appendToChunk(userId, point);
+    }
+
+    private void appendToChunk(Long userId, ExerciseRecordPoint point) {
+        Partition partition = new Partition(userId, YearMonth.from(point.getCompletedAt()));
+        while (true) {
+            PendingChunk chunk = pending.computeIfAbsent(partition, p -> new PendingChunk());
+            synchronized (chunk) {
+                if (chunk.retired) {
+                    // 缓冲刚被回收，重新获取
+                    continue;
+                }
+                chunk.rows.add(point);
+                if (chunk.rows.size() >= chunkRows) {
+                    flush(partition, chunk);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 遍历用户在时间区间内的训练记录（含尚未刷盘的记录），区间两端均包含
+     */
+    public void scan(Long userId, LocalDateTime from, LocalDateTime to, Consumer<ExerciseRecordPoint> visitor) {
+        long fromMillis = toMillis(from);
+        long toMillis = toMillis(to);
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+            Partition partition = new Partition(userId, month);
+            Path file = partitionFile(partition);
+
+            // 在分区锁内同时获取文件映射和缓冲副本，避免与刷盘交错导致漏读或重复
+            ByteBuffer mapped = null;
+            List<ExerciseRecordPoint> buffered = List.of();
+            PendingChunk chunk = pending.get(partition);
+            if (chunk != null) {
+                synchronized (chunk) {
+                    mapped = map(file);
+                    buffered = new ArrayList<>(chunk.rows);
+                }
+            } else {
+                mapped = map(file);
+            }
+
+            if (mapped != null) {
+                ExerciseRecordChunkCodec.scan(mapped, fromMillis, toMillis, visitor);
+            }
+            for (ExerciseRecordPoint point : buffered) {
+                if (point.completedAtMillis() >= fromMillis && point.completedAtMillis() <= toMillis) {
+                    visitor.accept(point);
+                }
+            }
+        }
+    }
+
+    /**
+     * 区间聚合
+     */
+    public ExerciseRecordAggregate aggregate(Long userId, LocalDateTime from, LocalDateTime to) {
+        ExerciseRecordAggregate aggregate = new ExerciseRecordAggregate();
+        scan(userId, from, to, aggregate::add);
+        return aggregate;
+    }
+
+    /**
+     * 区间训练量（组数 × 次数 × 重量）
+     */
+    public double getVolume(Long userId, LocalDateTime from, LocalDateTime to) {
+        return aggregate(userId, from, to).getVolume();
+    }
+
+    /**
+     * 按天聚合，用于进度图表
+     */
+    public Map<LocalDate, ExerciseRecordAggregate> aggregateByDay(Long userId, LocalDate from, LocalDate to) {
+        Map<LocalDate, ExerciseRecordAggregate> result = new TreeMap<>();
+        scan(userId, from.atStartOfDay(), to.plusDays(1).atStartOfDay().minusNanos(1), point ->
+                result.computeIfAbsent(point.getCompletedAt().toLocalDate(), d -> new ExerciseRecordAggregate())
+                        .add(point));
+        return result;
+    }
+
+    /**
+     * 启动时从每个分片的高水位追赶行存储（存储为空时即全量导入），完成后写入暂存的实时追加
+     * 高水位之后的记录可能已有一部分落盘，按记录ID去重；
+     * 去重集合只收高水位之上已在存储中的ID，逐个分片建立、分片追赶完即释放，全量导入时不随历史增长
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUpFromRowStore() {
+        if (caughtUp) {
+            return;
+        }
+        try {
+            shardRouter.forEachShard(this::catchUpShard);
+            flushAll();
+        } catch (RuntimeException e) {
+            highWaterFrozen = true;
+            log.error("时序存储追赶行存储失败，本次运行不再推进高水位，下次启动重新追赶", e);
+        }
+
+        synchronized (held) {
+            // 暂存的记录可能已被追赶写入，只为涉及的分区建立去重集合
+            Map<Partition, Set<Long>> stored = new HashMap<>();
+            for (HeldPoint point : held) {
+                Partition partition = point.partition();
+                if (point.point().recordId() == 0
+                        || stored.computeIfAbsent(partition, p -> new HashSet<>(storedRecordIdsAboveHighWater(p)))
+                                .add(point.point().recordId())) {
+                    appendToChunk(point.userId(), point.point());
+                }
+            }
+            if (!held.isEmpty()) {
+                log.info("追赶期间暂存的 {} 条训练记录已写入时序存储", held.size());
+            }
+            held.clear();
+            caughtUp = true;
+        }
+    }
+
+    private void catchUpShard(int shard) {
+        // 本分片各分区在追赶开始前已落盘的高水位之上的记录ID；用户只属于一个分片，分片结束即可释放
+        Map<Partition, Set<Long>> existing = new HashMap<>();
+        long appended = 0;
+        long unflushed = 0;
+        long lastId = highWater[shard];
+        while (true) {
+            List<Object[]> batch = recordRepository.findBatchWithUserIdAfter(lastId, PageRequest.of(0, IMPORT_BATCH_SIZE));
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (Object[] row : batch) {
+                WorkoutExerciseRecord record = (WorkoutExerciseRecord) row[0];
+                Long userId = (Long) row[1];
+                ExerciseRecordPoint point = ExerciseRecordPoint.from(record);
+                Partition partition = new Partition(userId, YearMonth.from(point.getCompletedAt()));
+                // 批次按ID递增读取，同一条记录只会读到一次，只需排除追赶前已在存储中的记录
+                if (!existing.computeIfAbsent(partition, this::storedRecordIdsAboveHighWater).contains(record.getId())) {
+                    appendToChunk(userId, point);
+                    appended++;
+                    unflushed++;
+                }
+                lastId = record.getId();
+            }
+            // 不满一个块的分区缓冲随导入累积，定期落盘以限制内存
+            if (unflushed >= IMPORT_FLUSH_ROWS) {
+                flushAll();
+                unflushed = 0;
+            }
+        }
+        flushAll();
+        // 追赶读到的记录要么已在存储中，要么已随上面的刷盘落盘
+        flushedMax.accumulateAndGet(shard, lastId, Math::max);
+        if (appended > 0) {
+            log.info("分片 {} 已从行存储补入 {} 条训练记录到时序存储（高水位 {} -> {}）",
+                    shard, appended, highWater[shard], lastId);
+        }
+    }
+
+    /**
+     * 分区中已有的、高于所属分片高水位的记录ID（含尚未刷盘的缓冲）
+     * 高水位及以下的记录不会被追赶再次读到，无需参与去重
+     */
+    private Set<Long> storedRecordIdsAboveHighWater(Partition partition) {
+        long floor = highWater[shardRouter.shardFor(partition.userId())];
+        Set<Long> ids = new HashSet<>();
+        Consumer<ExerciseRecordPoint> collect = point -> {
+            if (point.recordId() > floor) {
+                ids.add(point.recordId());
+            }
+        };
+        ByteBuffer mapped;
+        PendingChunk chunk = pending.get(partition);
+        if (chunk != null) {
+            synchronized (chunk) {
+                mapped = map(partitionFile(partition));
+                chunk.rows.forEach(collect);
+            }
+        } else {
+            mapped = map(partitionFile(partition));
+        }
+        if (mapped != null) {
+            ExerciseRecordChunkCodec.scan(mapped, Long.MIN_VALUE, Long.MAX_VALUE, collect);
+        }
+        // 绝大多数分区没有需要去重的记录，共享空集合避免每个分区占用一个 HashSet
+        return ids.isEmpty() ? Set.of() : ids;
+    }
+
+    /**
+     * 定时将缓冲中的记录写成块，并回收上一轮之后没有新写入的分区缓冲，然后推进高水位
+     *
+     * 记录ID在插入时分配、提交后才追加，较小的ID可能晚于较大的ID到达，
+     * 因此本轮算出的候选高水位要到下一轮刷盘后才持久化：两轮之间提交的记录已经落盘，
+     * 只有从分配ID到追加超过一个刷盘间隔的记录在崩溃时可能漏补
+     */
+    @Scheduled(fixedDelayString = "${fitai.coach.timeseries.flush-interval-ms:5000}")
+    public synchronized void flushAll() {
+        long[] minBuffered = new long[highWater.length];
+        Arrays.fill(minBuffered, Long.MAX_VALUE);
+        for (Map.Entry<Partition, PendingChunk> entry : pending.entrySet()) {
+            PendingChunk chunk = entry.getValue();
+            synchronized (chunk) {
+                if (!chunk.rows.isEmpty()) {
+                    flush(entry.getKey(), chunk);
+                } else if (!chunk.retired) {
+                    chunk.retired = true;
+                    pending.remove(entry.getKey(), chunk);
+                }
+                // 写入失败留在缓冲中的记录不能被高水位越过
+                int shard = shardRouter.shardFor(entry.getKey().userId());
+                for (ExerciseRecordPoint point : chunk.rows) {
+                    if (point.recordId() > 0) {
+                        minBuffered[shard] = Math.min(minBuffered[shard], point.recordId());
+                    }
+                }
+            }
+        }
+        if (caughtUp && !highWaterFrozen) {
+            advanceHighWater(minBuffered);
+        }
+    }
+
+    private void advanceHighWater(long[] minBuffered) {
+        boolean changed = false;
+        for (int shard = 0; shard < highWater.length; shard++) {
+            long next = Math.max(highWater[shard], candidateHighWater[shard]);
+            if (next != highWater[shard]) {
+                highWater[shard] = next;
+                changed = true;
+            }
+            candidateHighWater[shard] = Math.min(flushedMax.get(shard), minBuffered[shard] - 1);
+        }
+        if (changed) {
+            storeHighWater();
+        }
+    }
+
+    private long[] loadHighWater(int shards) {
+        long[] values = new long[shards];
+        Path file = Paths.get(baseDir, HIGH_WATER_FILE);
+        if (!Files.exists(file)) {
+            return values;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] parts = line.trim().split("=");
+                if (parts.length == 2) {
+                    int shard = Integer.parseInt(parts[0]);
+                    if (shard < shards) {
+                        values[shard] = Long.parseLong(parts[1]);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return values;
+    }
+
+    /**
+     * 写临时文件后原子替换，崩溃时要么是旧高水位要么是新高水位
+     */
+    private void storeHighWater() {
+        StringBuilder content = new StringBuilder();
+        for (int shard = 0; shard < highWater.length; shard++) {
+            content.append(shard).append('=').append(highWater[shard]).append('\n');
+        }
+        Path file = Paths.get(baseDir, HIGH_WATER_FILE);
+        Path temp = Paths.get(baseDir, HIGH_WATER_FILE + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("时序存储高水位写入失败: {}", file, e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushAll();
+    }
+
+    /**
+     * 将缓冲写成一个块追加到分区文件，调用方持有 chunk 锁
+     * 写入失败时保留缓冲，下次刷盘重试
+     */
+    private void flush(Partition partition, PendingChunk chunk) {
+        List<ExerciseRecordPoint> rows = new ArrayList<>(chunk.rows);
+        rows.sort(Comparator.comparingLong(ExerciseRecordPoint::completedAtMillis));
+        byte[] block = ExerciseRecordChunkCodec.encode(rows);
+
+        Path file = partitionFile(partition);
+        try {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long position = chunk.validatedLength;
+                if (position < 0) {
+                    // 本进程首次写入该分区，截掉崩溃留下的不完整尾部
+                    position = channel.size() == 0 ? 0
+                            : ExerciseRecordChunkCodec.validLength(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                    if (position < channel.size()) {
+                        log.warn("训练记录分区文件尾部不完整，已截断: {} ({} -> {} 字节)", file, channel.size(), position);
+                        channel.truncate(position);
+                    }
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(block);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                channel.force(false);
+                chunk.validatedLength = position;
+            }
+            long maxId = rows.stream().mapToLong(ExerciseRecordPoint::recordId).max().orElse(0);
+            flushedMax.accumulateAndGet(shardRouter.shardFor(partition.userId()), maxId, Math::max);
+            chunk.rows.clear();
+        } catch (IOException e) {
+            chunk.validatedLength = -1;
+            log.error("训练记录写入时序存储失败: {}", file, e);
+        }
+    }
+
+    /**
+     * 只读映射分区文件，文件不存在时返回 null
+     */
+    private MappedByteBuffer map(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path partitionFile(Partition partition) {
+        return Paths.get(baseDir,
+                String.valueOf(partition.userId() % 1000),
+                String.valueOf(partition.userId()),
+                partition.month() + FILE_SUFFIX);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private record Partition(Long userId, YearMonth month) {
+    }
+
+    private record HeldPoint(Long userId, ExerciseRecordPoint point) {
+
+        Partition partition() {
+            return new Partition(userId, YearMonth.from(point.getCompletedAt()));
+        }
+    }
+
+    /**
+     * 分区写缓冲
+     */
+    private static final class PendingChunk {
+        private final List<ExerciseRecordPoint> rows = new ArrayList<>();
+        // 已校验的文件长度，-1 表示本进程尚未校验
+        private long validatedLength = -1;
+        // 已从 pending 中移除
+        private boolean retired;
+    }
+}
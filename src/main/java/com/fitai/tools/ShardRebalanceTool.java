@@ -0,0 +1,291 @@
+package com.fitai.tools;
+
+import com.fitai.config.sharding.JumpConsistentHash;
+import com.fitai.config.sharding.ShardSchemaSupport;
+import com.fitai.service.archive.WorkoutArchiveService;
+import com.fitai.service.sharding.ShardRowCopier;
+import com.fitai.service.sharding.UserShardTables;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 分片扩容迁移工具（离线执行，需在维护窗口内停止应用后运行）
+ * 分片数由 from 增加到 shards 列表的长度后，跳跃一致性哈希只会把部分用户移动到新分片；
+ * 工具为新分片建表、同步运动库，再逐个用户把分片数据复制到新分片、校验行数后从原分片删除。
+ * 每个用户先提交目标分片、再提交源分片，中途失败可直接重新运行（目标分片上的残留会先被清理）
+ *
+ * 注意：各分片的自增主键必须全局唯一（应用按分片数设置 auto_increment_increment / auto_increment_offset），
+ * 否则搬迁时会发生主键冲突。分片数变化后步长随之变化，已有行仍是旧步长下分配的ID，
+ * 各分片的自增计数器又只越过本分片的最大ID，新步长下会重新分配其他分片用过的ID；
+ * 因此迁移完成后工具会把每张按用户分片表在所有分片上的 AUTO_INCREMENT 调到全部分片（含归档表）的最大ID之上，
+ * 只调整自增值时可以加 --reset-auto-increment-only 单独执行这一步
+ *
+ * 用法：
+ * java -cp fitai-coach.jar -Dloader.main=com.fitai.tools.ShardRebalanceTool
+ *      org.springframework.boot.loader.launch.PropertiesLauncher
+ *      --from=2 --shards=jdbc:mysql://shard0/...,jdbc:mysql://shard1/...,jdbc:mysql://shard2/...
+ *      --user=fitai --password=****** [--dry-run] [--reset-auto-increment-only]
+ */
+public class ShardRebalanceTool {
+
+    private final List<String> urls;
+    private final String user;
+    private final String password;
+    private final int fromCount;
+    private final boolean dryRun;
+    private final boolean resetAutoIncrementOnly;
+
+    public ShardRebalanceTool(List<String> urls, String user, String password, int fromCount, boolean dryRun,
+                              boolean resetAutoIncrementOnly) {
+        if (fromCount < 1 || fromCount > urls.size()) {
+            throw new IllegalArgumentException("--from 必须在 1 到分片数 " + urls.size() + " 之间");
+        }
+        this.urls = urls;
+        this.user = user;
+        this.password = password;
+        this.fromCount = fromCount;
+        this.dryRun = dryRun;
+        this.resetAutoIncrementOnly = resetAutoIncrementOnly;
+    }
+
+    public static void main(String[] args) throws SQLException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("无法识别的参数: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+        if (!options.containsKey("from") || !options.containsKey("shards")) {
+            System.err.println("用法: --from=<原分片数> --shards=<url0,url1,...> [--user=] [--password=] [--dry-run]"
+                    + " [--reset-auto-increment-only]");
+            System.exit(2);
+        }
+
+        ShardRebalanceTool tool = new ShardRebalanceTool(
+                List.of(options.get("shards").split(",")),
+                options.get("user"),
+                options.get("password"),
+                Integer.parseInt(options.get("from")),
+                options.containsKey("dry-run"),
+                options.containsKey("reset-auto-increment-only"));
+        tool.run();
+    }
+
+    public void run() throws SQLException {
+        int toCount = urls.size();
+        if (resetAutoIncrementOnly) {
+            resetAutoIncrement();
+            return;
+        }
+        log("分片数 %d -> %d%s", fromCount, toCount, dryRun ? "（演练，不修改数据）" : "");
+
+        if (!dryRun) {
+            for (int shard = fromCount; shard < toCount; shard++) {
+                prepareNewShard(shard);
+            }
+        }
+
+        long movedUsers = 0;
+        for (int source = 0; source < fromCount; source++) {
+            Map<Integer, Integer> plan = new HashMap<>();
+            for (Long userId : collectUserIds(source)) {
+                int target = JumpConsistentHash.bucket(userId, toCount);
+                if (target == source) {
+                    continue;
+                }
+                plan.merge(target, 1, Integer::sum);
+                if (!dryRun) {
+                    moveUser(userId, source, target);
+                }
+                movedUsers++;
+            }
+            log("分片 %d: 需迁移用户 %s", source, plan);
+        }
+        log("%s %d 个用户", dryRun ? "共需迁移" : "已迁移", movedUsers);
+        if (!dryRun) {
+            resetAutoIncrement();
+        }
+    }
+
+    /**
+     * 把每张按用户分片表在所有分片上的下一个自增值调到全部分片最大ID之上，
+     * 新步长下各分片分配的ID不会与旧步长下任何分片已分配的ID重复。
+     * 归档表的行保留原表分配的ID，一并计入
+     */
+    private void resetAutoIncrement() throws SQLException {
+        for (UserShardTables.UserTable table : UserShardTables.PER_USER_TABLES) {
+            List<String> idSources = new ArrayList<>(List.of(table.table()));
+            String archive = UserShardTables.archiveTableOf(table.table());
+            if (archive != null) {
+                idSources.add(archive);
+            }
+            long maxId = 0;
+            boolean autoIncrement = false;
+            for (int shard = 0; shard < urls.size(); shard++) {
+                try (Connection connection = connect(shard)) {
+                    autoIncrement |= hasAutoIncrement(connection, table.table());
+                    for (String source : idSources) {
+                        if (ShardRowCopier.tableExists(connection, source)) {
+                            maxId = Math.max(maxId, maxId(connection, source));
+                        }
+                    }
+                }
+            }
+            if (!autoIncrement) {
+                continue;
+            }
+            for (int shard = 0; shard < urls.size(); shard++) {
+                try (Connection connection = connect(shard); Statement statement = connection.createStatement()) {
+                    if (hasAutoIncrement(connection, table.table())) {
+                        statement.execute("ALTER TABLE " + table.table() + " AUTO_INCREMENT = " + (maxId + 1));
+                    }
+                }
+            }
+            log("%s: 各分片自增值已调整到 %d", table.table(), maxId + 1);
+        }
+    }
+
+    private static boolean hasAutoIncrement(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT AUTO_INCREMENT FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?")) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getObject(1) != null;
+            }
+        }
+    }
+
+    private static long maxId(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * 为新分片建表并同步运动库
+     */
+    private void prepareNewShard(int shard) throws SQLException {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(urls.get(shard), user, password);
+        ShardSchemaSupport.updateSchema(dataSource);
+        WorkoutArchiveService.createArchiveTables(new JdbcTemplate(dataSource));
+
+        try (Connection global = connect(0); Connection target = connect(shard)) {
+            target.setAutoCommit(false);
+            try {
+                int exercises = ShardRowCopier.upsertRows(global, target, UserShardTables.EXERCISES_TABLE, "1 = 1");
+                ShardRowCopier.deleteRows(target, UserShardTables.EXERCISE_MUSCLES_TABLE, "1 = 1");
+                ShardRowCopier.copyRows(global, target, UserShardTables.EXERCISE_MUSCLES_TABLE, "1 = 1");
+                target.commit();
+                log("新分片 %d 已建表并同步 %d 个运动", shard, exercises);
+            } catch (SQLException | RuntimeException e) {
+                target.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 源分片上拥有数据的用户（非0分片再加上复制过来的用户行）
+     */
+    private TreeSet<Long> collectUserIds(int source) throws SQLException {
+        TreeSet<Long> userIds = new TreeSet<>();
+        try (Connection connection = connect(source)) {
+            List<String> queries = new ArrayList<>();
+            for (String table : List.of("workout_plans", "workout_sessions", "nutrition_plans",
+                    "workout_sessions_archive", "workout_exercise_records_archive")) {
+                if (ShardRowCopier.tableExists(connection, table)) {
+                    queries.add("SELECT DISTINCT user_id FROM " + table + " WHERE user_id IS NOT NULL");
+                }
+            }
+            if (source != 0) {
+                queries.add("SELECT id FROM " + UserShardTables.USERS_TABLE);
+            }
+            for (String query : queries) {
+                try (PreparedStatement statement = connection.prepareStatement(query);
+                     ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        userIds.add(rs.getLong(1));
+                    }
+                }
+            }
+        }
+        return userIds;
+    }
+
+    /**
+     * 迁移单个用户：目标分片清理残留、复制并校验后提交，再在源分片删除
+     */
+    private void moveUser(Long userId, int source, int target) throws SQLException {
+        List<UserShardTables.UserTable> tables = UserShardTables.PER_USER_TABLES;
+        try (Connection from = connect(source); Connection to = connect(target); Connection global = connect(0)) {
+            to.setAutoCommit(false);
+            try {
+                deleteUserRows(to, userId);
+                if (target != 0) {
+                    ShardRowCopier.upsertRows(global, to, UserShardTables.USERS_TABLE, "id = ?", userId);
+                }
+                for (UserShardTables.UserTable table : tables) {
+                    if (!ShardRowCopier.tableExists(from, table.table())) {
+                        continue;
+                    }
+                    ShardRowCopier.copyRows(from, to, table.table(), table.userFilter(), userId);
+                    long expected = ShardRowCopier.countRows(from, table.table(), table.userFilter(), userId);
+                    long actual = ShardRowCopier.countRows(to, table.table(), table.userFilter(), userId);
+                    if (expected != actual) {
+                        throw new IllegalStateException(String.format("用户 %d 的 %s 校验失败: 源 %d 行, 目标 %d 行",
+                                userId, table.table(), expected, actual));
+                    }
+                }
+                to.commit();
+            } catch (SQLException | RuntimeException e) {
+                to.rollback();
+                throw e;
+            }
+
+            from.setAutoCommit(false);
+            try {
+                deleteUserRows(from, userId);
+                if (source != 0) {
+                    ShardRowCopier.deleteRows(from, UserShardTables.USERS_TABLE, "id = ?", userId);
+                }
+                from.commit();
+            } catch (SQLException | RuntimeException e) {
+                from.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static void deleteUserRows(Connection connection, Long userId) throws SQLException {
+        List<UserShardTables.UserTable> tables = UserShardTables.PER_USER_TABLES;
+        for (int i = tables.size() - 1; i >= 0; i--) {
+            UserShardTables.UserTable table = tables.get(i);
+            if (ShardRowCopier.tableExists(connection, table.table())) {
+                ShardRowCopier.deleteRows(connection, table.table(), table.userFilter(), userId);
+            }
+        }
+    }
+
+    private Connection connect(int shard) throws SQLException {
+        return new DriverManagerDataSource(urls.get(shard), user, password).getConnection();
+    }
+
+    private static void log(String format, Object... args) {
+        System.out.println("[shard-rebalance] " + String.format(format, args));
+    }
+}
@@ -0,0 +1,714 @@
+package com.fitai.tools;
+
+import com.fitai.config.sharding.ShardSchemaSupport;
+import com.fitai.model.Exercise;
+import com.fitai.model.User;
+import com.fitai.model.WorkoutPlan;
+import com.fitai.model.WorkoutSession;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 合成数据生成工具（离线执行）
+ * 按接近线上的分布生成用户、运动库、训练计划、训练会话和训练记录，用于在本地复现大数据量下的性能问题：
+ * 用户注册时间偏向近期、参与度对数正态分布、近半数用户在一段时间后流失，运动按 Zipf 分布被选用，
+ * 重量随计划进度递增，计划上的会话计数器与生成的会话保持一致。
+ *
+ * 用户按块并行生成，每块使用由 seed 派生的独立随机数，用户ID及其画像可复现；
+ * jdbc 模式直接批量插入，csv 模式先写 CSV 再用 LOAD DATA（MySQL）或 CSVREAD（H2）批量导入。
+ * 所有用户的密码均为 password123
+ *
+ * 用法：
+ * java -cp fitai-coach.jar -Dloader.main=com.fitai.tools.SyntheticDataGenerator
+ *      org.springframework.boot.loader.launch.PropertiesLauncher
+ *      --url=jdbc:mysql://localhost:3306/fitai_bench --user=root --password=****** --users=1000000
+ *      [--activity=1.0] [--history-days=365] [--exercises=300] [--threads=8] [--batch-size=1000]
+ *      [--chunk-users=500] [--seed=20240101] [--mode=jdbc|csv] [--csv-dir=target/synthetic] [--skip-schema]
+ */
+public class SyntheticDataGenerator {
+
+    private static final String PASSWORD = "password123";
+    private static final int ID_BLOCK = 4096;
+    private static final int MAX_SESSIONS_PER_USER = 2000;
+    private static final double EXERCISE_ZIPF_EXPONENT = 1.1;
+
+    private static final String[] SURNAMES = {"王", "李", "张", "刘", "陈", "杨", "赵", "黄", "周", "吴", "徐", "孙", "胡", "朱", "高", "林"};
+    private static final String[] GIVEN_NAMES = {"伟", "芳", "娜", "敏", "静", "磊", "洋", "勇", "艳", "杰", "涛", "明", "超", "霞", "平", "刚", "婷", "浩"};
+
+    private static final Map<Exercise.MuscleGroup, String[]> MOVEMENTS = new EnumMap<>(Exercise.MuscleGroup.class);
+    private static final Map<Exercise.MuscleGroup, Exercise.Equipment[]> EQUIPMENT = new EnumMap<>(Exercise.MuscleGroup.class);
+    private static final String[] VARIANTS = {"", "单臂", "暂停", "慢速离心", "宽距", "窄距"};
+
+    static {
+        Exercise.Equipment[] weights = {Exercise.Equipment.NONE, Exercise.Equipment.DUMBBELLS, Exercise.Equipment.BARBELL,
+                Exercise.Equipment.KETTLEBELL, Exercise.Equipment.RESISTANCE_BANDS};
+        MOVEMENTS.put(Exercise.MuscleGroup.CHEST, new String[]{"卧推", "上斜卧推", "飞鸟", "俯卧撑", "双杠臂屈伸"});
+        MOVEMENTS.put(Exercise.MuscleGroup.BACK, new String[]{"划船", "引体向上", "高位下拉", "硬拉", "直臂下压"});
+        MOVEMENTS.put(Exercise.MuscleGroup.SHOULDERS, new String[]{"推举", "侧平举", "前平举", "面拉", "耸肩"});
+        MOVEMENTS.put(Exercise.MuscleGroup.ARMS, new String[]{"弯举", "锤式弯举", "臂屈伸", "窄距卧推", "颈后臂屈伸"});
+        MOVEMENTS.put(Exercise.MuscleGroup.CORE, new String[]{"平板支撑", "卷腹", "俄罗斯转体", "悬垂举腿", "死虫"});
+        MOVEMENTS.put(Exercise.MuscleGroup.LEGS, new String[]{"深蹲", "箭步蹲", "腿举", "罗马尼亚硬拉", "提踵"});
+        MOVEMENTS.put(Exercise.MuscleGroup.GLUTES, new String[]{"臀桥", "臀推", "侧卧抬腿", "保加利亚分腿蹲", "驴踢"});
+        MOVEMENTS.put(Exercise.MuscleGroup.FULL_BODY, new String[]{"波比跳", "摆荡", "开合跳", "登山跑", "间歇冲刺"});
+        for (Exercise.MuscleGroup group : MOVEMENTS.keySet()) {
+            EQUIPMENT.put(group, weights);
+        }
+        EQUIPMENT.put(Exercise.MuscleGroup.CORE, new Exercise.Equipment[]{Exercise.Equipment.NONE,
+                Exercise.Equipment.YOGA_MAT, Exercise.Equipment.RESISTANCE_BANDS});
+        EQUIPMENT.put(Exercise.MuscleGroup.FULL_BODY, new Exercise.Equipment[]{Exercise.Equipment.NONE,
+                Exercise.Equipment.KETTLEBELL, Exercise.Equipment.TREADMILL, Exercise.Equipment.STATIONARY_BIKE});
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int userCount;
+    private final double activity;
+    private final int historyDays;
+    private final int exerciseCount;
+    private final int threads;
+    private final int batchSize;
+    private final int chunkUsers;
+    private final long seed;
+    private final boolean csvMode;
+    private final Path csvDir;
+    private final boolean skipSchema;
+
+    private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+    private final Map<SyntheticTable, AtomicLong> nextIds = new EnumMap<>(SyntheticTable.class);
+
+    private String passwordHash;
+    private long firstUserId;
+    private CatalogEntry[] catalog;
+    private double[] catalogCumulativeWeights;
+
+    public SyntheticDataGenerator(Map<String, String> options) {
+        this.url = withDriverOptions(options.get("url"), "csv".equals(options.get("mode")));
+        this.user = options.get("user");
+        this.password = options.get("password");
+        this.userCount = Integer.parseInt(options.getOrDefault("users", "100000"));
+        this.activity = Double.parseDouble(options.getOrDefault("activity", "1.0"));
+        this.historyDays = Integer.parseInt(options.getOrDefault("history-days", "365"));
+        this.exerciseCount = Integer.parseInt(options.getOrDefault("exercises", "300"));
+        this.threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        this.batchSize = Integer.parseInt(options.getOrDefault("batch-size", "1000"));
+        this.chunkUsers = Integer.parseInt(options.getOrDefault("chunk-users", "500"));
+        this.seed = Long.parseLong(options.getOrDefault("seed", "20240101"));
+        this.csvMode = "csv".equals(options.get("mode"));
+        this.csvDir = Paths.get(options.getOrDefault("csv-dir", "target/synthetic"));
+        this.skipSchema = options.containsKey("skip-schema");
+        if (userCount < 1 || activity < 0 || historyDays < 1 || threads < 1 || chunkUsers < 1) {
+            throw new IllegalArgumentException("users / history-days / threads / chunk-users 必须为正数，activity 不能为负");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("无法识别的参数: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+        if (!options.containsKey("url")) {
+            System.err.println("用法: --url=<jdbc url> [--user=] [--password=] [--users=100000] [--activity=1.0] "
+                    + "[--history-days=365] [--exercises=300] [--threads=] [--batch-size=1000] [--chunk-users=500] "
+                    + "[--seed=] [--mode=jdbc|csv] [--csv-dir=target/synthetic] [--skip-schema]");
+            System.exit(2);
+        }
+        new SyntheticDataGenerator(options).run();
+    }
+
+    public void run() throws Exception {
+        long start = System.nanoTime();
+        if (!skipSchema) {
+            ShardSchemaSupport.updateSchema(new DriverManagerDataSource(url, user, password));
+        }
+        passwordHash = new BCryptPasswordEncoder().encode(PASSWORD);
+
+        try (Connection connection = connect()) {
+            for (SyntheticTable table : SyntheticTable.values()) {
+                if (table.hasIdColumn()) {
+                    nextIds.put(table, new AtomicLong(maxId(connection, table) + 1));
+                }
+            }
+            loadOrCreateCatalog(connection);
+        }
+        firstUserId = nextIds.get(SyntheticTable.USERS).getAndAdd(userCount);
+
+        int chunks = (userCount + chunkUsers - 1) / chunkUsers;
+        log("生成 %d 个用户（%d 块, %d 线程, %s 模式），用户ID %d 起，运动库 %d 个",
+                userCount, chunks, threads, csvMode ? "csv" : "jdbc", firstUserId, catalog.length);
+
+        Map<SyntheticTable, Long> totals = generateUsers(chunks);
+        log("生成完成，耗时 %d s", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+
+        if (csvMode) {
+            long loadStart = System.nanoTime();
+            loadCsv();
+            log("CSV 批量导入完成，耗时 %d s", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - loadStart));
+        }
+        try (Connection connection = connect()) {
+            restartIdentities(connection);
+        }
+
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+        long rows = totals.values().stream().mapToLong(Long::longValue).sum();
+        totals.forEach((table, count) -> log("  %-28s %,d 行", table.getTableName(), count));
+        log("共 %,d 行，总耗时 %d s（%,d 行/秒）", rows, seconds, rows / seconds);
+    }
+
+    private Map<SyntheticTable, Long> generateUsers(int chunks) throws Exception {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "synthetic-data-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger nextChunk = new AtomicInteger();
+        AtomicInteger doneChunks = new AtomicInteger();
+        List<Future<Map<SyntheticTable, Long>>> futures = new ArrayList<>();
+        try {
+            for (int worker = 0; worker < threads; worker++) {
+                int workerId = worker;
+                futures.add(executor.submit(() -> {
+                    try (SyntheticRowSink sink = csvMode
+                            ? new SyntheticRowSink.Csv(csvDir, workerId)
+                            : new SyntheticRowSink.Jdbc(connect(), batchSize)) {
+                        Map<SyntheticTable, IdBlock> ids = new EnumMap<>(SyntheticTable.class);
+                        nextIds.keySet().forEach(table -> ids.put(table, new IdBlock(nextIds.get(table))));
+                        for (int chunk = nextChunk.getAndIncrement(); chunk < chunks; chunk = nextChunk.getAndIncrement()) {
+                            generateChunk(chunk, sink, ids);
+                            sink.commit();
+                            int done = doneChunks.incrementAndGet();
+                            if (done % Math.max(1, chunks / 20) == 0 || done == chunks) {
+                                log("进度 %d/%d 块", done, chunks);
+                            }
+                        }
+                        return sink.getRowCounts();
+                    }
+                }));
+            }
+            Map<SyntheticTable, Long> totals = new EnumMap<>(SyntheticTable.class);
+            for (Future<Map<SyntheticTable, Long>> future : futures) {
+                future.get().forEach((table, count) -> totals.merge(table, count, Long::sum));
+            }
+            return totals;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void generateChunk(int chunk, SyntheticRowSink sink, Map<SyntheticTable, IdBlock> ids) {
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + chunk);
+        int from = chunk * chunkUsers;
+        int to = Math.min(userCount, from + chunkUsers);
+        for (int index = from; index < to; index++) {
+            generateUser(firstUserId + index, random, sink, ids);
+            sink.userCompleted();
+        }
+    }
+
+    /**
+     * 生成一个用户及其计划、会话和训练记录
+     */
+    private void generateUser(long userId, SplittableRandom random, SyntheticRowSink sink, Map<SyntheticTable, IdBlock> ids) {
+        double genderRoll = random.nextDouble();
+        User.Gender gender = genderRoll < 0.52 ? User.Gender.MALE : genderRoll < 0.98 ? User.Gender.FEMALE : User.Gender.OTHER;
+        int age = (int) clamp(gaussian(random, 32, 9), 16, 70);
+        double height = round1(clamp(gender == User.Gender.FEMALE ? gaussian(random, 161, 6) : gaussian(random, 173, 7), 145, 205));
+        double bmi = clamp(gaussian(random, 23.5, 3.5), 16, 40);
+        double weight = round1(bmi * (height / 100) * (height / 100));
+        double levelRoll = random.nextDouble();
+        User.FitnessLevel level = levelRoll < 0.55 ? User.FitnessLevel.BEGINNER
+                : levelRoll < 0.88 ? User.FitnessLevel.INTERMEDIATE : User.FitnessLevel.ADVANCED;
+        User.FitnessGoal goal = pickGoal(random);
+
+        // 注册时间偏向近期；参与度对数正态；约45%的用户在指数分布的时长后流失
+        LocalDateTime createdAt = now.minusSeconds((long) (historyDays * 86400L * Math.pow(random.nextDouble(), 2)));
+        double engagement = Math.exp(gaussian(random, -0.3, 0.6)) * activity;
+        LocalDateTime activeUntil = now;
+        if (random.nextDouble() < 0.45) {
+            LocalDateTime churnAt = createdAt.plusSeconds((long) (-Math.log(1 - random.nextDouble()) * 60 * 86400));
+            activeUntil = churnAt.isBefore(now) ? churnAt : now;
+        }
+        boolean churned = activeUntil.isBefore(now);
+
+        int planCount = random.nextDouble() < 0.15 ? 0 : 1 + geometric(random, 0.55, 5);
+        List<LocalDateTime> boundaries = new ArrayList<>();
+        boundaries.add(createdAt);
+        long spanSeconds = Math.max(1, ChronoUnit.SECONDS.between(createdAt, activeUntil));
+        List<Long> cuts = new ArrayList<>();
+        for (int i = 1; i < planCount; i++) {
+            cuts.add((long) (random.nextDouble() * spanSeconds));
+        }
+        cuts.sort(null);
+        cuts.forEach(offset -> boundaries.add(createdAt.plusSeconds(offset)));
+        boundaries.add(activeUntil);
+
+        Set<LocalDate> workoutDays = new HashSet<>();
+        int sessionBudget = MAX_SESSIONS_PER_USER;
+        for (int p = 0; p < planCount; p++) {
+            sessionBudget -= generatePlan(userId, p, p == planCount - 1 && !churned, level, goal, engagement,
+                    boundaries.get(p), boundaries.get(p + 1), sessionBudget, workoutDays, random, sink, ids);
+        }
+
+        LocalDateTime lastLogin = churned ? activeUntil : now.minusMinutes(random.nextInt(7 * 24 * 60));
+        sink.add(SyntheticTable.USERS, userId, "user_" + userId, passwordHash, "user_" + userId + "@example.com",
+                SURNAMES[random.nextInt(SURNAMES.length)] + GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)]
+                        + (random.nextBoolean() ? GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)] : ""),
+                String.format("1%d%09d", 3 + random.nextInt(7), random.nextInt(1_000_000_000)),
+                gender, age, height, weight, weight / Math.pow(height / 100, 2),
+                level, goal, createdAt, lastLogin.isAfter(createdAt) ? lastLogin : createdAt,
+                lastLogin.isAfter(createdAt) ? lastLogin : createdAt, !churned || random.nextDouble() < 0.8,
+                workoutDays.size(), User.Role.USER);
+    }
+
+    /**
+     * 生成一个计划及其在 [from, to) 期间的训练会话，返回生成的会话数
+     */
+    private int generatePlan(long userId, int ordinal, boolean active, User.FitnessLevel level, User.FitnessGoal goal,
+                             double engagement, LocalDateTime from, LocalDateTime to, int sessionBudget,
+                             Set<LocalDate> workoutDays, SplittableRandom random, SyntheticRowSink sink,
+                             Map<SyntheticTable, IdBlock> ids) {
+        long planId = ids.get(SyntheticTable.WORKOUT_PLANS).next();
+        WorkoutPlan.PlanType type = pickPlanType(goal, random);
+        WorkoutPlan.DifficultyLevel difficulty = switch (level) {
+            case BEGINNER -> random.nextDouble() < 0.8 ? WorkoutPlan.DifficultyLevel.EASY : WorkoutPlan.DifficultyLevel.MEDIUM;
+            case INTERMEDIATE -> random.nextDouble() < 0.7 ? WorkoutPlan.DifficultyLevel.MEDIUM : WorkoutPlan.DifficultyLevel.HARD;
+            case ADVANCED -> random.nextDouble() < 0.6 ? WorkoutPlan.DifficultyLevel.HARD : WorkoutPlan.DifficultyLevel.EXPERT;
+        };
+        int sessionsPerWeek = 2 + random.nextInt(4);
+        int durationMinutes = 30 + 5 * random.nextInt(10);
+        boolean aiGenerated = random.nextDouble() < 0.6;
+        String planName = goal.getDisplayName() + type.getDisplayName() + "计划 第" + (ordinal + 1) + "期";
+
+        // 计划动作：按 Zipf 分布挑选不重复的运动
+        int exerciseSlots = 4 + random.nextInt(5);
+        List<CatalogEntry> planExercises = new ArrayList<>(exerciseSlots);
+        double[] baseWeights = new double[exerciseSlots];
+        int[] plannedSets = new int[exerciseSlots];
+        int[] plannedReps = new int[exerciseSlots];
+        Set<Long> chosen = new HashSet<>();
+        for (int attempt = 0; planExercises.size() < exerciseSlots && attempt < exerciseSlots * 10; attempt++) {
+            CatalogEntry entry = pickExercise(random);
+            if (!chosen.add(entry.id())) {
+                continue;
+            }
+            int slot = planExercises.size();
+            planExercises.add(entry);
+            boolean weighted = entry.equipment() == Exercise.Equipment.DUMBBELLS
+                    || entry.equipment() == Exercise.Equipment.BARBELL || entry.equipment() == Exercise.Equipment.KETTLEBELL;
+            baseWeights[slot] = weighted ? roundToPlate(clamp(gaussian(random, 20 + 10 * level.ordinal(), 8), 2.5, 120)) : 0;
+            plannedSets[slot] = 3 + random.nextInt(3);
+            plannedReps[slot] = entry.category() == Exercise.ExerciseCategory.CARDIO ? 0 : 8 + random.nextInt(8);
+            sink.add(SyntheticTable.WORKOUT_EXERCISES, ids.get(SyntheticTable.WORKOUT_EXERCISES).next(), planId,
+                    entry.id(), slot + 1, plannedSets[slot], plannedReps[slot] == 0 ? null : plannedReps[slot],
+                    plannedReps[slot] == 0 ? 30 * (2 + random.nextInt(8)) : null, 60 + 15 * random.nextInt(5),
+                    weighted ? baseWeights[slot] : null, null, null);
+        }
+
+        // 训练会话：逐日按每周频次 × 参与度掷骰，时间集中在早晚
+        int total = 0;
+        int completed = 0;
+        LocalDateTime lastCompletedAt = null;
+        double dailyChance = Math.min(0.95, sessionsPerWeek / 7.0 * engagement);
+        long planSeconds = Math.max(1, ChronoUnit.SECONDS.between(from, to));
+        for (LocalDate day = from.toLocalDate(); !day.isAfter(to.toLocalDate()) && total < sessionBudget; day = day.plusDays(1)) {
+            if (random.nextDouble() >= dailyChance) {
+                continue;
+            }
+            double hourRoll = random.nextDouble();
+            int hour = hourRoll < 0.25 ? 6 + random.nextInt(3) : hourRoll < 0.4 ? 12 + random.nextInt(2) : 18 + random.nextInt(4);
+            LocalDateTime start = day.atTime(hour, random.nextInt(60), random.nextInt(60));
+            if (start.isBefore(from) || !start.isBefore(to)) {
+                continue;
+            }
+            long sessionId = ids.get(SyntheticTable.WORKOUT_SESSIONS).next();
+            String sessionName = planName + " - 第" + (total + 1) + "次训练";
+            total++;
+
+            WorkoutSession.SessionStatus status;
+            if (active && ChronoUnit.MINUTES.between(start, now) < 90) {
+                status = WorkoutSession.SessionStatus.IN_PROGRESS;
+            } else {
+                status = random.nextDouble() < 0.92 ? WorkoutSession.SessionStatus.COMPLETED : WorkoutSession.SessionStatus.CANCELLED;
+            }
+            if (status != WorkoutSession.SessionStatus.COMPLETED) {
+                sink.add(SyntheticTable.WORKOUT_SESSIONS, sessionId, userId, planId, sessionName, start, null, status,
+                        null, null, null, start, start);
+                continue;
+            }
+
+            int minutes = (int) clamp(gaussian(random, durationMinutes, 8), 10, 180);
+            LocalDateTime end = start.plusMinutes(minutes);
+            double kcalPerMinute = type == WorkoutPlan.PlanType.HIIT || type == WorkoutPlan.PlanType.CARDIO ? 9.5 : 6.5;
+            double calories = round1(minutes * clamp(gaussian(random, kcalPerMinute, 1.5), 3, 15));
+            sink.add(SyntheticTable.WORKOUT_SESSIONS, sessionId, userId, planId, sessionName, start, end, status,
+                    minutes, calories, null, start, end);
+            completed++;
+            lastCompletedAt = end;
+            workoutDays.add(day);
+
+            // 训练记录：约10%的动作被跳过，重量随计划进度最多提升15%
+            double progress = ChronoUnit.SECONDS.between(from, start) / (double) planSeconds;
+            for (int slot = 0; slot < planExercises.size(); slot++) {
+                if (random.nextDouble() < 0.1) {
+                    continue;
+                }
+                CatalogEntry entry = planExercises.get(slot);
+                LocalDateTime completedAt = start.plusSeconds((long) ((slot + 1) * minutes * 60.0 / (planExercises.size() + 1)));
+                int sets = Math.max(1, plannedSets[slot] + random.nextInt(3) - 1);
+                Integer reps = plannedReps[slot] == 0 ? null : Math.max(1, plannedReps[slot] + random.nextInt(5) - 2);
+                Double weightUsed = baseWeights[slot] == 0 ? null
+                        : roundToPlate(baseWeights[slot] * (1 + 0.15 * progress) * (0.95 + 0.1 * random.nextDouble()));
+                int exerciseMinutes = Math.max(1, minutes / (planExercises.size() + 1));
+                sink.add(SyntheticTable.WORKOUT_EXERCISE_RECORDS, ids.get(SyntheticTable.WORKOUT_EXERCISE_RECORDS).next(),
+                        sessionId, entry.name(), sets, reps, weightUsed, exerciseMinutes,
+                        (int) Math.round(exerciseMinutes * entry.caloriesPerMinute()), null,
+                        completedAt, completedAt, completedAt);
+            }
+        }
+
+        sink.add(SyntheticTable.WORKOUT_PLANS, planId, userId, planName, "合成数据：" + type.getDisplayName(),
+                type, difficulty, 4 + random.nextInt(9), sessionsPerWeek, durationMinutes, goal, aiGenerated,
+                aiGenerated ? "moonshot-v1-8k" : null, from, to, active, total, completed, lastCompletedAt);
+        return total;
+    }
+
+    /**
+     * 读取已有运动库，不足 exercises 个时按 肌群 × 器械 × 动作变体 生成补齐；每个运动按随机排名赋 Zipf 权重
+     */
+    private void loadOrCreateCatalog(Connection connection) throws SQLException {
+        List<CatalogEntry> entries = new ArrayList<>();
+        Set<String> existingNames = new HashSet<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT id, name, category, equipment_needed, calories_per_minute FROM exercises")) {
+            while (rs.next()) {
+                existingNames.add(rs.getString(2));
+                entries.add(new CatalogEntry(rs.getLong(1), rs.getString(2),
+                        parseEnum(Exercise.ExerciseCategory.class, rs.getString(3), Exercise.ExerciseCategory.STRENGTH),
+                        parseEnum(Exercise.Equipment.class, rs.getString(4), Exercise.Equipment.NONE),
+                        rs.getObject(5) == null ? 6.0 : rs.getDouble(5)));
+            }
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        List<String[]> candidates = new ArrayList<>();
+        for (Map.Entry<Exercise.MuscleGroup, String[]> movement : MOVEMENTS.entrySet()) {
+            for (String name : movement.getValue()) {
+                for (Exercise.Equipment equipment : EQUIPMENT.get(movement.getKey())) {
+                    for (String variant : VARIANTS) {
+                        candidates.add(new String[]{movement.getKey().name(), equipment.name(), variant, name});
+                    }
+                }
+            }
+        }
+        shuffle(candidates, random);
+
+        int created = 0;
+        try (SyntheticRowSink.Jdbc sink = new SyntheticRowSink.Jdbc(connect(), batchSize)) {
+            for (String[] candidate : candidates) {
+                if (entries.size() >= exerciseCount) {
+                    break;
+                }
+                Exercise.MuscleGroup group = Exercise.MuscleGroup.valueOf(candidate[0]);
+                Exercise.Equipment equipment = Exercise.Equipment.valueOf(candidate[1]);
+                String name = candidate[2] + (equipment == Exercise.Equipment.NONE ? "徒手" : equipment.getDisplayName()) + candidate[3];
+                if (!existingNames.add(name)) {
+                    continue;
+                }
+                Exercise.ExerciseCategory category = equipment == Exercise.Equipment.TREADMILL
+                        || equipment == Exercise.Equipment.STATIONARY_BIKE || group == Exercise.MuscleGroup.FULL_BODY
+                        ? Exercise.ExerciseCategory.CARDIO
+                        : equipment == Exercise.Equipment.YOGA_MAT ? Exercise.ExerciseCategory.FLEXIBILITY
+                        : Exercise.ExerciseCategory.STRENGTH;
+                Exercise.DifficultyLevel difficulty = Exercise.DifficultyLevel.values()[random.nextInt(3)];
+                double caloriesPerMinute = round1(category == Exercise.ExerciseCategory.CARDIO
+                        ? 8 + random.nextDouble() * 6 : 4 + random.nextDouble() * 4);
+                long id = nextIds.get(SyntheticTable.EXERCISES).getAndIncrement();
+                sink.add(SyntheticTable.EXERCISES, id, name, name + "（合成数据）", null, category, group, equipment,
+                        difficulty, caloriesPerMinute, null, null, now, now, true);
+                Set<Exercise.MuscleGroup> secondary = new HashSet<>();
+                for (int i = random.nextInt(3); i > 0; i--) {
+                    Exercise.MuscleGroup other = Exercise.MuscleGroup.values()[random.nextInt(Exercise.MuscleGroup.values().length)];
+                    if (other != group && secondary.add(other)) {
+                        sink.add(SyntheticTable.EXERCISE_SECONDARY_MUSCLES, id, other);
+                    }
+                }
+                entries.add(new CatalogEntry(id, name, category, equipment, caloriesPerMinute));
+                created++;
+            }
+            sink.commit();
+        }
+        if (entries.isEmpty()) {
+            throw new IllegalStateException("运动库为空，无法生成训练计划");
+        }
+        if (created > 0) {
+            log("运动库新增 %d 个运动", created);
+        }
+
+        catalog = entries.toArray(new CatalogEntry[0]);
+        int[] ranks = new int[catalog.length];
+        Arrays.setAll(ranks, i -> i);
+        for (int i = ranks.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = swap;
+        }
+        catalogCumulativeWeights = new double[catalog.length];
+        double sum = 0;
+        for (int i = 0; i < catalog.length; i++) {
+            sum += 1 / Math.pow(ranks[i] + 1, EXERCISE_ZIPF_EXPONENT);
+            catalogCumulativeWeights[i] = sum;
+        }
+    }
+
+    private CatalogEntry pickExercise(SplittableRandom random) {
+        double target = random.nextDouble() * catalogCumulativeWeights[catalogCumulativeWeights.length - 1];
+        int index = Arrays.binarySearch(catalogCumulativeWeights, target);
+        return catalog[Math.min(catalog.length - 1, index >= 0 ? index : -index - 1)];
+    }
+
+    /**
+     * 按表顺序导入 CSV；同一张表的多个分片文件并行导入
+     */
+    private void loadCsv() throws Exception {
+        boolean mysql;
+        try (Connection connection = connect()) {
+            mysql = isMysql(connection);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (SyntheticTable table : SyntheticTable.values()) {
+                if (table == SyntheticTable.EXERCISES || table == SyntheticTable.EXERCISE_SECONDARY_MUSCLES) {
+                    continue;
+                }
+                List<Future<?>> futures = new ArrayList<>();
+                for (int worker = 0; worker < threads; worker++) {
+                    Path file = SyntheticRowSink.Csv.fileOf(csvDir, table, worker).toAbsolutePath();
+                    if (!Files.exists(file)) {
+                        continue;
+                    }
+                    String sql = mysql ? mysqlLoadSql(table, file) : h2LoadSql(table, file);
+                    futures.add(executor.submit(() -> {
+                        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+                            if (mysql) {
+                                statement.execute("SET foreign_key_checks = 0, unique_checks = 0");
+                            }
+                            statement.execute(sql);
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                log("已导入 %s", table.getTableName());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String mysqlLoadSql(SyntheticTable table, Path file) {
+        String columns = table.getColumns().stream()
+                .map(column -> table.getBooleanColumns().contains(column) ? "@" + column : column)
+                .collect(Collectors.joining(", "));
+        String assignments = table.getBooleanColumns().stream()
+                .map(column -> column + " = (@" + column + " = '1')")
+                .collect(Collectors.joining(", "));
+        return "LOAD DATA LOCAL INFILE '" + file.toString().replace("\\", "/") + "' INTO TABLE " + table.getTableName()
+                + " CHARACTER SET utf8mb4 FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY ''"
+                + " LINES TERMINATED BY '\\n' (" + columns + ")"
+                + (assignments.isEmpty() ? "" : " SET " + assignments);
+    }
+
+    private static String h2LoadSql(SyntheticTable table, Path file) {
+        String columns = String.join(", ", table.getColumns());
+        return "INSERT INTO " + table.getTableName() + " (" + columns + ") SELECT * FROM CSVREAD('"
+                + file.toString().replace("'", "''") + "', '" + columns.replace(" ", "").toUpperCase(Locale.ROOT)
+                + "', 'charset=UTF-8 null=NULL')";
+    }
+
+    /**
+     * H2 的自增列不会因显式插入的ID而前移，需要手动重置；MySQL 会自动调整 AUTO_INCREMENT
+     */
+    private void restartIdentities(Connection connection) throws SQLException {
+        if (isMysql(connection)) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (SyntheticTable table : nextIds.keySet()) {
+                statement.execute("ALTER TABLE " + table.getTableName() + " ALTER COLUMN id RESTART WITH "
+                        + (maxId(connection, table) + 1));
+            }
+        }
+    }
+
+    private static long maxId(Connection connection, SyntheticTable table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT MAX(id) FROM " + table.getTableName());
+             ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static boolean isMysql(Connection connection) throws SQLException {
+        return connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+    }
+
+    /**
+     * MySQL 驱动需要 rewriteBatchedStatements 才会把批处理合并为多值 INSERT，LOAD DATA LOCAL 需要 allowLoadLocalInfile
+     */
+    private static String withDriverOptions(String url, boolean csv) {
+        if (url == null || !url.startsWith("jdbc:mysql:")) {
+            return url;
+        }
+        StringBuilder result = new StringBuilder(url);
+        if (!url.contains("rewriteBatchedStatements")) {
+            result.append(url.contains("?") ? '&' : '?').append("rewriteBatchedStatements=true");
+        }
+        if (csv && !url.contains("allowLoadLocalInfile")) {
+            result.append("&allowLoadLocalInfile=true");
+        }
+        return result.toString();
+    }
+
+    private Connection connect() throws SQLException {
+        return new DriverManagerDataSource(url, user, password).getConnection();
+    }
+
+    private static User.FitnessGoal pickGoal(SplittableRandom random) {
+        double roll = random.nextDouble();
+        if (roll < 0.30) {
+            return User.FitnessGoal.WEIGHT_LOSS;
+        } else if (roll < 0.50) {
+            return User.FitnessGoal.MUSCLE_GAIN;
+        } else if (roll < 0.75) {
+            return User.FitnessGoal.GENERAL_FITNESS;
+        } else if (roll < 0.90) {
+            return User.FitnessGoal.STRENGTH;
+        }
+        return User.FitnessGoal.ENDURANCE;
+    }
+
+    private static WorkoutPlan.PlanType pickPlanType(User.FitnessGoal goal, SplittableRandom random) {
+        if (random.nextDouble() < 0.2) {
+            return WorkoutPlan.PlanType.values()[random.nextInt(WorkoutPlan.PlanType.values().length)];
+        }
+        return switch (goal) {
+            case WEIGHT_LOSS -> random.nextBoolean() ? WorkoutPlan.PlanType.WEIGHT_LOSS : WorkoutPlan.PlanType.HIIT;
+            case MUSCLE_GAIN -> WorkoutPlan.PlanType.MUSCLE_GAIN;
+            case STRENGTH -> WorkoutPlan.PlanType.STRENGTH;
+            case ENDURANCE -> WorkoutPlan.PlanType.CARDIO;
+            case GENERAL_FITNESS -> random.nextBoolean() ? WorkoutPlan.PlanType.MIXED : WorkoutPlan.PlanType.YOGA;
+        };
+    }
+
+    private static int geometric(SplittableRandom random, double continueProbability, int max) {
+        int count = 0;
+        while (count < max && random.nextDouble() < continueProbability) {
+            count++;
+        }
+        return count;
+    }
+
+    private static double gaussian(SplittableRandom random, double mean, double stddev) {
+        // Box-Muller
+        double u1 = 1 - random.nextDouble();
+        double u2 = random.nextDouble();
+        return mean + stddev * Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static double round1(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    private static double roundToPlate(double value) {
+        return Math.max(2.5, Math.round(value / 2.5) * 2.5);
+    }
+
+    private static <T> void shuffle(List<T> list, SplittableRandom random) {
+        for (int i = list.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            T swap = list.get(i);
+            list.set(i, list.get(j));
+            list.set(j, swap);
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, E fallback) {
+        try {
+            return value == null ? fallback : Enum.valueOf(type, value);
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+
+    private static void log(String format, Object... args) {
+        System.out.println("[synthetic-data] " + String.format(format, args));
+    }
+
+    private record CatalogEntry(long id, String name, Exercise.ExerciseCategory category,
+                                Exercise.Equipment equipment, double caloriesPerMinute) {
+    }
+
+    /**
+     * 线程本地的ID段，每次从全局计数器领取一段，避免逐行竞争
+     */
+    private static final class IdBlock {
+        private final AtomicLong source;
+        private long next;
+        private long limit;
+
+        IdBlock(AtomicLong source) {
+            this.source = source;
+        }
+
+        long next() {
+            if (next == limit) {
+                next = source.getAndAdd(ID_BLOCK);
+                limit = next + ID_BLOCK;
+            }
+            return next++;
+        }
+    }
+}
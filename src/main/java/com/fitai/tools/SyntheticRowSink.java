@@ -0,0 +1,222 @@
+package com.fitai.tools;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 合成数据输出：每个生成线程独占一个实例
+ * JDBC 模式按表攒批执行 executeBatch，CSV 模式每表写一个分片文件，生成结束后再批量导入
+ */
+abstract class SyntheticRowSink implements AutoCloseable {
+
+    protected final Map<SyntheticTable, Long> rowCounts = new EnumMap<>(SyntheticTable.class);
+
+    /**
+     * 写入一行，values 与 SyntheticTable 的列一一对应
+     */
+    abstract void add(SyntheticTable table, Object... values);
+
+    /**
+     * 一个用户的所有行已写入，此时才允许把攒批的行发往数据库
+     */
+    void userCompleted() {
+    }
+
+    /**
+     * 一批用户生成完毕
+     */
+    abstract void commit();
+
+    Map<SyntheticTable, Long> getRowCounts() {
+        return rowCounts;
+    }
+
+    protected void count(SyntheticTable table) {
+        rowCounts.merge(table, 1L, Long::sum);
+    }
+
+    /**
+     * 关闭连接或文件，收窄 AutoCloseable#close 的异常声明
+     */
+    @Override
+    public abstract void close() throws IOException, SQLException;
+
+    /**
+     * JDBC 批量写入
+     * 在用户边界上累计达到 batch-size 行时，按父表在前的顺序刷新所有表，子表行不会先于父表到达数据库
+     */
+    static final class Jdbc extends SyntheticRowSink {
+
+        private final Connection connection;
+        private final int batchSize;
+        private final Map<SyntheticTable, PreparedStatement> statements = new EnumMap<>(SyntheticTable.class);
+        private final Map<SyntheticTable, Integer> pending = new EnumMap<>(SyntheticTable.class);
+        private int pendingTotal;
+
+        Jdbc(Connection connection, int batchSize) throws SQLException {
+            this.connection = connection;
+            this.batchSize = batchSize;
+            connection.setAutoCommit(false);
+        }
+
+        @Override
+        void add(SyntheticTable table, Object... values) {
+            try {
+                PreparedStatement statement = statements.get(table);
+                if (statement == null) {
+                    statement = connection.prepareStatement(table.insertSql());
+                    statements.put(table, statement);
+                }
+                for (int i = 0; i < values.length; i++) {
+                    statement.setObject(i + 1, toJdbc(values[i]));
+                }
+                statement.addBatch();
+                pending.merge(table, 1, Integer::sum);
+                pendingTotal++;
+                count(table);
+            } catch (SQLException e) {
+                throw new IllegalStateException("写入 " + table.getTableName() + " 失败", e);
+            }
+        }
+
+        @Override
+        void userCompleted() {
+            if (pendingTotal < batchSize) {
+                return;
+            }
+            try {
+                flush();
+            } catch (SQLException e) {
+                throw new IllegalStateException("批量写入合成数据失败", e);
+            }
+        }
+
+        @Override
+        void commit() {
+            try {
+                flush();
+                connection.commit();
+            } catch (SQLException e) {
+                throw new IllegalStateException("提交合成数据失败", e);
+            }
+        }
+
+        private void flush() throws SQLException {
+            for (SyntheticTable table : SyntheticTable.values()) {
+                if (pending.getOrDefault(table, 0) > 0) {
+                    statements.get(table).executeBatch();
+                }
+            }
+            pending.clear();
+            pendingTotal = 0;
+        }
+
+        private static Object toJdbc(Object value) {
+            if (value instanceof LocalDateTime time) {
+                return Timestamp.valueOf(time);
+            }
+            if (value instanceof Enum<?> constant) {
+                return constant.name();
+            }
+            return value;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            for (PreparedStatement statement : statements.values()) {
+                statement.close();
+            }
+            connection.close();
+        }
+    }
+
+    /**
+     * CSV 文件输出：字符串一律加双引号（内部双引号成对转义），空值写为不带引号的 NULL，布尔值写为 1/0
+     */
+    static final class Csv extends SyntheticRowSink {
+
+        private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+        private final Path dir;
+        private final int worker;
+        private final Map<SyntheticTable, BufferedWriter> writers = new EnumMap<>(SyntheticTable.class);
+
+        Csv(Path dir, int worker) {
+            this.dir = dir;
+            this.worker = worker;
+        }
+
+        static Path fileOf(Path dir, SyntheticTable table, int worker) {
+            return dir.resolve(table.getTableName()).resolve("part-" + worker + ".csv");
+        }
+
+        @Override
+        void add(SyntheticTable table, Object... values) {
+            try {
+                BufferedWriter writer = writers.get(table);
+                if (writer == null) {
+                    Path file = fileOf(dir, table, worker);
+                    Files.createDirectories(file.getParent());
+                    writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                    writers.put(table, writer);
+                }
+                StringBuilder line = new StringBuilder(128);
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    appendValue(line, values[i]);
+                }
+                writer.write(line.append('\n').toString());
+                count(table);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        void commit() {
+            try {
+                for (BufferedWriter writer : writers.values()) {
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static void appendValue(StringBuilder line, Object value) {
+            if (value == null) {
+                line.append("NULL");
+            } else if (value instanceof Boolean flag) {
+                line.append(flag ? '1' : '0');
+            } else if (value instanceof Number) {
+                line.append(value);
+            } else if (value instanceof LocalDateTime time) {
+                line.append(TIMESTAMP.format(time));
+            } else {
+                String text = value instanceof Enum<?> constant ? constant.name() : value.toString();
+                line.append('"').append(text.replace("\"", "\"\"")).append('"');
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (BufferedWriter writer : writers.values()) {
+                writer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.fitai.tools;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 合成数据写入的表及列顺序，按父表在前排列（写入和批量导入都按此顺序，满足外键）
+ * 生成列（如 workout_plans.active_owner_id）由数据库计算，不在此列出
+ */
+enum SyntheticTable {
+
+    EXERCISES("exercises", List.of("id", "name", "description", "instructions", "category", "muscle_group",
+            "equipment_needed", "difficulty_level", "calories_per_minute", "image_url", "video_url",
+            "created_at", "updated_at", "is_active"), Set.of("is_active")),
+
+    EXERCISE_SECONDARY_MUSCLES("exercise_secondary_muscles", List.of("exercise_id", "muscle_group"), Set.of()),
+
+    USERS("users", List.of("id", "username", "password", "email", "full_name", "phone_number", "gender", "age",
+            "height_cm", "weight_kg", "bmi", "fitness_level", "fitness_goal", "created_at", "updated_at",
+            "last_login", "is_active", "workout_days", "role"), Set.of("is_active")),
+
+    WORKOUT_PLANS("workout_plans", List.of("id", "user_id", "name", "description", "plan_type", "difficulty_level",
+            "duration_weeks", "sessions_per_week", "estimated_duration_minutes", "target_goal", "is_ai_generated",
+            "ai_model_version", "created_at", "updated_at", "is_active", "total_sessions", "completed_sessions",
+            "last_completed_at"), Set.of("is_ai_generated", "is_active")),
+
+    WORKOUT_EXERCISES("workout_exercises", List.of("id", "workout_plan_id", "exercise_id", "exercise_order", "sets",
+            "reps", "duration_seconds", "rest_seconds", "weight_kg", "distance_meters", "notes"), Set.of()),
+
+    WORKOUT_SESSIONS("workout_sessions", List.of("id", "user_id", "workout_plan_id", "session_name", "start_time",
+            "end_time", "status", "duration_minutes", "calories_burned", "notes", "created_at", "updated_at"), Set.of()),
+
+    WORKOUT_EXERCISE_RECORDS("workout_exercise_records", List.of("id", "workout_session_id", "exercise_name",
+            "sets_completed", "reps_completed", "weight_used", "duration_minutes", "calories_burned", "notes",
+            "completed_at", "created_at", "updated_at"), Set.of());
+
+    private final String tableName;
+    private final List<String> columns;
+    private final Set<String> booleanColumns;
+
+    SyntheticTable(String tableName, List<String> columns, Set<String> booleanColumns) {
+        this.tableName = tableName;
+        this.columns = columns;
+        this.booleanColumns = booleanColumns;
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    List<String> getColumns() {
+        return columns;
+    }
+
+    Set<String> getBooleanColumns() {
+        return booleanColumns;
+    }
+
+    boolean hasIdColumn() {
+        return "id".equals(columns.get(0));
+    }
+
+    String insertSql() {
+        return "INSERT INTO " + tableName + " (" + String.join(", ", columns) + ") VALUES ("
+                + "?, ".repeat(columns.size() - 1) + "?)";
+    }
+}
@@ -0,0 +1,160 @@
+package com.fitai.config.datasource;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 读写分离路由测试：两个本地 H2 库分别充当主库和从库，各自的 marker 表标明连接到了哪个库
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private JdbcDataSource primary;
+    private JdbcDataSource replica;
+    private ReplicaLagMonitor lagMonitor;
+    private ReplicaRoutingDataSource routing;
+    private LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+    private RoutingJpaTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+        new JdbcTemplate(replica).execute("CREATE TABLE replica_status (lag BIGINT)");
+        new JdbcTemplate(replica).update("INSERT INTO replica_status VALUES (0)");
+
+        DataSourceRoutingProperties properties = new DataSourceRoutingProperties();
+        properties.setLagQuery("SELECT lag FROM replica_status");
+        properties.setLagColumn("lag");
+        properties.setMaxLagSeconds(5);
+        lagMonitor = new ReplicaLagMonitor(Map.of("replica-0", replica), properties);
+        lagMonitor.checkLag();
+        routing = new ReplicaRoutingDataSource(primary, lagMonitor.getReplicaDataSources(), lagMonitor);
+        routing.afterPropertiesSet();
+
+        entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactoryBean.setDataSource(new LazyConnectionDataSourceProxy(routing));
+        entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactoryBean.setPackagesToScan(getClass().getPackageName());
+        entityManagerFactoryBean.setJpaPropertyMap(Map.of(
+                AvailableSettings.HBM2DDL_AUTO, "none",
+                AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION));
+        entityManagerFactoryBean.afterPropertiesSet();
+        transactionManager = new RoutingJpaTransactionManager(entityManagerFactoryBean.getObject(),
+                new ReadYourWritesTracker(60_000));
+    }
+
+    @AfterEach
+    void tearDown() {
+        DataSourceRoutingContext.clearClient();
+        entityManagerFactoryBean.destroy();
+    }
+
+    @Test
+    void routesByContextAndFallsBackWhenReplicaLags() {
+        JdbcTemplate jdbc = new JdbcTemplate(routing);
+        assertEquals("primary", marker(jdbc));
+
+        DataSourceRoutingContext.push(DataSourceRoute.REPLICA);
+        try {
+            assertEquals("replica", marker(jdbc));
+
+            new JdbcTemplate(replica).update("UPDATE replica_status SET lag = 30");
+            lagMonitor.checkLag();
+            assertEquals("primary", marker(jdbc));
+            assertNull(lagMonitor.getLagSnapshot().get("replica-0"));
+
+            new JdbcTemplate(replica).update("UPDATE replica_status SET lag = 1");
+            lagMonitor.checkLag();
+            assertEquals("replica", marker(jdbc));
+        } finally {
+            DataSourceRoutingContext.pop();
+        }
+        assertEquals("primary", marker(jdbc));
+    }
+
+    @Test
+    void readOnlyTransactionsUseReplicaAndWritesUsePrimary() {
+        assertEquals("replica", inTransaction(true));
+        assertEquals("primary", inTransaction(false));
+        // 事务结束后路由栈已清空
+        assertEquals(DataSourceRoute.PRIMARY, DataSourceRoutingContext.currentRoute());
+    }
+
+    @Test
+    void clientReadsItsOwnWritesFromPrimary() {
+        DataSourceRoutingContext.bindClient("user:1");
+        assertEquals("primary", inTransaction(false));
+        assertEquals("primary", inTransaction(true));
+
+        DataSourceRoutingContext.bindClient("user:2");
+        assertEquals("replica", inTransaction(true));
+    }
+
+    @Test
+    void nestedTransactionsRestoreOuterRoute() {
+        TransactionTemplate outer = new TransactionTemplate(transactionManager);
+        TransactionTemplate inner = new TransactionTemplate(transactionManager);
+        inner.setReadOnly(true);
+        inner.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        String[] seen = outer.execute(status -> new String[] {
+                nativeMarker(),
+                inner.execute(innerStatus -> nativeMarker()),
+                String.valueOf(DataSourceRoutingContext.currentRoute())});
+        assertEquals("primary", seen[0]);
+        assertEquals("replica", seen[1]);
+        assertEquals("PRIMARY", seen[2]);
+    }
+
+    @Test
+    void allReplicasDownFallsBackToPrimary() {
+        replica.setURL("jdbc:h2:mem:missing-" + UUID.randomUUID() + ";IFEXISTS=TRUE");
+        lagMonitor.checkLag();
+        assertEquals("primary", inTransaction(true));
+    }
+
+    private String inTransaction(boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        return template.execute(status -> nativeMarker());
+    }
+
+    private String nativeMarker() {
+        EntityManagerFactory emf = entityManagerFactoryBean.getObject();
+        EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(emf);
+        return (String) entityManager.createNativeQuery("SELECT name FROM marker").getSingleResult();
+    }
+
+    private static String marker(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("SELECT name FROM marker", String.class);
+    }
+
+    private static JdbcDataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE marker (name VARCHAR(20))");
+        jdbc.update("INSERT INTO marker VALUES (?)", name);
+        return dataSource;
+    }
+}
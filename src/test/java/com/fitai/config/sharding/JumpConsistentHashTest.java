@@ -0,0 +1,68 @@
+package com.fitai.config.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JumpConsistentHash 分布与迁移测试
+ */
+class JumpConsistentHashTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    void singleBucketTakesEveryKey() {
+        for (long key = 0; key < 1000; key++) {
+            assertEquals(0, JumpConsistentHash.bucket(key, 1));
+        }
+    }
+
+    @Test
+    void rejectsNonPositiveBucketCount() {
+        assertThrows(IllegalArgumentException.class, () -> JumpConsistentHash.bucket(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> JumpConsistentHash.bucket(1, -3));
+    }
+
+    @Test
+    void spreadsKeysEvenly() {
+        int buckets = 8;
+        int[] counts = new int[buckets];
+        for (long key = 1; key <= KEYS; key++) {
+            int bucket = JumpConsistentHash.bucket(key, buckets);
+            assertTrue(bucket >= 0 && bucket < buckets);
+            counts[bucket]++;
+        }
+        for (int count : counts) {
+            assertTrue(Math.abs(count - KEYS / buckets) < KEYS / buckets / 10, "分布不均: " + count);
+        }
+    }
+
+    @Test
+    void addingBucketMovesKeysOnlyToNewBucket() {
+        for (int buckets = 1; buckets < 10; buckets++) {
+            int moved = 0;
+            for (long key = 1; key <= KEYS; key++) {
+                int before = JumpConsistentHash.bucket(key, buckets);
+                int after = JumpConsistentHash.bucket(key, buckets + 1);
+                if (before != after) {
+                    assertEquals(buckets, after);
+                    moved++;
+                }
+            }
+            double expected = (double) KEYS / (buckets + 1);
+            assertTrue(Math.abs(moved - expected) < expected / 10, "迁移比例异常: " + moved);
+        }
+    }
+
+    @Test
+    void isDeterministicForNegativeKeys() {
+        for (long key = -1000; key < 0; key++) {
+            int bucket = JumpConsistentHash.bucket(key, 5);
+            assertTrue(bucket >= 0 && bucket < 5);
+            assertEquals(bucket, JumpConsistentHash.bucket(key, 5));
+        }
+    }
+}
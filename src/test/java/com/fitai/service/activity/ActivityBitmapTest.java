@@ -0,0 +1,110 @@
+package com.fitai.service.activity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ActivityBitmap 容器转换与集合运算测试
+ */
+class ActivityBitmapTest {
+
+    @Test
+    void addReportsNewValues() {
+        ActivityBitmap bitmap = new ActivityBitmap();
+        assertTrue(bitmap.isEmpty());
+        assertTrue(bitmap.add(7));
+        assertFalse(bitmap.add(7));
+        assertTrue(bitmap.add(1 << 20));
+        assertTrue(bitmap.contains(7));
+        assertFalse(bitmap.contains(8));
+        assertEquals(2, bitmap.cardinality());
+        assertArrayEquals(new int[] {7, 1 << 20}, bitmap.toArray());
+    }
+
+    @Test
+    void denseChunkSwitchesToBitmapContainer() {
+        ActivityBitmap bitmap = new ActivityBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        // 同一高16位下超过 4096 个值
+        for (int value = 65536; value < 65536 + 10_000; value += 2) {
+            assertTrue(bitmap.add(value));
+            expected.add(value);
+        }
+        assertFalse(bitmap.add(65536 + 4));
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertArrayEquals(toArray(expected), bitmap.toArray());
+        assertFalse(bitmap.contains(65537));
+    }
+
+    @Test
+    void orAndMatchReferenceAcrossContainerTypes() {
+        Random random = new Random(7);
+        ActivityBitmap sparse = new ActivityBitmap();
+        ActivityBitmap dense = new ActivityBitmap();
+        TreeSet<Integer> sparseValues = new TreeSet<>();
+        TreeSet<Integer> denseValues = new TreeSet<>();
+        for (int i = 0; i < 3000; i++) {
+            int value = random.nextInt(4 << 16);
+            sparse.add(value);
+            sparseValues.add(value);
+        }
+        for (int i = 0; i < 60_000; i++) {
+            int value = random.nextInt(3 << 16);
+            dense.add(value);
+            denseValues.add(value);
+        }
+
+        TreeSet<Integer> intersection = new TreeSet<>(sparseValues);
+        intersection.retainAll(denseValues);
+        assertArrayEquals(toArray(intersection), ActivityBitmap.and(sparse, dense).toArray());
+        assertArrayEquals(toArray(intersection), ActivityBitmap.and(dense, sparse).toArray());
+        assertArrayEquals(toArray(denseValues), ActivityBitmap.and(dense, dense).toArray());
+
+        TreeSet<Integer> union = new TreeSet<>(sparseValues);
+        union.addAll(denseValues);
+        ActivityBitmap merged = sparse.copy();
+        merged.orInPlace(dense);
+        assertArrayEquals(toArray(union), merged.toArray());
+        assertEquals(union.size(), merged.cardinality());
+        // 原位图不受影响
+        assertEquals(sparseValues.size(), sparse.cardinality());
+    }
+
+    @Test
+    void copyIsIndependent() {
+        ActivityBitmap bitmap = new ActivityBitmap();
+        bitmap.add(1);
+        ActivityBitmap copy = bitmap.copy();
+        copy.add(2);
+        assertFalse(bitmap.contains(2));
+        assertTrue(copy.contains(1));
+    }
+
+    @Test
+    void serializeRoundTrip() {
+        ActivityBitmap bitmap = new ActivityBitmap();
+        for (int value = 0; value < 20_000; value += 3) {
+            bitmap.add(value);
+        }
+        for (int value = 1 << 24; value < (1 << 24) + 100; value++) {
+            bitmap.add(value);
+        }
+        ActivityBitmap restored = ActivityBitmap.deserialize(bitmap.serialize());
+        assertArrayEquals(bitmap.toArray(), restored.toArray());
+        assertTrue(restored.add(5));
+        assertEquals(bitmap.cardinality() + 1, restored.cardinality());
+
+        assertTrue(ActivityBitmap.deserialize(new ActivityBitmap().serialize()).isEmpty());
+    }
+
+    private static int[] toArray(TreeSet<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
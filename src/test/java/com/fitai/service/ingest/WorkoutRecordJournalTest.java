@@ -0,0 +1,144 @@
+package com.fitai.service.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * WorkoutRecordJournal 恢复、尾部截断与分段清理测试
+ */
+class WorkoutRecordJournalTest {
+
+    private static final long LARGE_SEGMENT = 1 << 20;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoverReturnsEntriesAfterCheckpoint() throws IOException {
+        WorkoutRecordJournal journal = new WorkoutRecordJournal(directory, LARGE_SEGMENT);
+        assertTrue(journal.recover(0).isEmpty());
+        List<IngestedRecord> written = List.of(
+                journal.append(record(1, "深蹲", 5, 102.5, "最后一组力竭")),
+                journal.append(record(2, "跑步", null, null, null)),
+                journal.append(record(1, "卧推", 3, 60.0, "")));
+        assertEquals(List.of(1L, 2L, 3L), written.stream().map(IngestedRecord::sequence).toList());
+        journal.close();
+
+        WorkoutRecordJournal reopened = new WorkoutRecordJournal(directory, LARGE_SEGMENT);
+        assertEquals(written.subList(1, 3), reopened.recover(1));
+        assertEquals(3, reopened.lastSequence());
+        // 序号接着恢复前的最大序号分配
+        assertEquals(4, reopened.append(record(3, "硬拉", 1, 180.0, null)).sequence());
+        reopened.close();
+    }
+
+    @Test
+    void recoverKeepsSequenceWhenEverythingIsCheckpointed() throws IOException {
+        WorkoutRecordJournal journal = new WorkoutRecordJournal(directory, LARGE_SEGMENT);
+        journal.recover(0);
+        journal.append(record(1, "深蹲", 5, 100.0, null));
+        journal.append(record(1, "深蹲", 5, 100.0, null));
+        journal.close();
+
+        WorkoutRecordJournal reopened = new WorkoutRecordJournal(directory, LARGE_SEGMENT);
+        assertTrue(reopened.recover(2).isEmpty());
+        assertEquals(3, reopened.append(record(1, "深蹲", 5, 100.0, null)).sequence());
+        reopened.close();
+    }
+
+    @Test
+    void recoverTruncatesIncompleteTail() throws IOException {
+        WorkoutRecordJournal journal = new WorkoutRecordJournal(directory, LARGE_SEGMENT);
+        journal.recover(0);
+        journal.append(record(1, "深蹲", 5, 100.0, null));
+        journal.append(record(1, "卧推", 5, 60.0, null));
+        journal.close();
+        Path segment = onlySegment();
+        long fullSize = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(fullSize - 3);
+        }
+
+        WorkoutRecordJournal reopened = new WorkoutRecordJournal(directory, LARGE_SEGMENT);
+        List<IngestedRecord> recovered = reopened.recover(0);
+        assertEquals(1, recovered.size());
+        assertEquals("深蹲", recovered.get(0).exerciseName());
+        assertTrue(Files.size(segment) < fullSize - 3);
+        // 被截掉的条目序号重新分配
+        assertEquals(2, reopened.append(record(1, "卧推", 5, 60.0, null)).sequence());
+        reopened.close();
+    }
+
+    @Test
+    void recoverStopsAtCorruptedEntry() throws IOException {
+        WorkoutRecordJournal journal = new WorkoutRecordJournal(directory, LARGE_SEGMENT);
+        journal.recover(0);
+        journal.append(record(1, "深蹲", 5, 100.0, null));
+        long firstEnd = Files.size(onlySegment());
+        journal.append(record(1, "卧推", 5, 60.0, null));
+        journal.append(record(1, "硬拉", 5, 140.0, null));
+        journal.close();
+
+        byte[] bytes = Files.readAllBytes(onlySegment());
+        bytes[(int) firstEnd + 20] ^= 0x01;
+        Files.write(onlySegment(), bytes);
+
+        WorkoutRecordJournal reopened = new WorkoutRecordJournal(directory, LARGE_SEGMENT);
+        assertEquals(List.of("深蹲"), reopened.recover(0).stream().map(IngestedRecord::exerciseName).toList());
+        assertEquals(firstEnd, Files.size(onlySegment()));
+        reopened.close();
+    }
+
+    @Test
+    void purgeKeepsSegmentsWithUncommittedEntriesAndCurrentSegment() throws IOException {
+        // 每个分段只放一个条目
+        WorkoutRecordJournal journal = new WorkoutRecordJournal(directory, 1);
+        journal.recover(0);
+        for (int i = 0; i < 5; i++) {
+            journal.append(record(1, "深蹲", 5, 100.0, null));
+        }
+        assertEquals(5, segmentCount());
+
+        journal.purge(2);
+        assertEquals(3, segmentCount());
+        journal.purge(2);
+        assertEquals(3, segmentCount());
+        journal.purge(Long.MAX_VALUE);
+        assertEquals(1, segmentCount());
+        journal.close();
+
+        WorkoutRecordJournal reopened = new WorkoutRecordJournal(directory, 1);
+        assertEquals(List.of(5L), reopened.recover(0).stream().map(IngestedRecord::sequence).toList());
+        reopened.close();
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static IngestedRecord record(long sessionId, String exerciseName, Integer sets, Double weight, String notes) {
+        return new IngestedRecord(0, 42, sessionId, exerciseName, sets, sets == null ? null : 8, weight,
+                sets == null ? 30 : null, 120, notes, 1_704_096_000_000L + sessionId);
+    }
+}
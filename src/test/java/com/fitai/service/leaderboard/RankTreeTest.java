@@ -0,0 +1,110 @@
+package com.fitai.service.leaderboard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RankTree 排名与区间查询测试
+ */
+class RankTreeTest {
+
+    @Test
+    void ordersByScoreDescendingThenUserId() {
+        RankTree tree = new RankTree();
+        tree.put(1, 10);
+        tree.put(2, 20);
+        tree.put(3, 10);
+
+        assertEquals(1, tree.rank(2));
+        assertEquals(2, tree.rank(1));
+        assertEquals(3, tree.rank(3));
+        assertEquals(List.of(new LeaderboardEntry(1, 2L, 20), new LeaderboardEntry(2, 1L, 10),
+                new LeaderboardEntry(3, 3L, 10)), tree.range(0, 10));
+    }
+
+    @Test
+    void updatesMoveUsers() {
+        RankTree tree = new RankTree();
+        tree.put(1, 10);
+        tree.put(2, 20);
+        tree.put(3, 5);
+
+        tree.put(3, 30);
+        assertEquals(1, tree.rank(3));
+        assertEquals(3, tree.size());
+
+        tree.add(1, 25);
+        assertEquals(35.0, tree.score(1));
+        assertEquals(1, tree.rank(1));
+
+        tree.raise(2, 15);
+        assertEquals(20.0, tree.score(2));
+        tree.raise(2, 40);
+        assertEquals(1, tree.rank(2));
+
+        tree.remove(1);
+        assertEquals(0, tree.rank(1));
+        assertNull(tree.score(1));
+        assertEquals(2, tree.size());
+        assertEquals(2, tree.rank(3));
+    }
+
+    @Test
+    void rangeStartsAfterOffset() {
+        RankTree tree = new RankTree();
+        for (long userId = 1; userId <= 10; userId++) {
+            tree.put(userId, userId);
+        }
+        assertEquals(List.of(new LeaderboardEntry(4, 7L, 7), new LeaderboardEntry(5, 6L, 6)), tree.range(3, 2));
+        assertEquals(List.of(new LeaderboardEntry(10, 1L, 1)), tree.range(9, 5));
+        assertTrue(tree.range(10, 5).isEmpty());
+        assertTrue(new RankTree().range(0, 5).isEmpty());
+    }
+
+    @Test
+    void matchesSortedReferenceUnderRandomUpdates() {
+        Random random = new Random(42);
+        RankTree tree = new RankTree();
+        Map<Long, Double> scores = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            long userId = random.nextInt(300);
+            if (random.nextInt(10) == 0) {
+                tree.remove(userId);
+                scores.remove(userId);
+            } else {
+                // 分数取值较少，制造大量同分
+                double score = random.nextInt(50);
+                tree.put(userId, score);
+                scores.put(userId, score);
+            }
+        }
+
+        List<Long> expected = new ArrayList<>(scores.keySet());
+        expected.sort(Comparator.comparing((Long userId) -> scores.get(userId)).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        assertEquals(expected.size(), tree.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i + 1, tree.rank(expected.get(i)));
+        }
+        for (int offset = 0; offset < expected.size(); offset += 37) {
+            List<LeaderboardEntry> page = tree.range(offset, 25);
+            assertEquals(Math.min(25, expected.size() - offset), page.size());
+            for (int i = 0; i < page.size(); i++) {
+                LeaderboardEntry entry = page.get(i);
+                assertEquals(offset + i + 1, entry.rank());
+                assertEquals(expected.get(offset + i), entry.userId());
+                assertEquals(scores.get(entry.userId()), entry.score());
+            }
+        }
+    }
+}
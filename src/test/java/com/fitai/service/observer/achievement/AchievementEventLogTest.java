@@ -0,0 +1,117 @@
+package com.fitai.service.observer.achievement;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AchievementEventLog 恢复、尾部截断与分段清理测试
+ */
+class AchievementEventLogTest {
+
+    private static final long LARGE_SEGMENT = 1 << 20;
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoverReturnsEventsAfterCheckpoint() throws IOException {
+        AchievementEventLog log = new AchievementEventLog(directory, LARGE_SEGMENT);
+        assertTrue(log.recover(0).isEmpty());
+        List<AchievementEvent> written = List.of(
+                log.append(AchievementEvent.workoutCompleted(1, DAY, 45, 320.5).withSource(11)),
+                log.append(AchievementEvent.weightChanged(2, 80.0, 79.2).withSource(12)),
+                log.append(AchievementEvent.workoutDaysChanged(1, 7)));
+        assertEquals(List.of(1L, 2L, 3L), written.stream().map(AchievementEvent::sequence).toList());
+        log.close();
+
+        AchievementEventLog reopened = new AchievementEventLog(directory, LARGE_SEGMENT);
+        assertEquals(written.subList(1, 3), reopened.recover(1));
+        assertEquals(3, reopened.lastSequence());
+        assertEquals(4, reopened.append(AchievementEvent.workoutDaysChanged(1, 8)).sequence());
+        reopened.close();
+    }
+
+    @Test
+    void eachStartAppendsToNewSegment() throws IOException {
+        for (int run = 0; run < 3; run++) {
+            AchievementEventLog log = new AchievementEventLog(directory, LARGE_SEGMENT);
+            log.recover(0);
+            log.append(AchievementEvent.workoutDaysChanged(1, run));
+            log.close();
+        }
+        assertEquals(3, segmentFiles().size());
+        AchievementEventLog log = new AchievementEventLog(directory, LARGE_SEGMENT);
+        assertEquals(List.of(1L, 2L, 3L), log.recover(0).stream().map(AchievementEvent::sequence).toList());
+        log.close();
+    }
+
+    @Test
+    void recoverTruncatesTornAndCorruptedTail() throws IOException {
+        AchievementEventLog log = new AchievementEventLog(directory, LARGE_SEGMENT);
+        log.recover(0);
+        for (int i = 1; i <= 3; i++) {
+            log.append(AchievementEvent.workoutDaysChanged(1, i));
+        }
+        log.close();
+        Path segment = segmentFiles().get(0);
+        long entryBytes = Files.size(segment) / 3;
+
+        // 最后一个条目只写了一半
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(entryBytes * 3 - 5);
+        }
+        AchievementEventLog torn = new AchievementEventLog(directory, LARGE_SEGMENT);
+        assertEquals(2, torn.recover(0).size());
+        assertEquals(entryBytes * 2, Files.size(segment));
+        torn.close();
+
+        // 第二个条目内容损坏，它及之后的条目都丢弃
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(entryBytes + 12);
+            file.write(0x7F);
+        }
+        AchievementEventLog corrupted = new AchievementEventLog(directory, LARGE_SEGMENT);
+        assertEquals(List.of(1L), corrupted.recover(0).stream().map(AchievementEvent::sequence).toList());
+        assertEquals(entryBytes, Files.size(segment));
+        assertEquals(2, corrupted.append(AchievementEvent.workoutDaysChanged(1, 2)).sequence());
+        corrupted.close();
+    }
+
+    @Test
+    void purgeDropsOnlySegmentsCoveredBySnapshot() throws IOException {
+        // 每个分段只放一个条目
+        AchievementEventLog log = new AchievementEventLog(directory, 1);
+        log.recover(0);
+        for (int i = 1; i <= 4; i++) {
+            log.append(AchievementEvent.workoutDaysChanged(1, i));
+        }
+        log.purge(2);
+        assertEquals(2, segmentFiles().size());
+        log.purge(Long.MAX_VALUE);
+        assertEquals(1, segmentFiles().size());
+        log.close();
+
+        AchievementEventLog reopened = new AchievementEventLog(directory, 1);
+        assertEquals(List.of(4L), reopened.recover(3).stream().map(AchievementEvent::sequence).toList());
+        assertEquals(5, reopened.append(AchievementEvent.workoutDaysChanged(1, 5)).sequence());
+        reopened.close();
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+}
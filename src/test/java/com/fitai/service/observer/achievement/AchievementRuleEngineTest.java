@@ -0,0 +1,107 @@
+package com.fitai.service.observer.achievement;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AchievementRuleEngine 档位判断与定义校验测试
+ */
+class AchievementRuleEngineTest {
+
+    private AchievementRuleEngine engine;
+
+    @BeforeEach
+    void loadShippedDefinitions() throws IOException {
+        engine = new AchievementRuleEngine();
+        try (InputStream in = getClass().getResourceAsStream("/achievements.json")) {
+            engine.compile(new ObjectMapper().readValue(in, new TypeReference<List<AchievementDefinition>>() {}));
+        }
+    }
+
+    @Test
+    void shippedDefinitionsCompile() {
+        assertEquals(22, engine.getDefinitions().size());
+        assertEquals(22, engine.getIndexCapacity());
+        assertEquals("FIRST_WORKOUT", engine.getDefinition(0).getCode());
+    }
+
+    @Test
+    void crossedReturnsThresholdsInHalfOpenRange() {
+        assertEquals(List.of("FIRST_WORKOUT"), codes(AchievementMetric.COMPLETED_WORKOUTS, 0, 1));
+        assertEquals(List.of(), codes(AchievementMetric.COMPLETED_WORKOUTS, 1, 9));
+        assertEquals(List.of("WORKOUTS_10"), codes(AchievementMetric.COMPLETED_WORKOUTS, 9, 10));
+        // 起点恰好等于阈值时该档已在之前解锁
+        assertEquals(List.of("WORKOUTS_50", "WORKOUTS_100"), codes(AchievementMetric.COMPLETED_WORKOUTS, 10, 100));
+    }
+
+    @Test
+    void crossedReturnsEveryTierOfLargeJump() {
+        assertEquals(List.of("CALORIES_1000", "CALORIES_5000", "CALORIES_10000"),
+                codes(AchievementMetric.CALORIES_BURNED, 0, 20_000));
+        assertEquals(List.of("WEIGHT_LOSS_5", "WEIGHT_LOSS_10"), codes(AchievementMetric.WEIGHT_LOSS, 4.5, 10.0));
+    }
+
+    @Test
+    void crossedIgnoresUnchangedOrDecreasingValues() {
+        assertTrue(engine.crossed(AchievementMetric.COMPLETED_WORKOUTS, 10, 10).isEmpty());
+        assertTrue(engine.crossed(AchievementMetric.COMPLETED_WORKOUTS, 10, 0).isEmpty());
+        assertTrue(engine.crossed(AchievementMetric.WEIGHT_LOSS, Double.NaN, 20).isEmpty());
+    }
+
+    @Test
+    void crossedIsEmptyForMetricWithoutDefinitions() {
+        engine.compile(List.of(definition(0, "FIRST", AchievementMetric.COMPLETED_WORKOUTS, 1)));
+        assertTrue(engine.crossed(AchievementMetric.WORKOUT_DAYS, 0, 1000).isEmpty());
+    }
+
+    @Test
+    void removedIndexLeavesGap() {
+        engine.compile(List.of(definition(0, "A", AchievementMetric.COMPLETED_WORKOUTS, 1),
+                definition(5, "B", AchievementMetric.COMPLETED_WORKOUTS, 5)));
+        assertEquals(6, engine.getIndexCapacity());
+        assertNull(engine.getDefinition(3));
+        assertNull(engine.getDefinition(6));
+        assertEquals("B", engine.getDefinition(5).getCode());
+    }
+
+    @Test
+    void rejectsInvalidDefinitions() {
+        assertThrows(IllegalArgumentException.class, () -> engine.compile(List.of(
+                definition(0, "A", AchievementMetric.COMPLETED_WORKOUTS, 1),
+                definition(0, "B", AchievementMetric.COMPLETED_WORKOUTS, 2))));
+        assertThrows(IllegalArgumentException.class, () -> engine.compile(List.of(
+                definition(0, "A", AchievementMetric.COMPLETED_WORKOUTS, 1),
+                definition(1, "A", AchievementMetric.COMPLETED_WORKOUTS, 2))));
+        assertThrows(IllegalArgumentException.class, () -> engine.compile(List.of(
+                definition(null, "A", AchievementMetric.COMPLETED_WORKOUTS, 1))));
+        assertThrows(IllegalArgumentException.class, () -> engine.compile(List.of(
+                definition(AchievementRuleEngine.MAX_INDEX + 1, "A", AchievementMetric.COMPLETED_WORKOUTS, 1))));
+        assertThrows(IllegalArgumentException.class, () -> engine.compile(List.of(
+                definition(0, "A", AchievementMetric.COMPLETED_WORKOUTS, 0))));
+    }
+
+    private List<String> codes(AchievementMetric metric, double oldValue, double newValue) {
+        return engine.crossed(metric, oldValue, newValue).stream().map(AchievementDefinition::getCode).toList();
+    }
+
+    private static AchievementDefinition definition(Integer index, String code, AchievementMetric metric, double threshold) {
+        AchievementDefinition definition = new AchievementDefinition();
+        definition.setIndex(index);
+        definition.setCode(code);
+        definition.setMetric(metric);
+        definition.setThreshold(threshold);
+        definition.setTitle(code);
+        return definition;
+    }
+}
@@ -0,0 +1,143 @@
+package com.fitai.service.observer.achievement;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fitai.config.sharding.ShardRouter;
+import com.fitai.config.sharding.ShardingProperties;
+import com.fitai.model.OutboxRelayLease;
+import com.fitai.repository.OutboxRelayLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * AchievementStateService 启动重放测试：进程崩溃（不做快照）后重启，重放日志尾部不会重复应用事件
+ */
+class AchievementStateServiceTest {
+
+    private static final long USER = 7;
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @TempDir
+    Path directory;
+
+    private AchievementRuleEngine ruleEngine;
+    private OutboxRelayLeaseRepository leaseRepository;
+    private Optional<OutboxRelayLease> stateLease = Optional.empty();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ruleEngine = new AchievementRuleEngine();
+        try (InputStream in = getClass().getResourceAsStream("/achievements.json")) {
+            ruleEngine.compile(new ObjectMapper().readValue(in, new TypeReference<List<AchievementDefinition>>() {}));
+        }
+        leaseRepository = mock(OutboxRelayLeaseRepository.class);
+        when(leaseRepository.findById(any())).thenAnswer(invocation -> stateLease);
+        when(leaseRepository.save(any())).thenAnswer(invocation -> {
+            stateLease = Optional.of(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+    }
+
+    @Test
+    void replayAfterCrashDoesNotApplyEventsTwice() throws Exception {
+        AchievementStateService service = start();
+        List<AchievementDefinition> unlocked = service.record(completed(0, 1));
+        assertEquals(List.of("FIRST_WORKOUT"), unlocked.stream().map(AchievementDefinition::getCode).toList());
+        service.record(completed(1, 2));
+        service.record(completed(2, 3));
+        crash(service);
+
+        AchievementStateService restarted = start();
+        UserStats stats = restarted.getStats(USER);
+        assertEquals(3, stats.getCompletedWorkouts());
+        assertEquals(3, stats.getLongestStreak());
+        assertEquals(3, stats.getAppliedSequence());
+        // 重复投递的来源事件被忽略，新事件接着分配序号
+        assertTrue(restarted.record(completed(2, 3)).isEmpty());
+        restarted.record(completed(3, 4));
+        assertEquals(4, stats.getCompletedWorkouts());
+        assertEquals(4L, restarted.getStatistics().get("lastSequence"));
+        restarted.close();
+    }
+
+    @Test
+    void replayRebuildsLostStatsWithoutReunlocking() throws Exception {
+        AchievementStateService service = start();
+        for (int i = 0; i < 10; i++) {
+            service.record(completed(i, i + 1));
+        }
+        crash(service);
+        // 模拟掉电丢失了未刷盘的映射页：统计文件回到空白，只剩事件日志
+        Files.delete(directory.resolve("user-stats.dat"));
+
+        AchievementStateService restarted = start();
+        UserStats stats = restarted.getStats(USER);
+        assertEquals(10, stats.getCompletedWorkouts());
+        assertEquals(10, stats.getLongestStreak());
+        assertTrue(restarted.getUnlockedAchievements(USER).stream()
+                .anyMatch(achievement -> achievement.getCode().equals("WORKOUTS_10")));
+        // 重放之后再次启动（快照已覆盖全部事件）状态不变
+        restarted.close();
+
+        AchievementStateService again = start();
+        assertEquals(10, again.getStats(USER).getCompletedWorkouts());
+        assertEquals(10L, again.getStatistics().get("snapshotSequence"));
+        again.close();
+    }
+
+    @Test
+    void refusesStateOwnedByAnotherDirectory() throws Exception {
+        stateLease = Optional.of(new OutboxRelayLease("achievement-state", "other-directory", LocalDateTime.now()));
+        assertThrows(IllegalStateException.class, this::start);
+    }
+
+    private AchievementStateService start() throws Exception {
+        ShardRouter shardRouter = new ShardRouter();
+        ReflectionTestUtils.setField(shardRouter, "properties", new ShardingProperties());
+
+        AchievementStateService service = new AchievementStateService();
+        ReflectionTestUtils.setField(service, "ruleEngine", ruleEngine);
+        ReflectionTestUtils.setField(service, "leaseRepository", leaseRepository);
+        ReflectionTestUtils.setField(service, "shardRouter", shardRouter);
+        ReflectionTestUtils.setField(service, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "storeFile", directory.resolve("user-stats.dat").toString());
+        ReflectionTestUtils.setField(service, "logDir", directory.resolve("events").toString());
+        ReflectionTestUtils.setField(service, "segmentBytes", 1L << 20);
+        ReflectionTestUtils.setField(service, "replayThreads", 2);
+        service.start();
+        return service;
+    }
+
+    /**
+     * 不做快照直接关闭文件，相当于进程崩溃（映射页仍在页缓存中）
+     */
+    private static void crash(AchievementStateService service) throws IOException {
+        ((AchievementEventLog) ReflectionTestUtils.getField(service, "eventLog")).close();
+        ((UserStatsStore) ReflectionTestUtils.getField(service, "store")).close();
+        ((FileChannel) ReflectionTestUtils.getField(service, "stateIdChannel")).close();
+    }
+
+    private static AchievementEvent completed(int dayOffset, long source) {
+        return AchievementEvent.workoutCompleted(USER, DAY.plusDays(dayOffset), 30, 200).withSource(source);
+    }
+}
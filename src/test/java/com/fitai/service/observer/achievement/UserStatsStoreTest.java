@@ -0,0 +1,121 @@
+package com.fitai.service.observer.achievement;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * UserStatsStore 槽位布局、持久化、扩容与成就序号登记测试
+ */
+class UserStatsStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void slotSizeIsPowerOfTwoAndFitsBitmap() {
+        for (int achievements : new int[] {1, 64, 65, 1024}) {
+            int words = UserStats.bitmapWords(achievements);
+            int slot = UserStats.slotBytes(words);
+            assertEquals(1, Integer.bitCount(slot));
+            assertTrue(slot >= UserStats.UNLOCKED + words * Long.BYTES);
+        }
+        assertEquals(1, UserStats.bitmapWords(0));
+        assertEquals(2, UserStats.bitmapWords(65));
+    }
+
+    @Test
+    void statsSurviveReopenAcrossChunks() throws IOException {
+        Path file = directory.resolve("stats.dat");
+        try (UserStatsStore store = UserStatsStore.open(file, 22)) {
+            UserStats first = store.stats(5);
+            first.recordWorkoutCompleted();
+            first.addCaloriesBurned(300);
+            first.markApplied(1);
+            // 落在另一个映射块中
+            UserStats far = store.stats(200_000);
+            far.unlock(21);
+            far.markApplied(2);
+            store.force();
+            store.writeSnapshotSequence(2);
+        }
+
+        try (UserStatsStore store = UserStatsStore.open(file, 22)) {
+            assertEquals(2, store.readSnapshotSequence());
+            assertEquals(1, store.stats(5).getCompletedWorkouts());
+            assertEquals(300.0, store.stats(5).getTotalCaloriesBurned());
+            assertTrue(store.stats(200_000).hasAchievement(21));
+            assertEquals(0, store.stats(6).getCompletedWorkouts());
+
+            List<Long> users = new ArrayList<>();
+            store.forEach((userId, stats) -> users.add(userId));
+            assertEquals(List.of(5L, 200_000L), users);
+        }
+    }
+
+    @Test
+    void growingAchievementCountResizesSlotsAndKeepsStats() throws IOException {
+        Path file = directory.resolve("stats.dat");
+        try (UserStatsStore store = UserStatsStore.open(file, 22)) {
+            store.stats(3).unlock(21);
+            store.stats(3).setTotalWorkoutDays(40);
+            store.stats(3).markApplied(1);
+        }
+
+        try (UserStatsStore store = UserStatsStore.open(file, 1000)) {
+            UserStats stats = store.stats(3);
+            assertTrue(stats.hasAchievement(21));
+            assertEquals(40, stats.getTotalWorkoutDays());
+            assertTrue(stats.unlock(999));
+        }
+        // 定义减少时保持已有的位图宽度
+        try (UserStatsStore store = UserStatsStore.open(file, 22)) {
+            assertTrue(store.stats(3).hasAchievement(999));
+        }
+    }
+
+    @Test
+    void registryRejectsReassignedIndexes() throws IOException {
+        Path file = directory.resolve("stats.dat");
+        try (UserStatsStore store = UserStatsStore.open(file, 2)) {
+            store.registerAchievements(List.of(definition(0, "FIRST"), definition(1, "SECOND")));
+            // 重复登记和删除成就都允许
+            store.registerAchievements(List.of(definition(0, "FIRST")));
+        }
+        try (UserStatsStore store = UserStatsStore.open(file, 3)) {
+            assertThrows(IllegalStateException.class, () -> store.registerAchievements(List.of(definition(1, "OTHER"))));
+            assertThrows(IllegalStateException.class, () -> store.registerAchievements(List.of(definition(2, "FIRST"))));
+            store.registerAchievements(List.of(definition(0, "FIRST"), definition(2, "THIRD")));
+        }
+    }
+
+    @Test
+    void rejectsForeignFileAndNegativeUser() throws IOException {
+        Path foreign = directory.resolve("foreign.dat");
+        Files.write(foreign, new byte[64]);
+        assertThrows(IllegalStateException.class, () -> UserStatsStore.open(foreign, 22));
+
+        try (UserStatsStore store = UserStatsStore.open(directory.resolve("stats.dat"), 22)) {
+            assertThrows(IllegalArgumentException.class, () -> store.stats(-1));
+        }
+    }
+
+    private static AchievementDefinition definition(int index, String code) {
+        AchievementDefinition definition = new AchievementDefinition();
+        definition.setIndex(index);
+        definition.setCode(code);
+        definition.setMetric(AchievementMetric.COMPLETED_WORKOUTS);
+        definition.setThreshold(index + 1);
+        definition.setTitle(code);
+        return definition;
+    }
+}
@@ -0,0 +1,99 @@
+package com.fitai.service.observer.achievement;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * UserStats 训练日位图与连续天数测试
+ */
+class UserStatsStreakTest {
+
+    // epochDay % 48 == 43，第5天跨入下一个块
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 1);
+
+    @Test
+    void consecutiveDaysExtendStreak() {
+        UserStats stats = UserStats.allocate(22);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i + 1, stats.recordWorkoutDay(DAY.plusDays(i)));
+        }
+        assertEquals(10, stats.getCurrentStreak(DAY.plusDays(9)));
+        // 今天还没有训练时从昨天算起
+        assertEquals(10, stats.getCurrentStreak(DAY.plusDays(10)));
+        assertEquals(0, stats.getCurrentStreak(DAY.plusDays(11)));
+        assertEquals(10, stats.getLongestStreak());
+    }
+
+    @Test
+    void sameDayRecordedTwiceChangesNothing() {
+        UserStats stats = UserStats.allocate(22);
+        stats.recordWorkoutDay(DAY);
+        stats.recordWorkoutDay(DAY.plusDays(1));
+        assertEquals(2, stats.recordWorkoutDay(DAY.plusDays(1)));
+        assertEquals(2, stats.countWorkoutDays(DAY, DAY.plusDays(30)));
+        assertEquals(2, stats.getLongestStreak());
+    }
+
+    @Test
+    void backfilledDayJoinsTwoRuns() {
+        UserStats stats = UserStats.allocate(22);
+        stats.recordWorkoutDay(DAY);
+        stats.recordWorkoutDay(DAY.plusDays(1));
+        stats.recordWorkoutDay(DAY.plusDays(3));
+        stats.recordWorkoutDay(DAY.plusDays(4));
+        stats.recordWorkoutDay(DAY.plusDays(5));
+        assertEquals(3, stats.getLongestStreak());
+
+        assertEquals(6, stats.recordWorkoutDay(DAY.plusDays(2)));
+        assertEquals(6, stats.getCurrentStreak(DAY.plusDays(5)));
+        assertEquals(6, stats.getLongestStreak());
+    }
+
+    @Test
+    void streakSpansSeveralWords() {
+        UserStats stats = UserStats.allocate(22);
+        for (int i = 0; i < 200; i++) {
+            stats.recordWorkoutDay(DAY.plusDays(i));
+        }
+        assertEquals(200, stats.getCurrentStreak(DAY.plusDays(199)));
+        assertEquals(200, stats.getLongestStreak());
+        assertEquals(200, stats.countWorkoutDays(DAY.minusDays(100), DAY.plusDays(300)));
+        assertEquals(51, stats.countWorkoutDays(DAY.plusDays(47), DAY.plusDays(97)));
+        assertEquals(1, stats.countWorkoutDays(DAY.plusDays(199), DAY.plusDays(199)));
+        assertEquals(0, stats.countWorkoutDays(DAY.plusDays(10), DAY.plusDays(9)));
+    }
+
+    @Test
+    void everyOtherDayCountsButDoesNotStreak() {
+        UserStats stats = UserStats.allocate(22);
+        for (int i = 0; i < 100; i += 2) {
+            assertEquals(1, stats.recordWorkoutDay(DAY.plusDays(i)));
+        }
+        assertEquals(50, stats.countWorkoutDays(DAY, DAY.plusDays(99)));
+        assertEquals(1, stats.getLongestStreak());
+    }
+
+    @Test
+    void daysOutsideWindowAreDropped() {
+        UserStats stats = UserStats.allocate(22);
+        stats.recordWorkoutDay(DAY);
+        // 同一个字被更新的块占用，旧块的日期不再可见
+        LocalDate later = DAY.plusDays(UserStats.TRAINING_DAY_WINDOW);
+        assertEquals(1, stats.recordWorkoutDay(later));
+        assertEquals(0, stats.countWorkoutDays(DAY, DAY));
+        assertEquals(0, stats.recordWorkoutDay(DAY));
+        assertEquals(1, stats.countWorkoutDays(DAY, later));
+        // 最长连续天数不随窗口滚动而减少
+        assertEquals(1, stats.getLongestStreak());
+    }
+
+    @Test
+    void rejectsDaysBeforeEpoch() {
+        UserStats stats = UserStats.allocate(22);
+        assertThrows(IllegalArgumentException.class, () -> stats.recordWorkoutDay(LocalDate.of(1969, 12, 31)));
+    }
+}
@@ -0,0 +1,74 @@
+package com.fitai.service.observer.achievement;
+
+import com.fitai.tools.UserStatsContentionBenchmark;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * UserStats 计数器与并发更新测试
+ */
+class UserStatsTest {
+
+    @Test
+    void unlockSetsEachBitOnce() {
+        UserStats stats = UserStats.allocate(100);
+        assertTrue(stats.unlock(0));
+        assertTrue(stats.unlock(70));
+        assertFalse(stats.unlock(70));
+        assertTrue(stats.hasAchievement(70));
+        assertFalse(stats.hasAchievement(6));
+
+        BitSet expected = new BitSet();
+        expected.set(0);
+        expected.set(70);
+        assertEquals(expected, stats.getAchievements());
+        assertThrows(IndexOutOfBoundsException.class, () -> stats.unlock(128));
+        assertThrows(IndexOutOfBoundsException.class, () -> stats.hasAchievement(-1));
+    }
+
+    @Test
+    void countersReturnValueBeforeUpdate() {
+        UserStats stats = UserStats.allocate(22);
+        assertNull(stats.getLastWorkoutAt());
+        stats.recordWorkoutStarted(LocalDateTime.of(2024, 1, 1, 8, 30));
+        assertEquals(1, stats.getStartedWorkouts());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 8, 30), stats.getLastWorkoutAt());
+
+        assertEquals(1, stats.recordWorkoutCompleted());
+        assertEquals(2, stats.recordWorkoutCompleted());
+        assertEquals(0L, stats.addWorkoutMinutes(30));
+        assertEquals(30L, stats.addWorkoutMinutes(45));
+        assertEquals(0.0, stats.addCaloriesBurned(250.5));
+        assertEquals(250.5, stats.addCaloriesBurned(100));
+        assertEquals(350.5, stats.getTotalCaloriesBurned());
+        assertEquals(0, stats.setTotalWorkoutDays(12));
+        assertEquals(12, stats.getTotalWorkoutDays());
+    }
+
+    @Test
+    void sourceAndAppliedMarkersOnlyMoveForward() {
+        UserStats stats = UserStats.allocate(22);
+        assertTrue(stats.markSource(5));
+        assertFalse(stats.markSource(5));
+        assertFalse(stats.markSource(3));
+        assertTrue(stats.markSource(6));
+        assertEquals(6, stats.getLastSource());
+
+        stats.markApplied(10);
+        stats.markApplied(7);
+        assertEquals(10, stats.getAppliedSequence());
+    }
+
+    @Test
+    void concurrentUpdatesLoseNothing() throws InterruptedException {
+        assertTrue(new UserStatsContentionBenchmark(4, 20_000, 1).run());
+    }
+}
@@ -0,0 +1,223 @@
+package com.fitai.service.session;
+
+import com.fitai.config.sharding.ShardRouter;
+import com.fitai.config.sharding.ShardingProperties;
+import com.fitai.model.User;
+import com.fitai.model.WorkoutSession;
+import com.fitai.model.WorkoutSession.SessionStatus;
+import com.fitai.repository.WorkoutSessionRepository;
+import com.fitai.repository.WorkoutSessionStateBatchRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * ActiveSessionRegistry 内存状态、合并写回、版本冲突与结束事务回滚测试
+ */
+class ActiveSessionRegistryTest {
+
+    private static final long SESSION_ID = 100;
+
+    private final User user = user(1L);
+    private final List<List<SessionState>> written = new ArrayList<>();
+    // 每次写回各会话返回的更新行数，默认全部成功
+    private int updatedRows = 1;
+    private boolean writeFails;
+
+    private WorkoutSessionRepository sessionRepository;
+    private WorkoutSessionStateBatchRepository batchRepository;
+    private ActiveSessionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        sessionRepository = mock(WorkoutSessionRepository.class);
+        batchRepository = mock(WorkoutSessionStateBatchRepository.class);
+        when(batchRepository.batchUpdate(any())).thenAnswer(invocation -> {
+            if (writeFails) {
+                throw new IllegalStateException("数据库不可用");
+            }
+            List<SessionState> states = invocation.getArgument(0);
+            written.add(states);
+            int[] counts = new int[states.size()];
+            Arrays.fill(counts, updatedRows);
+            return counts;
+        });
+
+        ShardRouter shardRouter = new ShardRouter();
+        ReflectionTestUtils.setField(shardRouter, "properties", new ShardingProperties());
+        registry = new ActiveSessionRegistry();
+        ReflectionTestUtils.setField(registry, "workoutSessionRepository", sessionRepository);
+        ReflectionTestUtils.setField(registry, "batchRepository", batchRepository);
+        ReflectionTestUtils.setField(registry, "shardRouter", shardRouter);
+        ReflectionTestUtils.setField(registry, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(registry, "idleMinutes", 240L);
+        registry.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void pauseAndResumeAreMergedIntoOneWrite() {
+        registry.register(session(SessionStatus.IN_PROGRESS, 0), user);
+        assertEquals(SessionStatus.PAUSED, registry.apply(SESSION_ID, user, WorkoutSessionTransition.PAUSE).getStatus());
+        WorkoutSession resumed = registry.apply(SESSION_ID, user, WorkoutSessionTransition.RESUME);
+        assertEquals(SessionStatus.IN_PROGRESS, resumed.getStatus());
+        assertNull(resumed.getPausedAt());
+
+        registry.flush();
+        assertEquals(1, written.size());
+        SessionState state = written.get(0).get(0);
+        assertEquals(SessionStatus.IN_PROGRESS, state.status());
+        assertEquals(0, state.version());
+        assertEquals(2, state.changes());
+
+        // 没有新的修改不再写回，写回后的版本加1
+        registry.flush();
+        assertEquals(1, written.size());
+        registry.apply(SESSION_ID, user, WorkoutSessionTransition.PAUSE);
+        registry.flush();
+        assertEquals(1, written.get(1).get(0).version());
+        assertEquals(2L, registry.getStatistics().get("flushed"));
+    }
+
+    @Test
+    void rejectsInvalidTransitionsAndOtherUsers() {
+        registry.register(session(SessionStatus.IN_PROGRESS, 0), user);
+        assertThrows(IllegalStateException.class,
+                () -> registry.apply(SESSION_ID, user, WorkoutSessionTransition.RESUME));
+        assertThrows(IllegalStateException.class,
+                () -> registry.apply(SESSION_ID, user(2L), WorkoutSessionTransition.PAUSE));
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    void versionConflictDropsMemoryStateAndReloads() {
+        registry.register(session(SessionStatus.IN_PROGRESS, 0), user);
+        registry.apply(SESSION_ID, user, WorkoutSessionTransition.PAUSE);
+        updatedRows = 0;
+        registry.flush();
+        assertEquals(1L, registry.getStatistics().get("conflicts"));
+        assertEquals(0, registry.getStatistics().get("active"));
+
+        // 其他节点已把会话改为暂停并升了版本
+        when(sessionRepository.findByIdAndUserId(SESSION_ID, user.getId()))
+                .thenReturn(Optional.of(session(SessionStatus.PAUSED, 3)));
+        updatedRows = 1;
+        registry.apply(SESSION_ID, user, WorkoutSessionTransition.RESUME);
+        registry.flush();
+        assertEquals(3, written.get(1).get(0).version());
+    }
+
+    @Test
+    void failedWriteIsRetried() {
+        registry.register(session(SessionStatus.IN_PROGRESS, 0), user);
+        registry.apply(SESSION_ID, user, WorkoutSessionTransition.PAUSE);
+        writeFails = true;
+        registry.flush();
+        assertTrue(written.isEmpty());
+
+        writeFails = false;
+        registry.flush();
+        assertEquals(1, written.size());
+        assertEquals(SessionStatus.PAUSED, written.get(0).get(0).status());
+    }
+
+    @Test
+    void closeRolledBackReopensSession() {
+        registry.register(session(SessionStatus.IN_PROGRESS, 0), user);
+        registry.apply(SESSION_ID, user, WorkoutSessionTransition.PAUSE);
+        LocalDateTime endTime = LocalDateTime.now().plusSeconds(90);
+
+        TransactionSynchronizationManager.initSynchronization();
+        WorkoutSession closed = registry.close(SESSION_ID, user, WorkoutSessionTransition.COMPLETE, endTime);
+        assertEquals(SessionStatus.COMPLETED, closed.getStatus());
+        assertEquals(endTime, closed.getEndTime());
+        assertEquals(90L, closed.getPausedSeconds());
+        // 正在结束的会话拒绝暂停继续，也不写回
+        assertThrows(IllegalStateException.class,
+                () -> registry.apply(SESSION_ID, user, WorkoutSessionTransition.RESUME));
+        registry.flush();
+        assertTrue(written.isEmpty());
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        WorkoutSession resumed = registry.apply(SESSION_ID, user, WorkoutSessionTransition.RESUME);
+        assertEquals(SessionStatus.IN_PROGRESS, resumed.getStatus());
+    }
+
+    @Test
+    void closeCommittedRemovesSession() {
+        registry.register(session(SessionStatus.IN_PROGRESS, 0), user);
+        TransactionSynchronizationManager.initSynchronization();
+        registry.close(SESSION_ID, user, WorkoutSessionTransition.CANCEL, LocalDateTime.now());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(0, registry.getStatistics().get("active"));
+        when(sessionRepository.findByIdAndUserId(anyLong(), anyLong()))
+                .thenReturn(Optional.of(session(SessionStatus.CANCELLED, 1)));
+        assertThrows(IllegalStateException.class,
+                () -> registry.apply(SESSION_ID, user, WorkoutSessionTransition.PAUSE));
+    }
+
+    @Test
+    void registerInsideTransactionWaitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        registry.register(session(SessionStatus.IN_PROGRESS, 0), user);
+        assertEquals(0, registry.getStatistics().get("active"));
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        assertEquals(1, registry.getStatistics().get("active"));
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private WorkoutSession session(SessionStatus status, long version) {
+        WorkoutSession session = new WorkoutSession();
+        session.setId(SESSION_ID);
+        session.setUser(user);
+        session.setSessionName("腿部训练");
+        session.setStartTime(LocalDateTime.now().minusMinutes(30));
+        session.setStatus(status);
+        session.setPausedAt(status == SessionStatus.PAUSED ? LocalDateTime.now().minusMinutes(1) : null);
+        session.setPausedSeconds(0L);
+        session.setVersion(version);
+        return session;
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
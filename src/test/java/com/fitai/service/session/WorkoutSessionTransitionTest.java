@@ -0,0 +1,44 @@
+package com.fitai.service.session;
+
+import com.fitai.model.WorkoutSession.SessionStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * WorkoutSessionTransition 状态机测试
+ */
+class WorkoutSessionTransitionTest {
+
+    @Test
+    void allowedTransitionsReachTarget() {
+        assertEquals(SessionStatus.PAUSED, WorkoutSessionTransition.PAUSE.apply(SessionStatus.IN_PROGRESS));
+        assertEquals(SessionStatus.IN_PROGRESS, WorkoutSessionTransition.RESUME.apply(SessionStatus.PAUSED));
+        for (SessionStatus open : WorkoutSessionTransition.OPEN_STATUSES) {
+            assertEquals(SessionStatus.COMPLETED, WorkoutSessionTransition.COMPLETE.apply(open));
+            assertEquals(SessionStatus.CANCELLED, WorkoutSessionTransition.CANCEL.apply(open));
+        }
+    }
+
+    @Test
+    void rejectsTransitionsFromOtherStatuses() {
+        for (WorkoutSessionTransition transition : WorkoutSessionTransition.values()) {
+            for (SessionStatus status : EnumSet.complementOf(EnumSet.copyOf(transition.getFromStatuses()))) {
+                assertThrows(IllegalStateException.class, () -> transition.apply(status),
+                        transition + " 不应允许从 " + status + " 开始");
+            }
+        }
+        // 结束后的会话不再变化
+        assertThrows(IllegalStateException.class, () -> WorkoutSessionTransition.CANCEL.apply(SessionStatus.COMPLETED));
+        assertThrows(IllegalStateException.class, () -> WorkoutSessionTransition.RESUME.apply(SessionStatus.CANCELLED));
+    }
+
+    @Test
+    void openStatusesAreExactlyThoseThatCanBeClosed() {
+        assertEquals(WorkoutSessionTransition.OPEN_STATUSES, WorkoutSessionTransition.COMPLETE.getFromStatuses());
+        assertEquals(WorkoutSessionTransition.OPEN_STATUSES, WorkoutSessionTransition.CANCEL.getFromStatuses());
+    }
+}
@@ -0,0 +1,98 @@
+package com.fitai.service.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ExerciseRecordChunkCodec 编解码、时间范围过滤与尾部校验测试
+ */
+class ExerciseRecordChunkCodecTest {
+
+    private static final long T0 = 1_704_096_000_000L;
+
+    @Test
+    void roundTripKeepsEveryColumnIncludingNulls() {
+        List<ExerciseRecordPoint> rows = List.of(
+                new ExerciseRecordPoint(101, T0, 7L, "深蹲", 5, 5, 102.5, null, 80),
+                new ExerciseRecordPoint(102, T0 + 60_000, 7L, "卧推", 3, 10, 60.125, null, null),
+                new ExerciseRecordPoint(99, T0 + 120_000, null, "跑步", null, null, null, 30, 300),
+                new ExerciseRecordPoint(103, T0 + 120_000, 8L, "深蹲", -1, 0, 0.0, 0, 0));
+
+        assertEquals(rows, scanAll(ByteBuffer.wrap(ExerciseRecordChunkCodec.encode(rows))));
+    }
+
+    @Test
+    void scanFiltersRowsAndSkipsBlocksOutsideRange() {
+        List<ExerciseRecordPoint> first = points(1, T0, 10);
+        List<ExerciseRecordPoint> second = points(11, T0 + 3_600_000, 10);
+        ByteBuffer file = concat(ExerciseRecordChunkCodec.encode(first), ExerciseRecordChunkCodec.encode(second));
+
+        List<ExerciseRecordPoint> seen = new ArrayList<>();
+        ExerciseRecordChunkCodec.scan(file, T0 + 3_600_000 + 2_000, T0 + 3_600_000 + 4_000, seen::add);
+        assertEquals(second.subList(2, 5), seen);
+
+        seen.clear();
+        ExerciseRecordChunkCodec.scan(file.rewind(), T0 + 9_000, T0 + 3_600_000, seen::add);
+        assertEquals(List.of(first.get(9), second.get(0)), seen);
+    }
+
+    @Test
+    void validLengthStopsAtTruncatedBlock() {
+        byte[] first = ExerciseRecordChunkCodec.encode(points(1, T0, 20));
+        byte[] second = ExerciseRecordChunkCodec.encode(points(21, T0 + 20_000, 20));
+        byte[] whole = concat(first, second).array();
+
+        assertEquals(whole.length, ExerciseRecordChunkCodec.validLength(ByteBuffer.wrap(whole)));
+        for (int cut : new int[] {first.length + 1, first.length + ExerciseRecordChunkCodec.HEADER_SIZE, whole.length - 1}) {
+            ByteBuffer truncated = ByteBuffer.wrap(whole, 0, cut).slice();
+            assertEquals(first.length, ExerciseRecordChunkCodec.validLength(truncated));
+            // 扫描同样在半截块前停止
+            assertEquals(20, scanAll(ByteBuffer.wrap(whole, 0, cut).slice()).size());
+        }
+        assertEquals(0, ExerciseRecordChunkCodec.validLength(ByteBuffer.wrap(whole, 0, 10).slice()));
+    }
+
+    @Test
+    void validLengthRejectsCorruptedPayload() {
+        byte[] first = ExerciseRecordChunkCodec.encode(points(1, T0, 20));
+        byte[] second = ExerciseRecordChunkCodec.encode(points(21, T0 + 20_000, 20));
+        byte[] whole = concat(first, second).array();
+
+        whole[first.length + ExerciseRecordChunkCodec.HEADER_SIZE + 5] ^= 0x40;
+        assertEquals(first.length, ExerciseRecordChunkCodec.validLength(ByteBuffer.wrap(whole)));
+
+        byte[] badMagic = concat(first, second).array();
+        badMagic[first.length] = 0;
+        assertEquals(first.length, ExerciseRecordChunkCodec.validLength(ByteBuffer.wrap(badMagic)));
+    }
+
+    @Test
+    void emptyBufferIsValid() {
+        assertEquals(0, ExerciseRecordChunkCodec.validLength(ByteBuffer.allocate(0)));
+        assertTrue(scanAll(ByteBuffer.allocate(0)).isEmpty());
+    }
+
+    private static List<ExerciseRecordPoint> points(long firstId, long firstMillis, int count) {
+        List<ExerciseRecordPoint> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new ExerciseRecordPoint(firstId + i, firstMillis + i * 1_000L, 1L, "硬拉", 3, 8, 120.0, null, 40));
+        }
+        return rows;
+    }
+
+    private static List<ExerciseRecordPoint> scanAll(ByteBuffer buffer) {
+        List<ExerciseRecordPoint> rows = new ArrayList<>();
+        ExerciseRecordChunkCodec.scan(buffer, Long.MIN_VALUE, Long.MAX_VALUE, rows::add);
+        return rows;
+    }
+
+    private static ByteBuffer concat(byte[] first, byte[] second) {
+        return ByteBuffer.allocate(first.length + second.length).put(first).put(second).flip();
+    }
+}
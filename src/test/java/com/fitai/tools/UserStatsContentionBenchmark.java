@@ -0,0 +1,194 @@
+package com.fitai.tools;
+
+import com.fitai.service.observer.achievement.UserStats;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * UserStats 争用压测（离线执行）
+ * 依次用 1、2、4 … threads 个线程同时更新同一个 UserStats（最坏情况：同一用户的事件被并发处理），
+ * 输出吞吐量，并校验没有丢失更新：
+ * 完成次数与累计时长/卡路里等于各线程调用之和，每个成就恰好被一个线程解锁，
+ * 所有线程按相同顺序逐日打卡后当前和最长连续天数、区间内训练天数都等于打卡天数
+ *
+ * 位于测试源码中，不打进应用包；UserStatsTest 以小参数运行一轮作为并发正确性测试
+ *
+ * 用法（先执行 mvn test-compile）：
+ * java -cp target/test-classes:target/classes com.fitai.tools.UserStatsContentionBenchmark
+ *      [--threads=CPU核数] [--ops=1000000] [--rounds=3]
+ */
+public class UserStatsContentionBenchmark {
+
+    private static final int MINUTES_PER_WORKOUT = 30;
+    private static final double CALORIES_PER_WORKOUT = 250.0;
+    // 模拟的成就数量，跨越位图的多个字
+    private static final int ACHIEVEMENTS = 100;
+    // 最多打卡的天数，不超过训练日位图的窗口
+    private static final int MAX_DAYS = 700;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    private final int maxThreads;
+    private final int opsPerThread;
+    private final int rounds;
+
+    public UserStatsContentionBenchmark(int maxThreads, int opsPerThread, int rounds) {
+        if (maxThreads < 1 || opsPerThread < 1 || rounds < 1) {
+            throw new IllegalArgumentException("--threads、--ops 和 --rounds 必须为正数");
+        }
+        this.maxThreads = maxThreads;
+        this.opsPerThread = opsPerThread;
+        this.rounds = rounds;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("无法识别的参数: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+
+        UserStatsContentionBenchmark benchmark = new UserStatsContentionBenchmark(
+                Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                Integer.parseInt(options.getOrDefault("ops", "1000000")),
+                Integer.parseInt(options.getOrDefault("rounds", "3")));
+        if (!benchmark.run()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return 所有轮次均未发现丢失更新
+     */
+    public boolean run() throws InterruptedException {
+        log("每线程 %d 次操作, 每个线程数取 %d 轮中最好成绩", opsPerThread, rounds);
+        // 预热一轮，避免 JIT 编译计入单线程成绩
+        runRound(UserStats.allocate(ACHIEVEMENTS), new AtomicIntegerArray(ACHIEVEMENTS), maxThreads);
+
+        boolean consistent = true;
+        double singleThreadOps = 0;
+        for (int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads)) {
+            long bestNanos = Long.MAX_VALUE;
+            for (int round = 0; round < rounds; round++) {
+                UserStats stats = UserStats.allocate(ACHIEVEMENTS);
+                AtomicIntegerArray unlockWins = new AtomicIntegerArray(ACHIEVEMENTS);
+                long nanos = runRound(stats, unlockWins, threads);
+                bestNanos = Math.min(bestNanos, nanos);
+                consistent &= verify(stats, unlockWins, threads);
+            }
+            double opsPerSecond = (double) threads * opsPerThread / (bestNanos / 1e9);
+            if (threads == 1) {
+                singleThreadOps = opsPerSecond;
+            }
+            log("%3d 线程: %,.0f 次/秒, 相对单线程 %.2fx", threads, opsPerSecond, opsPerSecond / singleThreadOps);
+        }
+        log(consistent ? "未发现丢失更新" : "发现丢失更新");
+        return consistent;
+    }
+
+    private int nextThreadCount(int threads) {
+        return threads < maxThreads && threads * 2 > maxThreads ? maxThreads : threads * 2;
+    }
+
+    private long runRound(UserStats stats, AtomicIntegerArray unlockWins, int threads) throws InterruptedException {
+        long days = days();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        stats.recordWorkoutCompleted();
+                        stats.addWorkoutMinutes(MINUTES_PER_WORKOUT);
+                        stats.addCaloriesBurned(CALORIES_PER_WORKOUT);
+                        // 每10次操作打卡一次，各线程按相同顺序逐日推进，总天数压缩到 MAX_DAYS 以内
+                        if (i % 10 == 0) {
+                            stats.recordWorkoutDay(FIRST_DAY.plusDays((long) (i / 10) * days / ((opsPerThread + 9) / 10)));
+                        }
+                        int achievement = i % ACHIEVEMENTS;
+                        if (stats.unlock(achievement)) {
+                            unlockWins.incrementAndGet(achievement);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "user-stats-bench-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return elapsed;
+    }
+
+    private boolean verify(UserStats stats, AtomicIntegerArray unlockWins, int threads) {
+        long expectedWorkouts = (long) threads * opsPerThread;
+        int expectedDays = (int) days();
+        LocalDate lastDay = FIRST_DAY.plusDays(expectedDays - 1);
+        int expectedAchievements = Math.min(opsPerThread, ACHIEVEMENTS);
+        boolean ok = true;
+
+        if (stats.getCompletedWorkouts() != expectedWorkouts) {
+            log("完成次数 %d, 期望 %d", stats.getCompletedWorkouts(), expectedWorkouts);
+            ok = false;
+        }
+        if (stats.getTotalWorkoutMinutes() != expectedWorkouts * MINUTES_PER_WORKOUT) {
+            log("累计时长 %d, 期望 %d", stats.getTotalWorkoutMinutes(), expectedWorkouts * MINUTES_PER_WORKOUT);
+            ok = false;
+        }
+        if (stats.getTotalCaloriesBurned() != expectedWorkouts * CALORIES_PER_WORKOUT) {
+            log("累计卡路里 %.1f, 期望 %.1f", stats.getTotalCaloriesBurned(), expectedWorkouts * CALORIES_PER_WORKOUT);
+            ok = false;
+        }
+        if (stats.getCurrentStreak(lastDay) != expectedDays || stats.getLongestStreak() != expectedDays) {
+            log("当前连续天数 %d, 最长连续天数 %d, 期望 %d",
+                    stats.getCurrentStreak(lastDay), stats.getLongestStreak(), expectedDays);
+            ok = false;
+        }
+        if (stats.countWorkoutDays(FIRST_DAY, lastDay) != expectedDays) {
+            log("训练天数 %d, 期望 %d", stats.countWorkoutDays(FIRST_DAY, lastDay), expectedDays);
+            ok = false;
+        }
+        if (stats.getAchievements().cardinality() != expectedAchievements) {
+            log("已解锁成就 %d 个, 期望 %d 个", stats.getAchievements().cardinality(), expectedAchievements);
+            ok = false;
+        }
+        for (int i = 0; i < expectedAchievements; i++) {
+            if (unlockWins.get(i) != 1) {
+                log("成就 %d 被解锁 %d 次", i, unlockWins.get(i));
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * 打卡的天数
+     */
+    private long days() {
+        return Math.min((opsPerThread + 9) / 10, MAX_DAYS);
+    }
+
+    private static void log(String format, Object... args) {
+        System.out.println("[user-stats-bench] " + String.format(format, args));
+    }
+}